@@ -8,6 +8,9 @@ import com.qiapi.request.ApiRequestBuilder;
 import com.qiapi.request.RequestBuilder;
 import com.qiapi.response.ResponseHandler;
 import com.qiapi.service.ApiService;
+import com.qiapi.trace.Span;
+import com.qiapi.trace.TraceContext;
+import com.qiapi.trace.Tracer;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -96,6 +99,8 @@ public class QiApiClient implements ApiService {
 
     /**
      * 通用API调用方法（完整版）
+     * <p>
+     * 当前线程有链路（{@link Tracer#activate}）时记录一个调用 span，并通过 traceparent 请求头把链路传给网关
      * 
      * @param apiRequest API请求对象
      * @param targetType 返回数据类型
@@ -103,6 +108,7 @@ public class QiApiClient implements ApiService {
      * @return API响应
      */
     public <T> ApiResponse<T> callApi(ApiRequest apiRequest, Class<T> targetType) {
+        Span span = Tracer.span("sdk " + apiRequest.getApiId());
         try {
             // 1. 获取API配置
             ApiConfig apiConfig = apiConfigManager.getApiConfig(apiRequest.getApiId());
@@ -131,17 +137,24 @@ public class QiApiClient implements ApiService {
 
             // 4. 构建HTTP请求
             HttpRequest httpRequest = requestBuilder.buildRequest(apiConfig, apiRequest);
+            if (!span.isNoop()) {
+                httpRequest.header(TraceContext.HEADER, span.getContext().toTraceparent());
+            }
 
             // 5. 执行请求
             log.info("调用API: {}, URL: {}", apiRequest.getApiId(), httpRequest.getUrl());
             HttpResponse httpResponse = httpRequest.execute();
+            span.tag("status", httpResponse.getStatus());
 
             // 6. 处理响应
             return responseHandler.handleResponse(httpResponse, apiConfig, targetType);
 
         } catch (Exception e) {
             log.error("API调用异常: {}", apiRequest.getApiId(), e);
+            span.error(e);
             return ApiResponse.error(500, "INTERNAL_ERROR", "API调用异常: " + e.getMessage());
+        } finally {
+            span.end();
         }
     }
 
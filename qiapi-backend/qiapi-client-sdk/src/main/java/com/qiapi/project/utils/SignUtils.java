@@ -1,21 +1,563 @@
 package com.qiapi.project.utils;
 
 
-import cn.hutool.crypto.digest.DigestAlgorithm;
-import cn.hutool.crypto.digest.Digester;
-
-import java.util.HashMap;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 
 /**
+ * 请求签名工具
+ * <p>
+ * 签名算法：参数按名称字典序排序，名称与值按 RFC 3986 做 UTF-8 百分号编码（仅保留 {@code A-Z a-z 0-9 - _ . ~}），
+ * 拼接为 {@code k1=v1&k2=v2} 的规范串，再以签名密钥为密钥计算 HMAC-SHA256，结果为 64 位小写十六进制。
+ * 值为 null 时按空串处理。
+ * <p>
+ * 签名密钥由 secretKey 派生：{@code hex(HMAC-SHA256(secretKey, "qiapi_request"))}，两次 HMAC 均以字符串的 UTF-8 字节为密钥。
+ * 服务端只需保存和下发派生密钥，不接触 secretKey 原文
+ * <p>
+ * 每个线程复用一个 {@link Mac} 与编码缓冲区，同一线程连续使用相同密钥时不重新初始化，签名过程除结果字符串外不分配对象
+ * <p>
+ * 请求体不直接参与签名：客户端计算请求体的 SHA-256 放入 {@value #CONTENT_SHA256} 请求头并签名该摘要，网关在转发请求体时增量校验
+ * <p>
+ * 请求方法、路径与查询串同样参与签名（参数名 {@value #METHOD}、{@value #PATH}、{@value #QUERY}），
+ * 签名不能挪用到其他接口或其他查询参数上；路径与查询串先经 {@link #canonicalPath(String)}、{@link #canonicalQuery(String)} 规范化
+ *
  * @author zhexueqi
  * @ClassName SignUtils
  * @since 2024/8/2    18:33
  */
 public class SignUtils {
 
-    public static String getSign(String secretKey, HashMap<String, String> hashMap) {
-        Digester digester = new Digester(DigestAlgorithm.SHA256);
-        String content = hashMap.toString() + "." + secretKey;
-        return digester.digestHex(content);
+    public static final String ALGORITHM = "HmacSHA256";
+
+    /**
+     * 签名的十六进制长度
+     */
+    public static final int SIGN_LENGTH = 64;
+
+    /**
+     * 请求体 SHA-256 摘要（十六进制）的请求头与签名参数名
+     */
+    public static final String CONTENT_SHA256 = "content-sha256";
+
+    /**
+     * 请求方法（大写）的签名参数名
+     */
+    public static final String METHOD = "method";
+
+    /**
+     * 规范化请求路径的签名参数名
+     */
+    public static final String PATH = "path";
+
+    /**
+     * 规范化查询串的签名参数名
+     */
+    public static final String QUERY = "query";
+
+    /**
+     * 派生签名密钥时使用的作用域
+     */
+    public static final String SIGNING_KEY_SCOPE = "qiapi_request";
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] HEX_UPPER = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * 线程保留的规范串缓冲区上限，超大请求体用完后不常驻内存
+     */
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    /**
+     * 计算请求体摘要时每次编码的字节数
+     */
+    private static final int DIGEST_CHUNK_SIZE = 8192;
+
+    private static final ThreadLocal<Signer> SIGNER = ThreadLocal.withInitial(Signer::new);
+
+    private static final ThreadLocal<ContentDigester> CONTENT_DIGESTER = ThreadLocal.withInitial(ContentDigester::new);
+
+    /**
+     * 计算签名
+     *
+     * @param secretKey 密钥
+     * @param params    参与签名的参数
+     * @return 64 位小写十六进制签名
+     */
+    public static String getSign(String secretKey, Map<String, String> params) {
+        Signer signer = SIGNER.get();
+        byte[] digest = signer.sign(signer.signingKeyOf(secretKey), params);
+        char[] hex = signer.hex;
+        for (int i = 0; i < digest.length; i++) {
+            hex[i << 1] = (char) HEX[(digest[i] >> 4) & 0xF];
+            hex[(i << 1) + 1] = (char) HEX[digest[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * 校验签名，比较耗时与签名内容无关
+     *
+     * @param secretKey 密钥
+     * @param params    参与签名的参数
+     * @param sign      客户端提交的签名（十六进制，不区分大小写）
+     * @return 签名是否正确
+     */
+    public static boolean verify(String secretKey, Map<String, String> params, String sign) {
+        if (secretKey == null || secretKey.isEmpty()) {
+            return false;
+        }
+        return verifyWithSigningKey(SIGNER.get().signingKeyOf(secretKey), params, sign);
+    }
+
+    /**
+     * 用派生的签名密钥校验签名，比较耗时与签名内容无关
+     *
+     * @param signingKey {@link #deriveSigningKey(String)} 得到的签名密钥
+     * @param params     参与签名的参数
+     * @param sign       客户端提交的签名（十六进制，不区分大小写）
+     * @return 签名是否正确
+     */
+    public static boolean verifyWithSigningKey(String signingKey, Map<String, String> params, String sign) {
+        if (signingKey == null || signingKey.isEmpty() || sign == null || sign.length() != SIGN_LENGTH) {
+            return false;
+        }
+        Signer signer = SIGNER.get();
+        byte[] expected = signer.expected;
+        for (int i = 0; i < expected.length; i++) {
+            int high = hexValue(sign.charAt(i << 1));
+            int low = hexValue(sign.charAt((i << 1) + 1));
+            if (high < 0 || low < 0) {
+                return false;
+            }
+            expected[i] = (byte) ((high << 4) | low);
+        }
+        return MessageDigest.isEqual(signer.sign(signingKey, params), expected);
+    }
+
+    /**
+     * 由 secretKey 派生签名密钥
+     *
+     * @param secretKey 密钥
+     * @return 64 位小写十六进制签名密钥
+     */
+    public static String deriveSigningKey(String secretKey) {
+        if (secretKey == null || secretKey.isEmpty()) {
+            throw new IllegalArgumentException("secretKey 不能为空");
+        }
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            return toHex(mac.doFinal(SIGNING_KEY_SCOPE.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("派生签名密钥失败", e);
+        }
+    }
+
+    /**
+     * 计算请求体的 SHA-256 摘要：按 UTF-8 分块编码并更新摘要，不生成完整的字节数组
+     *
+     * @param body 请求体，null 按空串处理
+     * @return 64 位小写十六进制摘要
+     */
+    public static String getContentSha256(String body) {
+        return toHex(CONTENT_DIGESTER.get().digest(body == null ? "" : body));
+    }
+
+    /**
+     * 计算请求体的 SHA-256 摘要
+     *
+     * @param body 请求体字节
+     * @return 64 位小写十六进制摘要
+     */
+    public static String getContentSha256(byte[] body) {
+        MessageDigest digest = CONTENT_DIGESTER.get().digest;
+        digest.reset();
+        return toHex(digest.digest(body));
+    }
+
+    /**
+     * 创建请求体摘要计算器，用于边接收边计算
+     */
+    public static MessageDigest newContentDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("不支持的摘要算法: SHA-256", e);
+        }
+    }
+
+    /**
+     * 解析十六进制摘要或签名
+     *
+     * @param hex    十六进制串（不区分大小写）
+     * @param length 期望的字节数
+     * @return 字节数组，格式不正确时为 null
+     */
+    public static byte[] decodeHex(String hex, int length) {
+        if (hex == null || hex.length() != length << 1) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            int high = hexValue(hex.charAt(i << 1));
+            int low = hexValue(hex.charAt((i << 1) + 1));
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+
+    /**
+     * 规范化请求路径：按 UTF-8 百分号解码，空路径按 "/" 处理
+     * <p>
+     * 客户端与网关看到的路径编码方式可能不同（如 {@code ~} 与 {@code %7E}），解码后再由签名规范串统一编码
+     *
+     * @param rawPath 请求中的原始路径（可含百分号编码），null 按空串处理
+     * @return 规范化路径
+     */
+    public static String canonicalPath(String rawPath) {
+        if (rawPath == null || rawPath.isEmpty()) {
+            return "/";
+        }
+        return percentDecode(rawPath);
+    }
+
+    /**
+     * 规范化查询串：按 {@code &} 拆分参数，名称与值按 UTF-8 百分号解码（{@code +} 不视为空格），
+     * 按名称、值排序后以 RFC 3986 重新编码，拼接为 {@code k1=v1&k2=v2}；没有值的参数按空值处理
+     *
+     * @param rawQuery 请求中的原始查询串（不含 {@code ?}），null 按空串处理
+     * @return 规范化查询串，没有参数时为空串
+     */
+    public static String canonicalQuery(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return "";
+        }
+        List<String[]> pairs = new ArrayList<>();
+        for (String part : rawQuery.split("&")) {
+            if (part.isEmpty()) {
+                continue;
+            }
+            int eq = part.indexOf('=');
+            String name = eq < 0 ? part : part.substring(0, eq);
+            String value = eq < 0 ? "" : part.substring(eq + 1);
+            pairs.add(new String[]{percentDecode(name), percentDecode(value)});
+        }
+        pairs.sort(Comparator.<String[], String>comparing(pair -> pair[0]).thenComparing(pair -> pair[1]));
+        StringBuilder query = new StringBuilder(rawQuery.length() + 16);
+        for (String[] pair : pairs) {
+            if (query.length() > 0) {
+                query.append('&');
+            }
+            percentEncode(pair[0], query);
+            query.append('=');
+            percentEncode(pair[1], query);
+        }
+        return query.toString();
+    }
+
+    /**
+     * 按 RFC 3986 编码查询参数的名称或值（只保留非保留字符），客户端拼接查询串时使用，
+     * 值中的 {@code &}、{@code =}、{@code +} 不会改变参数的拆分与含义
+     *
+     * @param value 参数名称或值，null 按空串处理
+     * @return 编码结果
+     */
+    public static String encodeQueryComponent(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        StringBuilder encoded = new StringBuilder(value.length() + 16);
+        percentEncode(value, encoded);
+        return encoded.toString();
+    }
+
+    /**
+     * 百分号解码：合法的 %XX 解码为字节，其余字符（包括 {@code +} 与不完整的 %）原样保留
+     */
+    private static String percentDecode(String value) {
+        if (value.indexOf('%') < 0) {
+            return value;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '%' && i + 2 < value.length() && hexValue(value.charAt(i + 1)) >= 0
+                    && hexValue(value.charAt(i + 2)) >= 0) {
+                bytes.write((hexValue(value.charAt(i + 1)) << 4) | hexValue(value.charAt(i + 2)));
+                i += 2;
+            } else {
+                int end = Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1)) ? i + 2 : i + 1;
+                byte[] encoded = value.substring(i, end).getBytes(StandardCharsets.UTF_8);
+                bytes.write(encoded, 0, encoded.length);
+                i = end - 1;
+            }
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * RFC 3986 百分号编码，与签名规范串的编码规则一致
+     */
+    private static void percentEncode(String value, StringBuilder target) {
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if (Signer.isUnreserved(c)) {
+                target.append(c);
+            } else {
+                target.append('%').append((char) HEX_UPPER[(b >> 4) & 0xF]).append((char) HEX_UPPER[b & 0xF]);
+            }
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length << 1];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i << 1] = (char) HEX[(bytes[i] >> 4) & 0xF];
+            hex[(i << 1) + 1] = (char) HEX[bytes[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * 生成规范串，用于排查签名不一致或在其他语言中实现签名
+     *
+     * @param params 参与签名的参数
+     * @return 规范串
+     */
+    public static String getCanonicalString(Map<String, String> params) {
+        Signer signer = SIGNER.get();
+        int length = signer.canonicalize(params);
+        return new String(signer.buffer, 0, length, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * 单个线程的签名上下文
+     */
+    private static class Signer {
+
+        private final Mac mac;
+
+        private final byte[] digest;
+
+        private final byte[] expected;
+
+        private final char[] hex = new char[SIGN_LENGTH];
+
+        /**
+         * 规范串缓冲区，按需扩容
+         */
+        private byte[] buffer = new byte[512];
+
+        private String[] keys = new String[8];
+
+        /**
+         * 当前 Mac 使用的签名密钥
+         */
+        private String currentKey;
+
+        /**
+         * 最近一次派生签名密钥的 secretKey 及其结果，同一线程连续使用相同 secretKey 时不重复派生
+         */
+        private String lastSecretKey;
+
+        private String lastSigningKey;
+
+        private Signer() {
+            try {
+                this.mac = Mac.getInstance(ALGORITHM);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("不支持的签名算法: " + ALGORITHM, e);
+            }
+            this.digest = new byte[mac.getMacLength()];
+            this.expected = new byte[mac.getMacLength()];
+        }
+
+        private String signingKeyOf(String secretKey) {
+            if (secretKey == null || !secretKey.equals(lastSecretKey)) {
+                lastSigningKey = deriveSigningKey(secretKey);
+                lastSecretKey = secretKey;
+            }
+            return lastSigningKey;
+        }
+
+        private byte[] sign(String signingKey, Map<String, String> params) {
+            try {
+                if (!signingKey.equals(currentKey)) {
+                    mac.init(new SecretKeySpec(signingKey.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+                    currentKey = signingKey;
+                }
+                int length = canonicalize(params);
+                // doFinal 后 Mac 自动重置，可直接用同一密钥计算下一次
+                mac.update(buffer, 0, length);
+                mac.doFinal(digest, 0);
+            } catch (GeneralSecurityException e) {
+                currentKey = null;
+                throw new IllegalStateException("计算签名失败", e);
+            }
+            return digest;
+        }
+
+        /**
+         * 将规范串写入 buffer
+         *
+         * @return 写入的字节数
+         */
+        private int canonicalize(Map<String, String> params) {
+            if (buffer.length > MAX_RETAINED_BUFFER) {
+                buffer = new byte[512];
+            }
+            int count = 0;
+            if (keys.length < params.size()) {
+                keys = new String[params.size()];
+            }
+            for (String key : params.keySet()) {
+                if (key != null) {
+                    keys[count++] = key;
+                }
+            }
+            Arrays.sort(keys, 0, count);
+            int position = 0;
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    position = put(position, '&');
+                }
+                position = encode(keys[i], position);
+                position = put(position, '=');
+                String value = params.get(keys[i]);
+                if (value != null) {
+                    position = encode(value, position);
+                }
+            }
+            // 不持有请求参数的引用
+            Arrays.fill(keys, 0, count, null);
+            return position;
+        }
+
+        /**
+         * 百分号编码：非保留字符原样写入，其余字符按 UTF-8 逐字节编码为 %XX
+         */
+        private int encode(String value, int position) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (isUnreserved(c)) {
+                    position = put(position, c);
+                } else if (c < 0x80) {
+                    position = putEscaped(position, c);
+                } else if (c < 0x800) {
+                    position = putEscaped(position, 0xC0 | (c >> 6));
+                    position = putEscaped(position, 0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    position = putEscaped(position, 0xF0 | (codePoint >> 18));
+                    position = putEscaped(position, 0x80 | ((codePoint >> 12) & 0x3F));
+                    position = putEscaped(position, 0x80 | ((codePoint >> 6) & 0x3F));
+                    position = putEscaped(position, 0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    // 不成对的代理字符与 String.getBytes(UTF_8) 一致，按 '?' 处理
+                    position = putEscaped(position, '?');
+                } else {
+                    position = putEscaped(position, 0xE0 | (c >> 12));
+                    position = putEscaped(position, 0x80 | ((c >> 6) & 0x3F));
+                    position = putEscaped(position, 0x80 | (c & 0x3F));
+                }
+            }
+            return position;
+        }
+
+        private static boolean isUnreserved(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~';
+        }
+
+        private int putEscaped(int position, int b) {
+            ensureCapacity(position + 3);
+            buffer[position] = '%';
+            buffer[position + 1] = HEX_UPPER[(b >> 4) & 0xF];
+            buffer[position + 2] = HEX_UPPER[b & 0xF];
+            return position + 3;
+        }
+
+        private int put(int position, char c) {
+            ensureCapacity(position + 1);
+            buffer[position] = (byte) c;
+            return position + 1;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, capacity));
+            }
+        }
+    }
+
+    /**
+     * 单个线程的请求体摘要上下文
+     */
+    private static class ContentDigester {
+
+        private final MessageDigest digest = newContentDigest();
+
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .replaceWith(new byte[]{'?'});
+
+        private final ByteBuffer chunk = ByteBuffer.allocate(DIGEST_CHUNK_SIZE);
+
+        private byte[] digest(String body) {
+            digest.reset();
+            encoder.reset();
+            CharBuffer input = CharBuffer.wrap(body);
+            CoderResult result;
+            do {
+                result = encoder.encode(input, chunk, true);
+                update();
+            } while (result.isOverflow());
+            do {
+                result = encoder.flush(chunk);
+                update();
+            } while (result.isOverflow());
+            return digest.digest();
+        }
+
+        private void update() {
+            chunk.flip();
+            digest.update(chunk);
+            chunk.clear();
+        }
     }
 }
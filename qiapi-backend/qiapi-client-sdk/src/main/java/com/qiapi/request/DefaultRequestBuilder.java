@@ -42,18 +42,21 @@ public class DefaultRequestBuilder implements RequestBuilder {
                 throw new IllegalArgumentException("不支持的HTTP方法: " + method);
         }
         
+        // 请求体只构建一次，签名使用实际发送内容的摘要
+        String body = null;
+        if ("POST".equals(method) || "PUT".equals(method)) {
+            body = buildBody(apiConfig, apiRequest);
+        }
+        
         // 设置请求头
-        Map<String, String> headers = buildHeaders(apiConfig, apiRequest);
+        Map<String, String> headers = buildHeaders(apiConfig, apiRequest, url, body);
         if (headers != null && !headers.isEmpty()) {
             request.headerMap(headers, true);
         }
         
         // 设置请求体
-        if ("POST".equals(method) || "PUT".equals(method)) {
-            String body = buildBody(apiConfig, apiRequest);
-            if (body != null && !body.isEmpty()) {
-                request.body(body);
-            }
+        if (body != null && !body.isEmpty()) {
+            request.body(body);
         }
         
         // 设置超时时间
@@ -81,14 +84,15 @@ public class DefaultRequestBuilder implements RequestBuilder {
         
         String fullUrl = baseUrl + path;
         
-        // 如果是GET请求且有查询参数，添加到URL中
+        // 如果是GET请求且有查询参数，编码后添加到URL中
         if ("GET".equals(apiConfig.getMethod()) && apiRequest.getParams() != null) {
             StringBuilder queryString = new StringBuilder();
             for (Map.Entry<String, Object> entry : apiRequest.getParams().entrySet()) {
                 if (queryString.length() > 0) {
                     queryString.append("&");
                 }
-                queryString.append(entry.getKey()).append("=").append(entry.getValue());
+                queryString.append(SignUtils.encodeQueryComponent(entry.getKey())).append("=")
+                        .append(SignUtils.encodeQueryComponent(String.valueOf(entry.getValue())));
             }
             if (queryString.length() > 0) {
                 fullUrl += "?" + queryString.toString();
@@ -100,6 +104,18 @@ public class DefaultRequestBuilder implements RequestBuilder {
     
     @Override
     public Map<String, String> buildHeaders(ApiConfig apiConfig, ApiRequest apiRequest) {
+        String method = apiConfig.getMethod().toUpperCase();
+        String body = "POST".equals(method) || "PUT".equals(method) ? buildBody(apiConfig, apiRequest) : null;
+        return buildHeaders(apiConfig, apiRequest, buildUrl(apiConfig, apiRequest), body);
+    }
+    
+    /**
+     * 构建请求头
+     * 
+     * @param url  实际请求的地址
+     * @param body 实际发送的请求体，没有请求体时为 null
+     */
+    private Map<String, String> buildHeaders(ApiConfig apiConfig, ApiRequest apiRequest, String url, String body) {
         Map<String, String> headers = new HashMap<>();
         
         // 添加API配置中的默认头
@@ -114,7 +130,7 @@ public class DefaultRequestBuilder implements RequestBuilder {
         
         // 如果需要认证，添加认证相关头
         if (apiConfig.isRequireAuth() && "SIGNATURE".equals(apiConfig.getAuthType())) {
-            addSignatureHeaders(headers, apiConfig, apiRequest);
+            addSignatureHeaders(headers, apiConfig.getMethod().toUpperCase(), url, apiRequest, body);
         }
         
         return headers;
@@ -122,8 +138,12 @@ public class DefaultRequestBuilder implements RequestBuilder {
     
     /**
      * 添加签名认证头
+     * <p>
+     * 请求体不放入请求头，只签名其 SHA-256 摘要，网关转发时边接收边校验；
+     * 请求方法、路径与查询串一并签名，签名不能用于其他接口或其他参数
      */
-    private void addSignatureHeaders(Map<String, String> headers, ApiConfig apiConfig, ApiRequest apiRequest) {
+    private void addSignatureHeaders(Map<String, String> headers, String method, String url, ApiRequest apiRequest,
+                                     String body) {
         String accessKey = apiRequest.getAccessKey();
         String secretKey = apiRequest.getSecretKey();
         
@@ -132,24 +152,56 @@ public class DefaultRequestBuilder implements RequestBuilder {
             return;
         }
         
-        String nonce = RandomUtil.randomNumbers(5);
+        // 网关会在时间窗口内拒绝重复的 nonce，使用足够长的随机串避免正常请求碰撞
+        String nonce = RandomUtil.randomString(16);
         String timestamp = String.valueOf(System.currentTimeMillis() / 1000);
-        String body = buildBody(apiConfig, apiRequest);
+        String contentSha256 = SignUtils.getContentSha256(body);
         
-        // 构建签名参数
-        Map<String, String> signParams = new HashMap<>();
+        // 构建签名参数，网关按同样的字段校验
+        Map<String, String> signParams = new HashMap<>(8);
         signParams.put("accessKey", accessKey);
         signParams.put("nonce", nonce);
         signParams.put("timestamp", timestamp);
-        signParams.put("body", body != null ? body : "");
+        signParams.put(SignUtils.CONTENT_SHA256, contentSha256);
+        signParams.put(SignUtils.METHOD, method);
+        signParams.put(SignUtils.PATH, SignUtils.canonicalPath(rawPath(url)));
+        signParams.put(SignUtils.QUERY, SignUtils.canonicalQuery(rawQuery(url)));
         
-        String sign = SignUtils.getSign(secretKey, new HashMap<>(signParams));
+        String sign = SignUtils.getSign(secretKey, signParams);
         
         headers.put("accessKey", accessKey);
         headers.put("nonce", nonce);
         headers.put("timestamp", timestamp);
         headers.put("sign", sign);
-        headers.put("body", body != null ? body : "");
+        headers.put(SignUtils.CONTENT_SHA256, contentSha256);
+    }
+    
+    /**
+     * 地址中的路径部分（不含查询串），按原样返回，由签名规范化处理编码差异
+     */
+    private static String rawPath(String url) {
+        String withoutQuery = stripFragment(url);
+        int queryStart = withoutQuery.indexOf('?');
+        if (queryStart >= 0) {
+            withoutQuery = withoutQuery.substring(0, queryStart);
+        }
+        int schemeEnd = withoutQuery.indexOf("://");
+        int pathStart = withoutQuery.indexOf('/', schemeEnd < 0 ? 0 : schemeEnd + 3);
+        return pathStart < 0 ? "" : withoutQuery.substring(pathStart);
+    }
+
+    /**
+     * 地址中的查询串（不含 ?），没有时为 null
+     */
+    private static String rawQuery(String url) {
+        String withoutFragment = stripFragment(url);
+        int queryStart = withoutFragment.indexOf('?');
+        return queryStart < 0 ? null : withoutFragment.substring(queryStart + 1);
+    }
+
+    private static String stripFragment(String url) {
+        int fragmentStart = url.indexOf('#');
+        return fragmentStart < 0 ? url : url.substring(0, fragmentStart);
     }
     
     @Override
@@ -0,0 +1,165 @@
+package com.qiapi.trace;
+
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 把保留的链路以 JSON 行写入名为 {@value #LOGGER_NAME} 的日志器，可在日志配置中单独指定输出文件
+ * <p>
+ * 请求线程只把 span 列表放入有界队列，格式化与写入在后台线程完成；队列满时丢弃并计数
+ *
+ * @author zhexueqi
+ */
+@Slf4j
+public class LoggingSpanExporter implements SpanExporter, AutoCloseable {
+
+    public static final String LOGGER_NAME = "TRACE_SPANS";
+
+    private static final Logger TRACE_LOG = LoggerFactory.getLogger(LOGGER_NAME);
+
+    private final BlockingQueue<Batch> queue;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Thread writerThread;
+
+    private volatile boolean running = true;
+
+    /**
+     * 写线程专用
+     */
+    private final StringBuilder line = new StringBuilder(512);
+
+    public LoggingSpanExporter(int queueCapacity) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writerThread = new Thread(this::drainLoop, "trace-span-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    @Override
+    public void export(String service, List<Span> spans) {
+        if (!queue.offer(new Batch(service, spans))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * 因队列已满丢弃的链路数
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        writerThread.interrupt();
+        writerThread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    private void drainLoop() {
+        while (running || !queue.isEmpty()) {
+            try {
+                Batch batch = running ? queue.poll(1, TimeUnit.SECONDS) : queue.poll();
+                if (batch != null) {
+                    write(batch);
+                }
+            } catch (InterruptedException e) {
+                // 关闭时写完队列中剩余的链路
+                running = false;
+            } catch (RuntimeException e) {
+                log.warn("写入链路失败: {}", e.toString());
+            }
+        }
+    }
+
+    private void write(Batch batch) {
+        for (Span span : batch.spans) {
+            line.setLength(0);
+            line.append("{\"traceId\":\"").append(span.getTraceId())
+                    .append("\",\"spanId\":\"").append(span.getContext().getSpanId()).append('"');
+            if (span.getParentSpanId() != null) {
+                line.append(",\"parentSpanId\":\"").append(span.getParentSpanId()).append('"');
+            }
+            line.append(",\"service\":");
+            appendString(batch.service);
+            line.append(",\"name\":");
+            appendString(span.getName());
+            line.append(",\"startMicros\":").append(span.getStartEpochMicros())
+                    .append(",\"durationMicros\":").append(TimeUnit.NANOSECONDS.toMicros(span.getDurationNanos()));
+            if (span.getError() != null) {
+                line.append(",\"error\":");
+                appendString(span.getError());
+            }
+            Map<String, String> tags = span.getTags();
+            if (!tags.isEmpty()) {
+                line.append(",\"tags\":{");
+                boolean first = true;
+                for (Map.Entry<String, String> tag : tags.entrySet()) {
+                    if (!first) {
+                        line.append(',');
+                    }
+                    first = false;
+                    appendString(tag.getKey());
+                    line.append(':');
+                    appendString(tag.getValue());
+                }
+                line.append('}');
+            }
+            line.append('}');
+            TRACE_LOG.info(line.toString());
+        }
+    }
+
+    private void appendString(String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    line.append("\\\"");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        line.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        line.append(c);
+                    }
+            }
+        }
+        line.append('"');
+    }
+
+    private static final class Batch {
+
+        private final String service;
+
+        private final List<Span> spans;
+
+        Batch(String service, List<Span> spans) {
+            this.service = service;
+            this.spans = spans;
+        }
+    }
+}
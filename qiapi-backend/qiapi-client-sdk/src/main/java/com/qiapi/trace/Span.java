@@ -0,0 +1,156 @@
+package com.qiapi.trace;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一段计时的操作；同一进程内属于同一次请求的 span 组成一个 {@link TraceSegment}
+ * <p>
+ * 通过 {@link Tracer} 或 {@link #startChild(String)} 创建，结束时调用 {@link #end()}。
+ * {@link #NOOP} 不记录任何内容，没有链路时使用，调用方不需要判空
+ *
+ * @author zhexueqi
+ */
+public class Span {
+
+    /**
+     * 不记录的 span
+     */
+    public static final Span NOOP = new Span();
+
+    private final TraceSegment segment;
+
+    private final String name;
+
+    private final TraceContext context;
+
+    private final String parentSpanId;
+
+    private final long startEpochMicros;
+
+    private final long startNanos;
+
+    private volatile long durationNanos = -1;
+
+    private volatile String error;
+
+    private Map<String, String> tags;
+
+    private Span() {
+        this.segment = null;
+        this.name = "noop";
+        this.context = null;
+        this.parentSpanId = null;
+        this.startEpochMicros = 0;
+        this.startNanos = 0;
+    }
+
+    Span(TraceSegment segment, String name, TraceContext context, String parentSpanId) {
+        this.segment = segment;
+        this.name = name;
+        this.context = context;
+        this.parentSpanId = parentSpanId;
+        this.startEpochMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * 创建子 span
+     *
+     * @param name 操作名称
+     */
+    public Span startChild(String name) {
+        return segment == null ? NOOP : segment.startSpan(name, this);
+    }
+
+    /**
+     * 添加标签
+     */
+    public Span tag(String key, Object value) {
+        if (segment != null && value != null) {
+            synchronized (this) {
+                if (tags == null) {
+                    tags = new LinkedHashMap<>(8);
+                }
+                tags.put(key, String.valueOf(value));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 标记失败，失败的链路一定保留
+     */
+    public Span error(String message) {
+        if (segment != null) {
+            error = message == null ? "error" : message;
+            segment.markError();
+        }
+        return this;
+    }
+
+    public Span error(Throwable e) {
+        return error(e == null ? null : e.getClass().getName() + ": " + e.getMessage());
+    }
+
+    /**
+     * 结束计时，重复调用无效
+     */
+    public void end() {
+        if (segment == null || durationNanos >= 0) {
+            return;
+        }
+        durationNanos = Math.max(System.nanoTime() - startNanos, 0);
+        segment.spanEnded(this);
+    }
+
+    /**
+     * 是否为不记录的 span
+     */
+    public boolean isNoop() {
+        return segment == null;
+    }
+
+    /**
+     * 上下文，{@link #NOOP} 为 null
+     */
+    public TraceContext getContext() {
+        return context;
+    }
+
+    /**
+     * 链路ID，{@link #NOOP} 为 null
+     */
+    public String getTraceId() {
+        return context == null ? null : context.getTraceId();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getParentSpanId() {
+        return parentSpanId;
+    }
+
+    public long getStartEpochMicros() {
+        return startEpochMicros;
+    }
+
+    /**
+     * 耗时（纳秒），未结束时为 -1
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public synchronized Map<String, String> getTags() {
+        return tags == null ? Collections.<String, String>emptyMap() : new LinkedHashMap<>(tags);
+    }
+}
@@ -0,0 +1,19 @@
+package com.qiapi.trace;
+
+import java.util.List;
+
+/**
+ * 保留的链路的输出
+ *
+ * @author zhexueqi
+ */
+public interface SpanExporter {
+
+    /**
+     * 输出一段链路的全部 span，在结束根 span 的线程中调用，实现不应阻塞
+     *
+     * @param service 服务名称
+     * @param spans   已结束的 span
+     */
+    void export(String service, List<Span> spans);
+}
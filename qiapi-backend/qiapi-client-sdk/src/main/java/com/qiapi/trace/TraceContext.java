@@ -0,0 +1,137 @@
+package com.qiapi.trace;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 链路上下文，按 W3C Trace Context 的 traceparent 格式传播：{@code 00-<32位traceId>-<16位spanId>-<flags>}
+ * <p>
+ * HTTP 请求通过 {@value #HEADER} 请求头传递，Dubbo 调用通过同名 attachment 传递；
+ * flags 的最低位表示上游已决定保留该链路（头部采样），下游收到后同样保留
+ *
+ * @author zhexueqi
+ */
+public final class TraceContext {
+
+    /**
+     * 传播上下文的请求头与 Dubbo attachment 名称
+     */
+    public static final String HEADER = "traceparent";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String traceId;
+
+    private final String spanId;
+
+    private final boolean sampled;
+
+    public TraceContext(String traceId, String spanId, boolean sampled) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.sampled = sampled;
+    }
+
+    /**
+     * 新链路的上下文
+     *
+     * @param sampled 是否已决定保留
+     */
+    public static TraceContext newRoot(boolean sampled) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new TraceContext(hex(random.nextLong(), random.nextLong()), newSpanId(), sampled);
+    }
+
+    /**
+     * 同一链路中的新 span
+     */
+    public TraceContext newChild() {
+        return new TraceContext(traceId, newSpanId(), sampled);
+    }
+
+    /**
+     * 解析 traceparent
+     *
+     * @param traceparent traceparent 请求头或 attachment 的值
+     * @return 上下文，为空或格式不正确时为 null
+     */
+    public static TraceContext parse(String traceparent) {
+        if (traceparent == null || traceparent.length() != 55 || traceparent.charAt(2) != '-'
+                || traceparent.charAt(35) != '-' || traceparent.charAt(52) != '-'
+                || !isHex(traceparent, 0, 2) || "ff".equals(traceparent.substring(0, 2))
+                || !isHex(traceparent, 3, 35) || !isHex(traceparent, 36, 52) || !isHex(traceparent, 53, 55)) {
+            return null;
+        }
+        String traceId = traceparent.substring(3, 35);
+        String spanId = traceparent.substring(36, 52);
+        if (isZero(traceId) || isZero(spanId)) {
+            return null;
+        }
+        boolean sampled = (Character.digit(traceparent.charAt(54), 16) & 1) == 1;
+        return new TraceContext(traceId, spanId, sampled);
+    }
+
+    /**
+     * 转为 traceparent
+     */
+    public String toTraceparent() {
+        return "00-" + traceId + "-" + spanId + (sampled ? "-01" : "-00");
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public String getSpanId() {
+        return spanId;
+    }
+
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    private static String newSpanId() {
+        long id;
+        do {
+            id = ThreadLocalRandom.current().nextLong();
+        } while (id == 0);
+        char[] chars = new char[16];
+        writeHex(id, chars, 0);
+        return new String(chars);
+    }
+
+    private static String hex(long high, long low) {
+        if (high == 0 && low == 0) {
+            low = 1;
+        }
+        char[] chars = new char[32];
+        writeHex(high, chars, 0);
+        writeHex(low, chars, 16);
+        return new String(chars);
+    }
+
+    private static void writeHex(long value, char[] chars, int offset) {
+        for (int i = 15; i >= 0; i--) {
+            chars[offset + i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    private static boolean isHex(String value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if (!(c >= '0' && c <= '9') && !(c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isZero(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) != '0') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
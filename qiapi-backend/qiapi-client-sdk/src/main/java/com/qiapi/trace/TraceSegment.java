@@ -0,0 +1,64 @@
+package com.qiapi.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一条链路在当前进程内的部分：一个本地根 span 及其全部子 span
+ * <p>
+ * 结束的 span 先暂存在这里，根 span 结束时由 {@link Tracer} 统一决定保留还是丢弃（尾部采样），
+ * 被丢弃的快速请求除了暂存这些对象外没有额外开销
+ *
+ * @author zhexueqi
+ */
+public class TraceSegment {
+
+    private final Tracer tracer;
+
+    private final Span root;
+
+    private final Queue<Span> finished = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger spanCount = new AtomicInteger(1);
+
+    private volatile boolean error;
+
+    TraceSegment(Tracer tracer, String name, TraceContext context, String parentSpanId) {
+        this.tracer = tracer;
+        this.root = new Span(this, name, context, parentSpanId);
+    }
+
+    Span startSpan(String name, Span parent) {
+        // 超过上限的 span 不再记录，避免循环调用撑大单条链路
+        if (spanCount.incrementAndGet() > tracer.getMaxSpansPerTrace()) {
+            return Span.NOOP;
+        }
+        return new Span(this, name, parent.getContext().newChild(), parent.getContext().getSpanId());
+    }
+
+    void spanEnded(Span span) {
+        finished.add(span);
+        if (span == root) {
+            tracer.complete(this);
+        }
+    }
+
+    void markError() {
+        error = true;
+    }
+
+    Span getRoot() {
+        return root;
+    }
+
+    boolean isError() {
+        return error;
+    }
+
+    List<Span> getFinishedSpans() {
+        return new ArrayList<>(finished);
+    }
+}
@@ -0,0 +1,122 @@
+package com.qiapi.trace;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 链路追踪入口：创建本地根 span，并在根 span 结束时做尾部采样
+ * <p>
+ * 满足任一条件的链路会交给 {@link SpanExporter} 输出，其余丢弃：
+ * 上游已决定保留（traceparent 的采样位）、本进程内有 span 失败、根 span 耗时达到慢请求阈值、
+ * 或按采样率随机命中（只在本进程是链路起点时抽样，并通过采样位通知下游）。
+ * 各进程独立判断，慢在某一段时，该段所在进程一定保留，可按 traceId 拼接
+ * <p>
+ * 同步代码通过 {@link #activate(Span)} 把 span 绑定到当前线程，{@link #span(String)} 在当前 span 下创建子 span；
+ * 响应式代码不依赖线程，直接持有 span 对象
+ *
+ * @author zhexueqi
+ */
+public class Tracer {
+
+    private static final ThreadLocal<Span> CURRENT = new ThreadLocal<>();
+
+    private final String service;
+
+    private final long slowThresholdNanos;
+
+    private final double sampleRate;
+
+    private final int maxSpansPerTrace;
+
+    private final SpanExporter exporter;
+
+    /**
+     * @param service             服务名称，输出时标记 span 所属进程
+     * @param slowThresholdMillis 慢请求阈值（毫秒），本地根 span 达到该耗时时保留整段链路
+     * @param sampleRate          链路起点的随机采样率（0-1）
+     * @param maxSpansPerTrace    每段链路最多记录的 span 数
+     * @param exporter            保留的链路的输出
+     */
+    public Tracer(String service, long slowThresholdMillis, double sampleRate, int maxSpansPerTrace,
+                  SpanExporter exporter) {
+        this.service = service;
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+        this.sampleRate = sampleRate;
+        this.maxSpansPerTrace = maxSpansPerTrace;
+        this.exporter = exporter;
+    }
+
+    /**
+     * 创建本地根 span
+     *
+     * @param name   操作名称
+     * @param parent 上游传入的上下文，为 null 时开始新链路
+     */
+    public Span startRoot(String name, TraceContext parent) {
+        if (parent == null) {
+            boolean sampled = sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+            return new TraceSegment(this, name, TraceContext.newRoot(sampled), null).getRoot();
+        }
+        return new TraceSegment(this, name, parent.newChild(), parent.getSpanId()).getRoot();
+    }
+
+    /**
+     * 把 span 绑定到当前线程，关闭返回的 {@link Scope} 时恢复原来的 span（不结束 span）
+     */
+    public static Scope activate(Span span) {
+        Span previous = CURRENT.get();
+        CURRENT.set(span);
+        return new Scope(previous);
+    }
+
+    /**
+     * 当前线程的 span，没有时为 {@link Span#NOOP}
+     */
+    public static Span currentSpan() {
+        Span span = CURRENT.get();
+        return span == null ? Span.NOOP : span;
+    }
+
+    /**
+     * 在当前线程的 span 下创建子 span，没有链路时返回 {@link Span#NOOP}
+     *
+     * @param name 操作名称
+     */
+    public static Span span(String name) {
+        return currentSpan().startChild(name);
+    }
+
+    void complete(TraceSegment segment) {
+        Span root = segment.getRoot();
+        boolean keep = root.getContext().isSampled() || segment.isError()
+                || root.getDurationNanos() >= slowThresholdNanos;
+        if (keep) {
+            exporter.export(service, segment.getFinishedSpans());
+        }
+    }
+
+    int getMaxSpansPerTrace() {
+        return maxSpansPerTrace;
+    }
+
+    /**
+     * 线程绑定的作用域
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private final Span previous;
+
+        private Scope(Span previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.qiapi.project.utils;
+
+import cn.hutool.crypto.digest.DigestAlgorithm;
+import cn.hutool.crypto.digest.Digester;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 签名计算与校验的基准测试，对比旧的 SHA256(HashMap.toString() + "." + secretKey) 实现（请求体直接参与签名）
+ * <p>
+ * 运行：执行 main 方法，结果中 gc.alloc.rate.norm 为每次操作分配的字节数
+ *
+ * @author zhexueqi
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignUtilsBenchmark {
+
+    /**
+     * 请求体长度
+     */
+    @Param({"0", "256", "4096"})
+    private int bodyLength;
+
+    private String secretKey;
+
+    private String body;
+
+    private Map<String, String> params;
+
+    private Map<String, String> legacyParams;
+
+    private String sign;
+
+    @Setup
+    public void setup() {
+        secretKey = "f2a6c1e0b7d94a3f8e5c2b1a0d9e8f7c";
+        StringBuilder builder = new StringBuilder(bodyLength);
+        for (int i = 0; i < bodyLength; i++) {
+            builder.append((char) ('a' + i % 26));
+        }
+        body = builder.toString();
+        params = new HashMap<>(8);
+        params.put("accessKey", "4b9e7d1c2a3f5e6d");
+        params.put("nonce", "k3j9x0q2m8v1z7w4");
+        params.put("timestamp", "1760000000");
+        legacyParams = new HashMap<>(params);
+        // 与客户端实际签名的字段一致：请求方法、规范化路径与查询串
+        params.put(SignUtils.METHOD, "POST");
+        params.put(SignUtils.PATH, SignUtils.canonicalPath("/third-party/api/name"));
+        params.put(SignUtils.QUERY, SignUtils.canonicalQuery("page=1&size=20"));
+        legacyParams.put("body", body);
+        params.put(SignUtils.CONTENT_SHA256, SignUtils.getContentSha256(body));
+        sign = SignUtils.getSign(secretKey, params);
+    }
+
+    /**
+     * 客户端完整签名：计算请求体摘要并签名
+     */
+    @Benchmark
+    public String sign() {
+        params.put(SignUtils.CONTENT_SHA256, SignUtils.getContentSha256(body));
+        return SignUtils.getSign(secretKey, params);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return SignUtils.verify(secretKey, params, sign);
+    }
+
+    @Benchmark
+    public String legacySign() {
+        Digester digester = new Digester(DigestAlgorithm.SHA256);
+        return digester.digestHex(legacyParams.toString() + "." + secretKey);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SignUtilsBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
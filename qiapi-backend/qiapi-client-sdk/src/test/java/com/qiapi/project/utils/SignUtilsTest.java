@@ -0,0 +1,249 @@
+package com.qiapi.project.utils;
+
+import cn.hutool.http.HttpRequest;
+import cn.hutool.http.HttpResponse;
+import com.qiapi.model.ApiConfig;
+import com.qiapi.model.ApiRequest;
+import com.qiapi.request.DefaultRequestBuilder;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 请求签名测试
+ * <p>
+ * 固定向量由独立实现（RFC 3986 编码 + HMAC-SHA256）计算，其他语言实现签名时可用来对照
+ *
+ * @author zhexueqi
+ */
+class SignUtilsTest {
+
+    private static final String SECRET_KEY = "test-secret-key";
+
+    private static final String SIGNING_KEY = "42e6ad986fb1c3b12ea1a71c87850b82f1953f70af5edde2c530faab56ca26a4";
+
+    private static final String BODY = "{\"name\":\"中文\"}";
+
+    private static final String BODY_SHA256 = "7a33d1776110ad3d7d55415d65346e5aa474461c441c3df8cf7021d88f1645b6";
+
+    private static final String EMPTY_SHA256 = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+
+    @Test
+    void derivesSigningKey() {
+        Assertions.assertEquals(SIGNING_KEY, SignUtils.deriveSigningKey(SECRET_KEY));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> SignUtils.deriveSigningKey(""));
+    }
+
+    @Test
+    void contentSha256() {
+        Assertions.assertEquals(BODY_SHA256, SignUtils.getContentSha256(BODY));
+        Assertions.assertEquals(BODY_SHA256, SignUtils.getContentSha256(BODY.getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals(EMPTY_SHA256, SignUtils.getContentSha256((String) null));
+        Assertions.assertEquals(EMPTY_SHA256, SignUtils.getContentSha256(""));
+    }
+
+    @Test
+    void canonicalStringAndSignOfPostRequest() {
+        Map<String, String> params = baseParams();
+        params.put(SignUtils.CONTENT_SHA256, BODY_SHA256);
+        params.put(SignUtils.METHOD, "POST");
+        params.put(SignUtils.PATH, SignUtils.canonicalPath("/third-party/api/name"));
+        params.put(SignUtils.QUERY, SignUtils.canonicalQuery(null));
+        Assertions.assertEquals("accessKey=ak-123"
+                        + "&content-sha256=" + BODY_SHA256
+                        + "&method=POST&nonce=abc%20DEF~&path=%2Fthird-party%2Fapi%2Fname&query=&timestamp=1700000000",
+                SignUtils.getCanonicalString(params));
+        String sign = "ffe0e2c265d806600921253c4d09ec8ae89b37e9cf49d7d9364e3c818706848e";
+        Assertions.assertEquals(sign, SignUtils.getSign(SECRET_KEY, params));
+        Assertions.assertTrue(SignUtils.verify(SECRET_KEY, params, sign));
+        Assertions.assertTrue(SignUtils.verifyWithSigningKey(SIGNING_KEY, params, sign.toUpperCase()));
+    }
+
+    @Test
+    void canonicalStringAndSignOfGetRequestWithQuery() {
+        Map<String, String> params = baseParams();
+        params.put(SignUtils.CONTENT_SHA256, EMPTY_SHA256);
+        params.put(SignUtils.METHOD, "GET");
+        params.put(SignUtils.PATH, SignUtils.canonicalPath("/api/%7Euser/%E5%90%8D"));
+        params.put(SignUtils.QUERY, SignUtils.canonicalQuery("b=2&a=%E4%B8%AD&a=1&c&d=x%2By"));
+        Assertions.assertEquals("accessKey=ak-123"
+                        + "&content-sha256=" + EMPTY_SHA256
+                        + "&method=GET&nonce=abc%20DEF~&path=%2Fapi%2F~user%2F%E5%90%8D"
+                        + "&query=a%3D1%26a%3D%25E4%25B8%25AD%26b%3D2%26c%3D%26d%3Dx%252By&timestamp=1700000000",
+                SignUtils.getCanonicalString(params));
+        Assertions.assertEquals("9dcca008780e9f770c353afc4a7a8768d1a499650ea0ceecc595c5cb9802c910",
+                SignUtils.getSign(SECRET_KEY, params));
+    }
+
+    @Test
+    void canonicalPath() {
+        Assertions.assertEquals("/", SignUtils.canonicalPath(null));
+        Assertions.assertEquals("/", SignUtils.canonicalPath(""));
+        Assertions.assertEquals("/api/~user/名", SignUtils.canonicalPath("/api/%7Euser/%E5%90%8D"));
+        Assertions.assertEquals("/api/~user/名", SignUtils.canonicalPath("/api/~user/名"));
+        // 不完整的百分号编码原样保留
+        Assertions.assertEquals("/a%zz/b%", SignUtils.canonicalPath("/a%zz/b%"));
+    }
+
+    @Test
+    void canonicalQuery() {
+        Assertions.assertEquals("", SignUtils.canonicalQuery(null));
+        Assertions.assertEquals("", SignUtils.canonicalQuery(""));
+        Assertions.assertEquals("", SignUtils.canonicalQuery("&&"));
+        // 按名称、再按值排序，没有值的参数按空值处理
+        Assertions.assertEquals("a=1&a=%E4%B8%AD&b=2&c=&d=x%2By",
+                SignUtils.canonicalQuery("b=2&a=%E4%B8%AD&a=1&c&d=x%2By"));
+        // 编码方式不同但含义相同的查询串规范化后一致
+        Assertions.assertEquals(SignUtils.canonicalQuery("q=a%20b&name=%E4%B8%AD"),
+                SignUtils.canonicalQuery("name=中&q=a b"));
+        Assertions.assertEquals("k=~", SignUtils.canonicalQuery("k=%7e"));
+        // + 不视为空格
+        Assertions.assertEquals("q=a%2Bb", SignUtils.canonicalQuery("q=a+b"));
+        Assertions.assertNotEquals(SignUtils.canonicalQuery("q=a+b"), SignUtils.canonicalQuery("q=a%20b"));
+        Assertions.assertEquals("a=%25zz", SignUtils.canonicalQuery("a=%zz"));
+    }
+
+    @Test
+    void verifyRejectsTamperedOrMalformedSign() {
+        Map<String, String> params = baseParams();
+        params.put(SignUtils.METHOD, "GET");
+        String sign = SignUtils.getSign(SECRET_KEY, params);
+        Assertions.assertTrue(SignUtils.verifyWithSigningKey(SIGNING_KEY, params, sign));
+        Assertions.assertFalse(SignUtils.verifyWithSigningKey(SIGNING_KEY, params, sign.substring(1)));
+        Assertions.assertFalse(SignUtils.verifyWithSigningKey(SIGNING_KEY, params, "z" + sign.substring(1)));
+        Assertions.assertFalse(SignUtils.verifyWithSigningKey(SIGNING_KEY, params, null));
+        Assertions.assertFalse(SignUtils.verifyWithSigningKey("", params, sign));
+        Assertions.assertFalse(SignUtils.verify(null, params, sign));
+        Assertions.assertFalse(SignUtils.verify("other-secret", params, sign));
+        params.put(SignUtils.METHOD, "POST");
+        Assertions.assertFalse(SignUtils.verifyWithSigningKey(SIGNING_KEY, params, sign));
+    }
+
+    @Test
+    void postRequestBuiltByClientVerifiesAtGateway() throws IOException {
+        ApiRequest request = apiRequest();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("name", "中文 & 空格");
+        request.setBody(body);
+        ReceivedRequest received = send(apiConfig("POST", "BODY", "/third-party/api/name"), request);
+        Assertions.assertEquals(SignUtils.getContentSha256(received.body), received.headers.getFirst(SignUtils.CONTENT_SHA256));
+        assertVerifiesAtGateway(received);
+    }
+
+    @Test
+    void getRequestBuiltByClientVerifiesAtGateway() throws IOException {
+        ApiRequest request = apiRequest();
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("keyword", "中文 a+b&c=d");
+        params.put("page", 1);
+        request.setParams(params);
+        ReceivedRequest received = send(apiConfig("GET", "QUERY", "/third-party/api/search"), request);
+        Assertions.assertEquals(EMPTY_SHA256, received.headers.getFirst(SignUtils.CONTENT_SHA256));
+        Assertions.assertEquals(SignUtils.canonicalQuery("keyword=" + "%E4%B8%AD%E6%96%87%20a%2Bb%26c%3Dd&page=1"),
+                SignUtils.canonicalQuery(received.uri.getRawQuery()), "查询参数应按原值送达");
+        // + 按字面值编码发送，服务端不会解释为空格
+        Assertions.assertFalse(received.uri.getRawQuery().contains("+"), received.uri.getRawQuery());
+        assertVerifiesAtGateway(received);
+    }
+
+    /**
+     * 把客户端构建的请求实际发送到本地服务，记录服务端收到的原始请求
+     */
+    private static ReceivedRequest send(ApiConfig config, ApiRequest request) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        AtomicReference<ReceivedRequest> received = new AtomicReference<>();
+        server.createContext("/", exchange -> {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            received.set(new ReceivedRequest(exchange.getRequestMethod(), exchange.getRequestURI(),
+                    exchange.getRequestHeaders(), body));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            config.setBaseUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+            HttpRequest httpRequest = new DefaultRequestBuilder().buildRequest(config, request);
+            try (HttpResponse response = httpRequest.execute()) {
+                Assertions.assertEquals(200, response.getStatus());
+            }
+        } finally {
+            server.stop(0);
+        }
+        Assertions.assertNotNull(received.get(), "服务端应收到请求");
+        return received.get();
+    }
+
+    /**
+     * 按网关的方式从服务端收到的请求重建签名参数并校验
+     */
+    private static void assertVerifiesAtGateway(ReceivedRequest received) {
+        Map<String, String> signParams = new HashMap<>(8);
+        signParams.put("accessKey", received.headers.getFirst("accessKey"));
+        signParams.put("nonce", received.headers.getFirst("nonce"));
+        signParams.put("timestamp", received.headers.getFirst("timestamp"));
+        signParams.put(SignUtils.CONTENT_SHA256, received.headers.getFirst(SignUtils.CONTENT_SHA256));
+        signParams.put(SignUtils.METHOD, received.method);
+        signParams.put(SignUtils.PATH, SignUtils.canonicalPath(received.uri.getRawPath()));
+        signParams.put(SignUtils.QUERY, SignUtils.canonicalQuery(received.uri.getRawQuery()));
+        String sign = received.headers.getFirst("sign");
+        Assertions.assertTrue(SignUtils.verifyWithSigningKey(SIGNING_KEY, signParams, sign), "网关应能校验通过");
+        // 签名不能挪用到其他路径上
+        signParams.put(SignUtils.PATH, "/third-party/api/other");
+        Assertions.assertFalse(SignUtils.verifyWithSigningKey(SIGNING_KEY, signParams, sign));
+    }
+
+    private static class ReceivedRequest {
+
+        private final String method;
+
+        private final URI uri;
+
+        private final Headers headers;
+
+        private final byte[] body;
+
+        private ReceivedRequest(String method, URI uri, Headers headers, byte[] body) {
+            this.method = method;
+            this.uri = uri;
+            this.headers = headers;
+            this.body = body;
+        }
+    }
+
+    private static Map<String, String> baseParams() {
+        Map<String, String> params = new HashMap<>(8);
+        params.put("accessKey", "ak-123");
+        params.put("nonce", "abc DEF~");
+        params.put("timestamp", "1700000000");
+        return params;
+    }
+
+    private static ApiConfig apiConfig(String method, String paramType, String path) {
+        ApiConfig config = new ApiConfig();
+        config.setBaseUrl("http://localhost:8090/");
+        config.setPath(path);
+        config.setMethod(method);
+        config.setParamType(paramType);
+        config.setRequireAuth(true);
+        config.setAuthType("SIGNATURE");
+        return config;
+    }
+
+    private static ApiRequest apiRequest() {
+        ApiRequest request = new ApiRequest("test-api");
+        request.setAccessKey("ak-123");
+        request.setSecretKey(SECRET_KEY);
+        return request;
+    }
+}
@@ -0,0 +1,57 @@
+package com.qiapi.qiapicommon.model.dto;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 网关动态路由（由接口信息生成，只包含网关转发需要的字段）
+ *
+ * @author zhexueqi
+ */
+@Data
+public class GatewayRoute implements Serializable {
+
+    /**
+     * 接口ID
+     */
+    private Long interfaceId;
+
+    /**
+     * 接口地址（上游地址 + 请求路径）
+     */
+    private String url;
+
+    /**
+     * 请求方法
+     */
+    private String method;
+
+    /**
+     * 连接上游的超时时间（毫秒），为空时使用网关默认值
+     */
+    private Integer connectTimeoutMillis;
+
+    /**
+     * 等待上游响应的超时时间（毫秒），为空时使用网关默认值
+     */
+    private Integer responseTimeoutMillis;
+
+    /**
+     * 上线的上游实例地址（协议 + 主机 + 端口），为空时转发到接口地址本身；多个实例时由网关负载均衡
+     */
+    private List<String> instanceUrls;
+
+    /**
+     * 更新时间（毫秒时间戳）
+     */
+    private Long updateTime;
+
+    /**
+     * 接口是否已删除或未上线，为 true 时网关移除对应路由
+     */
+    private Boolean deleted;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,73 @@
+package com.qiapi.qiapicommon.model.dto;
+
+import com.qiapi.qiapicommon.model.enums.InvocationQuotaEnum;
+import com.qiapi.qiapicommon.model.enums.InvocationTierEnum;
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 接口调用鉴权结果（只包含网关需要的字段，不含密码、secretKey 等用户信息）
+ *
+ * @author zhexueqi
+ */
+@Data
+public class InvocationAuthorization implements Serializable {
+
+    /**
+     * 用户ID，accessKey 不存在或用户被封禁时为空
+     */
+    private Long userId;
+
+    /**
+     * 用户等级，accessKey 不存在或用户被封禁时为空
+     */
+    private InvocationTierEnum tier;
+
+    /**
+     * 由 secretKey 派生的签名密钥，只能用于校验请求签名
+     */
+    private String signingKey;
+
+    /**
+     * 接口ID，接口不存在时为空
+     */
+    private Long interfaceId;
+
+    /**
+     * 配额结果，用户或接口不存在时为空
+     */
+    private InvocationQuotaEnum quota;
+
+    /**
+     * 剩余可用量：额度充足时为专用额度与通用额度之和，使用调用次数时为剩余调用次数
+     */
+    private Long remaining;
+
+    /**
+     * 熔断失败率阈值（%），为空时使用网关默认值
+     */
+    private Integer breakerFailureRate;
+
+    /**
+     * 熔断慢调用比例阈值（%），为空时使用网关默认值
+     */
+    private Integer breakerSlowCallRate;
+
+    /**
+     * 慢调用耗时阈值（毫秒），为空时使用网关默认值
+     */
+    private Integer breakerSlowCallMillis;
+
+    /**
+     * 网关最大并发调用数，为空时使用网关默认值
+     */
+    private Integer maxConcurrentCalls;
+
+    /**
+     * 网关缓存 GET 响应的秒数，为空或 0 时不缓存
+     */
+    private Integer cacheTtlSeconds;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,57 @@
+package com.qiapi.qiapicommon.model.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 接口上游实例（同一接口可注册多个实例，由网关负载均衡）
+ *
+ * @author zhexueqi
+ */
+@TableName(value = "interface_instance")
+@Data
+public class InterfaceInstance implements Serializable {
+
+    /**
+     * 主键
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 接口ID
+     */
+    private Long interfaceInfoId;
+
+    /**
+     * 实例地址（协议 + 主机 + 端口，如 http://10.0.0.1:8123），请求路径取自接口地址
+     */
+    private String url;
+
+    /**
+     * 实例状态 0-下线 1-上线
+     */
+    private Integer status;
+
+    /**
+     * 创建时间
+     */
+    private Date createTime;
+
+    /**
+     * 更新时间
+     */
+    private Date updateTime;
+
+    /**
+     * 是否删除(0-未删, 1-已删)
+     */
+    @TableLogic
+    private Integer isDelete;
+
+    @TableField(exist = false)
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,23 @@
+package com.qiapi.qiapicommon.model.enums;
+
+/**
+ * 调用鉴权的配额结果
+ *
+ * @author zhexueqi
+ */
+public enum InvocationQuotaEnum {
+
+    CREDIT("额度充足"),
+    INVOKE_COUNT("额度不足，剩余调用次数可用"),
+    INSUFFICIENT("额度与调用次数均不足");
+
+    private final String text;
+
+    InvocationQuotaEnum(String text) {
+        this.text = text;
+    }
+
+    public String getText() {
+        return text;
+    }
+}
@@ -0,0 +1,22 @@
+package com.qiapi.qiapicommon.model.enums;
+
+/**
+ * 调用用户的等级：网关在并发已满排队或过载时优先处理付费用户的请求
+ *
+ * @author zhexueqi
+ */
+public enum InvocationTierEnum {
+
+    PAID("购买过额度套餐"),
+    FREE("只使用免费额度或调用次数");
+
+    private final String text;
+
+    InvocationTierEnum(String text) {
+        this.text = text;
+    }
+
+    public String getText() {
+        return text;
+    }
+}
@@ -0,0 +1,22 @@
+package com.qiapi.qiapicommon.service;
+
+/**
+ * 调用鉴权缓存服务（由每个后端节点和网关节点提供，修改密钥或接口时以广播方式调用，使所有节点的鉴权缓存失效）
+ *
+ */
+public interface InnerAuthCacheService {
+
+    /**
+     * 使 accessKey 对应的用户缓存失效
+     *
+     * @param accessKey
+     */
+    void invalidateAccessKey(String accessKey);
+
+    /**
+     * 使接口信息缓存失效
+     *
+     * @param interfaceInfoId 接口ID
+     */
+    void invalidateInterfaceInfo(long interfaceInfoId);
+}
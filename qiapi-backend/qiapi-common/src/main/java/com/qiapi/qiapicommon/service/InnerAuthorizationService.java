@@ -0,0 +1,31 @@
+package com.qiapi.qiapicommon.service;
+
+import com.qiapi.qiapicommon.model.dto.InvocationAuthorization;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 内部调用鉴权服务：一次调用完成用户、接口与额度的检查
+ *
+ */
+public interface InnerAuthorizationService {
+
+    /**
+     * 鉴权一次接口调用
+     *
+     * @param accessKey accessKey
+     * @param path      接口地址
+     * @param method    请求方法
+     * @param amount    本次调用需要的额度
+     * @return 鉴权结果，accessKey 不存在时用户ID为空，接口不存在时接口ID为空
+     */
+    InvocationAuthorization authorizeInvocation(String accessKey, String path, String method, Long amount);
+
+    /**
+     * 异步鉴权一次接口调用（网关在事件循环线程上使用，不阻塞）
+     */
+    default CompletableFuture<InvocationAuthorization> authorizeInvocationAsync(String accessKey, String path,
+            String method, Long amount) {
+        return CompletableFuture.completedFuture(authorizeInvocation(accessKey, path, method, amount));
+    }
+}
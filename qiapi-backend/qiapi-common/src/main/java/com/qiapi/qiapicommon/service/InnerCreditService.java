@@ -1,5 +1,7 @@
 package com.qiapi.qiapicommon.service;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 内部额度服务（供Dubbo调用）
  */
@@ -14,6 +16,17 @@ public interface InnerCreditService {
      */
     boolean checkCreditSufficient(Long userId, Long interfaceId, Long amount);
 
+    /**
+     * 异步检查用户接口额度是否充足
+     * @param userId 用户ID
+     * @param interfaceId 接口ID
+     * @param amount 需要的额度
+     * @return 是否充足
+     */
+    default CompletableFuture<Boolean> checkCreditSufficientAsync(Long userId, Long interfaceId, Long amount) {
+        return CompletableFuture.completedFuture(checkCreditSufficient(userId, interfaceId, amount));
+    }
+
     /**
      * 消费接口额度
      * @param userId 用户ID
@@ -23,5 +36,84 @@ public interface InnerCreditService {
      */
     boolean consumeCredit(Long userId, Long interfaceId, Long amount);
 
+    /**
+     * 异步消费接口额度
+     * @param userId 用户ID
+     * @param interfaceId 接口ID
+     * @param amount 消费数量
+     * @return 是否成功
+     */
+    default CompletableFuture<Boolean> consumeCreditAsync(Long userId, Long interfaceId, Long amount) {
+        return CompletableFuture.completedFuture(consumeCredit(userId, interfaceId, amount));
+    }
+
+    /**
+     * 预授权冻结额度，冻结超时未确认会自动释放
+     * @param userId 用户ID
+     * @param interfaceId 接口ID
+     * @param amount 冻结数量
+     * @return 冻结凭证，额度不足时返回 null
+     */
+    String reserve(Long userId, Long interfaceId, Long amount);
+
+    /**
+     * 异步预授权冻结额度
+     * @param userId 用户ID
+     * @param interfaceId 接口ID
+     * @param amount 冻结数量
+     * @return 冻结凭证，额度不足时返回 null
+     */
+    default CompletableFuture<String> reserveAsync(Long userId, Long interfaceId, Long amount) {
+        return CompletableFuture.completedFuture(reserve(userId, interfaceId, amount));
+    }
 
-}
\ No newline at end of file
+    /**
+     * 确认扣减冻结的额度
+     * @param token 冻结凭证
+     * @return 是否成功
+     */
+    boolean commit(String token);
+
+    /**
+     * 异步确认扣减冻结的额度
+     * @param token 冻结凭证
+     * @return 是否成功
+     */
+    default CompletableFuture<Boolean> commitAsync(String token) {
+        return CompletableFuture.completedFuture(commit(token));
+    }
+
+    /**
+     * 部分确认：扣减实际使用的数量，其余冻结额度释放（用于网关批量租用额度）
+     * @param token 冻结凭证
+     * @param used 实际使用数量，为 0 时全部释放
+     * @return 是否成功
+     */
+    boolean commit(String token, Long used);
+
+    /**
+     * 异步部分确认
+     * @param token 冻结凭证
+     * @param used 实际使用数量，为 0 时全部释放
+     * @return 是否成功
+     */
+    default CompletableFuture<Boolean> commitAsync(String token, Long used) {
+        return CompletableFuture.completedFuture(commit(token, used));
+    }
+
+    /**
+     * 释放冻结的额度
+     * @param token 冻结凭证
+     * @return 是否成功
+     */
+    boolean release(String token);
+
+    /**
+     * 异步释放冻结的额度
+     * @param token 冻结凭证
+     * @return 是否成功
+     */
+    default CompletableFuture<Boolean> releaseAsync(String token) {
+        return CompletableFuture.completedFuture(release(token));
+    }
+}
@@ -0,0 +1,15 @@
+package com.qiapi.qiapicommon.service;
+
+/**
+ * 网关路由刷新服务（由每个网关节点提供，新增、修改或删除接口时以广播方式调用，使网关立即刷新该接口的路由）
+ *
+ */
+public interface InnerGatewayRouteService {
+
+    /**
+     * 接口信息已变化，刷新该接口的路由
+     *
+     * @param interfaceInfoId 接口ID
+     */
+    void refreshInterfaceRoute(long interfaceInfoId);
+}
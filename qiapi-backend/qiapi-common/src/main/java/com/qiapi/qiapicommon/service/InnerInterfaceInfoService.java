@@ -1,7 +1,11 @@
 package com.qiapi.qiapicommon.service;
 
+import com.qiapi.qiapicommon.model.dto.GatewayRoute;
 import com.qiapi.qiapicommon.model.entity.InterfaceInfo;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 内部接口信息服务
  *
@@ -12,4 +16,26 @@ public interface InnerInterfaceInfoService {
      * 从数据库中查询模拟接口是否存在（请求路径、请求方法、请求参数）
      */
     InterfaceInfo getInterfaceInfo(String path, String method);
+
+    /**
+     * 异步查询模拟接口（网关在事件循环线程上使用，不阻塞）
+     */
+    default CompletableFuture<InterfaceInfo> getInterfaceInfoAsync(String path, String method) {
+        return CompletableFuture.completedFuture(getInterfaceInfo(path, method));
+    }
+
+    /**
+     * 查询更新时间不早于指定时间的接口路由（包括已删除的接口），用于网关增量刷新动态路由
+     *
+     * @param updatedAfterMillis 更新时间下限（毫秒时间戳），为 0 时返回全部未删除的接口
+     * @return 接口路由
+     */
+    List<GatewayRoute> listGatewayRoutes(long updatedAfterMillis);
+
+    /**
+     * 异步查询接口路由（网关在事件循环线程上使用，不阻塞）
+     */
+    default CompletableFuture<List<GatewayRoute>> listGatewayRoutesAsync(long updatedAfterMillis) {
+        return CompletableFuture.completedFuture(listGatewayRoutes(updatedAfterMillis));
+    }
 }
@@ -2,6 +2,8 @@ package com.qiapi.qiapicommon.service;
 
 import com.qiapi.qiapicommon.model.entity.UserInterfaceInfo;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 内部用户接口信息服务
  *
@@ -16,8 +18,25 @@ public interface InnerUserInterfaceInfoService {
      */
     boolean invokeCount(long interfaceInfoId, long userId);
 
+    /**
+     * 异步调用接口统计
+     * @param interfaceInfoId
+     * @param userId
+     * @return
+     */
+    default CompletableFuture<Boolean> invokeCountAsync(long interfaceInfoId, long userId) {
+        return CompletableFuture.completedFuture(invokeCount(interfaceInfoId, userId));
+    }
+
     /**
      * 获取用户调用接口信息
      */
     UserInterfaceInfo getUserInterfaceInfo(long interfaceInfoId, long userId);
+
+    /**
+     * 异步获取用户调用接口信息
+     */
+    default CompletableFuture<UserInterfaceInfo> getUserInterfaceInfoAsync(long interfaceInfoId, long userId) {
+        return CompletableFuture.completedFuture(getUserInterfaceInfo(interfaceInfoId, userId));
+    }
 }
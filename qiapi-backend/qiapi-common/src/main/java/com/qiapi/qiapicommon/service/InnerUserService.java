@@ -2,6 +2,8 @@ package com.qiapi.qiapicommon.service;
 
 import com.qiapi.qiapicommon.model.entity.User;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 内部用户服务
  *
@@ -16,6 +18,16 @@ public interface InnerUserService {
      */
     User getInvokeUser(String accessKey);
 
+    /**
+     * 异步查询 accessKey 对应的用户（网关在事件循环线程上使用，不阻塞）
+     *
+     * @param accessKey
+     * @return
+     */
+    default CompletableFuture<User> getInvokeUserAsync(String accessKey) {
+        return CompletableFuture.completedFuture(getInvokeUser(accessKey));
+    }
+
     /**
      * 通过SessionID查询用户信息（用于平台内部调试）
      * 
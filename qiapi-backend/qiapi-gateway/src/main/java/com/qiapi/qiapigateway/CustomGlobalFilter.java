@@ -1,39 +1,65 @@
 package com.qiapi.qiapigateway;
 
-import cn.hutool.core.util.RandomUtil;
-import com.qiapi.qiapicommon.model.entity.InterfaceInfo;
-import com.qiapi.qiapicommon.model.entity.User;
-import com.qiapi.qiapicommon.model.entity.UserInterfaceInfo;
-import com.qiapi.qiapicommon.service.InnerInterfaceInfoService;
+import com.qiapi.qiapicommon.model.dto.InvocationAuthorization;
+import com.qiapi.qiapicommon.model.enums.InvocationQuotaEnum;
+import com.qiapi.qiapicommon.model.enums.InvocationTierEnum;
+import com.qiapi.qiapicommon.service.InnerAuthorizationService;
 import com.qiapi.qiapicommon.service.InnerUserInterfaceInfoService;
-import com.qiapi.qiapicommon.service.InnerUserService;
-import com.qiapi.qiapicommon.service.InnerCreditService;
 import com.qiapi.project.utils.SignUtils;
+import com.qiapi.qiapigateway.accesslog.AccessLogFilter;
+import com.qiapi.qiapigateway.cache.GatewayAuthCache;
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import com.qiapi.qiapigateway.credit.CreditLease;
+import com.qiapi.qiapigateway.credit.CreditLeaseManager;
+import com.qiapi.qiapigateway.metrics.BillingOutcome;
+import com.qiapi.qiapigateway.metrics.GatewayMetrics;
+import com.qiapi.qiapigateway.metrics.RequestTiming;
+import com.qiapi.qiapigateway.nonce.NonceStore;
+import com.qiapi.qiapigateway.overload.OverloadController;
+import com.qiapi.qiapigateway.ratelimit.GatewayRateLimiter;
+import com.qiapi.qiapigateway.resilience.InterfaceCallPermit;
+import com.qiapi.qiapigateway.resilience.InterfaceGuard;
+import com.qiapi.qiapigateway.responsecache.CachedResponse;
+import com.qiapi.qiapigateway.responsecache.RequestCoalescer;
+import com.qiapi.qiapigateway.responsecache.ResponseCache;
+import com.qiapi.qiapigateway.route.AuthMode;
+import com.qiapi.qiapigateway.route.InterfaceRouteLocator;
+import com.qiapi.qiapigateway.route.RouteClassifier;
+import com.qiapi.qiapigateway.route.RoutePolicy;
+import com.qiapi.qiapigateway.route.RoutePriority;
+import com.qiapi.qiapigateway.trace.GatewayTracing;
+import com.qiapi.qiapigateway.sign.ContentDigestMismatchException;
+import com.qiapi.qiapigateway.sign.ContentDigestRequestDecorator;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.dubbo.config.annotation.DubboReference;
-import org.reactivestreams.Publisher;
 import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
 import org.springframework.core.Ordered;
-import org.springframework.core.io.buffer.DataBuffer;
-import org.springframework.core.io.buffer.DataBufferFactory;
-import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.server.reactive.ServerHttpRequest;
-import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
 import org.springframework.http.server.reactive.ServerHttpResponse;
-import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
 
-import java.nio.charset.StandardCharsets;
+import javax.annotation.Resource;
+import java.net.InetSocketAddress;
+import java.net.URI;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * 全局过滤
+ * <p>
+ * 密钥认证的请求：接口维度的限流（仅限接口动态路由）与已登记 nonce 的拒绝在任何远程调用之前；请求头中的 accessKey 需签名校验后才可信，
+ * 签名密钥命中网关缓存时先在本地校验签名、登记 nonce 并按 accessKey 与 accessKey + 接口维度限流，之后才为配额调用后端，
+ * 超限请求不产生远程调用；缓存未命中（该 accessKey 在缓存有效期内的首次调用）时需先由后端取回签名密钥
  *
  * @author zhexueqi
  */
@@ -42,293 +68,528 @@ import java.util.*;
 public class CustomGlobalFilter implements GlobalFilter, Ordered {
 
     @DubboReference(check = false)
-    private InnerUserService innerUserService;
-
-    @DubboReference(check = false)
-    private InnerInterfaceInfoService innerInterfaceInfoService;
+    private InnerAuthorizationService innerAuthorizationService;
 
     @DubboReference(check = false)
     private InnerUserInterfaceInfoService innerUserInterfaceInfoService;
 
-    @DubboReference(check = false)
-    private InnerCreditService innerCreditService;
+    @Resource
+    private QiapiGatewayProperties qiapiGatewayProperties;
 
-    private static final List<String> IP_WHITE_LIST = Collections.singletonList("127.0.0.1");
+    @Resource
+    private CreditLeaseManager creditLeaseManager;
+
+    @Resource
+    private GatewayAuthCache gatewayAuthCache;
+
+    @Resource
+    private NonceStore nonceStore;
+
+    @Resource
+    private GatewayRateLimiter gatewayRateLimiter;
 
-    // 路径白名单，这些路径不需要进行认证过滤
-    private static final List<String> PATH_WHITE_LIST = Arrays.asList(
-            "/user/register",
-            "/user/login",
-            "/user/login/wx_open",
-            "/user/logout");
+    @Resource
+    private RouteClassifier routeClassifier;
 
-    // 平台业务接口路径，需要登录认证但不需要密钥签名
-    private static final List<String> PLATFORM_API_PATHS = Arrays.asList(
-            "/api/user",
-            "/api/interfaceInfo",
-            "/api/analysis");
+    @Resource
+    private InterfaceGuard interfaceGuard;
 
-    // 平台内部调试接口路径，支持基于Session的认证
-    private static final List<String> INTERNAL_DEBUG_PATHS = Collections.singletonList(
-            "/api/interfaceInfo/invoke");
+    @Resource
+    private ResponseCache responseCache;
 
-    // 第三方API调用路径，需要完整的密钥认证
-    private static final List<String> THIRD_PARTY_API_PATHS = Collections.singletonList(
-            "/third-party");
+    @Resource
+    private RequestCoalescer requestCoalescer;
+
+    @Resource
+    private GatewayMetrics gatewayMetrics;
+
+    @Resource
+    private OverloadController overloadController;
+
+    private static final List<String> IP_WHITE_LIST = Collections.singletonList("127.0.0.1");
 
     private static final String INTERFACE_HOST = "http://localhost:8101";
 
+    /**
+     * 平台内部调试调用成功时，后端返回实际调用的接口ID的响应头
+     */
+    private static final String INTERFACE_ID_HEADER = "interfaceId";
+
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
-        // 1. 请求日志
+        // 1. 请求信息（访问日志由 AccessLogFilter 在请求结束时统一记录）
         ServerHttpRequest request = exchange.getRequest();
         String requestPath = request.getPath().value();
-        String path = INTERFACE_HOST + requestPath;
+        // 匹配到接口动态路由时按接口地址鉴权，否则按默认上游地址 + 请求路径
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        String interfaceUrl = InterfaceRouteLocator.interfaceUrl(route);
+        String path = interfaceUrl != null ? interfaceUrl : INTERFACE_HOST + requestPath;
         String method = Objects.requireNonNull(request.getMethod()).toString();
-        log.info("请求唯一标识：" + request.getId());
-        log.info("请求路径：" + path);
-        log.info("请求方法：" + method);
-        log.info("请求参数：" + request.getQueryParams());
-        String sourceAddress = Objects.requireNonNull(request.getLocalAddress()).getHostString();
-        log.info("请求来源地址：" + sourceAddress);
-        log.info("请求来源地址：" + request.getRemoteAddress());
         ServerHttpResponse response = exchange.getResponse();
 
-        // 检查是否为白名单路径，如果是则直接放行
-        if (isWhiteListPath(requestPath)) {
-            log.info("白名单路径，直接放行：" + requestPath);
-            return chain.filter(exchange);
+        // 按路由分类策略处理：认证方式、是否限流、是否计费
+        RoutePolicy classified = routeClassifier.classify(requestPath);
+        // 接口动态路由始终要求签名认证并计费，不能因路径分类放行
+        RoutePolicy policy = InterfaceRouteLocator.interfaceId(route) != null
+                && (classified.getAuthMode() != AuthMode.SIGNATURE || !classified.isBilling())
+                ? RoutePolicy.INTERFACE : classified;
+        exchange.getAttributes().put(AccessLogFilter.ROUTE_ATTR, policy.getName());
+        if (policy.getAuthMode() == AuthMode.NONE) {
+            log.debug("路由分类 {}，直接放行：{}", policy.getName(), requestPath);
+            return rateLimitThen(policy, clientAddress(request), requestPath, response,
+                    () -> chain.filter(exchange));
         }
-        // 检查是否为平台内部调试路径
-        if (isInternalDebugPath(requestPath)) {
-            log.info("平台内部调试路径，使用Session认证：" + requestPath);
+        if (policy.getAuthMode() == AuthMode.SESSION) {
+            if (!policy.isBilling()) {
+                log.debug("路由分类 {}，使用Session认证：{}", policy.getName(), requestPath);
+                return rateLimitThen(policy, clientAddress(request), requestPath, response,
+                        () -> handlePlatformApi(exchange, chain, request, response));
+            }
+            // 平台内部调试：使用Session认证，调用成功后计费
+            log.debug("路由分类 {}，使用Session认证并计费：{}", policy.getName(), requestPath);
             String userId = request.getHeaders().getFirst("userId");
             if (userId == null) {
                 return handleNoAuth(response);
             }
             Long userIdLong = Long.parseLong(userId);
-            return handleInternalDebug(exchange, chain, response, userIdLong);
-        }
-
-        // 检查是否为平台业务接口路径
-        if (isPlatformApiPath(requestPath)) {
-            log.info("平台业务接口，使用Session认证：" + requestPath);
-            return handlePlatformApi(exchange, chain, request, response);
-        }
-
-        // 检查是否为第三方API调用路径
-        if (isThirdPartyApiPath(requestPath)) {
-            log.info("第三方API调用，使用密钥认证：" + requestPath);
-            // 继续执行完整的密钥认证流程
-        } else {
-            // 其他路径默认放行
-            log.info("其他路径，直接放行：" + requestPath);
-            return chain.filter(exchange);
+            exchange.getAttributes().put(AccessLogFilter.USER_ID_ATTR, userIdLong);
+            return rateLimitThen(policy, "user:" + userId, requestPath, response,
+                    () -> handleInternalDebug(exchange, chain, userIdLong));
         }
+        log.debug("路由分类 {}，使用密钥认证：{}", policy.getName(), requestPath);
         // 2. 访问控制 - 黑白名单
+        String sourceAddress = Objects.requireNonNull(request.getLocalAddress()).getHostString();
         if (!IP_WHITE_LIST.contains(sourceAddress)) {
             response.setStatusCode(HttpStatus.FORBIDDEN);
             return response.setComplete();
         }
-        // 3. 用户鉴权（判断 ak、sk 是否合法）
+        // 3. 用户鉴权（判断 ak、sk 是否合法），先做不依赖远程调用的校验
         HttpHeaders headers = request.getHeaders();
         String accessKey = headers.getFirst("accessKey");
         String nonce = headers.getFirst("nonce");
         String timestamp = headers.getFirst("timestamp");
         String sign = headers.getFirst("sign");
-        String body = headers.getFirst("body");
-        // 去数据库中查是否已分配给用户
-        User invokeUser = null;
-        try {
-            invokeUser = innerUserService.getInvokeUser(accessKey);
-        } catch (Exception e) {
-            log.error("getInvokeUser error", e);
-        }
-        if (invokeUser == null) {
-            return handleNoAuth(response);
-        }
-        assert nonce != null;
-        if (Long.parseLong(nonce) > 10000L) {
+        // 请求体不在请求头中传输，签名只覆盖其摘要，转发时增量校验
+        String contentSha256 = headers.getFirst(SignUtils.CONTENT_SHA256);
+        if (StringUtils.isAnyBlank(accessKey, nonce, timestamp, sign, contentSha256)) {
             return handleNoAuth(response);
         }
-        // 时间和当前时间不能超过 5 分钟
-        long currentTime = System.currentTimeMillis() / 1000;
-        final long FIVE_MINUTES = 60 * 5L;
-        assert timestamp != null;
-        if ((currentTime - Long.parseLong(timestamp)) >= FIVE_MINUTES) {
+        exchange.getAttributes().put(AccessLogFilter.ACCESS_KEY_ATTR, accessKey);
+        byte[] contentDigest = SignUtils.decodeHex(contentSha256, 32);
+        if (contentDigest == null) {
             return handleNoAuth(response);
         }
-        // 查出 secretKey
-        String secretKey = invokeUser.getSecretKey();
-        HashMap<String, String> paramMap = new HashMap<>();
-        paramMap.put("body", body);
-        paramMap.put("accessKey", accessKey);
-        paramMap.put("nonce", RandomUtil.randomNumbers(5));
-        paramMap.put("timestamp", System.currentTimeMillis() / 1000 + "");
-        String serverSign = SignUtils.getSign(body, paramMap);
-        if (sign == null || !sign.equals(serverSign)) {
+        if (!isValidNonce(nonce)) {
             return handleNoAuth(response);
         }
-        // 4. 请求的模拟接口是否存在，以及请求方法是否匹配
-        InterfaceInfo interfaceInfo = null;
         try {
-            interfaceInfo = innerInterfaceInfoService.getInterfaceInfo(path, method);
-        } catch (Exception e) {
-            log.error("getInterfaceInfo error", e);
-        }
-        if (interfaceInfo == null) {
+            // 时间戳不能早于防重放窗口（默认 5 分钟），也不能超前超过时钟偏差容忍，nonce 只需在 窗口 + 偏差 内去重
+            long currentTime = System.currentTimeMillis() / 1000;
+            long requestTime = Long.parseLong(timestamp);
+            QiapiGatewayProperties.Nonce nonceConfig = qiapiGatewayProperties.getNonce();
+            if (currentTime - requestTime >= nonceConfig.getWindowSeconds()
+                    || requestTime - currentTime > nonceConfig.getMaxFutureSkewSeconds()) {
+                return handleNoAuth(response);
+            }
+        } catch (NumberFormatException e) {
             return handleNoAuth(response);
         }
-        // 检查额度和调用次数
-        UserInterfaceInfo userInterfaceInfo = innerUserInterfaceInfoService.getUserInterfaceInfo(interfaceInfo.getId(),
-                invokeUser.getId());
 
-        // 优先检查额度系统，如果额度充足就使用额度，否则检查旧的调用次数系统
-        boolean hasCreditQuota = false;
-        try {
-            hasCreditQuota = innerCreditService.checkCreditSufficient(invokeUser.getId(), interfaceInfo.getId(), 1L);
-        } catch (Exception e) {
-            log.error("检查额度失败", e);
+        // 签名校验前 accessKey 和 nonce 都不可信：只按接口维度限流，且只对接口动态路由（接口地址来自路由而不是请求）限流；
+        // nonce 在签名校验通过后再登记，伪造的请求不能占用去重记录，accessKey 相关维度也在签名校验通过后再检查
+        boolean interfaceLimited = policy.isRateLimit() && InterfaceRouteLocator.interfaceId(route) != null;
+        // 已登记的 nonce 在远程调用之前按重放拒绝（只读检查，登记在签名校验通过后进行）
+        Supplier<Mono<Void>> authenticate = () -> nonceStore.seen(accessKey, nonce)
+                .flatMap(seen -> {
+                    if (seen) {
+                        log.warn("重复的 nonce，拒绝重放请求 - accessKey: {}", accessKey);
+                        return handleNoAuth(response);
+                    }
+                    return authenticateAndForward(exchange, chain, policy, path, method, accessKey, nonce,
+                            timestamp, sign, contentSha256, contentDigest, requestPath, interfaceLimited);
+                });
+        if (!interfaceLimited) {
+            return authenticate.get();
         }
+        return limitThen(policy, () -> gatewayRateLimiter.acquireInterface(requestPath), "接口", requestPath,
+                response, authenticate);
+    }
+
+    /**
+     * 由后端返回用户、接口与配额（一次异步 Dubbo 调用，后端读本地缓存，不阻塞事件循环），并缓存其中的用户与接口信息
+     *
+     * @param path   接口地址
+     * @param method 请求方法
+     * @return 鉴权结果，远程调用失败时为空
+     */
+    private Mono<InvocationAuthorization> authorizeRemote(ServerWebExchange exchange, String accessKey, String path,
+            String method) {
+        return RequestTiming.timeRpc(exchange, GatewayTracing.rpc(exchange, "authorizeInvocation",
+                        () -> innerAuthorizationService.authorizeInvocationAsync(accessKey, path, method, 1L)))
+                .doOnNext(authorization -> gatewayAuthCache.put(accessKey, path, method, authorization))
+                .onErrorResume(e -> {
+                    log.error("authorizeInvocation error", e);
+                    return Mono.empty();
+                });
+    }
 
-        // 如果额度不足，再检查旧的调用次数系统
-        if (!hasCreditQuota && (userInterfaceInfo == null || userInterfaceInfo.getLeftNum() < 1)) {
-            return handleInvokeError(response);
+    /**
+     * 补全配额：鉴权结果来自后端时已包含配额；来自网关缓存时，路由不计费或本节点持有该用户该接口未用完的额度租用
+     * （额度在租用时已由后端冻结）不调用后端，否则只为配额调用一次后端
+     *
+     * @param cached 鉴权结果是否来自网关缓存
+     * @return 包含配额的鉴权结果，远程调用失败时用户ID为空
+     */
+    private Mono<InvocationAuthorization> resolveQuota(ServerWebExchange exchange, RoutePolicy policy,
+            String accessKey, String path, String method, InvocationAuthorization authorization, boolean cached) {
+        if (!cached || !policy.isBilling()) {
+            return Mono.just(authorization);
+        }
+        if (creditLeaseManager.hasUsableLease(authorization.getUserId(), authorization.getInterfaceId())) {
+            authorization.setQuota(InvocationQuotaEnum.CREDIT);
+            return Mono.just(authorization);
         }
+        return authorizeRemote(exchange, accessKey, path, method)
+                // 密钥在缓存期间已更换时，按缓存的密钥通过的签名不再有效
+                .filter(remote -> Objects.equals(remote.getSigningKey(), authorization.getSigningKey()))
+                .defaultIfEmpty(new InvocationAuthorization());
+    }
 
-        // 5. 请求转发，调用模拟接口 + 响应日志
-        // Mono<Void> filter = chain.filter(exchange);
-        // return filter;
+    /**
+     * 按路由分类策略限流，通过后执行后续处理
+     *
+     * @param policy   路由分类策略
+     * @param key      限流主体（accessKey、用户ID或客户端地址）
+     * @param path     请求路径
+     * @param response 响应对象
+     * @param next     后续处理
+     * @return Mono<Void>
+     */
+    private Mono<Void> rateLimitThen(RoutePolicy policy, String key, String path, ServerHttpResponse response,
+            Supplier<Mono<Void>> next) {
+        return limitThen(policy, () -> gatewayRateLimiter.acquire(key, path), key, path, response, next);
+    }
 
-        return handleResponse(exchange, chain, interfaceInfo.getId(), invokeUser.getId(), hasCreditQuota);
+    /**
+     * 按限流检查结果拒绝或执行后续处理
+     *
+     * @param acquiring 限流检查，结果为 0 表示放行，否则为建议客户端等待的毫秒数
+     * @param key       限流主体，用于日志
+     */
+    private Mono<Void> limitThen(RoutePolicy policy, Supplier<Mono<Long>> acquiring, String key, String path,
+            ServerHttpResponse response, Supplier<Mono<Void>> next) {
+        if (!policy.isRateLimit()) {
+            return next.get();
+        }
+        return acquiring.get()
+                .flatMap(waitMillis -> {
+                    if (waitMillis > 0) {
+                        log.warn("请求超过限流 - 限流主体: {}, 路径: {}", key, path);
+                        return handleRateLimited(response, waitMillis);
+                    }
+                    return next.get();
+                });
+    }
 
+    /**
+     * 客户端地址，作为没有 accessKey 的请求的限流主体
+     */
+    private String clientAddress(ServerHttpRequest request) {
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        return remoteAddress == null ? "unknown" : remoteAddress.getHostString();
     }
 
     /**
-     * 处理响应
+     * 校验签名，通过后登记 nonce 防重放、按 accessKey 限流、检查额度并转发；请求体在转发过程中按签名的摘要校验
+     * <p>
+     * 签名密钥优先取网关缓存，命中时签名校验、nonce 登记与 accessKey 限流都在本地完成，通过后才为配额调用后端
      *
-     * @param exchange exchange
-     * @param chain    chain
-     * @return Mono<Void>
+     * @param path             接口地址
+     * @param method           请求方法
+     * @param requestPath      请求路径
+     * @param interfaceLimited 签名校验前是否已按接口维度限流
      */
-    public Mono<Void> handleResponse(ServerWebExchange exchange, GatewayFilterChain chain, long interfaceInfoId,
-            long userId, boolean useCreditSystem) {
-        try {
-            ServerHttpResponse originalResponse = exchange.getResponse();
-            // 缓存数据的工厂
-            DataBufferFactory bufferFactory = originalResponse.bufferFactory();
-            // 拿到响应码
-            HttpStatus statusCode = originalResponse.getStatusCode();
-            if (statusCode == HttpStatus.OK) {
-                // 装饰，增强能力
-                ServerHttpResponseDecorator decoratedResponse = new ServerHttpResponseDecorator(originalResponse) {
-                    // 等调用完转发的接口后才会执行
-                    @Override
-                    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
-                        log.info("body instanceof Flux: {}", (body instanceof Flux));
-                        if (body instanceof Flux) {
-                            Flux<? extends DataBuffer> fluxBody = Flux.from(body);
-                            // 往返回值里写数据
-                            // 拼接字符串
-                            return super.writeWith(
-                                    fluxBody.map(dataBuffer -> {
-                                        // 7. 调用成功，扣减额度或调用次数
-                                        try {
-                                            if (useCreditSystem) {
-                                                // 优先扣减额度
-                                                boolean creditDeducted = innerCreditService.consumeCredit(userId,
-                                                        interfaceInfoId, 1L);
-                                                if (!creditDeducted) {
-                                                    log.warn("额度扣减失败，尝试扣减调用次数");
-                                                    innerUserInterfaceInfoService.invokeCount(interfaceInfoId, userId);
-                                                }
-                                            } else {
-                                                // 使用旧的调用次数系统
-                                                innerUserInterfaceInfoService.invokeCount(interfaceInfoId, userId);
-                                            }
-                                        } catch (Exception e) {
-                                            log.error("扣减额度或调用次数失败", e);
-                                        }
-                                        byte[] content = new byte[dataBuffer.readableByteCount()];
-                                        dataBuffer.read(content);
-                                        DataBufferUtils.release(dataBuffer);// 释放掉内存
-                                        // 构建日志
-                                        StringBuilder sb2 = new StringBuilder(200);
-                                        List<Object> rspArgs = new ArrayList<>();
-                                        rspArgs.add(originalResponse.getStatusCode());
-                                        String data = new String(content, StandardCharsets.UTF_8); // data
-                                        sb2.append(data);
-                                        // 打印日志
-                                        log.info("响应结果：" + data);
-                                        return bufferFactory.wrap(content);
-                                    }));
-                        } else {
-                            // 8. 调用失败，返回一个规范的错误码
-                            log.error("<--- {} 响应code异常", getStatusCode());
-                        }
-                        return super.writeWith(body);
+    private Mono<Void> authenticateAndForward(ServerWebExchange exchange, GatewayFilterChain chain,
+            RoutePolicy policy, String path, String method, String accessKey, String nonce, String timestamp,
+            String sign, String contentSha256, byte[] contentDigest, String requestPath, boolean interfaceLimited) {
+        ServerHttpResponse response = exchange.getResponse();
+        InvocationAuthorization cached = gatewayAuthCache.get(accessKey, path, method);
+        Mono<InvocationAuthorization> authorizationMono = cached != null ? Mono.just(cached)
+                : authorizeRemote(exchange, accessKey, path, method);
+        return authorizationMono
+                // 远程调用没有返回结果时按用户不存在处理
+                .defaultIfEmpty(new InvocationAuthorization())
+                .flatMap(authorization -> {
+                    exchange.getAttributes().put(AccessLogFilter.USER_ID_ATTR, authorization.getUserId());
+                    exchange.getAttributes().put(AccessLogFilter.INTERFACE_ID_ATTR, authorization.getInterfaceId());
+                    // 用户或接口不存在
+                    if (authorization.getUserId() == null || authorization.getInterfaceId() == null) {
+                        return handleNoAuth(response);
                     }
-                };
-                // 设置 response 对象为装饰过的
-                return chain.filter(exchange.mutate().response(decoratedResponse).build());
-            }
-            return chain.filter(exchange); // 降级处理返回数据
-        } catch (Exception e) {
-            log.error("网关处理响应异常" + e);
-            return chain.filter(exchange);
+                    // 校验签名：用该用户的签名密钥按请求携带的 nonce、timestamp 及实际的方法、路径、查询串重新计算，常量时间比较
+                    URI uri = exchange.getRequest().getURI();
+                    Map<String, String> signParams = new HashMap<>(8);
+                    signParams.put("accessKey", accessKey);
+                    signParams.put("nonce", nonce);
+                    signParams.put("timestamp", timestamp);
+                    signParams.put(SignUtils.CONTENT_SHA256, contentSha256);
+                    signParams.put(SignUtils.METHOD, exchange.getRequest().getMethodValue());
+                    signParams.put(SignUtils.PATH, SignUtils.canonicalPath(uri.getRawPath()));
+                    signParams.put(SignUtils.QUERY, SignUtils.canonicalQuery(uri.getRawQuery()));
+                    if (!SignUtils.verifyWithSigningKey(authorization.getSigningKey(), signParams, sign)) {
+                        log.warn("签名校验失败 - accessKey: {}", accessKey);
+                        return handleNoAuth(response);
+                    }
+                    return nonceStore.tryRecord(accessKey, nonce)
+                            .flatMap(firstSeen -> {
+                                if (!firstSeen) {
+                                    log.warn("重复的 nonce，拒绝重放请求 - accessKey: {}", accessKey);
+                                    return handleNoAuth(response);
+                                }
+                                return limitThen(policy,
+                                        () -> gatewayRateLimiter.acquireAuthenticated(accessKey, requestPath,
+                                                interfaceLimited),
+                                        accessKey, requestPath, response,
+                                        () -> resolveQuota(exchange, policy, accessKey, path, method, authorization,
+                                                cached != null)
+                                                .flatMap(resolved -> resolved.getUserId() == null
+                                                        || resolved.getInterfaceId() == null
+                                                        ? handleNoAuth(response)
+                                                        : forwardVerified(exchange, chain, policy, resolved,
+                                                                contentDigest)));
+                            });
+                });
+    }
+
+    /**
+     * 签名校验并限流通过后检查额度并转发，开启响应缓存的接口先查缓存
+     */
+    private Mono<Void> forwardVerified(ServerWebExchange exchange, GatewayFilterChain chain, RoutePolicy policy,
+            InvocationAuthorization authorization, byte[] contentDigest) {
+        ServerWebExchange verifiedExchange = exchange.mutate()
+                .request(new ContentDigestRequestDecorator(exchange.getRequest(), contentDigest))
+                .build();
+        // 开启响应缓存的 GET 接口先查缓存，命中时不调用上游（熔断打开时也可返回）
+        String cacheKey = responseCache.cacheKey(verifiedExchange.getRequest(), authorization.getCacheTtlSeconds());
+        if (cacheKey == null) {
+            return guardAndForward(verifiedExchange, chain, policy, authorization, null, null);
         }
+        return responseCache.get(cacheKey, verifiedExchange.getRequest())
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(cached -> cached.isPresent()
+                        ? respondWithShared(verifiedExchange, policy, authorization, cached.get(),
+                                responseCache.isChargeHits(), "HIT")
+                        : coalesceAndForward(verifiedExchange, chain, policy, authorization, cacheKey));
     }
 
-    @Override
-    public int getOrder() {
-        return -1;
+    /**
+     * 合并相同的并发请求：同一缓存 key 只有领头请求调用上游，其余请求共享其响应，每个请求各自鉴权、计费
+     */
+    private Mono<Void> coalesceAndForward(ServerWebExchange exchange, GatewayFilterChain chain, RoutePolicy policy,
+            InvocationAuthorization authorization, String cacheKey) {
+        RequestCoalescer.Flight flight = requestCoalescer.join(cacheKey);
+        if (flight == null) {
+            return guardAndForward(exchange, chain, policy, authorization, cacheKey, null);
+        }
+        if (flight.isLeader()) {
+            // 被拒绝、失败或响应不可共享时以空结果结束，等待的请求各自调用上游
+            return guardAndForward(exchange, chain, policy, authorization, cacheKey, flight::complete)
+                    .doFinally(signalType -> flight.complete(null));
+        }
+        return flight.response()
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(shared -> shared.isPresent()
+                        ? respondWithShared(exchange, policy, authorization, shared.get(), true, "COALESCED")
+                        : guardAndForward(exchange, chain, policy, authorization, cacheKey, null));
     }
 
     /**
-     * 检查请求路径是否在白名单中
-     * 
-     * @param requestPath 请求路径
-     * @return 是否在白名单中
+     * 取接口调用许可，检查额度后转发；指定缓存 key 时缓存上游的响应
+     *
+     * @param listener 采集到可缓存的响应后的回调，可为 null
      */
-    private boolean isWhiteListPath(String requestPath) {
-        return PATH_WHITE_LIST.stream().anyMatch(whiteListPath -> {
-            // 支持前缀匹配，例如 /user/login 可以匹配 /user/login 和 /user/login/xxx
-            return requestPath.equals(whiteListPath) || requestPath.startsWith(whiteListPath + "/")
-                    || requestPath.startsWith(whiteListPath + "?");
+    private Mono<Void> guardAndForward(ServerWebExchange exchange, GatewayFilterChain chain, RoutePolicy policy,
+            InvocationAuthorization authorization, String cacheKey, Consumer<CachedResponse> listener) {
+        // 网关负载较高时先拒绝免费用户调用上游的请求（按低优先级判断），把容量留给付费用户
+        if (authorization.getTier() != InvocationTierEnum.PAID
+                && overloadController.shouldShed(RoutePriority.LOW)) {
+            return handleServiceUnavailable(exchange.getResponse(),
+                    qiapiGatewayProperties.getOverload().getRetryAfterSeconds());
+        }
+        // 接口熔断打开或排队等待并发名额超时时快速失败，不再租用额度、不占用上游连接
+        return interfaceGuard.acquire(authorization).flatMap(permit -> {
+            if (permit.isRejected()) {
+                return handleServiceUnavailable(exchange.getResponse(), permit.getRetryAfterSeconds());
+            }
+            return forwardWithPermit(exchange, chain, policy, authorization, cacheKey, listener, permit);
         });
     }
 
+    private Mono<Void> forwardWithPermit(ServerWebExchange exchange, GatewayFilterChain chain, RoutePolicy policy,
+            InvocationAuthorization authorization, String cacheKey, Consumer<CachedResponse> listener,
+            InterfaceCallPermit permit) {
+        ServerWebExchange forwardExchange = cacheKey == null ? exchange : exchange.mutate()
+                .response(responseCache.capture(exchange.getResponse(), cacheKey, authorization.getCacheTtlSeconds(),
+                        listener))
+                .build();
+        Mono<Void> forwarding = forward(forwardExchange, chain, permit);
+        if (policy.isBilling()) {
+            forwarding = checkQuotaAndInvoke(forwardExchange, authorization, forwarding);
+        }
+        // 额度不足等未转发就结束的情况归还许可
+        return forwarding.doFinally(signalType -> permit.releaseIfNotStarted());
+    }
+
     /**
-     * 检查是否为平台业务接口路径
-     * 
-     * @param requestPath 请求路径
-     * @return 是否为平台业务接口
+     * 返回缓存或合并请求共享的响应
+     *
+     * @param charge      是否计费（路由不计费时始终不计费）
+     * @param cacheStatus 响应头 X-Cache 的值
      */
-    private boolean isPlatformApiPath(String requestPath) {
-        return PLATFORM_API_PATHS.stream().anyMatch(requestPath::startsWith);
+    private Mono<Void> respondWithShared(ServerWebExchange exchange, RoutePolicy policy,
+            InvocationAuthorization authorization, CachedResponse cached, boolean charge, String cacheStatus) {
+        Mono<Void> responding = responseCache.write(exchange, cached, cacheStatus);
+        if (!policy.isBilling()) {
+            return responding;
+        }
+        if (!charge) {
+            gatewayMetrics.billing(BillingOutcome.FREE);
+            return responding;
+        }
+        return checkQuotaAndInvoke(exchange, authorization, responding);
     }
 
     /**
-     * 检查是否为第三方API调用路径
-     * 
-     * @param requestPath 请求路径
-     * @return 是否为第三方API调用
+     * 按鉴权结果取用额度或使用调用次数，通过后执行调用（转发请求或返回缓存的响应）
+     * <p>
+     * 额度由后端原子冻结后批量租给网关，并发请求不会超额；额度不足但有剩余调用次数时，调用成功后再扣减调用次数
+     *
+     * @param exchange      exchange
+     * @param authorization 鉴权结果
+     * @param invocation    调用
+     * @return Mono<Void>
      */
-    private boolean isThirdPartyApiPath(String requestPath) {
-        return THIRD_PARTY_API_PATHS.stream().anyMatch(requestPath::startsWith);
+    private Mono<Void> checkQuotaAndInvoke(ServerWebExchange exchange, InvocationAuthorization authorization,
+            Mono<Void> invocation) {
+        long userId = authorization.getUserId();
+        long interfaceInfoId = authorization.getInterfaceId();
+        InvocationQuotaEnum quota = authorization.getQuota();
+        if (quota == InvocationQuotaEnum.INVOKE_COUNT) {
+            // 5. 请求转发，调用模拟接口 + 响应日志
+            return handleResponse(exchange, interfaceInfoId, userId, null, invocation);
+        }
+        if (quota != InvocationQuotaEnum.CREDIT) {
+            gatewayMetrics.billing(BillingOutcome.NO_QUOTA);
+            return handleInvokeError(exchange.getResponse());
+        }
+        return RequestTiming.timeRpc(exchange, GatewayTracing.trace(exchange, "credit.acquire",
+                        creditLeaseManager.acquire(userId, interfaceInfoId)))
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(creditLease -> {
+                    if (!creditLease.isPresent()) {
+                        gatewayMetrics.billing(BillingOutcome.NO_QUOTA);
+                        return handleInvokeError(exchange.getResponse());
+                    }
+                    return handleResponse(exchange, interfaceInfoId, userId, creditLease.get(), invocation);
+                });
     }
 
     /**
-     * 检查是否为平台内部调试路径
-     * 
-     * @param requestPath 请求路径
-     * @return 是否为内部调试路径
+     * 处理响应
+     * <p>
+     * 每次请求只在调用结束、响应状态确定后结算一次：成功（2xx 或缓存命中的 304）计入租用的使用次数，失败、异常或取消时归还
+     *
+     * @param exchange    exchange
+     * @param creditLease 已取用一次的额度租用，为 null 时使用旧的调用次数系统
+     * @param invocation  调用
+     * @return Mono<Void>
      */
-    private boolean isInternalDebugPath(String requestPath) {
-        return INTERNAL_DEBUG_PATHS.stream().anyMatch(debugPath -> {
-            return requestPath.equals(debugPath) || requestPath.startsWith(debugPath + "/")
-                    || requestPath.startsWith(debugPath + "?");
-        });
+    public Mono<Void> handleResponse(ServerWebExchange exchange, long interfaceInfoId, long userId,
+            CreditLease creditLease, Mono<Void> invocation) {
+        return invocation
+                .doFinally(signalType -> {
+                    HttpStatus statusCode = exchange.getResponse().getStatusCode();
+                    boolean success = signalType == SignalType.ON_COMPLETE && statusCode != null
+                            && (statusCode.is2xxSuccessful() || statusCode == HttpStatus.NOT_MODIFIED);
+                    if (!success) {
+                        // 8. 调用失败，不扣减额度
+                        log.error("<--- {} {} 调用失败，不扣减额度", signalType, statusCode);
+                        gatewayMetrics.billing(BillingOutcome.NOT_CHARGED);
+                    }
+                    if (creditLease != null) {
+                        creditLease.complete(success);
+                        if (success) {
+                            gatewayMetrics.billing(BillingOutcome.CREDIT);
+                        }
+                    } else if (success) {
+                        // 7. 调用成功，扣减调用次数
+                        chargeInvokeCount(userId, interfaceInfoId);
+                        gatewayMetrics.billing(BillingOutcome.INVOKE_COUNT);
+                    }
+                });
+    }
+
+    /**
+     * 转发已通过签名校验的请求；请求体摘要与签名不一致时中断转发并返回 400
+     * <p>
+     * 转发结果记录到接口熔断器：转发异常或上游 5xx 为失败，摘要不一致属于调用方错误，不计为失败
+     */
+    private Mono<Void> forward(ServerWebExchange exchange, GatewayFilterChain chain, InterfaceCallPermit permit) {
+        return Mono.defer(() -> {
+                    permit.start();
+                    return chain.filter(exchange);
+                })
+                .onErrorResume(this::isContentDigestMismatch, e -> {
+                    log.warn("请求体摘要与签名不一致，已中断转发 - 请求: {}", exchange.getRequest().getId());
+                    return handleBadRequest(exchange.getResponse());
+                })
+                .doFinally(signalType -> permit.complete(signalType, exchange.getResponse().getStatusCode()));
+    }
+
+    /**
+     * 扣减调用次数（异步，后端会先尝试额度，再降级到调用次数）
+     *
+     * @param userId          用户ID
+     * @param interfaceInfoId 接口ID
+     */
+    private void chargeInvokeCount(long userId, long interfaceInfoId) {
+        try {
+            innerUserInterfaceInfoService.invokeCountAsync(interfaceInfoId, userId)
+                    .whenComplete((result, e) -> {
+                        if (e != null) {
+                            log.error("扣减额度或调用次数失败", e);
+                        }
+                    });
+        } catch (Exception e) {
+            log.error("扣减额度或调用次数失败", e);
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return -1;
+    }
+
+    /**
+     * 校验 nonce 格式：只允许字母和数字，长度受限，避免超长值占用防重放存储
+     *
+     * @param nonce nonce
+     * @return 是否合法
+     */
+    private boolean isValidNonce(String nonce) {
+        if (nonce.length() > qiapiGatewayProperties.getNonce().getMaxLength()) {
+            return false;
+        }
+        for (int i = 0; i < nonce.length(); i++) {
+            char c = nonce.charAt(i);
+            if (!(c >= '0' && c <= '9') && !(c >= 'a' && c <= 'z') && !(c >= 'A' && c <= 'Z')) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -343,7 +604,7 @@ public class CustomGlobalFilter implements GlobalFilter, Ordered {
     private Mono<Void> handlePlatformApi(ServerWebExchange exchange, GatewayFilterChain chain,
             ServerHttpRequest request, ServerHttpResponse response) {
         try {
-            log.info("平台业务接口请求，直接放行由后端服务处理");
+            log.debug("平台业务接口请求，直接放行由后端服务处理");
             return chain.filter(exchange);
 
         } catch (Exception e) {
@@ -354,83 +615,27 @@ public class CustomGlobalFilter implements GlobalFilter, Ordered {
 
     /**
      * 处理平台内部调试请求（基于Session认证）
+     * <p>
+     * 请求体原样转发，不读取；接口ID在响应阶段从后端返回的响应头中取得
      *
      * @param exchange   请求交换对象
      * @param chain      过滤器链
-     * @param response   响应对象
      * @param userIdLong 用户ID
      * @return Mono<Void>
      */
-    private Mono<Void> handleInternalDebug(ServerWebExchange exchange, GatewayFilterChain chain,
-            ServerHttpResponse response, Long userIdLong) {
-        try {
-            log.info("平台内部调试请求，执行带额度扣减的响应处理 - 用户ID: {}", userIdLong);
-
-            // 需要读取请求体来获取接口ID
-            ServerHttpRequest request = exchange.getRequest();
-            return DataBufferUtils.join(request.getBody())
-                    .defaultIfEmpty(exchange.getResponse().bufferFactory().allocateBuffer(0))
-                    .flatMap(dataBuffer -> {
-                        try {
-                            // 读取请求体
-                            byte[] bytes = new byte[dataBuffer.readableByteCount()];
-                            dataBuffer.read(bytes);
-                            DataBufferUtils.release(dataBuffer);
-                            String requestBody = new String(bytes, StandardCharsets.UTF_8);
-
-                            log.info("平台内部调试请求体：{}", requestBody);
-
-                            // 解析请求体中的接口ID
-                            Long interfaceId = parseInterfaceIdFromRequestBody(requestBody);
-
-                            if (interfaceId != null) {
-                                // 将接口ID和用户ID保存到exchange的attributes中，供响应阶段使用
-                                exchange.getAttributes().put("interfaceInfoId", interfaceId);
-                                exchange.getAttributes().put("userId", userIdLong);
-                                log.info("从请求体中解析出接口ID: {}，用户ID: {}", interfaceId, userIdLong);
-                            } else {
-                                log.warn("无法从请求体中解析出接口ID");
-                            }
-
-                            // 重新构建请求，因为请求体已经被读取
-                            DataBuffer newBuffer = exchange.getResponse().bufferFactory().wrap(bytes);
-
-                            // 创建新的请求体
-                            Flux<DataBuffer> newBody = Flux.just(newBuffer);
-
-                            // 重新构建ServerHttpRequest，使用装饰器模式
-                            ServerHttpRequest newRequest = new ServerHttpRequestDecorator(request) {
-                                @Override
-                                public Flux<DataBuffer> getBody() {
-                                    return newBody;
-                                }
-
-                                @Override
-                                public HttpHeaders getHeaders() {
-                                    HttpHeaders headers = new HttpHeaders();
-                                    headers.putAll(super.getHeaders());
-                                    headers.set("Content-Length", String.valueOf(bytes.length));
-                                    return headers;
-                                }
-                            };
-
-                            // 创建新的exchange
-                            ServerWebExchange newExchange = exchange.mutate()
-                                    .request(newRequest)
-                                    .build();
-
-                            // 执行带额度扣减的响应处理
-                            return handleInternalDebugResponse(newExchange, chain, userIdLong);
-
-                        } catch (Exception e) {
-                            log.error("解析请求体失败", e);
-                            return handleInternalDebugResponse(exchange, chain, userIdLong);
-                        }
-                    });
+    private Mono<Void> handleInternalDebug(ServerWebExchange exchange, GatewayFilterChain chain, Long userIdLong) {
+        log.debug("平台内部调试请求，执行带额度扣减的响应处理 - 用户ID: {}", userIdLong);
+        return handleInternalDebugResponse(exchange, chain, userIdLong);
+    }
 
-        } catch (Exception e) {
-            log.error("处理平台内部调试请求异常", e);
-            return handleNoAuth(response);
+    private static Long parseInterfaceId(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return null;
         }
     }
 
@@ -463,6 +668,44 @@ public class CustomGlobalFilter implements GlobalFilter, Ordered {
         return response.setComplete();
     }
 
+    public Mono<Void> handleBadRequest(ServerHttpResponse response) {
+        if (response.isCommitted()) {
+            return Mono.empty();
+        }
+        response.setStatusCode(HttpStatus.BAD_REQUEST);
+        return response.setComplete();
+    }
+
+    /**
+     * 转发失败是否由请求体摘要不一致引起（异常可能被 HTTP 客户端包装）
+     */
+    private boolean isContentDigestMismatch(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ContentDigestMismatchException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 超过限流，返回 429 并通过 Retry-After 告知客户端等待的秒数
+     */
+    public Mono<Void> handleRateLimited(ServerHttpResponse response, long waitMillis) {
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf((waitMillis + 999) / 1000));
+        return response.setComplete();
+    }
+
+    /**
+     * 接口熔断打开或并发已满，返回 503 并通过 Retry-After 告知客户端等待的秒数
+     */
+    public Mono<Void> handleServiceUnavailable(ServerHttpResponse response, long retryAfterSeconds) {
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        return response.setComplete();
+    }
+
     public Mono<Void> handleInvokeError(ServerHttpResponse response) {
         response.setStatusCode(HttpStatus.INTERNAL_SERVER_ERROR);
         return response.setComplete();
@@ -470,129 +713,37 @@ public class CustomGlobalFilter implements GlobalFilter, Ordered {
 
     /**
      * 处理平台内部调试响应（带额度扣减）
-     * 
+     *
      * @param exchange 请求交换对象
      * @param chain    过滤器链
      * @param userId   用户ID
      * @return Mono<Void>
      */
     private Mono<Void> handleInternalDebugResponse(ServerWebExchange exchange, GatewayFilterChain chain, Long userId) {
-        try {
-            ServerHttpResponse originalResponse = exchange.getResponse();
-            DataBufferFactory bufferFactory = originalResponse.bufferFactory();
-
-            // 装饰响应，增强能力
-            ServerHttpResponseDecorator decoratedResponse = new ServerHttpResponseDecorator(originalResponse) {
-                @Override
-                public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
-                    log.info("平台内部调试响应处理 - 用户ID: {}", userId);
-                    if (body instanceof Flux) {
-                        Flux<? extends DataBuffer> fluxBody = Flux.from(body);
-                        return super.writeWith(
-                                fluxBody.map(dataBuffer -> {
-                                    // 检查响应状态
-                                    HttpStatus statusCode = getStatusCode();
-                                    if (statusCode == HttpStatus.OK) {
-                                        // 调用成功，需要扣减额度
-                                        try {
-                                            // 从exchange的attributes中获取接口ID
-                                            Long interfaceInfoId = (Long) exchange.getAttribute("interfaceInfoId");
-
-                                            if (interfaceInfoId != null) {
-                                                // 优先使用额度系统
-                                                boolean hasCreditQuota = false;
-                                                try {
-                                                    hasCreditQuota = innerCreditService.checkCreditSufficient(userId,
-                                                            interfaceInfoId, 1L);
-                                                } catch (Exception e) {
-                                                    log.error("检查额度失败", e);
-                                                }
-
-                                                if (hasCreditQuota) {
-                                                    // 使用额度系统扣减
-                                                    boolean creditDeducted = innerCreditService.consumeCredit(userId,
-                                                            interfaceInfoId, 1L);
-                                                    if (!creditDeducted) {
-                                                        log.warn("平台内部调试：额度扣减失败，尝试扣减调用次数");
-                                                        innerUserInterfaceInfoService.invokeCount(interfaceInfoId,
-                                                                userId);
-                                                    } else {
-                                                        log.info("平台内部调试：额度扣减成功 - 用户ID: {}, 接口ID: {}", userId,
-                                                                interfaceInfoId);
-                                                    }
-                                                } else {
-                                                    // 使用旧的调用次数系统
-                                                    log.info("平台内部调试：使用旧的调用次数系统 - 用户ID: {}, 接口ID: {}", userId,
-                                                            interfaceInfoId);
-                                                    innerUserInterfaceInfoService.invokeCount(interfaceInfoId, userId);
-                                                }
-                                            } else {
-                                                log.warn("平台内部调试：无法从请求体中获取接口ID，跳过额度扣减");
-                                            }
-                                        } catch (Exception e) {
-                                            log.error("平台内部调试：扣减额度或调用次数失败", e);
-                                        }
-                                    } else {
-                                        log.warn("平台内部调试：调用失败，不扣减额度 - 状态码: {}", statusCode);
-                                    }
-
-                                    // 读取响应内容
-                                    byte[] content = new byte[dataBuffer.readableByteCount()];
-                                    dataBuffer.read(content);
-                                    DataBufferUtils.release(dataBuffer);
-
-                                    // 打印日志
-                                    String data = new String(content, StandardCharsets.UTF_8);
-                                    log.info("平台内部调试响应结果：{}", data);
-
-                                    return bufferFactory.wrap(content);
-                                }));
+        log.debug("平台内部调试响应处理 - 用户ID: {}", userId);
+        return chain.filter(exchange)
+                .doOnSuccess(v -> {
+                    // 按后端实际调用的接口ID记录与扣减（调用成功时由后端写入响应头），不信任客户端请求头
+                    Long interfaceInfoId = parseInterfaceId(
+                            exchange.getResponse().getHeaders().getFirst(INTERFACE_ID_HEADER));
+                    if (interfaceInfoId != null) {
+                        exchange.getAttributes().put(AccessLogFilter.INTERFACE_ID_ATTR, interfaceInfoId);
                     }
-                    return super.writeWith(body);
-                }
-            };
-
-            return chain.filter(exchange.mutate().response(decoratedResponse).build());
-        } catch (Exception e) {
-            log.error("平台内部调试响应处理异常", e);
-            return chain.filter(exchange);
-        }
-    }
-
-    /**
-     * 从请求体中解析接口ID
-     * 
-     * @param requestBody 请求体内容
-     * @return 接口ID
-     */
-    private Long parseInterfaceIdFromRequestBody(String requestBody) {
-        try {
-            if (requestBody == null || requestBody.trim().isEmpty()) {
-                log.warn("请求体为空，无法解析接口ID");
-                return null;
-            }
-
-            // 简单的JSON解析，寻找 "id" 或 "interfaceId" 字段
-            // 这是一个简单的实现，实际中应该使用JSON解析库
-            String[] patterns = { "\"id\"\\s*:\\s*(\\d+)", "\"interfaceId\"\\s*:\\s*(\\d+)" };
-
-            for (String pattern : patterns) {
-                java.util.regex.Pattern p = java.util.regex.Pattern.compile(pattern);
-                java.util.regex.Matcher m = p.matcher(requestBody);
-                if (m.find()) {
-                    String idStr = m.group(1);
-                    Long id = Long.parseLong(idStr);
-                    log.info("从请求体中解析出接口ID: {}", id);
-                    return id;
-                }
-            }
-
-            log.warn("无法从请求体中解析出接口ID: {}", requestBody);
-            return null;
-
-        } catch (Exception e) {
-            log.error("解析请求体中的接口ID失败", e);
-            return null;
-        }
+                    // 检查响应状态
+                    HttpStatus statusCode = exchange.getResponse().getStatusCode();
+                    if (statusCode == null || !statusCode.is2xxSuccessful()) {
+                        log.warn("平台内部调试：调用失败，不扣减额度 - 状态码: {}", statusCode);
+                        gatewayMetrics.billing(BillingOutcome.NOT_CHARGED);
+                        return;
+                    }
+                    if (interfaceInfoId == null) {
+                        log.warn("平台内部调试：后端未返回调用的接口ID（调用失败或被拒绝），不扣减额度");
+                        gatewayMetrics.billing(BillingOutcome.NOT_CHARGED);
+                        return;
+                    }
+                    // 调用成功，扣减一次：后端会优先扣减额度，额度不足时降级到调用次数
+                    chargeInvokeCount(userId, interfaceInfoId);
+                    gatewayMetrics.billing(BillingOutcome.INVOKE_COUNT);
+                });
     }
 }
\ No newline at end of file
@@ -0,0 +1,165 @@
+package com.qiapi.qiapigateway.accesslog;
+
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Resource;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 访问日志过滤器：每个请求结束时生成一条记录交给 {@link AccessLogWriter}
+ * <p>
+ * 是否采样在请求开始时决定；未采样的请求只在出错（状态码 >= 500 或异常）时记录，且不采集响应体。
+ * 路由分类、用户、接口等信息由后续过滤器写入 exchange 属性
+ *
+ * @author zhexueqi
+ */
+@Component
+public class AccessLogFilter implements GlobalFilter, Ordered {
+
+    /**
+     * exchange 属性：路由分类名称
+     */
+    public static final String ROUTE_ATTR = "routeClass";
+
+    /**
+     * exchange 属性：accessKey
+     */
+    public static final String ACCESS_KEY_ATTR = "accessKey";
+
+    /**
+     * exchange 属性：用户ID
+     */
+    public static final String USER_ID_ATTR = "userId";
+
+    /**
+     * exchange 属性：接口ID
+     */
+    public static final String INTERFACE_ID_ATTR = "interfaceInfoId";
+
+    @Resource
+    private QiapiGatewayProperties qiapiGatewayProperties;
+
+    @Resource
+    private AccessLogWriter accessLogWriter;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        QiapiGatewayProperties.AccessLog config = qiapiGatewayProperties.getAccessLog();
+        if (!config.isEnabled()) {
+            return chain.filter(exchange);
+        }
+        double sampleRate = config.getSampleRate();
+        boolean sampled = sampleRate >= 1 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+        if (!sampled && !config.isAlwaysLogErrors()) {
+            return chain.filter(exchange);
+        }
+        long startMillis = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        BodyCapture bodyCapture = sampled && config.getBodyMaxBytes() > 0
+                ? new BodyCapture(config.getBodyMaxBytes()) : null;
+        ServerWebExchange loggedExchange = bodyCapture == null ? exchange
+                : exchange.mutate().response(bodyCapture.decorate(exchange.getResponse())).build();
+        Throwable[] failure = new Throwable[1];
+        return chain.filter(loggedExchange)
+                .doOnError(e -> failure[0] = e)
+                .doFinally(signalType -> {
+                    HttpStatus statusCode = exchange.getResponse().getStatusCode();
+                    int status = statusCode == null ? (failure[0] == null ? 200 : 500) : statusCode.value();
+                    if (!sampled && status < 500 && failure[0] == null) {
+                        return;
+                    }
+                    accessLogWriter.submit(buildRecord(exchange, startMillis, startNanos, status, failure[0],
+                            bodyCapture));
+                });
+    }
+
+    @Override
+    public int getOrder() {
+        // 在鉴权过滤器之前，覆盖所有分支（包括被拒绝的请求）
+        return -2;
+    }
+
+    private AccessLogRecord buildRecord(ServerWebExchange exchange, long startMillis, long startNanos, int status,
+            Throwable failure, BodyCapture bodyCapture) {
+        ServerHttpRequest request = exchange.getRequest();
+        AccessLogRecord record = new AccessLogRecord();
+        record.setTimestamp(startMillis);
+        record.setRequestId(request.getId());
+        record.setMethod(request.getMethodValue());
+        record.setPath(request.getPath().value());
+        record.setRawQuery(request.getURI().getRawQuery());
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        record.setClientAddress(remoteAddress == null ? null : remoteAddress.getHostString());
+        record.setRoute(exchange.getAttribute(ROUTE_ATTR));
+        record.setAccessKey(exchange.getAttribute(ACCESS_KEY_ATTR));
+        record.setUserId(exchange.getAttribute(USER_ID_ATTR));
+        record.setInterfaceId(exchange.getAttribute(INTERFACE_ID_ATTR));
+        record.setStatus(status);
+        record.setLatencyMicros(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+        if (failure != null) {
+            record.setError(failure.getClass().getName());
+        }
+        if (bodyCapture != null) {
+            record.setResponseBody(bodyCapture.bytes());
+            record.setResponseBodyTruncated(bodyCapture.truncated);
+        }
+        return record;
+    }
+
+    /**
+     * 采集响应体的前若干字节：只拷贝原始字节，不解码、不改变转发的数据块
+     */
+    private static final class BodyCapture {
+
+        private final byte[] buffer;
+
+        private int length;
+
+        private boolean truncated;
+
+        BodyCapture(int maxBytes) {
+            this.buffer = new byte[maxBytes];
+        }
+
+        ServerHttpResponse decorate(ServerHttpResponse response) {
+            return new ServerHttpResponseDecorator(response) {
+                @Override
+                public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                    return super.writeWith(Flux.from(body).doOnNext(BodyCapture.this::capture));
+                }
+            };
+        }
+
+        void capture(DataBuffer dataBuffer) {
+            int readable = dataBuffer.readableByteCount();
+            int count = Math.min(readable, buffer.length - length);
+            int position = dataBuffer.readPosition();
+            for (int i = 0; i < count; i++) {
+                buffer[length++] = dataBuffer.getByte(position + i);
+            }
+            if (count < readable) {
+                truncated = true;
+            }
+        }
+
+        byte[] bytes() {
+            return Arrays.copyOf(buffer, length);
+        }
+    }
+}
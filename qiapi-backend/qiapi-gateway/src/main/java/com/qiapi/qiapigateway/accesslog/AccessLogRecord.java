@@ -0,0 +1,65 @@
+package com.qiapi.qiapigateway.accesslog;
+
+import lombok.Data;
+
+/**
+ * 一次请求的访问日志记录
+ * <p>
+ * 请求线程只填充原始数据（不做格式化、脱敏、解码），由后台写线程处理
+ *
+ * @author zhexueqi
+ */
+@Data
+public class AccessLogRecord {
+
+    /**
+     * 请求开始时间（毫秒时间戳）
+     */
+    private long timestamp;
+
+    private String requestId;
+
+    private String method;
+
+    private String path;
+
+    /**
+     * 原始查询串，写出时脱敏
+     */
+    private String rawQuery;
+
+    private String clientAddress;
+
+    /**
+     * 路由分类名称
+     */
+    private String route;
+
+    private String accessKey;
+
+    private Long userId;
+
+    private Long interfaceId;
+
+    /**
+     * 响应状态码，未设置时为 0
+     */
+    private int status;
+
+    private long latencyMicros;
+
+    /**
+     * 异常类名，正常结束时为 null
+     */
+    private String error;
+
+    /**
+     * 截断后的响应体（原始字节），未采集时为 null
+     */
+    private byte[] responseBody;
+
+    /**
+     * 响应体是否被截断
+     */
+    private boolean responseBodyTruncated;
+}
@@ -0,0 +1,71 @@
+package com.qiapi.qiapigateway.accesslog;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 无锁有界环形缓冲区（多生产者、单消费者）
+ * <p>
+ * 生产者以 CAS 抢占序号后写入槽位，消费者按序号读取并清空槽位；槽位为空表示生产者尚未写入，消费者稍后再读。
+ * 缓冲区满时直接丢弃，请求线程永不阻塞。
+ *
+ * @author zhexueqi
+ */
+public class AccessLogRingBuffer {
+
+    private final AtomicReferenceArray<AccessLogRecord> slots;
+
+    private final int mask;
+
+    private final AtomicLong producerIndex = new AtomicLong();
+
+    private final AtomicLong consumerIndex = new AtomicLong();
+
+    /**
+     * @param capacity 容量，向上取整为 2 的幂
+     */
+    public AccessLogRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * 写入一条记录（可被多个线程并发调用）
+     *
+     * @return 是否写入成功，缓冲区满时返回 false
+     */
+    public boolean offer(AccessLogRecord record) {
+        while (true) {
+            long index = producerIndex.get();
+            if (index - consumerIndex.get() > mask) {
+                return false;
+            }
+            if (producerIndex.compareAndSet(index, index + 1)) {
+                slots.lazySet((int) index & mask, record);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 读取一条记录（只允许单个线程调用）
+     *
+     * @return 记录，没有可读记录时返回 null
+     */
+    public AccessLogRecord poll() {
+        long index = consumerIndex.get();
+        int offset = (int) index & mask;
+        AccessLogRecord record = slots.get(offset);
+        if (record == null) {
+            return null;
+        }
+        slots.lazySet(offset, null);
+        consumerIndex.lazySet(index + 1);
+        return record;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,255 @@
+package com.qiapi.qiapigateway.accesslog;
+
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 访问日志后台写线程
+ * <p>
+ * 请求线程只把记录放入 {@link AccessLogRingBuffer}；格式化为 JSON、脱敏、解码响应体都在本线程完成，
+ * 通过名为 ACCESS_LOG 的日志器输出，可在日志配置中单独指定输出文件。缓冲区满时丢弃并计数。
+ *
+ * @author zhexueqi
+ */
+@Slf4j
+@Component
+public class AccessLogWriter {
+
+    private static final Logger ACCESS_LOG = LoggerFactory.getLogger("ACCESS_LOG");
+
+    private static final String REDACTED = "***";
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Resource
+    private QiapiGatewayProperties qiapiGatewayProperties;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private AccessLogRingBuffer ringBuffer;
+
+    private Counter dropped;
+
+    private Thread writerThread;
+
+    private volatile boolean running;
+
+    /**
+     * 写线程专用，避免每条记录重新分配
+     */
+    private final StringBuilder line = new StringBuilder(512);
+
+    /**
+     * 当前脱敏字段对应的正则，配置变化时重新编译（只在写线程中访问）
+     */
+    private List<String> redactFields;
+
+    private Pattern bodyRedactPattern;
+
+    @PostConstruct
+    public void init() {
+        ringBuffer = new AccessLogRingBuffer(qiapiGatewayProperties.getAccessLog().getBufferSize());
+        dropped = Counter.builder("gateway.accesslog.dropped").register(meterRegistry);
+        running = true;
+        writerThread = new Thread(this::drainLoop, "access-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writerThread);
+        writerThread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * 提交一条记录（不阻塞）
+     *
+     * @param record 记录
+     */
+    public void submit(AccessLogRecord record) {
+        if (!ringBuffer.offer(record)) {
+            dropped.increment();
+        }
+    }
+
+    private void drainLoop() {
+        while (running) {
+            if (drain() == 0) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+        // 停机时写出剩余记录
+        drain();
+    }
+
+    private int drain() {
+        int count = 0;
+        AccessLogRecord record;
+        while ((record = ringBuffer.poll()) != null) {
+            try {
+                if (ACCESS_LOG.isInfoEnabled()) {
+                    ACCESS_LOG.info(format(record));
+                }
+            } catch (Exception e) {
+                log.error("写访问日志失败", e);
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private String format(AccessLogRecord record) {
+        QiapiGatewayProperties.AccessLog config = qiapiGatewayProperties.getAccessLog();
+        refreshRedaction(config.getRedactFields());
+        StringBuilder sb = line;
+        sb.setLength(0);
+        sb.append('{');
+        appendField(sb, "ts", record.getTimestamp());
+        appendField(sb, "id", record.getRequestId());
+        appendField(sb, "method", record.getMethod());
+        appendField(sb, "path", record.getPath());
+        if (record.getRawQuery() != null) {
+            appendField(sb, "query", redactQuery(record.getRawQuery()));
+        }
+        appendField(sb, "client", record.getClientAddress());
+        appendField(sb, "route", record.getRoute());
+        if (record.getAccessKey() != null) {
+            appendField(sb, "accessKey", record.getAccessKey());
+        }
+        if (record.getUserId() != null) {
+            appendField(sb, "userId", record.getUserId());
+        }
+        if (record.getInterfaceId() != null) {
+            appendField(sb, "interfaceId", record.getInterfaceId());
+        }
+        appendField(sb, "status", record.getStatus());
+        appendField(sb, "latencyUs", record.getLatencyMicros());
+        if (record.getError() != null) {
+            appendField(sb, "error", record.getError());
+        }
+        if (record.getResponseBody() != null) {
+            String body = new String(record.getResponseBody(), StandardCharsets.UTF_8);
+            appendField(sb, "body", redactBody(body));
+            if (record.isResponseBodyTruncated()) {
+                sb.append("\"bodyTruncated\":true,");
+            }
+        }
+        sb.setCharAt(sb.length() - 1, '}');
+        return sb.toString();
+    }
+
+    private void refreshRedaction(List<String> fields) {
+        if (fields == redactFields) {
+            return;
+        }
+        redactFields = fields;
+        if (fields == null || fields.isEmpty()) {
+            bodyRedactPattern = null;
+            return;
+        }
+        StringBuilder alternatives = new StringBuilder();
+        for (String field : fields) {
+            if (alternatives.length() > 0) {
+                alternatives.append('|');
+            }
+            alternatives.append(Pattern.quote(field));
+        }
+        // JSON 中的 "field": "value" 或 "field": 数字
+        bodyRedactPattern = Pattern.compile("(\"(?:" + alternatives + ")\"\\s*:\\s*)(\"(?:[^\"\\\\]|\\\\.)*\"|[^,}\\]\\s]+)");
+    }
+
+    private String redactQuery(String rawQuery) {
+        if (redactFields == null || redactFields.isEmpty()) {
+            return rawQuery;
+        }
+        StringBuilder sb = new StringBuilder(rawQuery.length());
+        for (String pair : rawQuery.split("&")) {
+            if (sb.length() > 0) {
+                sb.append('&');
+            }
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            if (eq >= 0 && containsIgnoreCase(redactFields, name)) {
+                sb.append(name).append('=').append(REDACTED);
+            } else {
+                sb.append(pair);
+            }
+        }
+        return sb.toString();
+    }
+
+    private String redactBody(String body) {
+        if (bodyRedactPattern == null) {
+            return body;
+        }
+        Matcher matcher = bodyRedactPattern.matcher(body);
+        return matcher.find() ? matcher.replaceAll("$1\"" + REDACTED + "\"") : body;
+    }
+
+    private static boolean containsIgnoreCase(List<String> values, String value) {
+        for (String candidate : values) {
+            if (candidate.equalsIgnoreCase(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void appendField(StringBuilder sb, String name, long value) {
+        sb.append('"').append(name).append("\":").append(value).append(',');
+    }
+
+    private static void appendField(StringBuilder sb, String name, String value) {
+        sb.append('"').append(name).append("\":");
+        if (value == null) {
+            sb.append("null,");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append("\",");
+    }
+}
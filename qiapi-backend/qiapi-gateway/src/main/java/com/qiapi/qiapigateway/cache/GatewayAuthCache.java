@@ -0,0 +1,116 @@
+package com.qiapi.qiapigateway.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.qiapi.qiapicommon.model.dto.InvocationAuthorization;
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 网关本地调用鉴权信息缓存（accessKey + method + url -> 用户与接口信息）
+ * <p>
+ * 只缓存用户与接口都存在的结果，且不缓存配额与剩余量；后端修改密钥、用户或接口时通过 {@link GatewayAuthCacheServiceImpl} 广播失效
+ *
+ * @author zhexueqi
+ */
+@Component
+public class GatewayAuthCache {
+
+    @Resource
+    private QiapiGatewayProperties qiapiGatewayProperties;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private Cache<String, InvocationAuthorization> cache;
+
+    @PostConstruct
+    public void init() {
+        QiapiGatewayProperties.AuthCache config = qiapiGatewayProperties.getAuthCache();
+        cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(config.getExpireSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        // 命中、未命中、淘汰等指标通过 /actuator/metrics/cache.* 暴露
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "gateway.invocationAuth");
+    }
+
+    /**
+     * 获取缓存的用户与接口信息
+     *
+     * @param accessKey accessKey
+     * @param url       接口地址
+     * @param method    请求方法
+     * @return 不含配额的鉴权结果副本，未缓存时为 null
+     */
+    public InvocationAuthorization get(String accessKey, String url, String method) {
+        if (!qiapiGatewayProperties.getAuthCache().isEnabled()) {
+            return null;
+        }
+        InvocationAuthorization cached = cache.getIfPresent(key(accessKey, url, method));
+        return cached == null ? null : identityOf(cached);
+    }
+
+    /**
+     * 缓存后端返回的鉴权结果中的用户与接口信息，用户或接口不存在时不缓存
+     *
+     * @param accessKey     accessKey
+     * @param url           接口地址
+     * @param method        请求方法
+     * @param authorization 后端返回的鉴权结果
+     */
+    public void put(String accessKey, String url, String method, InvocationAuthorization authorization) {
+        if (!qiapiGatewayProperties.getAuthCache().isEnabled()
+                || authorization.getUserId() == null || authorization.getInterfaceId() == null) {
+            return;
+        }
+        cache.put(key(accessKey, url, method), identityOf(authorization));
+    }
+
+    /**
+     * 使 accessKey 对应的缓存失效
+     *
+     * @param accessKey accessKey
+     */
+    public void invalidateAccessKey(String accessKey) {
+        String prefix = accessKey + " ";
+        cache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * 使接口对应的缓存失效（同一接口可能以不同 accessKey 被缓存，按ID全部清除）
+     *
+     * @param interfaceInfoId 接口ID
+     */
+    public void invalidateInterfaceInfo(long interfaceInfoId) {
+        cache.asMap().values().removeIf(authorization -> authorization.getInterfaceId() == interfaceInfoId);
+    }
+
+    private static String key(String accessKey, String url, String method) {
+        return accessKey + " " + method + " " + url;
+    }
+
+    /**
+     * 复制用户与接口信息，去掉配额与剩余量
+     */
+    private static InvocationAuthorization identityOf(InvocationAuthorization source) {
+        InvocationAuthorization identity = new InvocationAuthorization();
+        identity.setUserId(source.getUserId());
+        identity.setTier(source.getTier());
+        identity.setSigningKey(source.getSigningKey());
+        identity.setInterfaceId(source.getInterfaceId());
+        identity.setBreakerFailureRate(source.getBreakerFailureRate());
+        identity.setBreakerSlowCallRate(source.getBreakerSlowCallRate());
+        identity.setBreakerSlowCallMillis(source.getBreakerSlowCallMillis());
+        identity.setMaxConcurrentCalls(source.getMaxConcurrentCalls());
+        identity.setCacheTtlSeconds(source.getCacheTtlSeconds());
+        return identity;
+    }
+}
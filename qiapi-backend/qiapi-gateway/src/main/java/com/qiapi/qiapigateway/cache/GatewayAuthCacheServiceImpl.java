@@ -0,0 +1,31 @@
+package com.qiapi.qiapigateway.cache;
+
+import com.qiapi.qiapicommon.service.InnerAuthCacheService;
+import org.apache.dubbo.config.annotation.DubboService;
+
+import javax.annotation.Resource;
+
+/**
+ * 网关调用鉴权缓存失效服务（接收后端的广播）
+ *
+ * @author zhexueqi
+ */
+@DubboService
+public class GatewayAuthCacheServiceImpl implements InnerAuthCacheService {
+
+    @Resource
+    private GatewayAuthCache gatewayAuthCache;
+
+    @Override
+    public void invalidateAccessKey(String accessKey) {
+        if (accessKey == null) {
+            return;
+        }
+        gatewayAuthCache.invalidateAccessKey(accessKey);
+    }
+
+    @Override
+    public void invalidateInterfaceInfo(long interfaceInfoId) {
+        gatewayAuthCache.invalidateInterfaceInfo(interfaceInfoId);
+    }
+}
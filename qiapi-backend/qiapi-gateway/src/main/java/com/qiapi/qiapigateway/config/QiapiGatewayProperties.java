@@ -0,0 +1,653 @@
+package com.qiapi.qiapigateway.config;
+
+import com.qiapi.qiapigateway.route.AuthMode;
+import com.qiapi.qiapigateway.route.MatchMode;
+import com.qiapi.qiapigateway.route.RoutePriority;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 网关自定义配置
+ *
+ * @author zhexueqi
+ */
+@Configuration
+@ConfigurationProperties(prefix = "qiapi.gateway")
+@Data
+public class QiapiGatewayProperties {
+
+    /**
+     * 访问日志配置
+     */
+    private AccessLog accessLog = new AccessLog();
+
+    /**
+     * 额度批量租用配置
+     */
+    private CreditLease creditLease = new CreditLease();
+
+    /**
+     * 调用鉴权信息本地缓存配置
+     */
+    private AuthCache authCache = new AuthCache();
+
+    /**
+     * 请求防重放配置
+     */
+    private Nonce nonce = new Nonce();
+
+    /**
+     * 限流配置，修改后可通过 /actuator/refresh 生效
+     */
+    private RateLimit rateLimit = new RateLimit();
+
+    /**
+     * 接口熔断与并发隔离配置，修改后可通过 /actuator/refresh 生效
+     */
+    private Resilience resilience = new Resilience();
+
+    /**
+     * 接口响应缓存配置
+     */
+    private ResponseCache responseCache = new ResponseCache();
+
+    /**
+     * 路由分类，key 为分类名称，修改后可通过 /actuator/refresh 生效
+     */
+    private Map<String, RouteRule> routes = defaultRoutes();
+
+    /**
+     * 由接口信息生成的动态路由配置
+     */
+    private InterfaceRoutes interfaceRoutes = new InterfaceRoutes();
+
+    /**
+     * 接口多实例负载均衡配置
+     */
+    private LoadBalance loadBalance = new LoadBalance();
+
+    /**
+     * 请求指标配置
+     */
+    private Metrics metrics = new Metrics();
+
+    /**
+     * 链路追踪配置
+     */
+    private Trace trace = new Trace();
+
+    /**
+     * 网关过载保护配置，修改后可通过 /actuator/refresh 生效
+     */
+    private Overload overload = new Overload();
+
+    @Data
+    public static class AccessLog {
+
+        /**
+         * 是否记录访问日志
+         */
+        private boolean enabled = true;
+
+        /**
+         * 采样率（0-1），未采样的请求不生成记录
+         */
+        private double sampleRate = 0.1;
+
+        /**
+         * 未采样的请求出错（状态码 >= 500 或异常）时是否仍然记录
+         */
+        private boolean alwaysLogErrors = true;
+
+        /**
+         * 环形缓冲区容量（向上取整为 2 的幂），写满时丢弃新记录
+         */
+        private int bufferSize = 8192;
+
+        /**
+         * 采样请求最多记录的响应体字节数，0 表示不记录响应体
+         */
+        private int bodyMaxBytes = 0;
+
+        /**
+         * 需要脱敏的查询参数与响应体 JSON 字段
+         */
+        private List<String> redactFields = new ArrayList<>(
+                Arrays.asList("sign", "secretKey", "password", "userPassword"));
+    }
+
+    @Data
+    public static class CreditLease {
+
+        /**
+         * 是否开启批量租用（关闭时每次请求单独冻结 1 次额度）
+         */
+        private boolean enabled = true;
+
+        /**
+         * 每次租用的最小次数
+         */
+        private int minSize = 1;
+
+        /**
+         * 每次租用的最大次数
+         */
+        private int maxSize = 50;
+
+        /**
+         * 按调用速率估算租用次数时，一次租用期望覆盖的秒数
+         */
+        private double targetSeconds = 5;
+
+        /**
+         * 调用速率指数加权平均的平滑系数（0-1，越大越偏向最近一次租用）
+         */
+        private double rateAlpha = 0.5;
+
+        /**
+         * 租用有效期（秒），到期后不再发放，进行中的请求完成后归还剩余次数
+         */
+        private long ttlSeconds = 30;
+
+        /**
+         * 到期后等待进行中请求完成的最长时间（秒），之后按已成功的调用强制结算；
+         * ttlSeconds + settleGraceSeconds 需小于后端 credit.hold.ttl-seconds 减去过期扫描间隔
+         */
+        private long settleGraceSeconds = 10;
+    }
+
+    @Data
+    public static class AuthCache {
+
+        /**
+         * 是否缓存 accessKey + 接口对应的用户与接口信息（额度与调用次数不缓存）
+         */
+        private boolean enabled = true;
+
+        /**
+         * 最大条目数
+         */
+        private long maximumSize = 10000;
+
+        /**
+         * 写入后过期时间（秒），作为失效通知丢失时的兜底
+         */
+        private long expireSeconds = 30;
+    }
+
+    @Data
+    public static class Nonce {
+
+        /**
+         * 请求时间戳允许落后于网关时间的秒数，nonce 在该时长内不可重复
+         */
+        private long windowSeconds = 300;
+
+        /**
+         * 请求时间戳允许超前于网关时间的秒数（容忍时钟偏差），nonce 需记录 窗口 + 该时长
+         */
+        private long maxFutureSkewSeconds = 30;
+
+        /**
+         * nonce 最大长度
+         */
+        private int maxLength = 64;
+
+        /**
+         * 本地布隆过滤器的时间片数
+         */
+        private int sliceCount = 5;
+
+        /**
+         * 预计的峰值请求速率，用于确定布隆过滤器大小（超出后误判率上升，内存不变）
+         */
+        private long expectedRps = 10000;
+
+        /**
+         * 布隆过滤器单个时间片的误判率
+         */
+        private double fpp = 1e-6;
+
+        /**
+         * 本地精确记录的 nonce 数上限，布隆过滤器命中后以此确认是否重放；<= 0 时按 expectedRps x 记录时长，覆盖整个窗口。
+         * 开启 Redis 时由 Redis 确认，不使用本地精确记录
+         */
+        private long exactMaxEntries = 0;
+
+        /**
+         * 是否在 Redis 中登记 nonce（多节点部署或请求速率超过 expectedRps 时开启）
+         */
+        private boolean redisEnabled = false;
+    }
+
+    @Data
+    public static class RateLimit {
+
+        /**
+         * 是否开启限流
+         */
+        private boolean enabled = true;
+
+        /**
+         * 限流模式：local 为本节点内存令牌桶；redis 为 Redis 中的令牌桶，多个网关节点共享配额，rate 与 burst 含义相同
+         */
+        private String mode = "local";
+
+        /**
+         * 本地令牌桶的最大数量，超出后淘汰最久未使用的
+         */
+        private long maximumBuckets = 100000;
+
+        /**
+         * 每个 accessKey 的默认限制
+         */
+        private Limit accessKey = new Limit(100, 200);
+
+        /**
+         * 每个接口（请求路径）的默认限制
+         */
+        private Limit interfaceInfo = new Limit(1000, 2000);
+
+        /**
+         * 每个 accessKey 调用单个接口的默认限制
+         */
+        private Limit userInterface = new Limit(50, 100);
+
+        /**
+         * 按 accessKey 覆盖默认限制
+         */
+        private Map<String, Limit> accessKeyOverrides = new LinkedHashMap<>();
+
+        /**
+         * 按请求路径覆盖接口限制，路径含 / 时 key 需写成 "[/third-party/api/name]"
+         */
+        private Map<String, Limit> interfaceOverrides = new LinkedHashMap<>();
+    }
+
+    @Data
+    public static class Resilience {
+
+        /**
+         * 是否开启接口熔断与并发隔离
+         */
+        private boolean enabled = true;
+
+        /**
+         * 失败率阈值（百分比），接口未单独配置时使用
+         */
+        private int failureRateThreshold = 50;
+
+        /**
+         * 慢调用比例阈值（百分比），接口未单独配置时使用
+         */
+        private int slowCallRateThreshold = 80;
+
+        /**
+         * 慢调用耗时阈值（毫秒），接口未单独配置时使用
+         */
+        private int slowCallMillis = 3000;
+
+        /**
+         * 单个接口的最大并发调用数，接口未单独配置时使用
+         */
+        private int maxConcurrentCalls = 100;
+
+        /**
+         * 统计失败率的滑动窗口大小（调用次数）
+         */
+        private int slidingWindowSize = 50;
+
+        /**
+         * 计算失败率前至少需要的调用次数
+         */
+        private int minimumNumberOfCalls = 20;
+
+        /**
+         * 熔断打开后等待多久进入半开状态（毫秒），同时作为 Retry-After 返回给调用方
+         */
+        private long waitDurationInOpenStateMillis = 10000;
+
+        /**
+         * 半开状态下允许通过的探测调用数
+         */
+        private int permittedCallsInHalfOpenState = 5;
+
+        /**
+         * 是否按上游耗时自适应调整接口并发上限（不超过接口配置的最大并发数）
+         */
+        private boolean adaptiveLimitEnabled = true;
+
+        /**
+         * 自适应并发的初始上限
+         */
+        private int initialLimit = 20;
+
+        /**
+         * 自适应并发的最小上限
+         */
+        private int minLimit = 4;
+
+        /**
+         * 允许短期 RTT 超出长期 RTT 的倍数，超出后开始收缩上限
+         */
+        private double rttTolerance = 1.5;
+
+        /**
+         * 上限调整的平滑系数（0 ~ 1），越大调整越快
+         */
+        private double limitSmoothing = 0.2;
+
+        /**
+         * 自适应并发的采样窗口（毫秒），每个窗口调整一次上限
+         */
+        private long limitWindowMillis = 1000;
+
+        /**
+         * 每个采样窗口至少需要的调用次数
+         */
+        private int limitWindowMinSamples = 10;
+
+        /**
+         * 并发已满时排队等待名额的最长时间（毫秒），为 0 时不排队直接拒绝
+         */
+        private long queueTimeoutMillis = 50;
+
+        /**
+         * 单个接口最多排队等待的请求数
+         */
+        private int maxQueuedCalls = 50;
+
+        /**
+         * 付费用户排队通道的权重（用户等级由鉴权结果下发）
+         */
+        private int paidLaneWeight = 4;
+
+        /**
+         * 免费用户排队通道的权重
+         */
+        private int freeLaneWeight = 1;
+    }
+
+    @Data
+    public static class ResponseCache {
+
+        /**
+         * 是否开启响应缓存（还需在接口信息中配置缓存时间）
+         */
+        private boolean enabled = true;
+
+        /**
+         * 本地缓存的最大字节数（按响应体大小计算）
+         */
+        private long maximumBytes = 64 * 1024 * 1024;
+
+        /**
+         * 单个响应体的最大字节数，超过时不缓存
+         */
+        private int maxEntryBytes = 256 * 1024;
+
+        /**
+         * 命中缓存时是否照常计费（关闭时命中缓存的调用不检查、不扣减额度）
+         */
+        private boolean chargeHits = true;
+
+        /**
+         * 是否合并相同的并发请求：同一缓存 key 同时只有一个请求调用上游，其余请求等待并共享其响应（各自计费）
+         */
+        private boolean coalesceRequests = true;
+
+        /**
+         * 是否使用 Redis 作为二级缓存，多个网关节点共享缓存的响应
+         */
+        private boolean redisEnabled = false;
+
+        /**
+         * 读取 Redis 二级缓存的超时时间（毫秒），超时按未命中处理
+         */
+        private long redisTimeoutMillis = 50;
+    }
+
+    @Data
+    public static class Limit {
+
+        /**
+         * 每秒允许的请求数，小于等于 0 表示不限制
+         */
+        private double rate;
+
+        /**
+         * 允许的突发请求数（令牌桶容量），不小于 1
+         */
+        private int burst;
+
+        public Limit() {
+        }
+
+        public Limit(double rate, int burst) {
+            this.rate = rate;
+            this.burst = burst;
+        }
+    }
+
+    @Data
+    public static class InterfaceRoutes {
+
+        /**
+         * 是否为每个接口生成独立的路由（上游地址、超时时间取自接口信息）
+         */
+        private boolean enabled = true;
+
+        /**
+         * 增量刷新间隔（秒），接口变化时后端也会主动通知网关立即刷新
+         */
+        private long pollIntervalSeconds = 30;
+
+        /**
+         * 全量同步间隔（秒），用于清理增量刷新无法感知的路由（如物理删除的接口）
+         */
+        private long fullSyncIntervalSeconds = 600;
+
+        /**
+         * 动态路由的顺序，需小于配置文件中的静态路由，使接口路由优先匹配
+         */
+        private int order = -1;
+
+        /**
+         * 接口路由在网关上的路径前缀（需属于签名认证并计费的路由分类），请求路径为 前缀 + 接口地址的路径
+         */
+        private String pathPrefix = "/third-party";
+    }
+
+    @Data
+    public static class LoadBalance {
+
+        /**
+         * 接口注册了多个上游实例时是否按 P2C + Peak EWMA 选择实例
+         */
+        private boolean enabled = true;
+
+        /**
+         * 延迟均值的衰减时间常数（毫秒），越小越快反映最近的延迟
+         */
+        private long ewmaDecayMillis = 10000;
+
+        /**
+         * 连续失败多少次后剔除实例
+         */
+        private int ejectConsecutiveFailures = 5;
+
+        /**
+         * 实例被剔除的时长（毫秒），到期后重新参与选择
+         */
+        private long ejectMillis = 30000;
+    }
+
+    @Data
+    public static class Metrics {
+
+        /**
+         * 是否按路由分类与接口记录请求耗时、状态码与流量
+         */
+        private boolean enabled = true;
+
+        /**
+         * 单独统计的接口数量上限，超过后归入 interface="other"
+         */
+        private int maxInterfaces = 200;
+
+        /**
+         * 耗时直方图的下限（微秒）
+         */
+        private long histogramMinMicros = 50;
+
+        /**
+         * 耗时直方图的上限（毫秒）
+         */
+        private long histogramMaxMillis = 30000;
+
+        /**
+         * 事件循环延迟的探测间隔（毫秒），0 表示不探测
+         */
+        private long eventLoopProbeIntervalMillis = 100;
+    }
+
+    @Data
+    public static class Trace {
+
+        /**
+         * 是否记录链路
+         */
+        private boolean enabled = true;
+
+        /**
+         * 慢请求阈值（毫秒），达到该耗时的请求保留完整链路
+         */
+        private long slowThresholdMillis = 500;
+
+        /**
+         * 网关作为链路起点时的随机采样率（0-1），命中后通知下游一并保留
+         */
+        private double sampleRate = 0.01;
+
+        /**
+         * 每段链路最多记录的 span 数
+         */
+        private int maxSpansPerTrace = 64;
+
+        /**
+         * 待写入链路的队列容量，满时丢弃
+         */
+        private int queueCapacity = 1024;
+    }
+
+    @Data
+    public static class Overload {
+
+        /**
+         * 是否开启过载保护：网关负载过高时按路由优先级提前拒绝请求
+         */
+        private boolean enabled = true;
+
+        /**
+         * 事件循环延迟上限（毫秒），需开启事件循环探测（metrics.event-loop-probe-interval-millis 大于 0）
+         */
+        private long maxEventLoopLagMillis = 50;
+
+        /**
+         * 网关同时处理的请求数上限
+         */
+        private int maxInFlight = 5000;
+
+        /**
+         * 网关等待返回的 Dubbo 调用数上限
+         */
+        private int maxPendingRpc = 1000;
+
+        /**
+         * 负载达到多少时拒绝低优先级请求（负载为事件循环延迟、处理中请求数、等待中 Dubbo 调用数各自与上限之比的最大值）
+         */
+        private double lowPriorityShedLoad = 0.7;
+
+        /**
+         * 负载达到多少时拒绝普通优先级请求
+         */
+        private double normalPriorityShedLoad = 1.0;
+
+        /**
+         * 负载达到多少时拒绝高优先级请求
+         */
+        private double highPriorityShedLoad = 1.5;
+
+        /**
+         * 拒绝时通过 Retry-After 建议调用方等待的秒数
+         */
+        private long retryAfterSeconds = 1;
+    }
+
+    @Data
+    public static class RouteRule {
+
+        /**
+         * 路径列表（不含查询参数）
+         */
+        private List<String> paths = new ArrayList<>();
+
+        /**
+         * 路径匹配方式
+         */
+        private MatchMode match = MatchMode.SEGMENT;
+
+        /**
+         * 认证方式，默认要求签名认证，避免漏配时放行
+         */
+        private AuthMode auth = AuthMode.SIGNATURE;
+
+        /**
+         * 是否限流
+         */
+        private boolean rateLimit = true;
+
+        /**
+         * 是否计费（扣减额度或调用次数）
+         */
+        private boolean billing = true;
+
+        /**
+         * 过载优先级：网关过载时低优先级的请求先被拒绝
+         */
+        private RoutePriority priority = RoutePriority.NORMAL;
+
+        public RouteRule() {
+        }
+
+        public RouteRule(MatchMode match, AuthMode auth, boolean rateLimit, boolean billing, RoutePriority priority,
+                         String... paths) {
+            this.paths = new ArrayList<>(Arrays.asList(paths));
+            this.match = match;
+            this.auth = auth;
+            this.rateLimit = rateLimit;
+            this.billing = billing;
+            this.priority = priority;
+        }
+    }
+
+    private static Map<String, RouteRule> defaultRoutes() {
+        Map<String, RouteRule> routes = new LinkedHashMap<>();
+        routes.put("white-list", new RouteRule(MatchMode.SEGMENT, AuthMode.NONE, false, false, RoutePriority.HIGH,
+                "/user/register", "/user/login", "/user/login/wx_open", "/user/logout"));
+        routes.put("internal-debug", new RouteRule(MatchMode.SEGMENT, AuthMode.SESSION, false, true, RoutePriority.LOW,
+                "/api/interfaceInfo/invoke"));
+        routes.put("platform-api", new RouteRule(MatchMode.PREFIX, AuthMode.SESSION, false, false, RoutePriority.NORMAL,
+                "/api/user", "/api/interfaceInfo", "/api/analysis"));
+        routes.put("third-party", new RouteRule(MatchMode.PREFIX, AuthMode.SIGNATURE, true, true, RoutePriority.NORMAL,
+                "/third-party"));
+        return routes;
+    }
+}
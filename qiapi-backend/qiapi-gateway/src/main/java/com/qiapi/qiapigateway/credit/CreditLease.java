@@ -0,0 +1,161 @@
+package com.qiapi.qiapigateway.credit;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 网关持有的一次额度租用（对应后端的一个冻结凭证）
+ * <p>
+ * 请求取用、完成均为无锁计数；租用关闭且没有进行中的请求时结算一次，只扣减实际成功的调用次数。
+ * 到期后不再发放；到达结算截止时间（到期 + 宽限）仍有进行中的请求时强制结算，保证在后端冻结过期释放之前结算
+ *
+ * @author zhexueqi
+ */
+public class CreditLease {
+
+    private final String token;
+
+    private final int size;
+
+    private final long createTime;
+
+    private final long expireTime;
+
+    private final long settleDeadline;
+
+    /**
+     * 已发放的次数（含进行中与已成功）
+     */
+    private final AtomicInteger issued = new AtomicInteger();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger used = new AtomicInteger();
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private final AtomicBoolean settled = new AtomicBoolean();
+
+    /**
+     * 结算回调，参数为本租用（通过 {@link #getUsed()} 取实际使用次数）
+     */
+    private final Consumer<CreditLease> settler;
+
+    public CreditLease(String token, int size, long ttlMillis, long settleGraceMillis, Consumer<CreditLease> settler) {
+        this.token = token;
+        this.size = size;
+        this.createTime = System.currentTimeMillis();
+        this.expireTime = createTime + ttlMillis;
+        this.settleDeadline = expireTime + settleGraceMillis;
+        this.settler = settler;
+    }
+
+    /**
+     * 取用一次
+     *
+     * @return 是否取用成功（已关闭、已到期或已用完时返回 false）
+     */
+    public boolean tryAcquire() {
+        // 先登记进行中，再检查关闭状态，保证结算时不会漏掉正在取用的请求
+        inFlight.incrementAndGet();
+        if (!closed.get() && System.currentTimeMillis() < expireTime) {
+            int current;
+            while ((current = issued.get()) < size) {
+                if (issued.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+        inFlight.decrementAndGet();
+        trySettle();
+        return false;
+    }
+
+    /**
+     * 完成一次取用
+     *
+     * @param success 调用是否成功，失败时归还次数
+     */
+    public void complete(boolean success) {
+        if (success) {
+            used.incrementAndGet();
+        } else {
+            issued.decrementAndGet();
+        }
+        inFlight.decrementAndGet();
+        trySettle();
+    }
+
+    /**
+     * 关闭租用，不再发放，进行中的请求完成后结算
+     */
+    public void close() {
+        closed.set(true);
+        trySettle();
+    }
+
+    /**
+     * 到达结算截止时间时强制结算：关闭租用，按已成功的调用次数结算，之后完成的请求不再计入
+     *
+     * @param now 当前时间
+     * @return 是否由本次调用完成结算
+     */
+    public boolean forceSettle(long now) {
+        if (now < settleDeadline) {
+            return false;
+        }
+        closed.set(true);
+        if (settled.compareAndSet(false, true)) {
+            settler.accept(this);
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isUsable(long now) {
+        return !closed.get() && now < expireTime && issued.get() < size;
+    }
+
+    public boolean isExpired(long now) {
+        return now >= expireTime;
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    public boolean isSettled() {
+        return settled.get();
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getCreateTime() {
+        return createTime;
+    }
+
+    public int getIssued() {
+        return issued.get();
+    }
+
+    public int getUsed() {
+        return used.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void trySettle() {
+        if (closed.get() && inFlight.get() == 0 && settled.compareAndSet(false, true)) {
+            settler.accept(this);
+        }
+    }
+}
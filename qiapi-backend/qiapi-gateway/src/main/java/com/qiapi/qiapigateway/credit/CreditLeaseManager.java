@@ -0,0 +1,288 @@
+package com.qiapi.qiapigateway.credit;
+
+import com.qiapi.qiapicommon.service.InnerCreditService;
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.dubbo.config.annotation.DubboReference;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 额度批量租用管理
+ * <p>
+ * 网关按 (用户, 接口) 一次向后端冻结一批额度，请求在本地无锁扣减，用完、到期或停机时一次性结算实际用量并归还剩余。
+ * 每次租用的次数按该用户最近的调用速率（指数加权平均）估算，冷用户每次只租 1 次，热用户一批覆盖数秒的调用。
+ * 到期 + 宽限后仍未结算的租用（有请求一直未完成）由清理任务强制结算，不会等到后端冻结过期被整笔释放。
+ *
+ * @author zhexueqi
+ */
+@Slf4j
+@Component
+public class CreditLeaseManager {
+
+    private static final long SWEEP_INTERVAL_MS = 1000L;
+
+    /**
+     * 超过该时间没有请求的租用槽位会被清理
+     */
+    private static final long IDLE_SLOT_MS = TimeUnit.MINUTES.toMillis(5);
+
+    @DubboReference(check = false)
+    private InnerCreditService innerCreditService;
+
+    @Resource
+    private QiapiGatewayProperties qiapiGatewayProperties;
+
+    private final Map<String, LeaseSlot> slots = new ConcurrentHashMap<>();
+
+    /**
+     * 尚未结算的租用（含已退役、等待进行中请求完成的）
+     */
+    private final Set<CreditLease> unsettled = ConcurrentHashMap.newKeySet();
+
+    private ScheduledExecutorService sweeper;
+
+    /**
+     * 停机中：结算改为同步调用，保证在 Dubbo 关闭前归还额度
+     */
+    private volatile boolean stopping;
+
+    @PostConstruct
+    public void init() {
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "credit-lease-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL_MS, SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 取用一次额度
+     *
+     * @param userId      用户ID
+     * @param interfaceId 接口ID
+     * @return 已取用一次的租用，额度不足或后端不可用时为空；请求结束后必须调用 {@link CreditLease#complete(boolean)}
+     */
+    public Mono<CreditLease> acquire(long userId, long interfaceId) {
+        QiapiGatewayProperties.CreditLease config = qiapiGatewayProperties.getCreditLease();
+        if (!config.isEnabled()) {
+            return reserveSingle(userId, interfaceId, config);
+        }
+        LeaseSlot slot = slots.computeIfAbsent(userId + ":" + interfaceId,
+                key -> new LeaseSlot(userId, interfaceId));
+        slot.lastAccessTime = System.currentTimeMillis();
+        CreditLease lease = slot.current;
+        if (lease != null && lease.tryAcquire()) {
+            return Mono.just(lease);
+        }
+        return slot.renew(lease, config)
+                .flatMap(renewed -> renewed.tryAcquire()
+                        ? Mono.just(renewed)
+                        // 新租用被并发请求取完，本次请求单独冻结
+                        : reserveSingle(userId, interfaceId, config));
+    }
+
+    /**
+     * 本节点是否持有该用户该接口未用完、未过期的额度租用（只检查，不取用）
+     *
+     * @param userId      用户ID
+     * @param interfaceId 接口ID
+     * @return 是否持有
+     */
+    public boolean hasUsableLease(long userId, long interfaceId) {
+        if (!qiapiGatewayProperties.getCreditLease().isEnabled()) {
+            return false;
+        }
+        LeaseSlot slot = slots.get(userId + ":" + interfaceId);
+        CreditLease lease = slot == null ? null : slot.current;
+        return lease != null && lease.isUsable(System.currentTimeMillis());
+    }
+
+    /**
+     * 停机时关闭所有租用，归还未使用的额度
+     */
+    @PreDestroy
+    public void destroy() {
+        stopping = true;
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+        slots.values().forEach(slot -> {
+            CreditLease lease = slot.current;
+            if (lease != null) {
+                lease.close();
+            }
+        });
+        slots.clear();
+    }
+
+    private void sweep() {
+        try {
+            long now = System.currentTimeMillis();
+            slots.forEach((key, slot) -> {
+                CreditLease lease = slot.current;
+                if (lease != null && lease.isExpired(now)) {
+                    slot.retire(lease);
+                }
+                if (slot.current == null && now - slot.lastAccessTime > IDLE_SLOT_MS) {
+                    slots.remove(key, slot);
+                }
+            });
+            for (CreditLease lease : unsettled) {
+                int inFlight = lease.getInFlight();
+                if (lease.forceSettle(now)) {
+                    log.warn("额度租用到达结算截止时间，强制结算 - 凭证: {}, 使用次数: {}, 未完成请求: {}",
+                            lease.getToken(), lease.getUsed(), inFlight);
+                }
+            }
+        } catch (Exception e) {
+            log.error("清理额度租用失败", e);
+        }
+    }
+
+    /**
+     * 向后端冻结一批额度；额度不足一批时退回到单次冻结
+     */
+    private Mono<CreditLease> reserve(long userId, long interfaceId, int size,
+                                      QiapiGatewayProperties.CreditLease config) {
+        long ttlMillis = TimeUnit.SECONDS.toMillis(config.getTtlSeconds());
+        long settleGraceMillis = TimeUnit.SECONDS.toMillis(config.getSettleGraceSeconds());
+        Mono<CreditLease> lease = Mono
+                .fromFuture(() -> innerCreditService.reserveAsync(userId, interfaceId, (long) size))
+                .map(token -> new CreditLease(token, size, ttlMillis, settleGraceMillis, this::settle))
+                .doOnNext(unsettled::add);
+        if (size > 1) {
+            lease = lease.switchIfEmpty(Mono.defer(() -> reserve(userId, interfaceId, 1, config)));
+        }
+        return lease.onErrorResume(e -> {
+            log.error("租用额度失败 - 用户ID: {}, 接口ID: {}", userId, interfaceId, e);
+            return Mono.empty();
+        });
+    }
+
+    /**
+     * 单次冻结，取用后立即关闭，请求完成时结算
+     */
+    private Mono<CreditLease> reserveSingle(long userId, long interfaceId, QiapiGatewayProperties.CreditLease config) {
+        return reserve(userId, interfaceId, 1, config)
+                .filter(CreditLease::tryAcquire)
+                .doOnNext(CreditLease::close);
+    }
+
+    /**
+     * 结算租用：扣减实际使用次数，归还剩余
+     */
+    private void settle(CreditLease lease) {
+        unsettled.remove(lease);
+        try {
+            if (stopping) {
+                innerCreditService.commit(lease.getToken(), (long) lease.getUsed());
+                return;
+            }
+            innerCreditService.commitAsync(lease.getToken(), (long) lease.getUsed())
+                    .whenComplete((committed, e) -> {
+                        if (e != null) {
+                            log.error("结算额度租用失败，等待后端过期释放 - 凭证: {}", lease.getToken(), e);
+                        } else if (!Boolean.TRUE.equals(committed)) {
+                            log.warn("结算额度租用失败，冻结已过期或已释放 - 凭证: {}, 使用次数: {}",
+                                    lease.getToken(), lease.getUsed());
+                        }
+                    });
+        } catch (Exception e) {
+            log.error("结算额度租用失败，等待后端过期释放 - 凭证: {}", lease.getToken(), e);
+        }
+    }
+
+    /**
+     * 单个 (用户, 接口) 的租用槽位
+     */
+    private class LeaseSlot {
+
+        private final long userId;
+
+        private final long interfaceId;
+
+        private volatile CreditLease current;
+
+        private volatile long lastAccessTime;
+
+        /**
+         * 调用速率（次/秒）的指数加权平均，受 this 保护
+         */
+        private double rate;
+
+        /**
+         * 正在向后端租用的请求，同一槽位同时只发起一次，受 this 保护
+         */
+        private Mono<CreditLease> renewing;
+
+        /**
+         * 最近一次退役、尚未计入速率的租用，受 this 保护
+         */
+        private CreditLease retired;
+
+        private LeaseSlot(long userId, long interfaceId) {
+            this.userId = userId;
+            this.interfaceId = interfaceId;
+        }
+
+        private synchronized Mono<CreditLease> renew(CreditLease stale, QiapiGatewayProperties.CreditLease config) {
+            CreditLease lease = current;
+            if (lease != stale && lease != null && lease.isUsable(System.currentTimeMillis())) {
+                return Mono.just(lease);
+            }
+            if (stale != null) {
+                retire(stale);
+            }
+            if (renewing == null) {
+                int size = nextSize(config);
+                renewing = reserve(userId, interfaceId, size, config)
+                        .doOnNext(this::install)
+                        .doFinally(signal -> clearRenewing())
+                        .cache();
+            }
+            return renewing;
+        }
+
+        private synchronized void install(CreditLease lease) {
+            current = lease;
+        }
+
+        private synchronized void clearRenewing() {
+            renewing = null;
+        }
+
+        private synchronized void retire(CreditLease lease) {
+            if (current == lease) {
+                current = null;
+                retired = lease;
+            }
+            lease.close();
+        }
+
+        /**
+         * 按上一次租用的实际消耗速率更新平均速率，估算下一次租用次数
+         */
+        private int nextSize(QiapiGatewayProperties.CreditLease config) {
+            if (retired != null) {
+                double seconds = Math.max(System.currentTimeMillis() - retired.getCreateTime(), 1L) / 1000D;
+                double observed = retired.getIssued() / seconds;
+                rate = rate == 0 ? observed : config.getRateAlpha() * observed + (1 - config.getRateAlpha()) * rate;
+                retired = null;
+            }
+            long size = (long) Math.ceil(rate * config.getTargetSeconds());
+            return (int) Math.max(config.getMinSize(), Math.min(config.getMaxSize(), size));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.qiapi.qiapigateway.loadbalance;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 一个接口的全部上游实例，按 P2C（power of two choices）选择：随机取两个未剔除的实例，选负载代价较小的一个
+ * <p>
+ * 全部实例都被剔除时不拒绝请求，仍在随机的两个实例中选择（fail open），由熔断器决定是否继续放行
+ *
+ * @author zhexueqi
+ */
+public class InstanceGroup {
+
+    private final List<String> urls;
+
+    private final UpstreamInstance[] instances;
+
+    InstanceGroup(List<String> urls, UpstreamInstance[] instances) {
+        this.urls = urls;
+        this.instances = instances;
+    }
+
+    /**
+     * 选择实例
+     *
+     * @param decayNanos 延迟均值的衰减时间常数（纳秒）
+     */
+    public UpstreamInstance choose(long decayNanos) {
+        int size = instances.length;
+        if (size == 1) {
+            return instances[0];
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long nowMillis = System.currentTimeMillis();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        UpstreamInstance a = instances[first];
+        UpstreamInstance b = instances[second];
+        boolean aEjected = a.isEjected(nowMillis);
+        boolean bEjected = b.isEjected(nowMillis);
+        if (aEjected && bEjected) {
+            UpstreamInstance available = firstAvailable(random.nextInt(size), nowMillis);
+            if (available != null) {
+                return available;
+            }
+        } else if (aEjected) {
+            return b;
+        } else if (bEjected) {
+            return a;
+        }
+        long nowNanos = System.nanoTime();
+        return a.cost(nowNanos, decayNanos) <= b.cost(nowNanos, decayNanos) ? a : b;
+    }
+
+    private UpstreamInstance firstAvailable(int offset, long nowMillis) {
+        for (int i = 0; i < instances.length; i++) {
+            UpstreamInstance instance = instances[(offset + i) % instances.length];
+            if (!instance.isEjected(nowMillis)) {
+                return instance;
+            }
+        }
+        return null;
+    }
+
+    boolean isEmpty() {
+        return instances.length == 0;
+    }
+
+    List<String> getUrls() {
+        return urls;
+    }
+
+    public List<UpstreamInstance> getInstances() {
+        return Collections.unmodifiableList(Arrays.asList(instances));
+    }
+}
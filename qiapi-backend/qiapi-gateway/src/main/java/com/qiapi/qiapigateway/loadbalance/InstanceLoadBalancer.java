@@ -0,0 +1,136 @@
+package com.qiapi.qiapigateway.loadbalance;
+
+import com.qiapi.qiapigateway.route.InterfaceRouteLocator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 接口上游实例的负载均衡
+ * <p>
+ * 实例列表取自接口路由的元数据（由后端随接口路由下发），每个接口一个 {@link InstanceGroup}；
+ * 实例列表变化时重建分组，保留仍存在的实例的统计。路由刷新时清理已没有路由的接口
+ *
+ * @author zhexueqi
+ */
+@Slf4j
+@Component
+public class InstanceLoadBalancer implements ApplicationListener<RefreshRoutesEvent> {
+
+    @Resource
+    private InterfaceRouteLocator interfaceRouteLocator;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 接口ID -> 实例分组
+     */
+    private final Map<Long, InstanceGroup> groups = new ConcurrentHashMap<>();
+
+    private Counter ejections;
+
+    @PostConstruct
+    public void init() {
+        ejections = Counter.builder("gateway.loadbalance.ejections").register(meterRegistry);
+    }
+
+    /**
+     * 路由对应接口的实例分组
+     *
+     * @param route 匹配到的路由
+     * @return 实例分组，不是接口路由或接口没有注册实例时为 null
+     */
+    public InstanceGroup getGroup(Route route) {
+        Long interfaceId = InterfaceRouteLocator.interfaceId(route);
+        List<String> urls = InterfaceRouteLocator.instanceUrls(route);
+        if (interfaceId == null || urls.isEmpty()) {
+            return null;
+        }
+        InstanceGroup group = groups.get(interfaceId);
+        if (group == null || !group.getUrls().equals(urls)) {
+            group = groups.compute(interfaceId, (id, previous) -> {
+                if (previous != null && previous.getUrls().equals(urls)) {
+                    return previous;
+                }
+                log.info("接口 {} 上游实例已更新: {}", id, urls);
+                return buildGroup(urls, previous);
+            });
+        }
+        return group.isEmpty() ? null : group;
+    }
+
+    /**
+     * 记录实例剔除
+     */
+    void ejected(UpstreamInstance instance) {
+        ejections.increment();
+        log.warn("上游实例连续失败，暂时剔除: {}", instance.getUrl());
+    }
+
+    /**
+     * 当前所有接口的实例分组
+     */
+    public Map<Long, InstanceGroup> getGroups() {
+        return Collections.unmodifiableMap(groups);
+    }
+
+    @Override
+    public void onApplicationEvent(RefreshRoutesEvent event) {
+        groups.keySet().retainAll(interfaceRouteLocator.getInterfaceIds());
+    }
+
+    private static InstanceGroup buildGroup(List<String> urls, InstanceGroup previous) {
+        Map<String, UpstreamInstance> existing = new HashMap<>();
+        if (previous != null) {
+            for (UpstreamInstance instance : previous.getInstances()) {
+                existing.put(instance.getUrl(), instance);
+            }
+        }
+        List<UpstreamInstance> instances = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            UpstreamInstance instance = existing.get(url);
+            if (instance == null) {
+                URI uri = parse(url);
+                if (uri == null) {
+                    log.warn("忽略无效的上游实例地址: {}", url);
+                    continue;
+                }
+                instance = new UpstreamInstance(url, uri);
+            }
+            instances.add(instance);
+        }
+        return new InstanceGroup(urls, instances.toArray(new UpstreamInstance[0]));
+    }
+
+    /**
+     * 解析实例地址，只接受 http(s) 绝对地址
+     */
+    private static URI parse(String url) {
+        try {
+            URI uri = URI.create(url);
+            String scheme = uri.getScheme();
+            if (uri.getHost() == null || !("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))) {
+                return null;
+            }
+            return URI.create(scheme.toLowerCase(Locale.ROOT) + "://" + uri.getRawAuthority());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
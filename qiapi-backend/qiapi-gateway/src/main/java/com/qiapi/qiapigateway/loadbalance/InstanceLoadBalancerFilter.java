@@ -0,0 +1,99 @@
+package com.qiapi.qiapigateway.loadbalance;
+
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.RouteToRequestUrlFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import javax.annotation.Resource;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+/**
+ * 上游实例选择过滤器：接口注册了实例时，把转发地址的协议、主机和端口替换为选中的实例，
+ * 并按转发结果更新实例的延迟、进行中请求数与连续失败次数
+ * <p>
+ * 在 {@link RouteToRequestUrlFilter} 生成转发地址之后、实际转发之前执行；
+ * 上游 5xx 与转发异常记为失败，客户端取消只释放进行中计数
+ *
+ * @author zhexueqi
+ */
+@Component
+public class InstanceLoadBalancerFilter implements GlobalFilter, Ordered {
+
+    /**
+     * exchange 属性：选中的上游实例地址
+     */
+    public static final String UPSTREAM_INSTANCE_ATTR = "upstreamInstance";
+
+    /**
+     * 过滤器顺序：紧接在生成转发地址之后
+     */
+    public static final int ORDER = RouteToRequestUrlFilter.ROUTE_TO_URL_FILTER_ORDER + 1;
+
+    @Resource
+    private QiapiGatewayProperties qiapiGatewayProperties;
+
+    @Resource
+    private InstanceLoadBalancer instanceLoadBalancer;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        QiapiGatewayProperties.LoadBalance config = qiapiGatewayProperties.getLoadBalance();
+        URI url = exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR);
+        if (!config.isEnabled() || url == null) {
+            return chain.filter(exchange);
+        }
+        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+        InstanceGroup group = instanceLoadBalancer.getGroup(route);
+        if (group == null) {
+            return chain.filter(exchange);
+        }
+        long decayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(config.getEwmaDecayMillis(), 1));
+        UpstreamInstance instance = group.choose(decayNanos);
+        URI instanceUri = instance.getUri();
+        URI target = UriComponentsBuilder.fromUri(url)
+                .scheme(instanceUri.getScheme())
+                .host(instanceUri.getHost())
+                .port(instanceUri.getPort())
+                .build(true)
+                .toUri();
+        exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR, target);
+        exchange.getAttributes().put(UPSTREAM_INSTANCE_ATTR, instance.getUrl());
+        long startNanos = System.nanoTime();
+        instance.start();
+        return chain.filter(exchange)
+                .doFinally(signalType -> {
+                    if (signalType == SignalType.CANCEL) {
+                        instance.cancel();
+                        return;
+                    }
+                    long nowNanos = System.nanoTime();
+                    HttpStatus status = exchange.getResponse().getStatusCode();
+                    if (signalType == SignalType.ON_ERROR || (status != null && status.is5xxServerError())) {
+                        if (instance.failure(nowNanos - startNanos, nowNanos, decayNanos,
+                                config.getEjectConsecutiveFailures(), config.getEjectMillis())) {
+                            instanceLoadBalancer.ejected(instance);
+                        }
+                    } else {
+                        instance.success(nowNanos - startNanos, nowNanos, decayNanos);
+                    }
+                });
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
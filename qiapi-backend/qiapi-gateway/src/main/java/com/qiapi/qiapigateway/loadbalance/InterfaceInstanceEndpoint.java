@@ -0,0 +1,55 @@
+package com.qiapi.qiapigateway.loadbalance;
+
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 接口上游实例的负载与错误统计：GET /actuator/interfaceinstances
+ *
+ * @author zhexueqi
+ */
+@Component
+@Endpoint(id = "interfaceinstances")
+public class InterfaceInstanceEndpoint {
+
+    @Resource
+    private InstanceLoadBalancer instanceLoadBalancer;
+
+    @Resource
+    private QiapiGatewayProperties qiapiGatewayProperties;
+
+    @ReadOperation
+    public Map<Long, List<Map<String, Object>>> instances() {
+        long decayNanos = TimeUnit.MILLISECONDS.toNanos(
+                Math.max(qiapiGatewayProperties.getLoadBalance().getEwmaDecayMillis(), 1));
+        long nowMillis = System.currentTimeMillis();
+        Map<Long, List<Map<String, Object>>> result = new TreeMap<>();
+        instanceLoadBalancer.getGroups().forEach((interfaceId, group) -> {
+            List<Map<String, Object>> instances = new ArrayList<>();
+            for (UpstreamInstance instance : group.getInstances()) {
+                Map<String, Object> state = new LinkedHashMap<>();
+                state.put("url", instance.getUrl());
+                state.put("ewmaMillis", instance.getEwmaMillis(decayNanos));
+                state.put("inFlight", instance.getInFlight());
+                state.put("requests", instance.getRequests());
+                state.put("failures", instance.getFailures());
+                state.put("consecutiveFailures", instance.getConsecutiveFailures());
+                state.put("ejected", instance.isEjected(nowMillis));
+                state.put("ejectedUntilMillis", instance.getEjectedUntilMillis());
+                instances.add(state);
+            }
+            result.put(interfaceId, instances);
+        });
+        return result;
+    }
+}
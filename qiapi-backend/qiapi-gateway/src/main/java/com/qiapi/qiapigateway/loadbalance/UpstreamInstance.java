@@ -0,0 +1,173 @@
+package com.qiapi.qiapigateway.loadbalance;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 接口的一个上游实例及其统计
+ * <p>
+ * 延迟使用 Peak EWMA：比当前均值慢的响应立即生效，快的响应按距上次观测的时间指数衰减地并入，
+ * 读取时同样衰减，使一段时间没有流量的实例逐渐恢复被选中的机会。
+ * 负载代价 = 延迟均值 × (进行中请求数 + 1)，兼顾慢实例与排队实例
+ *
+ * @author zhexueqi
+ */
+public class UpstreamInstance {
+
+    /**
+     * 还没有延迟样本但已有进行中请求时的代价，避免冷启动的实例瞬间接收大量请求
+     */
+    private static final double PENALTY = Long.MAX_VALUE >> 16;
+
+    private final String url;
+
+    private final URI uri;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    /**
+     * 延迟均值（纳秒）
+     */
+    private double ewmaNanos;
+
+    /**
+     * 上次更新延迟均值的时间（纳秒）
+     */
+    private long ewmaStampNanos = System.nanoTime();
+
+    /**
+     * 剔除截止时间（毫秒时间戳），未剔除时为 0
+     */
+    private volatile long ejectedUntilMillis;
+
+    public UpstreamInstance(String url, URI uri) {
+        this.url = url;
+        this.uri = uri;
+    }
+
+    /**
+     * 负载代价，越小越优先
+     *
+     * @param nowNanos   当前时间（纳秒）
+     * @param decayNanos 延迟均值的衰减时间常数（纳秒）
+     */
+    public double cost(long nowNanos, long decayNanos) {
+        double ewma = decayedEwma(nowNanos, decayNanos);
+        int pending = inFlight.get();
+        if (ewma == 0 && pending > 0) {
+            return PENALTY + pending;
+        }
+        return ewma * (pending + 1);
+    }
+
+    /**
+     * 开始一次请求
+     */
+    public void start() {
+        inFlight.incrementAndGet();
+        requests.increment();
+    }
+
+    /**
+     * 请求成功完成
+     *
+     * @param rttNanos 响应耗时（纳秒）
+     */
+    public void success(long rttNanos, long nowNanos, long decayNanos) {
+        inFlight.decrementAndGet();
+        consecutiveFailures.set(0);
+        observe(rttNanos, nowNanos, decayNanos, false);
+    }
+
+    /**
+     * 请求失败（上游 5xx 或转发异常），连续失败达到阈值时剔除实例
+     *
+     * @param rttNanos                 响应耗时（纳秒）
+     * @param ejectConsecutiveFailures 剔除前允许的连续失败次数
+     * @param ejectMillis              剔除时长（毫秒）
+     * @return 本次失败是否导致实例被剔除
+     */
+    public boolean failure(long rttNanos, long nowNanos, long decayNanos, int ejectConsecutiveFailures,
+                           long ejectMillis) {
+        inFlight.decrementAndGet();
+        failures.increment();
+        // 失败的请求往往很快返回，按不低于当前均值计入，避免出错的实例因“延迟低”吸引更多流量
+        observe(rttNanos, nowNanos, decayNanos, true);
+        if (consecutiveFailures.incrementAndGet() < ejectConsecutiveFailures) {
+            return false;
+        }
+        consecutiveFailures.set(0);
+        ejectedUntilMillis = System.currentTimeMillis() + ejectMillis;
+        return true;
+    }
+
+    /**
+     * 请求被取消（客户端断开），只释放进行中计数
+     */
+    public void cancel() {
+        inFlight.decrementAndGet();
+    }
+
+    public boolean isEjected(long nowMillis) {
+        return ejectedUntilMillis > nowMillis;
+    }
+
+    private synchronized void observe(long rttNanos, long nowNanos, long decayNanos, boolean failed) {
+        long elapsed = Math.max(nowNanos - ewmaStampNanos, 0);
+        double weight = Math.exp(-(double) elapsed / decayNanos);
+        double rtt = failed ? Math.max(rttNanos, ewmaNanos * weight) : Math.max(rttNanos, 0);
+        ewmaStampNanos = nowNanos;
+        if (rtt > ewmaNanos) {
+            ewmaNanos = rtt;
+        } else {
+            ewmaNanos = ewmaNanos * weight + rtt * (1 - weight);
+        }
+    }
+
+    private synchronized double decayedEwma(long nowNanos, long decayNanos) {
+        long elapsed = Math.max(nowNanos - ewmaStampNanos, 0);
+        return ewmaNanos * Math.exp(-(double) elapsed / decayNanos);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public URI getUri() {
+        return uri;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    public long getEjectedUntilMillis() {
+        return ejectedUntilMillis;
+    }
+
+    /**
+     * 当前延迟均值（毫秒，已按时间衰减）
+     */
+    public double getEwmaMillis(long decayNanos) {
+        return decayedEwma(System.nanoTime(), decayNanos) / 1_000_000;
+    }
+}
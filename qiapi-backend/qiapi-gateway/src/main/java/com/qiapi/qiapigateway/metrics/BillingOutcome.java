@@ -0,0 +1,44 @@
+package com.qiapi.qiapigateway.metrics;
+
+/**
+ * 计费结果，作为指标 gateway.billing 的 outcome 标签
+ *
+ * @author zhexueqi
+ */
+public enum BillingOutcome {
+
+    /**
+     * 调用成功，计入租用的额度
+     */
+    CREDIT("credit"),
+
+    /**
+     * 调用成功，扣减调用次数
+     */
+    INVOKE_COUNT("invoke_count"),
+
+    /**
+     * 调用失败、异常或取消，不计费（已租用的额度归还）
+     */
+    NOT_CHARGED("not_charged"),
+
+    /**
+     * 命中缓存且配置为命中不计费
+     */
+    FREE("free"),
+
+    /**
+     * 没有额度也没有调用次数，拒绝调用
+     */
+    NO_QUOTA("no_quota");
+
+    private final String tag;
+
+    BillingOutcome(String tag) {
+        this.tag = tag;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+}
@@ -0,0 +1,148 @@
+package com.qiapi.qiapigateway.metrics;
+
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.util.concurrent.EventExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+import reactor.netty.http.HttpResources;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 事件循环延迟监控：定期向每个 Netty 事件循环提交一个探测任务，记录从提交到执行的等待时间（gateway.eventloop.lag）
+ * <p>
+ * 延迟升高说明有过滤器在事件循环上阻塞或做了过多计算。每个事件循环只有一个复用的探测任务，
+ * 上一次探测还没执行时不重复提交，避免阻塞期间堆积任务。
+ * 每次探测前汇总各事件循环的当前延迟（还没执行的探测按已等待的时间计算）供过载保护读取，关闭请求指标时只汇总不记录
+ *
+ * @author zhexueqi
+ */
+@Slf4j
+@Component
+public class EventLoopLagMonitor implements ApplicationListener<ApplicationReadyEvent> {
+
+    @Resource
+    private QiapiGatewayProperties qiapiGatewayProperties;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * 所有事件循环中最大的当前延迟
+     */
+    private volatile long lagNanos;
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        long intervalMillis = qiapiGatewayProperties.getMetrics().getEventLoopProbeIntervalMillis();
+        boolean enabled = qiapiGatewayProperties.getMetrics().isEnabled()
+                || qiapiGatewayProperties.getOverload().isEnabled();
+        if (!enabled || intervalMillis <= 0 || scheduler != null) {
+            return;
+        }
+        Timer lag = !qiapiGatewayProperties.getMetrics().isEnabled() ? null : Timer.builder("gateway.eventloop.lag")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(
+                        Duration.ofNanos(qiapiGatewayProperties.getMetrics().getHistogramMinMicros() * 1000))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry);
+        // 与 HTTP 服务端共用的全局事件循环
+        List<Probe> probes = new ArrayList<>();
+        for (EventExecutor executor : HttpResources.get().onServer(true)) {
+            probes.add(new Probe(executor, lag));
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-loop-lag-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            long now = System.nanoTime();
+            long max = 0;
+            for (Probe probe : probes) {
+                max = Math.max(max, probe.currentLag(now));
+            }
+            lagNanos = max;
+            probes.forEach(Probe::submit);
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        log.info("事件循环延迟监控已启动，事件循环数: {}", probes.size());
+    }
+
+    /**
+     * 事件循环当前延迟（纳秒），未开启探测时为 0
+     */
+    public long getLagNanos() {
+        return lagNanos;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 单个事件循环的探测任务
+     */
+    private static final class Probe implements Runnable {
+
+        private final EventExecutor executor;
+
+        private final Timer lag;
+
+        private volatile long submittedNanos;
+
+        private volatile boolean pending;
+
+        private volatile long lastLagNanos;
+
+        Probe(EventExecutor executor, Timer lag) {
+            this.executor = executor;
+            this.lag = lag;
+        }
+
+        void submit() {
+            if (pending || executor.isShuttingDown()) {
+                return;
+            }
+            pending = true;
+            submittedNanos = System.nanoTime();
+            try {
+                executor.execute(this);
+            } catch (RuntimeException e) {
+                pending = false;
+            }
+        }
+
+        /**
+         * 当前延迟：探测还没执行时为已等待的时间，否则为上一次探测的延迟
+         */
+        long currentLag(long now) {
+            return pending ? Math.max(lastLagNanos, now - submittedNanos) : lastLagNanos;
+        }
+
+        @Override
+        public void run() {
+            long lagNanos = System.nanoTime() - submittedNanos;
+            lastLagNanos = lagNanos;
+            if (lag != null) {
+                lag.record(lagNanos, TimeUnit.NANOSECONDS);
+            }
+            pending = false;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.qiapi.qiapigateway.metrics;
+
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 网关请求指标：按路由分类与接口统计分阶段耗时直方图、状态码、流量，以及计费结果
+ * <p>
+ * 指标在首次出现时注册并缓存，之后每次记录只查两层 Map 并调用 Micrometer 的计数器与直方图
+ * （基于原子变量，无锁、不分配对象）。单独跟踪的接口数量有上限，超过后归入 interface="other"，
+ * 避免接口增多导致时间序列无限增长
+ *
+ * @author zhexueqi
+ */
+@Component
+public class GatewayMetrics {
+
+    private static final String UNCLASSIFIED_ROUTE = "unclassified";
+
+    private static final Long NO_INTERFACE = -1L;
+
+    private static final Long OTHER_INTERFACE = -2L;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private QiapiGatewayProperties qiapiGatewayProperties;
+
+    /**
+     * 路由分类 -> 接口ID -> 指标
+     */
+    private final Map<String, Map<Long, InterfaceMeters>> meters = new ConcurrentHashMap<>();
+
+    private final AtomicInteger trackedInterfaces = new AtomicInteger();
+
+    private final Counter[] billingCounters = new Counter[BillingOutcome.values().length];
+
+    @PostConstruct
+    public void init() {
+        for (BillingOutcome outcome : BillingOutcome.values()) {
+            billingCounters[outcome.ordinal()] = Counter.builder("gateway.billing")
+                    .tag("outcome", outcome.getTag())
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * 记录一次计费结果
+     */
+    public void billing(BillingOutcome outcome) {
+        billingCounters[outcome.ordinal()].increment();
+    }
+
+    /**
+     * 请求结束时记录耗时、状态码与流量
+     *
+     * @param route       路由分类，未分类时为 null
+     * @param interfaceId 接口ID，不是接口调用时为 null
+     * @param status      响应状态码
+     * @param timing      请求耗时记录
+     * @param endNanos    请求结束时间（纳秒）
+     */
+    void record(String route, Long interfaceId, int status, RequestTiming timing, long endNanos) {
+        InterfaceMeters interfaceMeters = meters(route == null ? UNCLASSIFIED_ROUTE : route, interfaceId);
+        interfaceMeters.total.record(endNanos - timing.getStartNanos(), TimeUnit.NANOSECONDS);
+        interfaceMeters.auth.record(timing.getAuthNanos(endNanos), TimeUnit.NANOSECONDS);
+        if (timing.getRpcNanos() > 0) {
+            interfaceMeters.rpc.record(timing.getRpcNanos(), TimeUnit.NANOSECONDS);
+        }
+        if (timing.getUpstreamNanos() > 0) {
+            interfaceMeters.upstream.record(timing.getUpstreamNanos(), TimeUnit.NANOSECONDS);
+        }
+        interfaceMeters.status(status).increment();
+        if (timing.getBytesIn() > 0) {
+            interfaceMeters.bytesIn.increment(timing.getBytesIn());
+        }
+        if (timing.getBytesOut() > 0) {
+            interfaceMeters.bytesOut.increment(timing.getBytesOut());
+        }
+    }
+
+    private InterfaceMeters meters(String route, Long interfaceId) {
+        Map<Long, InterfaceMeters> routeMeters = meters.computeIfAbsent(route, key -> new ConcurrentHashMap<>());
+        Long key = interfaceId == null ? NO_INTERFACE : interfaceId;
+        InterfaceMeters interfaceMeters = routeMeters.get(key);
+        if (interfaceMeters != null) {
+            return interfaceMeters;
+        }
+        if (key >= 0 && trackedInterfaces.get() >= qiapiGatewayProperties.getMetrics().getMaxInterfaces()) {
+            key = OTHER_INTERFACE;
+        }
+        return routeMeters.computeIfAbsent(key, id -> {
+            if (id >= 0) {
+                trackedInterfaces.incrementAndGet();
+            }
+            return new InterfaceMeters(route, interfaceTag(id));
+        });
+    }
+
+    private static String interfaceTag(Long interfaceId) {
+        if (NO_INTERFACE.equals(interfaceId)) {
+            return "none";
+        }
+        return OTHER_INTERFACE.equals(interfaceId) ? "other" : String.valueOf(interfaceId);
+    }
+
+    /**
+     * 一个路由分类下一个接口的指标
+     */
+    private final class InterfaceMeters {
+
+        private final String route;
+
+        private final String interfaceTag;
+
+        private final Timer total;
+
+        private final Timer auth;
+
+        private final Timer rpc;
+
+        private final Timer upstream;
+
+        private final Counter bytesIn;
+
+        private final Counter bytesOut;
+
+        /**
+         * 状态码 -> 计数器，按需注册
+         */
+        private final AtomicReferenceArray<Counter> statusCounters = new AtomicReferenceArray<>(600);
+
+        InterfaceMeters(String route, String interfaceTag) {
+            this.route = route;
+            this.interfaceTag = interfaceTag;
+            this.total = timer("total");
+            this.auth = timer("auth");
+            this.rpc = timer("rpc");
+            this.upstream = timer("upstream");
+            this.bytesIn = bytes("in");
+            this.bytesOut = bytes("out");
+        }
+
+        Counter status(int status) {
+            int index = status > 0 && status < statusCounters.length() ? status : 0;
+            Counter counter = statusCounters.get(index);
+            if (counter == null) {
+                counter = Counter.builder("gateway.request.status")
+                        .tag("route", route)
+                        .tag("interface", interfaceTag)
+                        .tag("status", index == 0 ? "unknown" : String.valueOf(index))
+                        .register(meterRegistry);
+                statusCounters.set(index, counter);
+            }
+            return counter;
+        }
+
+        private Timer timer(String phase) {
+            QiapiGatewayProperties.Metrics config = qiapiGatewayProperties.getMetrics();
+            return Timer.builder("gateway.request.duration")
+                    .tag("route", route)
+                    .tag("interface", interfaceTag)
+                    .tag("phase", phase)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(config.getHistogramMinMicros() * 1000))
+                    .maximumExpectedValue(Duration.ofMillis(config.getHistogramMaxMillis()))
+                    .register(meterRegistry);
+        }
+
+        private Counter bytes(String direction) {
+            return Counter.builder("gateway.request.bytes")
+                    .baseUnit("bytes")
+                    .tag("route", route)
+                    .tag("interface", interfaceTag)
+                    .tag("direction", direction)
+                    .register(meterRegistry);
+        }
+    }
+}
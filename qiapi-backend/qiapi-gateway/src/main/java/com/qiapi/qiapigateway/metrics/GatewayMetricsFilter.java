@@ -0,0 +1,93 @@
+package com.qiapi.qiapigateway.metrics;
+
+import com.qiapi.qiapigateway.accesslog.AccessLogFilter;
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import javax.annotation.Resource;
+
+/**
+ * 请求指标过滤器：在所有过滤器之前创建 {@link RequestTiming}，统计请求体与响应体字节数，
+ * 请求结束时按路由分类和接口交给 {@link GatewayMetrics} 记录
+ * <p>
+ * 客户端断开的请求按状态码 499 记录
+ *
+ * @author zhexueqi
+ */
+@Component
+public class GatewayMetricsFilter implements GlobalFilter, Ordered {
+
+    /**
+     * 客户端在响应完成前断开
+     */
+    private static final int CLIENT_CLOSED_REQUEST = 499;
+
+    @Resource
+    private QiapiGatewayProperties qiapiGatewayProperties;
+
+    @Resource
+    private GatewayMetrics gatewayMetrics;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        if (!qiapiGatewayProperties.getMetrics().isEnabled()) {
+            return chain.filter(exchange);
+        }
+        RequestTiming timing = new RequestTiming(System.nanoTime());
+        exchange.getAttributes().put(RequestTiming.ATTR, timing);
+        ServerWebExchange measuredExchange = exchange.mutate()
+                .request(new ServerHttpRequestDecorator(exchange.getRequest()) {
+                    @Override
+                    public Flux<DataBuffer> getBody() {
+                        return super.getBody().doOnNext(dataBuffer -> timing.addBytesIn(dataBuffer.readableByteCount()));
+                    }
+                })
+                .response(new ServerHttpResponseDecorator(exchange.getResponse()) {
+                    @Override
+                    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                        return super.writeWith(Flux.from(body)
+                                .doOnNext(dataBuffer -> timing.addBytesOut(dataBuffer.readableByteCount())));
+                    }
+
+                    @Override
+                    public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+                        return super.writeAndFlushWith(Flux.from(body).map(chunk -> Flux.from(chunk)
+                                .doOnNext(dataBuffer -> timing.addBytesOut(dataBuffer.readableByteCount()))));
+                    }
+                })
+                .build();
+        return chain.filter(measuredExchange)
+                .doFinally(signalType -> {
+                    HttpStatus statusCode = exchange.getResponse().getStatusCode();
+                    int status;
+                    if (signalType == SignalType.CANCEL) {
+                        status = CLIENT_CLOSED_REQUEST;
+                    } else if (statusCode != null) {
+                        status = statusCode.value();
+                    } else {
+                        status = signalType == SignalType.ON_ERROR ? 500 : 200;
+                    }
+                    gatewayMetrics.record(exchange.getAttribute(AccessLogFilter.ROUTE_ATTR),
+                            exchange.getAttribute(AccessLogFilter.INTERFACE_ID_ATTR), status, timing,
+                            System.nanoTime());
+                });
+    }
+
+    @Override
+    public int getOrder() {
+        // 在访问日志过滤器之前，覆盖所有分支（包括被拒绝的请求）
+        return -3;
+    }
+}
@@ -0,0 +1,100 @@
+package com.qiapi.qiapigateway.metrics;
+
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * 单个请求的分阶段耗时与流量，由 {@link GatewayMetricsFilter} 创建并放入 exchange 属性，请求结束时统一记录
+ * <p>
+ * 阶段互不重叠：后端 RPC 为等待后端 Dubbo 调用的时间，上游为转发到收到上游响应头的时间，
+ * 鉴权为开始转发（或被拒绝）之前除后端 RPC 以外的时间。同一请求的各阶段顺序执行，字段不需要同步
+ *
+ * @author zhexueqi
+ */
+public class RequestTiming {
+
+    /**
+     * exchange 属性：请求耗时记录
+     */
+    public static final String ATTR = RequestTiming.class.getName();
+
+    private final long startNanos;
+
+    private long rpcNanos;
+
+    private boolean forwarded;
+
+    private long upstreamStartNanos;
+
+    private long upstreamNanos;
+
+    private long bytesIn;
+
+    private long bytesOut;
+
+    RequestTiming(long startNanos) {
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * 统计后端 RPC 的等待时间，未开启指标时原样返回
+     *
+     * @param exchange exchange
+     * @param rpc      后端调用
+     */
+    public static <T> Mono<T> timeRpc(ServerWebExchange exchange, Mono<T> rpc) {
+        RequestTiming timing = exchange.getAttribute(ATTR);
+        if (timing == null) {
+            return rpc;
+        }
+        return Mono.defer(() -> {
+            long rpcStartNanos = System.nanoTime();
+            return rpc.doFinally(signalType -> timing.rpcNanos += System.nanoTime() - rpcStartNanos);
+        });
+    }
+
+    void upstreamStarted(long nowNanos) {
+        forwarded = true;
+        upstreamStartNanos = nowNanos;
+    }
+
+    void upstreamFinished(long nowNanos) {
+        upstreamNanos = nowNanos - upstreamStartNanos;
+    }
+
+    void addBytesIn(long bytes) {
+        bytesIn += bytes;
+    }
+
+    void addBytesOut(long bytes) {
+        bytesOut += bytes;
+    }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    long getRpcNanos() {
+        return rpcNanos;
+    }
+
+    long getUpstreamNanos() {
+        return upstreamNanos;
+    }
+
+    /**
+     * 鉴权耗时：开始转发前（未转发时到请求结束）的时间减去后端 RPC
+     */
+    long getAuthNanos(long endNanos) {
+        long authEnd = forwarded ? upstreamStartNanos : endNanos;
+        return Math.max(authEnd - startNanos - rpcNanos, 0);
+    }
+
+    long getBytesIn() {
+        return bytesIn;
+    }
+
+    long getBytesOut() {
+        return bytesOut;
+    }
+}
@@ -0,0 +1,37 @@
+package com.qiapi.qiapigateway.metrics;
+
+import com.qiapi.qiapigateway.loadbalance.InstanceLoadBalancerFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * 上游耗时过滤器：紧挨着实际转发执行，记录从开始转发到收到上游响应头的时间
+ * <p>
+ * 命中缓存、被拒绝等没有转发的请求不会经过这里
+ *
+ * @author zhexueqi
+ */
+@Component
+public class UpstreamTimingFilter implements GlobalFilter, Ordered {
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        RequestTiming timing = exchange.getAttribute(RequestTiming.ATTR);
+        if (timing == null) {
+            return chain.filter(exchange);
+        }
+        timing.upstreamStarted(System.nanoTime());
+        return chain.filter(exchange)
+                .doFinally(signalType -> timing.upstreamFinished(System.nanoTime()));
+    }
+
+    @Override
+    public int getOrder() {
+        // 在选择上游实例之后
+        return InstanceLoadBalancerFilter.ORDER + 1;
+    }
+}
@@ -0,0 +1,167 @@
+package com.qiapi.qiapigateway.nonce;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求防重放：记录 窗口 + 时钟偏差容忍 内出现过的 (accessKey, nonce)
+ * <p>
+ * 时间分片布隆过滤器是第一道筛选，未命中的一定未在本节点登记过；命中只说明可能重复，再用覆盖整个窗口的精确记录确认，
+ * 误判的请求照常放行。单节点时精确记录在本地（上限按预计速率 x 记录时长确定），同一 nonce 并发到达时只有一个登记成功；
+ * 开启 Redis 时精确记录为 Redis 中带过期时间的 key，SET NX 同时拦截发往其他节点的重放。
+ * <p>
+ * {@link #seen} 只读，在远程调用之前拒绝已登记的 nonce；{@link #tryRecord} 在签名校验通过后登记，伪造的请求不能占用 nonce
+ *
+ * @author zhexueqi
+ */
+@Slf4j
+@Component
+public class NonceStore {
+
+    private static final String REDIS_KEY_PREFIX = "gateway:nonce:";
+
+    @Resource
+    private QiapiGatewayProperties qiapiGatewayProperties;
+
+    @Resource
+    private ObjectProvider<ReactiveStringRedisTemplate> redisTemplateProvider;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private TimeSlicedBloomFilter bloomFilter;
+
+    /**
+     * 本地精确记录，值无意义；开启 Redis 时为 null
+     */
+    private Cache<String, Boolean> exactNonces;
+
+    private long retentionMillis;
+
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    private Counter localRejected;
+
+    private Counter redisRejected;
+
+    private Counter falsePositives;
+
+    private Counter exactEvicted;
+
+    @PostConstruct
+    public void init() {
+        QiapiGatewayProperties.Nonce config = qiapiGatewayProperties.getNonce();
+        // 时间戳最多超前 maxFutureSkewSeconds，nonce 需保留到 时间戳 + 窗口
+        long retentionSeconds = config.getWindowSeconds() + Math.max(0L, config.getMaxFutureSkewSeconds());
+        retentionMillis = TimeUnit.SECONDS.toMillis(retentionSeconds);
+        long expectedPerWindow = config.getExpectedRps() * retentionSeconds;
+        bloomFilter = new TimeSlicedBloomFilter(retentionMillis, config.getSliceCount(), expectedPerWindow,
+                config.getFpp());
+        if (config.isRedisEnabled()) {
+            redisTemplate = redisTemplateProvider.getIfAvailable();
+            if (redisTemplate == null) {
+                log.warn("未配置 Redis，nonce 防重放仅在本节点生效");
+            }
+        }
+        localRejected = Counter.builder("gateway.nonce.rejected").tag("store", "local").register(meterRegistry);
+        redisRejected = Counter.builder("gateway.nonce.rejected").tag("store", "redis").register(meterRegistry);
+        falsePositives = Counter.builder("gateway.nonce.bloom.false.positive").register(meterRegistry);
+        exactEvicted = Counter.builder("gateway.nonce.exact.evicted").register(meterRegistry);
+        long exactMaxEntries = config.getExactMaxEntries() > 0 ? config.getExactMaxEntries() : expectedPerWindow;
+        if (redisTemplate == null) {
+            exactNonces = Caffeine.newBuilder()
+                    .maximumSize(exactMaxEntries)
+                    .expireAfterWrite(retentionSeconds, TimeUnit.SECONDS)
+                    .removalListener((String key, Boolean value, RemovalCause cause) -> {
+                        if (cause == RemovalCause.SIZE) {
+                            // 窗口内的记录被淘汰，之后的重放无法确认
+                            exactEvicted.increment();
+                        }
+                    })
+                    .build();
+        }
+        log.info("nonce 防重放初始化 - 时间片: {} x {} 字节, 哈希函数: {}, 精确记录: {}", bloomFilter.getSliceCount(),
+                bloomFilter.sliceBytes(), bloomFilter.getHashCount(),
+                redisTemplate != null ? "Redis" : "本地 " + exactMaxEntries + " 条");
+    }
+
+    /**
+     * 查询 nonce 是否已登记（只读，不登记）
+     *
+     * @param accessKey accessKey
+     * @param nonce     nonce
+     * @return 本节点或 Redis 中已登记时为 true
+     */
+    public Mono<Boolean> seen(String accessKey, String nonce) {
+        String key = accessKey + ":" + nonce;
+        if (!bloomFilter.mightContain(key, System.currentTimeMillis())) {
+            return Mono.just(false);
+        }
+        if (redisTemplate == null) {
+            return Mono.just(exactNonces.getIfPresent(key) != null);
+        }
+        return redisTemplate.hasKey(REDIS_KEY_PREFIX + key)
+                // Redis 不可用时交给签名校验后的登记判断
+                .onErrorResume(e -> {
+                    log.error("Redis 查询 nonce 失败", e);
+                    return Mono.just(false);
+                })
+                .defaultIfEmpty(false);
+    }
+
+    /**
+     * 登记 nonce
+     *
+     * @param accessKey accessKey
+     * @param nonce     nonce
+     * @return 是否首次出现；重复时返回 false
+     */
+    public Mono<Boolean> tryRecord(String accessKey, String nonce) {
+        String key = accessKey + ":" + nonce;
+        boolean bloomHit = bloomFilter.putIfAbsent(key, System.currentTimeMillis());
+        if (redisTemplate == null) {
+            // 未命中时登记供之后确认（同一 nonce 并发到达时可能都未命中，只有一个登记成功）；命中时以精确记录为准
+            if (exactNonces.asMap().putIfAbsent(key, Boolean.TRUE) != null) {
+                localRejected.increment();
+                return Mono.just(false);
+            }
+            if (bloomHit) {
+                falsePositives.increment();
+            }
+            return Mono.just(true);
+        }
+        Duration ttl = Duration.ofMillis(retentionMillis);
+        return redisTemplate.opsForValue().setIfAbsent(REDIS_KEY_PREFIX + key, "1", ttl)
+                .map(recorded -> {
+                    if (!recorded) {
+                        redisRejected.increment();
+                    } else if (bloomHit) {
+                        falsePositives.increment();
+                    }
+                    return recorded;
+                })
+                // Redis 不可用时：布隆过滤器未命中的一定未在本节点出现过，放行；命中的无法确认，按重放拒绝
+                .onErrorResume(e -> {
+                    log.error("Redis 登记 nonce 失败", e);
+                    if (bloomHit) {
+                        localRejected.increment();
+                    }
+                    return Mono.just(!bloomHit);
+                })
+                .defaultIfEmpty(!bloomHit);
+    }
+}
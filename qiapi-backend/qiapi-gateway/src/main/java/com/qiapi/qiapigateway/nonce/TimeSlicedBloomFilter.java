@@ -0,0 +1,178 @@
+package com.qiapi.qiapigateway.nonce;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 按时间分片轮转的布隆过滤器
+ * <p>
+ * 窗口被切成若干时间片，每片一个固定大小的布隆过滤器，写入当前片，查询覆盖窗口内所有片；
+ * 时间片过期后整片清空复用，内存占用固定，与请求量无关。位操作基于 CAS，读写均无锁。
+ *
+ * @author zhexueqi
+ */
+public class TimeSlicedBloomFilter {
+
+    private final Slice[] slices;
+
+    private final long sliceMillis;
+
+    private final int bitCount;
+
+    private final int hashCount;
+
+    /**
+     * @param windowMillis      需要记住元素的时长
+     * @param sliceCount        窗口切分的时间片数
+     * @param expectedPerWindow 一个窗口内预计写入的元素数
+     * @param fpp               期望的误判率
+     */
+    public TimeSlicedBloomFilter(long windowMillis, int sliceCount, long expectedPerWindow, double fpp) {
+        this.sliceMillis = Math.max(windowMillis / sliceCount, 1L);
+        // 多一片保证窗口边界上的元素也能查到
+        this.slices = new Slice[sliceCount + 1];
+        long expectedPerSlice = Math.max(expectedPerWindow / sliceCount, 1L);
+        long bits = (long) Math.ceil(-expectedPerSlice * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        this.bitCount = (int) Math.min(Math.max(bits, 64L), Integer.MAX_VALUE - 63L);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedPerSlice * Math.log(2)));
+        for (int i = 0; i < slices.length; i++) {
+            slices[i] = new Slice((bitCount + 63) / 64);
+        }
+    }
+
+    /**
+     * 写入元素
+     *
+     * @param value 元素
+     * @return 元素是否可能已存在（窗口内任一片命中）；为 false 时一定是首次出现
+     */
+    public boolean putIfAbsent(String value, long nowMillis) {
+        long epoch = nowMillis / sliceMillis;
+        long hash1 = hash(value);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L);
+        for (long e = epoch - slices.length + 1; e < epoch; e++) {
+            Slice slice = slices[index(e)];
+            if (slice.epoch == e && slice.mightContain(hash1, hash2)) {
+                return true;
+            }
+        }
+        Slice current = slices[index(epoch)];
+        if (current.epoch != epoch) {
+            current.reset(epoch);
+        }
+        return !current.put(hash1, hash2);
+    }
+
+    /**
+     * 查询元素是否可能已存在（不写入）
+     *
+     * @param value 元素
+     * @return 窗口内任一片命中时为 true；为 false 时一定未写入过
+     */
+    public boolean mightContain(String value, long nowMillis) {
+        long epoch = nowMillis / sliceMillis;
+        long hash1 = hash(value);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L);
+        for (long e = epoch - slices.length + 1; e <= epoch; e++) {
+            Slice slice = slices[index(e)];
+            if (slice.epoch == e && slice.mightContain(hash1, hash2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 单片占用的字节数
+     */
+    public long sliceBytes() {
+        return (long) slices[0].bits.length() * Long.BYTES;
+    }
+
+    public int getSliceCount() {
+        return slices.length;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    private int index(long epoch) {
+        return (int) Math.floorMod(epoch, (long) slices.length);
+    }
+
+    private static long hash(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        long h = 0xCBF29CE484222325L;
+        for (byte b : bytes) {
+            h ^= b;
+            h *= 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private class Slice {
+
+        private final AtomicLongArray bits;
+
+        private volatile long epoch = Long.MIN_VALUE;
+
+        private Slice(int words) {
+            this.bits = new AtomicLongArray(words);
+        }
+
+        private synchronized void reset(long newEpoch) {
+            if (epoch == newEpoch) {
+                return;
+            }
+            for (int i = 0; i < bits.length(); i++) {
+                bits.set(i, 0L);
+            }
+            epoch = newEpoch;
+        }
+
+        private boolean mightContain(long hash1, long hash2) {
+            for (int i = 0; i < hashCount; i++) {
+                int bit = bitIndex(hash1, hash2, i);
+                if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return 是否有位从 0 变为 1（即元素在本片中是新的）
+         */
+        private boolean put(long hash1, long hash2) {
+            boolean changed = false;
+            for (int i = 0; i < hashCount; i++) {
+                int bit = bitIndex(hash1, hash2, i);
+                int word = bit >>> 6;
+                long mask = 1L << bit;
+                long old;
+                while (((old = bits.get(word)) & mask) == 0) {
+                    if (bits.compareAndSet(word, old, old | mask)) {
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+            return changed;
+        }
+
+        private int bitIndex(long hash1, long hash2, int i) {
+            long combined = hash1 + i * hash2;
+            return (int) Math.floorMod(combined, (long) bitCount);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.qiapi.qiapigateway.overload;
+
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import com.qiapi.qiapigateway.route.RouteClassifier;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.Resource;
+
+/**
+ * 过载准入过滤器：在所有过滤器之前按路由优先级判断是否接收请求，网关过载时直接返回 503
+ * <p>
+ * 被拒绝的请求不经过链路追踪、请求指标与鉴权，尽量少占用已经过载的事件循环，
+ * 拒绝数量见 gateway.overload.shed 指标
+ *
+ * @author zhexueqi
+ */
+@Component
+public class AdmissionFilter implements GlobalFilter, Ordered {
+
+    @Resource
+    private QiapiGatewayProperties qiapiGatewayProperties;
+
+    @Resource
+    private RouteClassifier routeClassifier;
+
+    @Resource
+    private OverloadController overloadController;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        if (!qiapiGatewayProperties.getOverload().isEnabled()) {
+            return chain.filter(exchange);
+        }
+        String path = exchange.getRequest().getPath().value();
+        if (!overloadController.tryEnter(routeClassifier.classify(path).getPriority())) {
+            ServerHttpResponse response = exchange.getResponse();
+            response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER,
+                    String.valueOf(qiapiGatewayProperties.getOverload().getRetryAfterSeconds()));
+            return response.setComplete();
+        }
+        return chain.filter(exchange)
+                .doFinally(signalType -> overloadController.exit());
+    }
+
+    @Override
+    public int getOrder() {
+        // 在链路追踪之前
+        return -5;
+    }
+}
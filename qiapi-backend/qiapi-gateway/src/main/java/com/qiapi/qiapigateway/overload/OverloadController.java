@@ -0,0 +1,143 @@
+package com.qiapi.qiapigateway.overload;
+
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import com.qiapi.qiapigateway.metrics.EventLoopLagMonitor;
+import com.qiapi.qiapigateway.route.RoutePriority;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 网关过载保护：按事件循环延迟、处理中的请求数与等待返回的 Dubbo 调用数判断网关负载，过载时按路由优先级拒绝请求
+ * <p>
+ * 负载为三项指标各自与上限之比的最大值，达到路由优先级对应的阈值时拒绝，低优先级的阈值更低、最先被拒绝。
+ * 事件循环延迟由 {@link EventLoopLagMonitor} 定期汇总，另外两项为原子计数，每次判断只有几次读取与比较
+ *
+ * @author zhexueqi
+ */
+@Component
+public class OverloadController {
+
+    @Resource
+    private QiapiGatewayProperties qiapiGatewayProperties;
+
+    @Resource
+    private EventLoopLagMonitor eventLoopLagMonitor;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger pendingRpc = new AtomicInteger();
+
+    private final Map<RoutePriority, Counter> shedCounters = new EnumMap<>(RoutePriority.class);
+
+    @PostConstruct
+    public void init() {
+        for (RoutePriority priority : RoutePriority.values()) {
+            shedCounters.put(priority, Counter.builder("gateway.overload.shed")
+                    .tag("priority", priority.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        Gauge.builder("gateway.overload.inflight", inFlight, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("gateway.overload.pending.rpc", pendingRpc, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("gateway.overload.load", this, OverloadController::load).register(meterRegistry);
+    }
+
+    /**
+     * 判断是否接收请求，接收时计入处理中的请求，请求结束后需调用 {@link #exit()}
+     *
+     * @param priority 路由优先级
+     * @return 是否接收
+     */
+    public boolean tryEnter(RoutePriority priority) {
+        if (shouldShed(priority)) {
+            return false;
+        }
+        inFlight.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 判断当前负载下是否拒绝该优先级的请求，拒绝时计入拒绝数；
+     * 已接收的请求鉴权后可按用户等级再次判断（免费用户按低优先级）
+     *
+     * @param priority 优先级
+     * @return 是否拒绝，关闭过载保护时始终为 false
+     */
+    public boolean shouldShed(RoutePriority priority) {
+        QiapiGatewayProperties.Overload overload = qiapiGatewayProperties.getOverload();
+        if (!overload.isEnabled() || load(overload) < shedLoad(overload, priority)) {
+            return false;
+        }
+        shedCounters.get(priority).increment();
+        return true;
+    }
+
+    /**
+     * 请求结束
+     */
+    public void exit() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * 开始一次 Dubbo 调用
+     */
+    public void rpcStarted() {
+        pendingRpc.incrementAndGet();
+    }
+
+    /**
+     * Dubbo 调用返回（成功、失败或超时）
+     */
+    public void rpcFinished() {
+        pendingRpc.decrementAndGet();
+    }
+
+    /**
+     * 当前负载，1 表示某项指标达到上限
+     */
+    public double load() {
+        return load(qiapiGatewayProperties.getOverload());
+    }
+
+    private double load(QiapiGatewayProperties.Overload overload) {
+        double load = ratio(inFlight.get(), overload.getMaxInFlight());
+        load = Math.max(load, ratio(pendingRpc.get(), overload.getMaxPendingRpc()));
+        long lagNanos = eventLoopLagMonitor.getLagNanos();
+        return Math.max(load, ratio(lagNanos, TimeUnit.MILLISECONDS.toNanos(overload.getMaxEventLoopLagMillis())));
+    }
+
+    private static double ratio(long value, long limit) {
+        return limit > 0 ? (double) value / limit : 0;
+    }
+
+    private static double shedLoad(QiapiGatewayProperties.Overload overload, RoutePriority priority) {
+        switch (priority) {
+            case HIGH:
+                return overload.getHighPriorityShedLoad();
+            case LOW:
+                return overload.getLowPriorityShedLoad();
+            default:
+                return overload.getNormalPriorityShedLoad();
+        }
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getPendingRpc() {
+        return pendingRpc.get();
+    }
+}
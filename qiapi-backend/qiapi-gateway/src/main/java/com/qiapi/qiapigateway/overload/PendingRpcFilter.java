@@ -0,0 +1,57 @@
+package com.qiapi.qiapigateway.overload;
+
+import org.apache.dubbo.common.constants.CommonConstants;
+import org.apache.dubbo.common.extension.Activate;
+import org.apache.dubbo.rpc.Filter;
+import org.apache.dubbo.rpc.Invocation;
+import org.apache.dubbo.rpc.Invoker;
+import org.apache.dubbo.rpc.Result;
+import org.apache.dubbo.rpc.RpcException;
+
+/**
+ * 统计网关等待返回的 Dubbo 调用数，供 {@link OverloadController} 判断负载
+ * <p>
+ * {@link OverloadController} 由 Dubbo 按 setter 从 Spring 容器注入，未注入时不统计；
+ * 异步调用在结果完成（成功、失败或超时）时计为返回，调用时直接抛出异常同样计为返回
+ *
+ * @author zhexueqi
+ */
+@Activate(group = CommonConstants.CONSUMER)
+public class PendingRpcFilter implements Filter, Filter.Listener {
+
+    /**
+     * 标记已计入等待中的调用，保证只减一次
+     */
+    private static final String COUNTED_KEY = "qiapi.pendingRpc";
+
+    private OverloadController overloadController;
+
+    public void setOverloadController(OverloadController overloadController) {
+        this.overloadController = overloadController;
+    }
+
+    @Override
+    public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
+        if (overloadController != null) {
+            overloadController.rpcStarted();
+            invocation.put(COUNTED_KEY, Boolean.TRUE);
+        }
+        return invoker.invoke(invocation);
+    }
+
+    @Override
+    public void onResponse(Result appResponse, Invoker<?> invoker, Invocation invocation) {
+        finish(invocation);
+    }
+
+    @Override
+    public void onError(Throwable t, Invoker<?> invoker, Invocation invocation) {
+        finish(invocation);
+    }
+
+    private void finish(Invocation invocation) {
+        if (invocation.getAttributes().remove(COUNTED_KEY) != null) {
+            overloadController.rpcFinished();
+        }
+    }
+}
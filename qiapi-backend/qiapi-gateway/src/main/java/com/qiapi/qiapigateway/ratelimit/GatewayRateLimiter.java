@@ -0,0 +1,301 @@
+package com.qiapi.qiapigateway.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 网关限流：按 accessKey、接口（请求路径）、accessKey + 接口三个维度限制请求速率
+ * <p>
+ * 同一次检查的各维度全部通过才放行，任一维度超限时已取用的令牌会归还。签名认证的请求分两步检查：
+ * 签名校验和远程调用之前只按接口维度检查（{@link #acquireInterface}），签名校验通过后再按 accessKey 相关的维度检查
+ * （{@link #acquireAuthenticated}）。请求头中的 accessKey 在签名校验前不可信，伪造大量 accessKey 不能挤出正常用户的令牌桶，
+ * 也不会在 Redis 中为每个伪造的 accessKey 生成限流 key。
+ * <ul>
+ *     <li>local 模式：每个 key 一个无锁令牌桶，只限制本节点</li>
+ *     <li>redis 模式：Lua 脚本原子地执行同样的 GCRA 令牌桶（rate 与 burst 含义相同），多个网关节点共享配额；
+ *     Redis 不可用时退回本地令牌桶</li>
+ * </ul>
+ * 限流规则每次请求从 {@link QiapiGatewayProperties} 读取，通过 /actuator/refresh 刷新配置后立即生效，规则变化的令牌桶会重建
+ *
+ * @author zhexueqi
+ */
+@Slf4j
+@Component
+public class GatewayRateLimiter implements ApplicationListener<EnvironmentChangeEvent> {
+
+    private static final String CONFIG_PREFIX = "qiapi.gateway.rate-limit";
+
+    private static final String REDIS_KEY_PREFIX = "gateway:ratelimit:gcra:";
+
+    private static final String MODE_REDIS = "redis";
+
+    private static final String[] SCOPES = {"accessKey", "interface", "userInterface"};
+
+    private static final int ACCESS_KEY = 0;
+
+    private static final int INTERFACE = 1;
+
+    private static final int USER_INTERFACE = 2;
+
+    private static final int[] ALL_SCOPES = {ACCESS_KEY, INTERFACE, USER_INTERFACE};
+
+    private static final int[] CALLER_SCOPES = {ACCESS_KEY, USER_INTERFACE};
+
+    private static final int[] INTERFACE_SCOPES = {INTERFACE};
+
+    private final DefaultRedisScript<Long> gcraScript = new DefaultRedisScript<>();
+
+    private final DefaultRedisScript<Long> releaseScript = new DefaultRedisScript<>();
+
+    @Resource
+    private QiapiGatewayProperties qiapiGatewayProperties;
+
+    @Resource
+    private ObjectProvider<ReactiveStringRedisTemplate> redisTemplateProvider;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 限流 key -> 令牌桶
+     */
+    private Cache<String, TokenBucket> buckets;
+
+    private Counter[] rejected;
+
+    @PostConstruct
+    public void init() {
+        gcraScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/rate_limit_gcra.lua")));
+        gcraScript.setResultType(Long.class);
+        releaseScript.setScriptSource(new ResourceScriptSource(
+                new ClassPathResource("lua/rate_limit_gcra_release.lua")));
+        releaseScript.setResultType(Long.class);
+        buckets = Caffeine.newBuilder()
+                .maximumSize(qiapiGatewayProperties.getRateLimit().getMaximumBuckets())
+                .expireAfterAccess(10, TimeUnit.MINUTES)
+                .build();
+        rejected = new Counter[SCOPES.length];
+        for (int i = 0; i < SCOPES.length; i++) {
+            rejected[i] = Counter.builder("gateway.ratelimit.rejected").tag("scope", SCOPES[i])
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * 检查并取用一次请求配额（三个维度）
+     *
+     * @param accessKey accessKey
+     * @param path      请求路径
+     * @return 0 表示放行，否则为建议客户端等待的毫秒数
+     */
+    public Mono<Long> acquire(String accessKey, String path) {
+        return acquire(accessKey, path, ALL_SCOPES);
+    }
+
+    /**
+     * 签名校验前只按接口维度检查并取用一次请求配额
+     *
+     * @param path 请求路径
+     * @return 0 表示放行，否则为建议客户端等待的毫秒数
+     */
+    public Mono<Long> acquireInterface(String path) {
+        return acquire(null, path, INTERFACE_SCOPES);
+    }
+
+    /**
+     * 签名校验通过后按 accessKey 相关的维度检查并取用一次请求配额
+     *
+     * @param accessKey         已通过签名校验的 accessKey
+     * @param path              请求路径
+     * @param interfaceAcquired 签名校验前是否已按接口维度取用（是则本次超限时归还该令牌，否则三个维度一起检查）
+     * @return 0 表示放行，否则为建议客户端等待的毫秒数
+     */
+    public Mono<Long> acquireAuthenticated(String accessKey, String path, boolean interfaceAcquired) {
+        if (!interfaceAcquired) {
+            return acquire(accessKey, path, ALL_SCOPES);
+        }
+        return acquire(accessKey, path, CALLER_SCOPES)
+                .flatMap(waitMillis -> waitMillis > 0
+                        // 被 accessKey 维度拒绝的请求不占用接口的配额
+                        ? releaseInterface(path).thenReturn(waitMillis)
+                        : Mono.just(waitMillis));
+    }
+
+    private Mono<Long> acquire(String accessKey, String path, int[] scopes) {
+        QiapiGatewayProperties.RateLimit config = qiapiGatewayProperties.getRateLimit();
+        if (!config.isEnabled()) {
+            return Mono.just(0L);
+        }
+        String[] keys = new String[scopes.length];
+        QiapiGatewayProperties.Limit[] limits = new QiapiGatewayProperties.Limit[scopes.length];
+        for (int i = 0; i < scopes.length; i++) {
+            keys[i] = key(scopes[i], accessKey, path);
+            limits[i] = limit(config, scopes[i], accessKey, path);
+        }
+        if (MODE_REDIS.equalsIgnoreCase(config.getMode())) {
+            ReactiveStringRedisTemplate redisTemplate = redisTemplateProvider.getIfAvailable();
+            if (redisTemplate != null) {
+                return acquireRedis(redisTemplate, scopes, keys, limits)
+                        // Redis 不可用时退回本地限流，不影响正常请求
+                        .onErrorResume(e -> {
+                            log.error("Redis 限流失败，使用本地令牌桶", e);
+                            return Mono.fromSupplier(() -> acquireLocal(scopes, keys, limits));
+                        });
+            }
+        }
+        return Mono.just(acquireLocal(scopes, keys, limits));
+    }
+
+    /**
+     * 归还签名校验前按接口维度取用的令牌
+     */
+    private Mono<Void> releaseInterface(String path) {
+        QiapiGatewayProperties.RateLimit config = qiapiGatewayProperties.getRateLimit();
+        QiapiGatewayProperties.Limit limit = limit(config, INTERFACE, null, path);
+        if (limit.getRate() <= 0) {
+            return Mono.empty();
+        }
+        String key = key(INTERFACE, null, path);
+        if (MODE_REDIS.equalsIgnoreCase(config.getMode())) {
+            ReactiveStringRedisTemplate redisTemplate = redisTemplateProvider.getIfAvailable();
+            if (redisTemplate != null) {
+                List<String> args = Collections.singletonList(String.valueOf(intervalMicros(limit)));
+                return redisTemplate.execute(releaseScript, Collections.singletonList(REDIS_KEY_PREFIX + key), args)
+                        .then()
+                        .onErrorResume(e -> {
+                            log.warn("Redis 限流令牌归还失败: {}", e.toString());
+                            return Mono.empty();
+                        });
+            }
+        }
+        TokenBucket bucket = buckets.getIfPresent(key);
+        if (bucket != null) {
+            bucket.release();
+        }
+        return Mono.empty();
+    }
+
+    private static String key(int scope, String accessKey, String path) {
+        switch (scope) {
+            case ACCESS_KEY:
+                return SCOPES[scope] + ":" + accessKey;
+            case INTERFACE:
+                return SCOPES[scope] + ":" + path;
+            default:
+                return SCOPES[scope] + ":" + accessKey + " " + path;
+        }
+    }
+
+    private static QiapiGatewayProperties.Limit limit(QiapiGatewayProperties.RateLimit config, int scope,
+            String accessKey, String path) {
+        switch (scope) {
+            case ACCESS_KEY:
+                return config.getAccessKeyOverrides().getOrDefault(accessKey, config.getAccessKey());
+            case INTERFACE:
+                return config.getInterfaceOverrides().getOrDefault(path, config.getInterfaceInfo());
+            default:
+                return config.getUserInterface();
+        }
+    }
+
+    /**
+     * 与 TokenBucket 相同的发放间隔，单位为微秒
+     */
+    private static long intervalMicros(QiapiGatewayProperties.Limit limit) {
+        return Math.max((long) (TimeUnit.SECONDS.toMicros(1) / limit.getRate()), 1L);
+    }
+
+    @Override
+    public void onApplicationEvent(EnvironmentChangeEvent event) {
+        if (event.getKeys().stream().anyMatch(key -> key.startsWith(CONFIG_PREFIX))) {
+            log.info("限流配置已刷新，新规则在下一次请求时生效");
+        }
+    }
+
+    private long acquireLocal(int[] scopes, String[] keys, QiapiGatewayProperties.Limit[] limits) {
+        long now = System.nanoTime();
+        TokenBucket[] acquired = new TokenBucket[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            QiapiGatewayProperties.Limit limit = limits[i];
+            if (limit.getRate() <= 0) {
+                continue;
+            }
+            TokenBucket bucket = bucket(keys[i], limit);
+            long waitNanos = bucket.tryAcquire(now);
+            if (waitNanos > 0) {
+                for (TokenBucket previous : acquired) {
+                    if (previous != null) {
+                        previous.release();
+                    }
+                }
+                rejected[scopes[i]].increment();
+                return Math.max(TimeUnit.NANOSECONDS.toMillis(waitNanos), 1L);
+            }
+            acquired[i] = bucket;
+        }
+        return 0L;
+    }
+
+    private TokenBucket bucket(String key, QiapiGatewayProperties.Limit limit) {
+        TokenBucket bucket = buckets.getIfPresent(key);
+        if (bucket != null && bucket.matches(limit.getRate(), limit.getBurst())) {
+            return bucket;
+        }
+        // 首次访问或规则已变更
+        return buckets.asMap().compute(key, (k, old) -> old != null && old.matches(limit.getRate(), limit.getBurst())
+                ? old
+                : new TokenBucket(limit.getRate(), limit.getBurst()));
+    }
+
+    private Mono<Long> acquireRedis(ReactiveStringRedisTemplate redisTemplate, int[] scopes, String[] keys,
+            QiapiGatewayProperties.Limit[] limits) {
+        List<String> redisKeys = new ArrayList<>(keys.length);
+        List<String> args = new ArrayList<>(keys.length * 2);
+        // 脚本返回的维度序号 -> SCOPES 下标
+        int[] scriptScopes = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            QiapiGatewayProperties.Limit limit = limits[i];
+            if (limit.getRate() <= 0) {
+                continue;
+            }
+            // 与 TokenBucket 相同的发放间隔与超前时长，单位为微秒
+            long intervalMicros = intervalMicros(limit);
+            redisKeys.add(REDIS_KEY_PREFIX + keys[i]);
+            args.add(String.valueOf(intervalMicros));
+            args.add(String.valueOf(intervalMicros * (Math.max(limit.getBurst(), 1) - 1)));
+            scriptScopes[redisKeys.size() - 1] = scopes[i];
+        }
+        if (redisKeys.isEmpty()) {
+            return Mono.just(0L);
+        }
+        return redisTemplate.execute(gcraScript, redisKeys, args)
+                .next()
+                .map(result -> {
+                    if (result > 0) {
+                        rejected[scriptScopes[(int) (result % 4) - 1]].increment();
+                    }
+                    return result / 4;
+                })
+                .defaultIfEmpty(0L);
+    }
+}
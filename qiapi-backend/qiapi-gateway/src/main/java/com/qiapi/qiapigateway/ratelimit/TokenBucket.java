@@ -0,0 +1,78 @@
+package com.qiapi.qiapigateway.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁令牌桶
+ * <p>
+ * 以“理论到达时间”（GCRA）表示令牌桶状态：每取用一个令牌，理论到达时间后移一个发放间隔；
+ * 理论到达时间超前当前时间不超过 (容量 - 1) 个间隔时允许通过，等价于速率为 rate、容量为 burst 的令牌桶。
+ * 状态只有一个 long，取用为一次 CAS。
+ *
+ * @author zhexueqi
+ */
+public class TokenBucket {
+
+    private final double rate;
+
+    private final int burst;
+
+    /**
+     * 发放一个令牌的间隔（纳秒）
+     */
+    private final long intervalNanos;
+
+    /**
+     * 允许超前的时长（纳秒）
+     */
+    private final long toleranceNanos;
+
+    private final AtomicLong theoreticalArrival;
+
+    /**
+     * @param rate  每秒发放的令牌数
+     * @param burst 桶容量，即允许的突发请求数
+     */
+    public TokenBucket(double rate, int burst) {
+        this.rate = rate;
+        this.burst = Math.max(burst, 1);
+        this.intervalNanos = Math.max((long) (TimeUnit.SECONDS.toNanos(1) / rate), 1L);
+        this.toleranceNanos = intervalNanos * (this.burst - 1);
+        this.theoreticalArrival = new AtomicLong(System.nanoTime() - toleranceNanos);
+    }
+
+    /**
+     * 取用一个令牌
+     *
+     * @param nowNanos 当前时间（{@link System#nanoTime()}）
+     * @return 0 表示取用成功，否则为还需等待的纳秒数
+     */
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            long arrival = theoreticalArrival.get();
+            long base = Math.max(arrival, nowNanos);
+            long wait = base - toleranceNanos - nowNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(arrival, base + intervalNanos)) {
+                return 0L;
+            }
+        }
+    }
+
+    /**
+     * 归还一个已取用的令牌（其他维度拒绝本次请求时调用）
+     */
+    public void release() {
+        theoreticalArrival.addAndGet(-intervalNanos);
+    }
+
+    /**
+     * 是否与给定的限流规则一致（规则变更后需重建令牌桶）
+     */
+    public boolean matches(double rate, int burst) {
+        return this.rate == rate && this.burst == Math.max(burst, 1);
+    }
+}
@@ -0,0 +1,136 @@
+package com.qiapi.qiapigateway.resilience;
+
+/**
+ * 按上游耗时自适应调整的接口并发上限（梯度算法）
+ * <p>
+ * 以采样窗口内的平均耗时为短期 RTT、多个窗口的指数平均为长期 RTT：
+ * 短期 RTT 明显变长说明上游开始排队，上限按 长期 / 短期 的比例收缩；耗时平稳时每个窗口增加 √limit 的余量试探更高的并发。
+ * 窗口内出现失败或超时时上限直接按比例下降；并发远低于上限时不再放大上限，避免空闲时上限无限增长
+ *
+ * @author zhexueqi
+ */
+public class AdaptiveConcurrencyLimit {
+
+    /**
+     * 长期 RTT 指数平均的窗口数
+     */
+    private static final int LONG_WINDOW = 100;
+
+    /**
+     * 前几个窗口直接取平均，尽快得到可用的长期 RTT
+     */
+    private static final int WARMUP_WINDOWS = 10;
+
+    /**
+     * 出现失败或超时时上限的收缩比例
+     */
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double rttTolerance;
+
+    private final double smoothing;
+
+    private final long windowNanos;
+
+    private final int windowMinSamples;
+
+    private volatile int limit;
+
+    private double estimatedLimit;
+
+    private double longRttNanos;
+
+    private int windows;
+
+    private long windowStartNanos;
+
+    private long windowRttSumNanos;
+
+    private int windowSamples;
+
+    private int windowMaxInFlight;
+
+    private boolean windowDropped;
+
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double rttTolerance, double smoothing,
+                             long windowMillis, int windowMinSamples) {
+        this.minLimit = Math.max(1, Math.min(minLimit, maxLimit));
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.rttTolerance = Math.max(1.0, rttTolerance);
+        this.smoothing = Math.min(1.0, Math.max(0.01, smoothing));
+        this.windowNanos = windowMillis * 1_000_000L;
+        this.windowMinSamples = Math.max(1, windowMinSamples);
+        this.estimatedLimit = clamp(initialLimit);
+        this.limit = (int) estimatedLimit;
+        this.windowStartNanos = System.nanoTime();
+    }
+
+    /**
+     * 当前并发上限
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * 长期 RTT（毫秒），还没有样本时为 0
+     */
+    public double getLongRttMillis() {
+        return longRttNanos / 1_000_000.0;
+    }
+
+    /**
+     * 记录一次调用
+     *
+     * @param rttNanos 调用耗时
+     * @param inFlight 调用结束时的并发数
+     * @param dropped  是否失败或超时
+     */
+    synchronized void onSample(long rttNanos, int inFlight, boolean dropped) {
+        windowRttSumNanos += rttNanos;
+        windowSamples++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlight);
+        windowDropped |= dropped;
+        long now = System.nanoTime();
+        if (now - windowStartNanos < windowNanos || windowSamples < windowMinSamples) {
+            return;
+        }
+        update((double) windowRttSumNanos / windowSamples);
+        windowStartNanos = now;
+        windowRttSumNanos = 0;
+        windowSamples = 0;
+        windowMaxInFlight = 0;
+        windowDropped = false;
+    }
+
+    private void update(double shortRttNanos) {
+        if (windowDropped) {
+            estimatedLimit = clamp(estimatedLimit * BACKOFF_RATIO);
+            limit = (int) estimatedLimit;
+            return;
+        }
+        windows++;
+        int factor = windows <= WARMUP_WINDOWS ? windows : LONG_WINDOW;
+        longRttNanos += (shortRttNanos - longRttNanos) / factor;
+        // 负载下降后短期 RTT 远低于长期 RTT，加快长期 RTT 回落，避免上限长时间偏大
+        if (longRttNanos / shortRttNanos > 2) {
+            longRttNanos *= 0.95;
+        }
+        // 并发远低于上限时样本不能说明上限是否合适
+        if (windowMaxInFlight < estimatedLimit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * longRttNanos / shortRttNanos));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        estimatedLimit = clamp(estimatedLimit * (1 - smoothing) + newLimit * smoothing);
+        limit = (int) estimatedLimit;
+    }
+
+    private double clamp(double value) {
+        return Math.max(minLimit, Math.min(maxLimit, value));
+    }
+}
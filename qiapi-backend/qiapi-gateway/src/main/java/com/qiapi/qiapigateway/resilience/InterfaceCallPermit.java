@@ -0,0 +1,105 @@
+package com.qiapi.qiapigateway.resilience;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.springframework.http.HttpStatus;
+import reactor.core.publisher.SignalType;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 一次接口调用占用的熔断许可与并发名额
+ * <p>
+ * 开始转发时调用 {@link #start()}；转发结束时按结果向熔断器记录成功或失败，
+ * 未开始转发就结束（如额度不足）时只归还许可。两者都只生效一次，并发名额总会归还
+ *
+ * @author zhexueqi
+ */
+public class InterfaceCallPermit {
+
+    /**
+     * 关闭熔断与隔离时使用，不做任何记录
+     */
+    static final InterfaceCallPermit NOOP = new InterfaceCallPermit(null, null, 0);
+
+    /**
+     * 上游返回 5xx 时记录到熔断器的异常（不需要堆栈）
+     */
+    private static final Exception UPSTREAM_ERROR = new Exception("upstream returned 5xx", null, false, false) {
+    };
+
+    private final CircuitBreaker circuitBreaker;
+
+    private final InterfaceGuard.Guard guard;
+
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    /**
+     * 被拒绝时建议调用方重试的等待秒数，大于 0 表示被拒绝
+     */
+    private final long retryAfterSeconds;
+
+    private volatile long startNanos;
+
+    InterfaceCallPermit(CircuitBreaker circuitBreaker, InterfaceGuard.Guard guard, long retryAfterSeconds) {
+        this.circuitBreaker = circuitBreaker;
+        this.guard = guard;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * 被拒绝的调用（熔断打开、排队已满或等待超时）
+     */
+    static InterfaceCallPermit rejected(long retryAfterSeconds) {
+        return new InterfaceCallPermit(null, null, Math.max(retryAfterSeconds, 1));
+    }
+
+    public boolean isRejected() {
+        return retryAfterSeconds > 0;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * 开始转发
+     */
+    public void start() {
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * 转发结束，按结果记录到熔断器与自适应并发：异常或 5xx 记为失败（耗时超过阈值同时记为慢调用），取消时只归还许可
+     *
+     * @param signalType 结束信号
+     * @param status     响应状态码
+     */
+    public void complete(SignalType signalType, HttpStatus status) {
+        if (circuitBreaker == null || startNanos == 0 || !finished.compareAndSet(false, true)) {
+            return;
+        }
+        long duration = System.nanoTime() - startNanos;
+        if (signalType == SignalType.CANCEL) {
+            guard.release(-1, false);
+            circuitBreaker.releasePermission();
+        } else if (signalType == SignalType.ON_ERROR || (status != null && status.is5xxServerError())) {
+            guard.release(duration, true);
+            circuitBreaker.onError(duration, TimeUnit.NANOSECONDS, UPSTREAM_ERROR);
+        } else {
+            guard.release(duration, false);
+            circuitBreaker.onSuccess(duration, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 未开始转发就结束时归还许可与并发名额（已开始转发时由 {@link #complete} 处理）
+     */
+    public void releaseIfNotStarted() {
+        if (circuitBreaker == null || startNanos != 0 || !finished.compareAndSet(false, true)) {
+            return;
+        }
+        guard.release(-1, false);
+        circuitBreaker.releasePermission();
+    }
+}
@@ -0,0 +1,450 @@
+package com.qiapi.qiapigateway.resilience;
+
+import com.qiapi.qiapicommon.model.dto.InvocationAuthorization;
+import com.qiapi.qiapicommon.model.enums.InvocationTierEnum;
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 接口熔断与并发隔离
+ * <p>
+ * 每个接口一个熔断器和一个并发计数：签名校验通过后取许可，熔断打开时直接拒绝；并发已满时短暂排队，
+ * 排队已满或等待超时才拒绝，不再租用额度、不占用上游连接，避免一个变慢的上游拖住网关的全部连接。
+ * 排队按用户等级分为付费与免费两个通道，名额按权重分配，争抢时付费用户的请求等待更短。
+ * 开启自适应并发时并发上限由 {@link AdaptiveConcurrencyLimit} 按上游耗时变化自动调整，接口配置的最大并发数作为上限的上限。
+ * 阈值优先使用接口信息中的配置（随鉴权结果下发），为空时使用 {@link QiapiGatewayProperties.Resilience} 的默认值；
+ * 配置每次请求读取，阈值变化的熔断器会重建（并发计数保留）
+ *
+ * @author zhexueqi
+ */
+@Slf4j
+@Component
+public class InterfaceGuard {
+
+    private static final String NAME_PREFIX = "interface-";
+
+    @Resource
+    private QiapiGatewayProperties qiapiGatewayProperties;
+
+    @Resource
+    private ObjectProvider<CircuitBreakerRegistry> circuitBreakerRegistryProvider;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 注册到 Spring 的熔断器注册表，熔断器状态可通过 /actuator/circuitbreakers 与 resilience4j 指标查看
+     */
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    /**
+     * 接口ID -> 熔断器与并发计数
+     */
+    private final Map<Long, Guard> guards = new ConcurrentHashMap<>();
+
+    private Counter openRejected;
+
+    private Counter bulkheadRejected;
+
+    private Counter queueRejected;
+
+    @PostConstruct
+    public void init() {
+        circuitBreakerRegistry = circuitBreakerRegistryProvider.getIfAvailable(CircuitBreakerRegistry::ofDefaults);
+        openRejected = Counter.builder("gateway.resilience.rejected").tag("reason", "open").register(meterRegistry);
+        bulkheadRejected = Counter.builder("gateway.resilience.rejected").tag("reason", "bulkhead")
+                .register(meterRegistry);
+        queueRejected = Counter.builder("gateway.resilience.rejected").tag("reason", "queue")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 获取接口调用许可：并发已达上限时短暂排队等待名额，排队已满或等待超时时拒绝
+     *
+     * @param authorization 鉴权结果（包含接口ID及接口的熔断、并发配置）
+     * @return 调用许可，被拒绝时 {@link InterfaceCallPermit#isRejected()} 为 true
+     */
+    public Mono<InterfaceCallPermit> acquire(InvocationAuthorization authorization) {
+        QiapiGatewayProperties.Resilience resilience = qiapiGatewayProperties.getResilience();
+        if (!resilience.isEnabled() || authorization.getInterfaceId() == null) {
+            return Mono.just(InterfaceCallPermit.NOOP);
+        }
+        Guard guard = guard(authorization.getInterfaceId(), authorization, resilience);
+        CircuitBreaker circuitBreaker = guard.circuitBreaker;
+        if (!circuitBreaker.tryAcquirePermission()) {
+            openRejected.increment();
+            return Mono.just(InterfaceCallPermit.rejected((resilience.getWaitDurationInOpenStateMillis() + 999) / 1000));
+        }
+        // 有请求在排队时新请求也进入排队，不插队
+        if (guard.waiters.isEmpty() && guard.tryAcquireSlot()) {
+            return Mono.just(new InterfaceCallPermit(circuitBreaker, guard, 0));
+        }
+        if (resilience.getQueueTimeoutMillis() <= 0 || resilience.getMaxQueuedCalls() <= 0) {
+            circuitBreaker.releasePermission();
+            bulkheadRejected.increment();
+            return Mono.just(InterfaceCallPermit.rejected(1));
+        }
+        InvocationTierEnum tier = authorization.getTier() != null ? authorization.getTier() : InvocationTierEnum.FREE;
+        return guard.awaitSlot(tier, resilience.getQueueTimeoutMillis(), resilience.getMaxQueuedCalls())
+                .map(granted -> {
+                    if (granted) {
+                        return new InterfaceCallPermit(circuitBreaker, guard, 0);
+                    }
+                    circuitBreaker.releasePermission();
+                    queueRejected.increment();
+                    return InterfaceCallPermit.rejected(1);
+                })
+                // 排队期间请求被取消，许可不会生成，归还熔断器的调用许可
+                .doOnCancel(circuitBreaker::releasePermission);
+    }
+
+    /**
+     * 当前所有接口的熔断与并发状态
+     */
+    public Map<Long, Guard> getGuards() {
+        return Collections.unmodifiableMap(guards);
+    }
+
+    private Guard guard(long interfaceId, InvocationAuthorization authorization,
+                        QiapiGatewayProperties.Resilience resilience) {
+        int failureRate = orDefault(authorization.getBreakerFailureRate(), resilience.getFailureRateThreshold());
+        int slowCallRate = orDefault(authorization.getBreakerSlowCallRate(), resilience.getSlowCallRateThreshold());
+        int slowCallMillis = orDefault(authorization.getBreakerSlowCallMillis(), resilience.getSlowCallMillis());
+        int maxConcurrentCalls = orDefault(authorization.getMaxConcurrentCalls(), resilience.getMaxConcurrentCalls());
+        Guard guard = guards.get(interfaceId);
+        if (guard != null && guard.matches(failureRate, slowCallRate, slowCallMillis, maxConcurrentCalls, resilience)) {
+            return guard;
+        }
+        return guards.compute(interfaceId, (id, previous) -> {
+            if (previous != null
+                    && previous.matches(failureRate, slowCallRate, slowCallMillis, maxConcurrentCalls, resilience)) {
+                return previous;
+            }
+            String name = NAME_PREFIX + id;
+            CircuitBreaker circuitBreaker;
+            if (previous != null && previous.breakerMatches(failureRate, slowCallRate, slowCallMillis, resilience)) {
+                // 只有并发配置变化时沿用原熔断器，保留统计窗口
+                circuitBreaker = previous.circuitBreaker;
+            } else {
+                CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+                        .failureRateThreshold(failureRate)
+                        .slowCallRateThreshold(slowCallRate)
+                        .slowCallDurationThreshold(Duration.ofMillis(slowCallMillis))
+                        .slidingWindowSize(resilience.getSlidingWindowSize())
+                        .minimumNumberOfCalls(resilience.getMinimumNumberOfCalls())
+                        .waitDurationInOpenState(Duration.ofMillis(resilience.getWaitDurationInOpenStateMillis()))
+                        .permittedNumberOfCallsInHalfOpenState(resilience.getPermittedCallsInHalfOpenState())
+                        .build();
+                if (previous != null) {
+                    circuitBreakerRegistry.remove(name);
+                    log.info("接口 {} 熔断配置变化，重建熔断器", id);
+                }
+                circuitBreaker = circuitBreakerRegistry.circuitBreaker(name, config);
+            }
+            return new Guard(circuitBreaker, previous, failureRate, slowCallRate, slowCallMillis, maxConcurrentCalls,
+                    resilience);
+        });
+    }
+
+    private static int orDefault(Integer value, int defaultValue) {
+        return value != null && value > 0 ? value : defaultValue;
+    }
+
+    /**
+     * 单个接口的熔断器、并发计数、排队等待的请求及创建时使用的配置
+     * <p>
+     * 并发上限为接口配置的最大并发数；开启自适应并发时取两者中较小的值
+     */
+    public static final class Guard {
+
+        private final CircuitBreaker circuitBreaker;
+
+        private final AtomicInteger inFlight;
+
+        /**
+         * 等待并发名额的请求，按用户等级分通道加权出队
+         */
+        private final WeightedFairQueue<Waiter> waiters;
+
+        private final AtomicInteger queued;
+
+        /**
+         * 自适应并发上限，未开启时为 null
+         */
+        private final AdaptiveConcurrencyLimit adaptiveLimit;
+
+        private final int failureRate;
+
+        private final int slowCallRate;
+
+        private final int slowCallMillis;
+
+        private final int maxConcurrentCalls;
+
+        private final int slidingWindowSize;
+
+        private final int minimumNumberOfCalls;
+
+        private final long waitDurationInOpenStateMillis;
+
+        private final int permittedCallsInHalfOpenState;
+
+        private final boolean adaptiveLimitEnabled;
+
+        private final int minLimit;
+
+        private final double rttTolerance;
+
+        private final double limitSmoothing;
+
+        private final long limitWindowMillis;
+
+        private final int limitWindowMinSamples;
+
+        private final int paidLaneWeight;
+
+        private final int freeLaneWeight;
+
+        /**
+         * @param previous 配置变化前的 Guard，并发计数、排队的请求与当前并发上限延续使用
+         */
+        Guard(CircuitBreaker circuitBreaker, Guard previous, int failureRate, int slowCallRate, int slowCallMillis,
+              int maxConcurrentCalls, QiapiGatewayProperties.Resilience resilience) {
+            this.circuitBreaker = circuitBreaker;
+            this.inFlight = previous != null ? previous.inFlight : new AtomicInteger();
+            this.waiters = previous != null ? previous.waiters
+                    : new WeightedFairQueue<>(InvocationTierEnum.values().length);
+            this.queued = previous != null ? previous.queued : new AtomicInteger();
+            this.failureRate = failureRate;
+            this.slowCallRate = slowCallRate;
+            this.slowCallMillis = slowCallMillis;
+            this.maxConcurrentCalls = maxConcurrentCalls;
+            this.slidingWindowSize = resilience.getSlidingWindowSize();
+            this.minimumNumberOfCalls = resilience.getMinimumNumberOfCalls();
+            this.waitDurationInOpenStateMillis = resilience.getWaitDurationInOpenStateMillis();
+            this.permittedCallsInHalfOpenState = resilience.getPermittedCallsInHalfOpenState();
+            this.adaptiveLimitEnabled = resilience.isAdaptiveLimitEnabled();
+            this.minLimit = resilience.getMinLimit();
+            this.rttTolerance = resilience.getRttTolerance();
+            this.limitSmoothing = resilience.getLimitSmoothing();
+            this.limitWindowMillis = resilience.getLimitWindowMillis();
+            this.limitWindowMinSamples = resilience.getLimitWindowMinSamples();
+            this.paidLaneWeight = resilience.getPaidLaneWeight();
+            this.freeLaneWeight = resilience.getFreeLaneWeight();
+            int[] weights = new int[InvocationTierEnum.values().length];
+            weights[InvocationTierEnum.PAID.ordinal()] = paidLaneWeight;
+            weights[InvocationTierEnum.FREE.ordinal()] = freeLaneWeight;
+            waiters.setWeights(weights);
+            if (adaptiveLimitEnabled) {
+                int initialLimit = previous != null && previous.adaptiveLimit != null
+                        ? previous.adaptiveLimit.getLimit() : resilience.getInitialLimit();
+                this.adaptiveLimit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxConcurrentCalls,
+                        rttTolerance, limitSmoothing, limitWindowMillis, limitWindowMinSamples);
+            } else {
+                this.adaptiveLimit = null;
+            }
+        }
+
+        boolean matches(int failureRate, int slowCallRate, int slowCallMillis, int maxConcurrentCalls,
+                        QiapiGatewayProperties.Resilience resilience) {
+            return breakerMatches(failureRate, slowCallRate, slowCallMillis, resilience)
+                    && this.maxConcurrentCalls == maxConcurrentCalls
+                    && adaptiveLimitEnabled == resilience.isAdaptiveLimitEnabled()
+                    && minLimit == resilience.getMinLimit()
+                    && rttTolerance == resilience.getRttTolerance()
+                    && limitSmoothing == resilience.getLimitSmoothing()
+                    && limitWindowMillis == resilience.getLimitWindowMillis()
+                    && limitWindowMinSamples == resilience.getLimitWindowMinSamples()
+                    && paidLaneWeight == resilience.getPaidLaneWeight()
+                    && freeLaneWeight == resilience.getFreeLaneWeight();
+        }
+
+        boolean breakerMatches(int failureRate, int slowCallRate, int slowCallMillis,
+                               QiapiGatewayProperties.Resilience resilience) {
+            return this.failureRate == failureRate
+                    && this.slowCallRate == slowCallRate
+                    && this.slowCallMillis == slowCallMillis
+                    && slidingWindowSize == resilience.getSlidingWindowSize()
+                    && minimumNumberOfCalls == resilience.getMinimumNumberOfCalls()
+                    && waitDurationInOpenStateMillis == resilience.getWaitDurationInOpenStateMillis()
+                    && permittedCallsInHalfOpenState == resilience.getPermittedCallsInHalfOpenState();
+        }
+
+        /**
+         * 并发未达上限时占用一个名额
+         */
+        boolean tryAcquireSlot() {
+            int limit = getLimit();
+            while (true) {
+                int current = inFlight.get();
+                if (current >= limit) {
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * 排队等待并发名额
+         *
+         * @param tier 用户等级，决定排队的通道
+         * @return 拿到名额时为 true，排队已满或等待超时时为 false
+         */
+        Mono<Boolean> awaitSlot(InvocationTierEnum tier, long timeoutMillis, int maxQueuedCalls) {
+            return Mono.<Boolean>create(sink -> {
+                if (queued.incrementAndGet() > maxQueuedCalls) {
+                    queued.decrementAndGet();
+                    sink.success(false);
+                    return;
+                }
+                Waiter waiter = new Waiter(sink, tier.ordinal());
+                waiters.offer(waiter.lane, waiter);
+                sink.onCancel(() -> {
+                    if (claim(waiter, Waiter.CANCELLED)) {
+                        waiters.remove(waiter.lane, waiter);
+                    } else if (waiter.state.get() == Waiter.GRANTED) {
+                        // 分配名额的同时请求被取消：取消先生效时名额不会再送达订阅者，在这里归还
+                        release(-1, false);
+                    }
+                });
+                waiter.timeout = Schedulers.parallel().schedule(() -> {
+                    if (claim(waiter, Waiter.TIMED_OUT)) {
+                        waiters.remove(waiter.lane, waiter);
+                        sink.success(false);
+                    }
+                }, timeoutMillis, TimeUnit.MILLISECONDS);
+                // 入队前名额可能刚好被归还
+                drain();
+            });
+        }
+
+        /**
+         * 归还名额并唤醒排队的请求
+         *
+         * @param rttNanos 调用耗时，小于 0 时不作为自适应并发的样本（如调用被取消）
+         * @param dropped  调用是否失败或超时
+         */
+        void release(long rttNanos, boolean dropped) {
+            if (adaptiveLimit != null && rttNanos >= 0) {
+                adaptiveLimit.onSample(rttNanos, inFlight.get(), dropped);
+            }
+            inFlight.decrementAndGet();
+            drain();
+        }
+
+        private void drain() {
+            while (!waiters.isEmpty() && tryAcquireSlot()) {
+                Waiter waiter = waiters.poll();
+                while (waiter != null && !claim(waiter, Waiter.GRANTED)) {
+                    waiter = waiters.poll();
+                }
+                if (waiter == null) {
+                    // 等待的请求都已超时或取消，归还名额后再检查一次新入队的请求
+                    inFlight.decrementAndGet();
+                    continue;
+                }
+                if (waiter.timeout != null) {
+                    waiter.timeout.dispose();
+                }
+                waiter.sink.success(true);
+            }
+        }
+
+        private boolean claim(Waiter waiter, int state) {
+            if (waiter.state.compareAndSet(Waiter.WAITING, state)) {
+                queued.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        public CircuitBreaker getCircuitBreaker() {
+            return circuitBreaker;
+        }
+
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        public int getQueued() {
+            return queued.get();
+        }
+
+        /**
+         * 指定用户等级排队的请求数
+         */
+        public int getQueued(InvocationTierEnum tier) {
+            return waiters.size(tier.ordinal());
+        }
+
+        public int getMaxConcurrentCalls() {
+            return maxConcurrentCalls;
+        }
+
+        /**
+         * 当前并发上限
+         */
+        public int getLimit() {
+            return adaptiveLimit != null ? Math.min(adaptiveLimit.getLimit(), maxConcurrentCalls) : maxConcurrentCalls;
+        }
+
+        /**
+         * 自适应并发使用的长期 RTT（毫秒），未开启时为 0
+         */
+        public double getLongRttMillis() {
+            return adaptiveLimit != null ? adaptiveLimit.getLongRttMillis() : 0;
+        }
+    }
+
+    /**
+     * 排队等待名额的请求，分配名额、超时与取消三者只有一个生效
+     */
+    private static final class Waiter {
+
+        private static final int WAITING = 0;
+
+        private static final int GRANTED = 1;
+
+        private static final int TIMED_OUT = 2;
+
+        private static final int CANCELLED = 3;
+
+        private final MonoSink<Boolean> sink;
+
+        /**
+         * 排队的通道（用户等级序号）
+         */
+        private final int lane;
+
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        private volatile Disposable timeout;
+
+        Waiter(MonoSink<Boolean> sink, int lane) {
+            this.sink = sink;
+            this.lane = lane;
+        }
+    }
+}
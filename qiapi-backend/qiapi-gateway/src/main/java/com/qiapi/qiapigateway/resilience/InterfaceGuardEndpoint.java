@@ -0,0 +1,49 @@
+package com.qiapi.qiapigateway.resilience;
+
+import com.qiapi.qiapicommon.model.enums.InvocationTierEnum;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 接口熔断与并发状态：GET /actuator/interfaceguards
+ *
+ * @author zhexueqi
+ */
+@Component
+@Endpoint(id = "interfaceguards")
+public class InterfaceGuardEndpoint {
+
+    @Resource
+    private InterfaceGuard interfaceGuard;
+
+    @ReadOperation
+    public Map<Long, Map<String, Object>> guards() {
+        Map<Long, Map<String, Object>> result = new TreeMap<>();
+        interfaceGuard.getGuards().forEach((interfaceId, guard) -> {
+            CircuitBreaker circuitBreaker = guard.getCircuitBreaker();
+            CircuitBreaker.Metrics metrics = circuitBreaker.getMetrics();
+            Map<String, Object> state = new LinkedHashMap<>();
+            state.put("state", circuitBreaker.getState());
+            state.put("failureRate", metrics.getFailureRate());
+            state.put("slowCallRate", metrics.getSlowCallRate());
+            state.put("bufferedCalls", metrics.getNumberOfBufferedCalls());
+            state.put("notPermittedCalls", metrics.getNumberOfNotPermittedCalls());
+            state.put("inFlight", guard.getInFlight());
+            state.put("queued", guard.getQueued());
+            state.put("queuedPaid", guard.getQueued(InvocationTierEnum.PAID));
+            state.put("queuedFree", guard.getQueued(InvocationTierEnum.FREE));
+            state.put("limit", guard.getLimit());
+            state.put("longRttMillis", guard.getLongRttMillis());
+            state.put("maxConcurrentCalls", guard.getMaxConcurrentCalls());
+            result.put(interfaceId, state);
+        });
+        return result;
+    }
+}
@@ -0,0 +1,37 @@
+package com.qiapi.qiapigateway.responsecache;
+
+import lombok.Data;
+
+/**
+ * 缓存的接口响应（只缓存状态码为 200 的响应）
+ *
+ * @author zhexueqi
+ */
+@Data
+public class CachedResponse {
+
+    /**
+     * 响应类型
+     */
+    private String contentType;
+
+    /**
+     * 上游返回的 ETag
+     */
+    private String etag;
+
+    /**
+     * 响应体
+     */
+    private byte[] body;
+
+    /**
+     * 缓存时间（毫秒时间戳）
+     */
+    private long createdAtMillis;
+
+    /**
+     * 过期时间（毫秒时间戳）
+     */
+    private long expiresAtMillis;
+}
@@ -0,0 +1,125 @@
+package com.qiapi.qiapigateway.responsecache;
+
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 合并相同的并发请求（single-flight）
+ * <p>
+ * 同一缓存 key 第一个到达的请求成为领头请求并调用上游，之后到达的请求订阅领头请求的结果，不阻塞线程。
+ * 领头请求的响应可缓存时分发给所有等待的请求；被拒绝、失败或响应不可共享时结果为空，等待的请求各自调用上游
+ *
+ * @author zhexueqi
+ */
+@Component
+public class RequestCoalescer {
+
+    @Resource
+    private QiapiGatewayProperties qiapiGatewayProperties;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 缓存 key -> 进行中的上游调用
+     */
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+
+    private Counter leaders;
+
+    private Counter followers;
+
+    @PostConstruct
+    public void init() {
+        leaders = Counter.builder("gateway.coalescing.requests").tag("role", "leader").register(meterRegistry);
+        followers = Counter.builder("gateway.coalescing.requests").tag("role", "follower").register(meterRegistry);
+    }
+
+    /**
+     * 加入缓存 key 对应的上游调用，没有进行中的调用时成为领头请求
+     *
+     * @param key 缓存 key
+     * @return 上游调用，未开启请求合并时为 null
+     */
+    public Flight join(String key) {
+        if (!qiapiGatewayProperties.getResponseCache().isCoalesceRequests()) {
+            return null;
+        }
+        Flight created = new Flight(key, true);
+        Flight existing = flights.putIfAbsent(key, created);
+        if (existing == null) {
+            leaders.increment();
+            return created;
+        }
+        followers.increment();
+        return new Flight(existing, false);
+    }
+
+    /**
+     * 一次进行中的上游调用；领头请求与等待的请求共享同一个结果
+     */
+    public final class Flight {
+
+        private final String key;
+
+        private final Sinks.One<CachedResponse> sink;
+
+        private final AtomicBoolean completed;
+
+        private final boolean leader;
+
+        private Flight(String key, boolean leader) {
+            this.key = key;
+            this.sink = Sinks.one();
+            this.completed = new AtomicBoolean();
+            this.leader = leader;
+        }
+
+        private Flight(Flight shared, boolean leader) {
+            this.key = shared.key;
+            this.sink = shared.sink;
+            this.completed = shared.completed;
+            this.leader = leader;
+        }
+
+        public boolean isLeader() {
+            return leader;
+        }
+
+        /**
+         * 领头请求的结果
+         *
+         * @return 可共享的响应，领头请求没有得到可共享的响应时为空
+         */
+        public Mono<CachedResponse> response() {
+            return sink.asMono();
+        }
+
+        /**
+         * 领头请求结束，把结果分发给等待的请求（只对领头请求生效，且只生效一次）
+         *
+         * @param response 可共享的响应，为 null 时等待的请求各自调用上游
+         */
+        public void complete(CachedResponse response) {
+            if (!leader || !completed.compareAndSet(false, true)) {
+                return;
+            }
+            flights.remove(key, this);
+            if (response != null) {
+                sink.tryEmitValue(response);
+            } else {
+                sink.tryEmitEmpty();
+            }
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.qiapi.qiapigateway.responsecache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 接口响应缓存：按接口配置的缓存时间缓存幂等 GET 接口的响应，命中时不再调用上游
+ * <p>
+ * 缓存 key 为请求路径 + 按参数名排序后的查询串；本地缓存按响应体大小限制总量，可选 Redis 作为多节点共享的二级缓存。
+ * 遵循 Cache-Control：请求 no-cache 时跳过查找，no-store 时既不查找也不缓存；
+ * 响应 no-store / no-cache / private 或带 Set-Cookie 时不缓存，max-age（s-maxage 优先）小于接口配置时以其为准。
+ * 命中时请求携带的 If-None-Match 与缓存的 ETag 一致则直接返回 304
+ *
+ * @author zhexueqi
+ */
+@Slf4j
+@Component
+public class ResponseCache {
+
+    /**
+     * 标记响应是否来自网关缓存的响应头
+     */
+    public static final String CACHE_STATUS_HEADER = "X-Cache";
+
+    private static final String REDIS_KEY_PREFIX = "gateway:response:";
+
+    @Resource
+    private QiapiGatewayProperties qiapiGatewayProperties;
+
+    @Resource
+    private ObjectProvider<ReactiveStringRedisTemplate> redisTemplateProvider;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private Cache<String, CachedResponse> localCache;
+
+    private ReactiveStringRedisTemplate redisTemplate;
+
+    private Counter localHits;
+
+    private Counter redisHits;
+
+    private Counter misses;
+
+    @PostConstruct
+    public void init() {
+        QiapiGatewayProperties.ResponseCache config = qiapiGatewayProperties.getResponseCache();
+        localCache = Caffeine.newBuilder()
+                .maximumWeight(config.getMaximumBytes())
+                .weigher((String key, CachedResponse value) -> key.length() + value.getBody().length)
+                .expireAfter(new Expiry<String, CachedResponse>() {
+                    @Override
+                    public long expireAfterCreate(String key, CachedResponse value, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(remainingMillis(value));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CachedResponse value, long currentTime,
+                            long currentDuration) {
+                        return TimeUnit.MILLISECONDS.toNanos(remainingMillis(value));
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CachedResponse value, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        if (config.isRedisEnabled()) {
+            redisTemplate = redisTemplateProvider.getIfAvailable();
+            if (redisTemplate == null) {
+                log.warn("未配置 Redis，响应缓存仅使用本地缓存");
+            }
+        }
+        localHits = Counter.builder("gateway.responsecache.requests").tag("result", "local").register(meterRegistry);
+        redisHits = Counter.builder("gateway.responsecache.requests").tag("result", "redis").register(meterRegistry);
+        misses = Counter.builder("gateway.responsecache.requests").tag("result", "miss").register(meterRegistry);
+    }
+
+    /**
+     * 计算请求的缓存 key
+     *
+     * @param request    请求
+     * @param ttlSeconds 接口配置的缓存时间（秒）
+     * @return 缓存 key，未开启缓存、不是 GET 请求或请求要求不缓存时为 null
+     */
+    public String cacheKey(ServerHttpRequest request, Integer ttlSeconds) {
+        if (!qiapiGatewayProperties.getResponseCache().isEnabled() || ttlSeconds == null || ttlSeconds <= 0
+                || request.getMethod() != HttpMethod.GET
+                || hasDirective(request.getHeaders().getCacheControl(), "no-store")) {
+            return null;
+        }
+        String path = request.getPath().pathWithinApplication().value();
+        String rawQuery = request.getURI().getRawQuery();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return path;
+        }
+        // 只按参数名排序（稳定排序），同名参数保持原有顺序
+        List<String> pairs = new ArrayList<>();
+        for (String pair : rawQuery.split("&")) {
+            if (!pair.isEmpty()) {
+                pairs.add(pair);
+            }
+        }
+        pairs.sort(Comparator.comparing(ResponseCache::parameterName));
+        return path + "?" + String.join("&", pairs);
+    }
+
+    /**
+     * 查找缓存的响应：先查本地，未命中时查 Redis 并回填本地
+     *
+     * @param key     缓存 key
+     * @param request 请求（带 no-cache 时跳过查找）
+     * @return 缓存的响应，未命中时为空
+     */
+    public Mono<CachedResponse> get(String key, ServerHttpRequest request) {
+        HttpHeaders headers = request.getHeaders();
+        if (hasDirective(headers.getCacheControl(), "no-cache") || hasDirective(headers.getPragma(), "no-cache")) {
+            misses.increment();
+            return Mono.empty();
+        }
+        CachedResponse cached = localCache.getIfPresent(key);
+        if (cached != null && remainingMillis(cached) > 0) {
+            localHits.increment();
+            return Mono.just(cached);
+        }
+        if (redisTemplate == null) {
+            misses.increment();
+            return Mono.empty();
+        }
+        return redisTemplate.opsForValue().get(REDIS_KEY_PREFIX + key)
+                .timeout(Duration.ofMillis(qiapiGatewayProperties.getResponseCache().getRedisTimeoutMillis()))
+                .flatMap(value -> {
+                    CachedResponse response = decode(value);
+                    if (response == null || remainingMillis(response) <= 0) {
+                        return Mono.empty();
+                    }
+                    localCache.put(key, response);
+                    redisHits.increment();
+                    return Mono.just(response);
+                })
+                // Redis 不可用或超时按未命中处理
+                .onErrorResume(e -> {
+                    log.warn("读取 Redis 响应缓存失败: {}", e.toString());
+                    return Mono.empty();
+                })
+                .switchIfEmpty(Mono.fromRunnable(misses::increment));
+    }
+
+    /**
+     * 包装响应：转发过程中采集可缓存的响应体，上游响应结束后写入缓存
+     *
+     * @param response   响应
+     * @param key        缓存 key
+     * @param ttlSeconds 接口配置的缓存时间（秒）
+     * @param listener   采集到可缓存的响应后的回调，可为 null
+     * @return 包装后的响应
+     */
+    public ServerHttpResponse capture(ServerHttpResponse response, String key, int ttlSeconds,
+            Consumer<CachedResponse> listener) {
+        return new ResponseCaptureDecorator(response, cached -> {
+            put(key, cached);
+            if (listener != null) {
+                listener.accept(cached);
+            }
+        }, ttlSeconds, qiapiGatewayProperties.getResponseCache().getMaxEntryBytes());
+    }
+
+    /**
+     * 返回缓存的响应
+     *
+     * @param exchange    exchange
+     * @param cached      缓存的响应
+     * @param cacheStatus 响应头 X-Cache 的值
+     * @return Mono<Void>
+     */
+    public Mono<Void> write(ServerWebExchange exchange, CachedResponse cached, String cacheStatus) {
+        return Mono.defer(() -> {
+            ServerHttpResponse response = exchange.getResponse();
+            HttpHeaders headers = response.getHeaders();
+            long now = System.currentTimeMillis();
+            headers.set(CACHE_STATUS_HEADER, cacheStatus);
+            headers.set(HttpHeaders.AGE, String.valueOf((now - cached.getCreatedAtMillis()) / 1000));
+            headers.setCacheControl("max-age=" + Math.max(0, (cached.getExpiresAtMillis() - now) / 1000));
+            if (cached.getEtag() != null) {
+                headers.setETag(cached.getEtag());
+                if (etagMatches(exchange.getRequest().getHeaders().getIfNoneMatch(), cached.getEtag())) {
+                    response.setStatusCode(HttpStatus.NOT_MODIFIED);
+                    return response.setComplete();
+                }
+            }
+            response.setStatusCode(HttpStatus.OK);
+            if (cached.getContentType() != null) {
+                headers.set(HttpHeaders.CONTENT_TYPE, cached.getContentType());
+            }
+            headers.setContentLength(cached.getBody().length);
+            return response.writeWith(Mono.just(response.bufferFactory().wrap(cached.getBody())));
+        });
+    }
+
+    /**
+     * 命中缓存时是否照常计费
+     */
+    public boolean isChargeHits() {
+        return qiapiGatewayProperties.getResponseCache().isChargeHits();
+    }
+
+    /**
+     * 写入缓存（本地与 Redis）
+     */
+    void put(String key, CachedResponse response) {
+        long ttlMillis = remainingMillis(response);
+        if (ttlMillis <= 0) {
+            return;
+        }
+        localCache.put(key, response);
+        if (redisTemplate == null) {
+            return;
+        }
+        String value;
+        try {
+            value = objectMapper.writeValueAsString(response);
+        } catch (Exception e) {
+            log.error("序列化响应缓存失败", e);
+            return;
+        }
+        redisTemplate.opsForValue().set(REDIS_KEY_PREFIX + key, value, Duration.ofMillis(ttlMillis))
+                .subscribe(null, e -> log.warn("写入 Redis 响应缓存失败: {}", e.toString()));
+    }
+
+    /**
+     * 按响应的 Cache-Control 计算缓存时间：不允许共享缓存时返回 0，max-age（s-maxage 优先）小于接口配置时以其为准
+     *
+     * @param cacheControl 响应的 Cache-Control
+     * @param ttlSeconds   接口配置的缓存时间（秒）
+     * @return 缓存时间（秒）
+     */
+    static long effectiveTtlSeconds(String cacheControl, int ttlSeconds) {
+        if (cacheControl == null || cacheControl.isEmpty()) {
+            return ttlSeconds;
+        }
+        if (hasDirective(cacheControl, "no-store") || hasDirective(cacheControl, "no-cache")
+                || hasDirective(cacheControl, "private")) {
+            return 0;
+        }
+        long maxAge = directiveSeconds(cacheControl, "s-maxage");
+        if (maxAge < 0) {
+            maxAge = directiveSeconds(cacheControl, "max-age");
+        }
+        return maxAge < 0 ? ttlSeconds : Math.min(maxAge, ttlSeconds);
+    }
+
+    private CachedResponse decode(String value) {
+        try {
+            return objectMapper.readValue(value, CachedResponse.class);
+        } catch (Exception e) {
+            log.warn("解析 Redis 响应缓存失败: {}", e.toString());
+            return null;
+        }
+    }
+
+    private static long remainingMillis(CachedResponse response) {
+        return Math.max(0, response.getExpiresAtMillis() - System.currentTimeMillis());
+    }
+
+    private static String parameterName(String pair) {
+        int separator = pair.indexOf('=');
+        return separator < 0 ? pair : pair.substring(0, separator);
+    }
+
+    /**
+     * Cache-Control 中是否包含指定指令（不区分大小写）
+     */
+    static boolean hasDirective(String cacheControl, String directive) {
+        if (cacheControl == null || cacheControl.isEmpty()) {
+            return false;
+        }
+        for (String token : cacheControl.split(",")) {
+            String name = token.trim();
+            int separator = name.indexOf('=');
+            if (separator >= 0) {
+                name = name.substring(0, separator).trim();
+            }
+            if (name.equalsIgnoreCase(directive)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Cache-Control 中指定指令的秒数，不存在或格式错误时返回 -1
+     */
+    private static long directiveSeconds(String cacheControl, String directive) {
+        String prefix = directive + "=";
+        for (String token : cacheControl.split(",")) {
+            String trimmed = token.trim().toLowerCase(Locale.ROOT);
+            if (trimmed.startsWith(prefix)) {
+                try {
+                    return Long.parseLong(trimmed.substring(prefix.length()).replace("\"", "").trim());
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * If-None-Match 是否与 ETag 匹配（弱比较）
+     */
+    static boolean etagMatches(List<String> ifNoneMatch, String etag) {
+        String target = stripWeak(etag);
+        for (String candidate : ifNoneMatch) {
+            if ("*".equals(candidate) || stripWeak(candidate).equals(target)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+}
@@ -0,0 +1,93 @@
+package com.qiapi.qiapigateway.responsecache;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * 采集上游响应体，响应可缓存时交给回调（写入 {@link ResponseCache}、分发给合并等待的请求）
+ * <p>
+ * 写出响应时（状态码与响应头已确定）判断是否可缓存；响应体边转发边拷贝，超过大小上限即放弃，不改变转发的数据块。
+ * 流式响应（writeAndFlushWith）不缓存
+ *
+ * @author zhexueqi
+ */
+class ResponseCaptureDecorator extends ServerHttpResponseDecorator {
+
+    private final Consumer<CachedResponse> listener;
+
+    private final int ttlSeconds;
+
+    private final int maxBytes;
+
+    private byte[] buffer;
+
+    private int length;
+
+    private boolean overflow;
+
+    ResponseCaptureDecorator(ServerHttpResponse delegate, Consumer<CachedResponse> listener, int ttlSeconds,
+            int maxBytes) {
+        super(delegate);
+        this.listener = listener;
+        this.ttlSeconds = ttlSeconds;
+        this.maxBytes = maxBytes;
+        delegate.getHeaders().set(ResponseCache.CACHE_STATUS_HEADER, "MISS");
+    }
+
+    @Override
+    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+        HttpHeaders headers = getHeaders();
+        long ttl = ResponseCache.effectiveTtlSeconds(headers.getCacheControl(), ttlSeconds);
+        long contentLength = headers.getContentLength();
+        if (getStatusCode() != HttpStatus.OK || ttl <= 0 || contentLength > maxBytes
+                || headers.containsKey(HttpHeaders.SET_COOKIE) || headers.containsKey(HttpHeaders.CONTENT_ENCODING)) {
+            return super.writeWith(body);
+        }
+        buffer = new byte[contentLength >= 0 ? (int) contentLength : Math.min(maxBytes, 4096)];
+        String contentType = headers.getFirst(HttpHeaders.CONTENT_TYPE);
+        String etag = headers.getETag();
+        return super.writeWith(Flux.from(body)
+                .doOnNext(this::capture)
+                .doOnComplete(() -> {
+                    if (overflow) {
+                        return;
+                    }
+                    long now = System.currentTimeMillis();
+                    CachedResponse response = new CachedResponse();
+                    response.setContentType(contentType);
+                    response.setEtag(etag);
+                    response.setBody(length == buffer.length ? buffer : Arrays.copyOf(buffer, length));
+                    response.setCreatedAtMillis(now);
+                    response.setExpiresAtMillis(now + ttl * 1000);
+                    listener.accept(response);
+                }));
+    }
+
+    private void capture(DataBuffer dataBuffer) {
+        if (overflow) {
+            return;
+        }
+        int readable = dataBuffer.readableByteCount();
+        if (length + readable > maxBytes) {
+            overflow = true;
+            buffer = null;
+            return;
+        }
+        if (length + readable > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.min(maxBytes, Math.max(buffer.length * 2, length + readable)));
+        }
+        int position = dataBuffer.readPosition();
+        for (int i = 0; i < readable; i++) {
+            buffer[length++] = dataBuffer.getByte(position + i);
+        }
+    }
+}
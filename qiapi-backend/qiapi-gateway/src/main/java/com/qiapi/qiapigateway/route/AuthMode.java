@@ -0,0 +1,24 @@
+package com.qiapi.qiapigateway.route;
+
+/**
+ * 路由的认证方式
+ *
+ * @author zhexueqi
+ */
+public enum AuthMode {
+
+    /**
+     * 不认证，直接转发
+     */
+    NONE,
+
+    /**
+     * 基于 Session 的平台用户认证，由后端服务校验
+     */
+    SESSION,
+
+    /**
+     * accessKey + 签名认证
+     */
+    SIGNATURE
+}
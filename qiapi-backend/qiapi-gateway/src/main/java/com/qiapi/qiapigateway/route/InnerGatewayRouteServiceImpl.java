@@ -0,0 +1,23 @@
+package com.qiapi.qiapigateway.route;
+
+import com.qiapi.qiapicommon.service.InnerGatewayRouteService;
+import org.apache.dubbo.config.annotation.DubboService;
+
+import javax.annotation.Resource;
+
+/**
+ * 网关路由刷新服务实现：收到后端的接口变化通知后立即增量刷新动态路由（不等待查询完成）
+ *
+ * @author zhexueqi
+ */
+@DubboService
+public class InnerGatewayRouteServiceImpl implements InnerGatewayRouteService {
+
+    @Resource
+    private InterfaceRouteLocator interfaceRouteLocator;
+
+    @Override
+    public void refreshInterfaceRoute(long interfaceInfoId) {
+        interfaceRouteLocator.requestRefresh();
+    }
+}
@@ -0,0 +1,403 @@
+package com.qiapi.qiapigateway.route;
+
+import com.qiapi.qiapicommon.model.dto.GatewayRoute;
+import com.qiapi.qiapicommon.service.InnerInterfaceInfoService;
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.dubbo.config.annotation.DubboReference;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cloud.gateway.config.GatewayProperties;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.filter.FilterDefinition;
+import org.springframework.cloud.gateway.filter.factory.GatewayFilterFactory;
+import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
+import org.springframework.cloud.gateway.handler.predicate.RoutePredicateFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.cloud.gateway.route.RouteDefinitionRouteLocator;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.cloud.gateway.support.NameUtils;
+import org.springframework.cloud.gateway.support.RouteMetadataUtils;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationListener;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 由接口信息生成的动态路由：每个上线的接口一条路由，上游地址取自接口地址，连接、响应超时取自接口配置
+ * <p>
+ * 路由路径挂在 {@link QiapiGatewayProperties.InterfaceRoutes#getPathPrefix()}（默认 /third-party）下：
+ * 网关路径为 前缀 + 接口地址的路径，转发时还原为接口地址的路径；拼接后的路径不属于签名认证并计费的路由分类时不生成路由，
+ * 避免接口占用登录等平台路径。
+ * <p>
+ * 启动后全量加载一次，之后按更新时间增量刷新（定时刷新，接口变化时后端也会主动通知），只替换变化的接口路由；
+ * 定期全量同步一次，清理增量刷新感知不到的路由。刷新在同一条流水线中串行执行，路由有变化时才发布 {@link RefreshRoutesEvent}
+ * <p>
+ * 直接提供转换好的 {@link Route} 而不是路由定义：{@link RefreshRoutesEvent} 会让 CachingRouteLocator 重新获取全部路由，
+ * 如果以路由定义提供，每次刷新都要把所有接口的路由定义重新转换一遍（查找断言、过滤器工厂并绑定参数），接口多时开销随接口数线性增长。
+ * 这里按接口缓存转换结果，刷新时只转换变化的接口；配置文件中的静态路由仍由 Spring Cloud Gateway 在每次刷新时重新转换，数量固定且很少
+ *
+ * @author zhexueqi
+ */
+@Slf4j
+@Component
+public class InterfaceRouteLocator implements RouteLocator, ApplicationListener<ApplicationReadyEvent> {
+
+    /**
+     * 路由元数据：接口ID
+     */
+    public static final String INTERFACE_ID_METADATA = "interface-id";
+
+    /**
+     * 路由元数据：接口地址（鉴权时按接口地址 + 请求方法查找接口）
+     */
+    public static final String INTERFACE_URL_METADATA = "interface-url";
+
+    /**
+     * 路由元数据：上线的上游实例地址，为空时转发到接口地址本身
+     */
+    public static final String INSTANCES_METADATA = "instances";
+
+    private static final String ROUTE_ID_PREFIX = "interface-";
+
+    /**
+     * 增量刷新时回看的毫秒数，避免更新时间精度（秒）与并发提交导致漏掉变化
+     */
+    private static final long WATERMARK_OVERLAP_MILLIS = 1000;
+
+    @DubboReference(check = false)
+    private InnerInterfaceInfoService innerInterfaceInfoService;
+
+    @Resource
+    private QiapiGatewayProperties qiapiGatewayProperties;
+
+    @Resource
+    private RouteClassifier routeClassifier;
+
+    @Resource
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    /**
+     * Spring Cloud Gateway 的配置（默认过滤器等），与静态路由的转换保持一致
+     */
+    @Resource
+    private GatewayProperties gatewayProperties;
+
+    @Resource
+    private ConfigurationService configurationService;
+
+    @Resource
+    private ObjectProvider<RoutePredicateFactory> routePredicateFactoryProvider;
+
+    @Resource
+    private ObjectProvider<GatewayFilterFactory> gatewayFilterFactoryProvider;
+
+    /**
+     * 接口ID -> 路由定义，用于判断接口路由是否变化
+     */
+    private final Map<Long, RouteDefinition> routeDefinitions = new ConcurrentHashMap<>();
+
+    /**
+     * 接口ID -> 转换好的路由
+     */
+    private final Map<Long, Route> routes = new ConcurrentHashMap<>();
+
+    private List<RoutePredicateFactory> routePredicateFactories;
+
+    private List<GatewayFilterFactory> gatewayFilterFactories;
+
+    /**
+     * 主动刷新通知
+     */
+    private final Sinks.Many<Boolean> refreshRequests = Sinks.many().multicast().directBestEffort();
+
+    /**
+     * 已同步到的最大更新时间（毫秒时间戳）
+     */
+    private long watermark;
+
+    private long lastFullSyncMillis;
+
+    private Disposable refreshing;
+
+    @Override
+    public Flux<Route> getRoutes() {
+        return Flux.fromIterable(routes.values());
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        QiapiGatewayProperties.InterfaceRoutes config = qiapiGatewayProperties.getInterfaceRoutes();
+        if (!config.isEnabled() || refreshing != null) {
+            return;
+        }
+        routePredicateFactories = routePredicateFactoryProvider.orderedStream().collect(Collectors.toList());
+        gatewayFilterFactories = gatewayFilterFactoryProvider.orderedStream().collect(Collectors.toList());
+        Flux<Boolean> polls = Flux.interval(Duration.ZERO, Duration.ofSeconds(config.getPollIntervalSeconds()))
+                .map(tick -> Boolean.TRUE);
+        refreshing = Flux.merge(polls, refreshRequests.asFlux())
+                .onBackpressureLatest()
+                .concatMap(request -> refresh(), 1)
+                .subscribe();
+    }
+
+    /**
+     * 请求立即增量刷新（接口信息变化时由后端通知）
+     */
+    public void requestRefresh() {
+        refreshRequests.emitNext(Boolean.TRUE,
+                (signalType, emitResult) -> emitResult == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+    }
+
+    /**
+     * 当前有路由的接口ID
+     */
+    public Set<Long> getInterfaceIds() {
+        return Collections.unmodifiableSet(routes.keySet());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (refreshing != null) {
+            refreshing.dispose();
+        }
+    }
+
+    private Mono<Void> refresh() {
+        long now = System.currentTimeMillis();
+        long fullSyncIntervalMillis = qiapiGatewayProperties.getInterfaceRoutes().getFullSyncIntervalSeconds() * 1000;
+        boolean fullSync = lastFullSyncMillis == 0 || now - lastFullSyncMillis >= fullSyncIntervalMillis;
+        long updatedAfter = fullSync ? 0 : Math.max(1, watermark - WATERMARK_OVERLAP_MILLIS);
+        return Mono.fromFuture(() -> innerInterfaceInfoService.listGatewayRoutesAsync(updatedAfter))
+                .timeout(Duration.ofSeconds(10))
+                .flatMap(gatewayRoutes -> apply(gatewayRoutes, fullSync))
+                .doOnNext(changed -> {
+                    if (changed) {
+                        applicationEventPublisher.publishEvent(new RefreshRoutesEvent(this));
+                    }
+                    if (fullSync) {
+                        lastFullSyncMillis = now;
+                    }
+                })
+                .onErrorResume(e -> {
+                    log.warn("刷新接口路由失败，保留原路由: {}", e.toString());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * 合并查询到的接口路由：移除下线的接口路由，只转换变化的接口路由，转换失败时保留原路由
+     *
+     * @param gatewayRoutes 接口路由
+     * @param fullSync      是否全量同步（全量时移除结果中不存在的接口路由）
+     * @return 路由是否有变化
+     */
+    private Mono<Boolean> apply(Iterable<GatewayRoute> gatewayRoutes, boolean fullSync) {
+        boolean removed = false;
+        Set<Long> present = fullSync ? new HashSet<>() : null;
+        Map<Long, RouteDefinition> changedDefinitions = new LinkedHashMap<>();
+        for (GatewayRoute route : gatewayRoutes) {
+            if (route.getInterfaceId() == null) {
+                continue;
+            }
+            long interfaceId = route.getInterfaceId();
+            if (route.getUpdateTime() != null) {
+                watermark = Math.max(watermark, route.getUpdateTime());
+            }
+            RouteDefinition definition = Boolean.TRUE.equals(route.getDeleted()) ? null : toDefinition(route);
+            if (definition == null) {
+                removed |= remove(interfaceId);
+                continue;
+            }
+            if (present != null) {
+                present.add(interfaceId);
+            }
+            if (!definition.equals(routeDefinitions.get(interfaceId))) {
+                changedDefinitions.put(interfaceId, definition);
+                log.info("接口路由已更新 - 接口ID: {}, {} {}", interfaceId, route.getMethod(), route.getUrl());
+            }
+        }
+        if (present != null) {
+            for (Long interfaceId : new ArrayList<>(routeDefinitions.keySet())) {
+                if (!present.contains(interfaceId)) {
+                    removed |= remove(interfaceId);
+                }
+            }
+        }
+        boolean anyRemoved = removed;
+        return Flux.fromIterable(changedDefinitions.entrySet())
+                .concatMap(entry -> toRoute(entry.getValue())
+                        .doOnNext(route -> {
+                            routes.put(entry.getKey(), route);
+                            routeDefinitions.put(entry.getKey(), entry.getValue());
+                        }))
+                .count()
+                .map(converted -> anyRemoved || converted > 0);
+    }
+
+    private boolean remove(long interfaceId) {
+        routes.remove(interfaceId);
+        return routeDefinitions.remove(interfaceId) != null;
+    }
+
+    /**
+     * 按 Spring Cloud Gateway 转换静态路由的方式把路由定义转换为路由（断言、过滤器与默认过滤器）
+     *
+     * @return 转换好的路由，转换失败时为空
+     */
+    private Mono<Route> toRoute(RouteDefinition definition) {
+        RouteDefinitionRouteLocator converter = new RouteDefinitionRouteLocator(() -> Flux.just(definition),
+                routePredicateFactories, gatewayFilterFactories, gatewayProperties, configurationService);
+        return converter.getRoutes()
+                .next()
+                .onErrorResume(e -> {
+                    log.warn("接口路由转换失败，保留原路由 - 路由: {}, {}", definition.getId(), e.toString());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * 由接口路由生成路由定义：接口地址不是 http(s) 绝对地址、请求方法无效或网关路径不属于签名认证并计费的路由分类时返回 null
+     */
+    private RouteDefinition toDefinition(GatewayRoute route) {
+        URI url;
+        try {
+            url = URI.create(route.getUrl());
+        } catch (Exception e) {
+            return null;
+        }
+        String scheme = url.getScheme();
+        if (url.getHost() == null || !("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))) {
+            return null;
+        }
+        String method = route.getMethod() == null ? null : route.getMethod().toUpperCase(Locale.ROOT);
+        if (method == null || HttpMethod.resolve(method) == null) {
+            return null;
+        }
+        String path = url.getRawPath() == null || url.getRawPath().isEmpty() ? "/" : url.getRawPath();
+        String gatewayPath = gatewayPath(path);
+        RoutePolicy policy = routeClassifier.classify(gatewayPath);
+        if (policy.getAuthMode() != AuthMode.SIGNATURE || !policy.isBilling()) {
+            log.warn("接口 {} 的网关路径 {} 属于路由分类 {}，不生成接口路由", route.getInterfaceId(), gatewayPath,
+                    policy.getName());
+            return null;
+        }
+        RouteDefinition definition = new RouteDefinition();
+        definition.setId(ROUTE_ID_PREFIX + route.getInterfaceId());
+        definition.setUri(URI.create(scheme.toLowerCase(Locale.ROOT) + "://" + url.getRawAuthority()));
+        definition.setOrder(qiapiGatewayProperties.getInterfaceRoutes().getOrder());
+        definition.getPredicates().add(predicate("Path", gatewayPath));
+        definition.getPredicates().add(predicate("Method", method));
+        if (!gatewayPath.equals(path)) {
+            // 转发时还原为接口地址的路径
+            FilterDefinition setPath = new FilterDefinition();
+            setPath.setName("SetPath");
+            setPath.addArg("template", path);
+            definition.getFilters().add(setPath);
+        }
+        Map<String, Object> metadata = new HashMap<>(8);
+        metadata.put(INTERFACE_ID_METADATA, route.getInterfaceId());
+        metadata.put(INTERFACE_URL_METADATA, route.getUrl());
+        if (route.getInstanceUrls() != null && !route.getInstanceUrls().isEmpty()) {
+            metadata.put(INSTANCES_METADATA, new ArrayList<>(route.getInstanceUrls()));
+        }
+        if (route.getConnectTimeoutMillis() != null && route.getConnectTimeoutMillis() > 0) {
+            metadata.put(RouteMetadataUtils.CONNECT_TIMEOUT_ATTR, route.getConnectTimeoutMillis());
+        }
+        if (route.getResponseTimeoutMillis() != null && route.getResponseTimeoutMillis() > 0) {
+            metadata.put(RouteMetadataUtils.RESPONSE_TIMEOUT_ATTR, route.getResponseTimeoutMillis().longValue());
+        }
+        definition.setMetadata(metadata);
+        return definition;
+    }
+
+    /**
+     * 接口在网关上的路径：前缀 + 接口地址的路径，接口地址的路径已在前缀下时不重复拼接
+     */
+    private String gatewayPath(String path) {
+        String prefix = qiapiGatewayProperties.getInterfaceRoutes().getPathPrefix();
+        if (prefix == null || prefix.isEmpty() || "/".equals(prefix)) {
+            return path;
+        }
+        if (prefix.endsWith("/")) {
+            prefix = prefix.substring(0, prefix.length() - 1);
+        }
+        if (path.equals(prefix) || path.startsWith(prefix + "/")) {
+            return path;
+        }
+        return prefix + path;
+    }
+
+    private static PredicateDefinition predicate(String name, String arg) {
+        PredicateDefinition predicate = new PredicateDefinition();
+        predicate.setName(name);
+        predicate.addArg(NameUtils.generateName(0), arg);
+        return predicate;
+    }
+
+    /**
+     * 请求匹配到的接口路由对应的接口地址
+     *
+     * @param route 匹配到的路由，可为 null
+     * @return 接口地址，不是接口路由时为 null
+     */
+    public static String interfaceUrl(Route route) {
+        if (route == null) {
+            return null;
+        }
+        Object url = route.getMetadata().get(INTERFACE_URL_METADATA);
+        return url instanceof String ? (String) url : null;
+    }
+
+    /**
+     * 请求匹配到的接口路由对应的接口ID
+     *
+     * @param route 匹配到的路由，可为 null
+     * @return 接口ID，不是接口路由时为 null
+     */
+    public static Long interfaceId(Route route) {
+        if (route == null) {
+            return null;
+        }
+        Object interfaceId = route.getMetadata().get(INTERFACE_ID_METADATA);
+        return interfaceId instanceof Number ? ((Number) interfaceId).longValue() : null;
+    }
+
+    /**
+     * 请求匹配到的接口路由的上游实例地址
+     *
+     * @param route 匹配到的路由，可为 null
+     * @return 实例地址，没有注册实例时为空列表
+     */
+    @SuppressWarnings("unchecked")
+    public static List<String> instanceUrls(Route route) {
+        if (route == null) {
+            return Collections.emptyList();
+        }
+        Object instances = route.getMetadata().get(INSTANCES_METADATA);
+        return instances instanceof List ? (List<String>) instances : Collections.emptyList();
+    }
+}
@@ -0,0 +1,19 @@
+package com.qiapi.qiapigateway.route;
+
+/**
+ * 路由路径的匹配方式
+ *
+ * @author zhexueqi
+ */
+public enum MatchMode {
+
+    /**
+     * 按路径段匹配：/user/login 匹配 /user/login 和 /user/login/xxx，不匹配 /user/loginxxx
+     */
+    SEGMENT,
+
+    /**
+     * 按字符串前缀匹配：/api/user 匹配所有以 /api/user 开头的路径
+     */
+    PREFIX
+}
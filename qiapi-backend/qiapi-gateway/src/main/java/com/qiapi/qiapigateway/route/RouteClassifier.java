@@ -0,0 +1,108 @@
+package com.qiapi.qiapigateway.route;
+
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.Map;
+
+/**
+ * 请求路由分类
+ * <p>
+ * 启动时及配置刷新后把 qiapi.gateway.routes 编译为 {@link RouteTrie}，请求时一次遍历得到路由分类策略。
+ * 刷新时直接从 Environment 重新绑定，不依赖配置类的重新绑定顺序；编译失败时保留原来的规则
+ *
+ * @author zhexueqi
+ */
+@Slf4j
+@Component
+public class RouteClassifier implements ApplicationListener<EnvironmentChangeEvent> {
+
+    private static final String CONFIG_PREFIX = "qiapi.gateway.routes";
+
+    @Resource
+    private QiapiGatewayProperties qiapiGatewayProperties;
+
+    @Resource
+    private Environment environment;
+
+    private volatile RouteTrie routeTrie;
+
+    @PostConstruct
+    public void init() {
+        routeTrie = compile(qiapiGatewayProperties.getRoutes());
+    }
+
+    /**
+     * 对请求路径分类
+     *
+     * @param path 请求路径
+     * @return 路由分类策略
+     */
+    public RoutePolicy classify(String path) {
+        return routeTrie.match(path);
+    }
+
+    @Override
+    public void onApplicationEvent(EnvironmentChangeEvent event) {
+        if (event.getKeys().stream().noneMatch(key -> key.startsWith(CONFIG_PREFIX))) {
+            return;
+        }
+        try {
+            Map<String, QiapiGatewayProperties.RouteRule> defaults = new QiapiGatewayProperties().getRoutes();
+            Map<String, QiapiGatewayProperties.RouteRule> routes = Binder.get(environment)
+                    .bind(CONFIG_PREFIX, Bindable.mapOf(String.class, QiapiGatewayProperties.RouteRule.class)
+                            .withExistingValue(defaults))
+                    .orElse(defaults);
+            routeTrie = compile(routes);
+            log.info("路由分类已刷新");
+        } catch (Exception e) {
+            log.error("路由分类配置有误，保留原规则", e);
+        }
+    }
+
+    private static RouteTrie compile(Map<String, QiapiGatewayProperties.RouteRule> routes) {
+        RouteTrie trie = new RouteTrie(RoutePolicy.UNMATCHED);
+        routes.forEach((name, rule) -> {
+            RoutePolicy policy = new RoutePolicy(name, rule.getAuth(), rule.isRateLimit(), rule.isBilling(),
+                    rule.getPriority());
+            for (String path : rule.getPaths()) {
+                String normalized = normalize(path, rule.getMatch());
+                if (normalized == null) {
+                    continue;
+                }
+                RoutePolicy previous = trie.add(normalized, rule.getMatch(), policy);
+                if (previous != null) {
+                    log.warn("路径 {} 同时属于路由分类 {} 和 {}，使用 {}", path, previous.getName(), name, name);
+                }
+            }
+            log.info("路由分类 {}: {} {}", name, policy, rule.getPaths());
+        });
+        return trie;
+    }
+
+    /**
+     * 规范化配置的路径：必须以 / 开头；按路径段匹配时去掉末尾的 /
+     */
+    private static String normalize(String path, MatchMode matchMode) {
+        if (path == null || !path.startsWith("/")) {
+            log.warn("忽略不以 / 开头的路由路径: {}", path);
+            return null;
+        }
+        if (matchMode == MatchMode.SEGMENT) {
+            int end = path.length();
+            while (end > 1 && path.charAt(end - 1) == '/') {
+                end--;
+            }
+            return path.substring(0, end);
+        }
+        return path;
+    }
+}
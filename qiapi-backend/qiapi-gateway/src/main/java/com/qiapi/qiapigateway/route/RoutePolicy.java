@@ -0,0 +1,77 @@
+package com.qiapi.qiapigateway.route;
+
+/**
+ * 路由分类的处理策略（编译后不可变）
+ *
+ * @author zhexueqi
+ */
+public final class RoutePolicy {
+
+    /**
+     * 未匹配任何分类的路径：直接转发
+     */
+    public static final RoutePolicy UNMATCHED = new RoutePolicy("unmatched", AuthMode.NONE, false, false,
+            RoutePriority.NORMAL);
+
+    /**
+     * 匹配到接口动态路由的请求：不论路径属于哪个分类，都按签名认证、限流并计费
+     */
+    public static final RoutePolicy INTERFACE = new RoutePolicy("interface", AuthMode.SIGNATURE, true, true,
+            RoutePriority.NORMAL);
+
+    private final String name;
+
+    private final AuthMode authMode;
+
+    private final boolean rateLimit;
+
+    private final boolean billing;
+
+    private final RoutePriority priority;
+
+    public RoutePolicy(String name, AuthMode authMode, boolean rateLimit, boolean billing, RoutePriority priority) {
+        this.name = name;
+        this.authMode = authMode;
+        this.rateLimit = rateLimit;
+        this.billing = billing;
+        this.priority = priority;
+    }
+
+    /**
+     * 分类名称
+     */
+    public String getName() {
+        return name;
+    }
+
+    public AuthMode getAuthMode() {
+        return authMode;
+    }
+
+    /**
+     * 是否限流
+     */
+    public boolean isRateLimit() {
+        return rateLimit;
+    }
+
+    /**
+     * 是否计费（扣减额度或调用次数）
+     */
+    public boolean isBilling() {
+        return billing;
+    }
+
+    /**
+     * 过载优先级
+     */
+    public RoutePriority getPriority() {
+        return priority;
+    }
+
+    @Override
+    public String toString() {
+        return name + "{auth=" + authMode + ", rateLimit=" + rateLimit + ", billing=" + billing + ", priority=" + priority
+                + "}";
+    }
+}
@@ -0,0 +1,24 @@
+package com.qiapi.qiapigateway.route;
+
+/**
+ * 路由的过载优先级：网关过载时低优先级的请求先被拒绝
+ *
+ * @author zhexueqi
+ */
+public enum RoutePriority {
+
+    /**
+     * 高优先级（如登录注册），只在严重过载时拒绝
+     */
+    HIGH,
+
+    /**
+     * 普通优先级
+     */
+    NORMAL,
+
+    /**
+     * 低优先级（如平台内部调试），负载接近上限时最先拒绝
+     */
+    LOW
+}
@@ -0,0 +1,113 @@
+package com.qiapi.qiapigateway.route;
+
+import java.util.Arrays;
+
+/**
+ * 路由前缀树：按字符逐个匹配请求路径，一次遍历得到最长匹配的路由分类
+ * <p>
+ * 每个节点记录以该节点结尾的 {@link MatchMode#PREFIX} 与 {@link MatchMode#SEGMENT} 路由；
+ * 匹配过程只读数组，不分配任何对象。构建完成后不再修改，可被多个线程并发读取。
+ *
+ * @author zhexueqi
+ */
+public final class RouteTrie {
+
+    private final Node root = new Node();
+
+    private final RoutePolicy unmatched;
+
+    public RouteTrie(RoutePolicy unmatched) {
+        this.unmatched = unmatched;
+    }
+
+    /**
+     * 添加一条路由（仅在构建阶段调用）
+     *
+     * @param path      路径
+     * @param matchMode 匹配方式
+     * @param policy    路由分类策略
+     * @return 同一路径、同一匹配方式已有的策略，没有时为 null
+     */
+    RoutePolicy add(String path, MatchMode matchMode, RoutePolicy policy) {
+        Node node = root;
+        for (int i = 0; i < path.length(); i++) {
+            node = node.getOrAddChild(path.charAt(i));
+        }
+        RoutePolicy previous;
+        if (matchMode == MatchMode.PREFIX) {
+            previous = node.prefix;
+            node.prefix = policy;
+        } else {
+            previous = node.segment;
+            node.segment = policy;
+        }
+        return previous;
+    }
+
+    /**
+     * 匹配请求路径
+     *
+     * @param path 请求路径（不含查询参数）
+     * @return 最长匹配的路由分类策略，未匹配时为构造时指定的默认策略
+     */
+    public RoutePolicy match(String path) {
+        RoutePolicy matched = unmatched;
+        Node node = root;
+        int length = path.length();
+        for (int i = 0; ; i++) {
+            if (node.prefix != null) {
+                matched = node.prefix;
+            }
+            if (node.segment != null && (i == length || path.charAt(i) == '/')) {
+                matched = node.segment;
+            }
+            if (i == length) {
+                return matched;
+            }
+            node = node.child(path.charAt(i));
+            if (node == null) {
+                return matched;
+            }
+        }
+    }
+
+    private static final class Node {
+
+        private static final char[] NO_LABELS = new char[0];
+
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        /**
+         * 子节点的字符，与 children 一一对应；路径字符集小，线性查找即可
+         */
+        private char[] labels = NO_LABELS;
+
+        private Node[] children = NO_CHILDREN;
+
+        private RoutePolicy prefix;
+
+        private RoutePolicy segment;
+
+        Node child(char c) {
+            char[] labels = this.labels;
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node getOrAddChild(char c) {
+            Node child = child(c);
+            if (child == null) {
+                child = new Node();
+                labels = Arrays.copyOf(labels, labels.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                labels[labels.length - 1] = c;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+}
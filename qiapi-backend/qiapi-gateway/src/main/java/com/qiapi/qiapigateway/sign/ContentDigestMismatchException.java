@@ -0,0 +1,13 @@
+package com.qiapi.qiapigateway.sign;
+
+/**
+ * 请求体与签名中的 content-sha256 摘要不一致
+ *
+ * @author zhexueqi
+ */
+public class ContentDigestMismatchException extends RuntimeException {
+
+    public ContentDigestMismatchException() {
+        super("请求体摘要与 content-sha256 不一致");
+    }
+}
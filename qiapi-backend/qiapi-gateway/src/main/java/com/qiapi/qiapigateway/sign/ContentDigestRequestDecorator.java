@@ -0,0 +1,68 @@
+package com.qiapi.qiapigateway.sign;
+
+import com.qiapi.project.utils.SignUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import reactor.core.publisher.Flux;
+
+import java.security.MessageDigest;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 转发请求体时增量校验 content-sha256 摘要
+ * <p>
+ * 数据块流经时更新摘要，不缓存整个请求体；始终扣住最后收到的一块，请求体结束且摘要一致后才放出，
+ * 摘要不一致时以 {@link ContentDigestMismatchException} 中断转发，上游收不到完整的请求体
+ *
+ * @author zhexueqi
+ */
+public class ContentDigestRequestDecorator extends ServerHttpRequestDecorator {
+
+    /**
+     * 请求体结束标记
+     */
+    private static final DataBuffer END = DefaultDataBufferFactory.sharedInstance.wrap(new byte[0]);
+
+    private final byte[] expectedDigest;
+
+    /**
+     * @param delegate       原请求
+     * @param expectedDigest 签名中声明的请求体 SHA-256 摘要
+     */
+    public ContentDigestRequestDecorator(ServerHttpRequest delegate, byte[] expectedDigest) {
+        super(delegate);
+        this.expectedDigest = expectedDigest;
+    }
+
+    @Override
+    public Flux<DataBuffer> getBody() {
+        return Flux.defer(() -> {
+            MessageDigest digest = SignUtils.newContentDigest();
+            AtomicReference<DataBuffer> held = new AtomicReference<>();
+            return super.getBody()
+                    .concatWith(Flux.just(END))
+                    .<DataBuffer>handle((buffer, sink) -> {
+                        if (buffer == END) {
+                            DataBuffer last = held.getAndSet(null);
+                            if (!MessageDigest.isEqual(digest.digest(), expectedDigest)) {
+                                DataBufferUtils.release(last);
+                                sink.error(new ContentDigestMismatchException());
+                            } else if (last != null) {
+                                sink.next(last);
+                            }
+                            return;
+                        }
+                        // asByteBuffer 返回共享内容的视图，更新摘要不改变数据块的读位置
+                        digest.update(buffer.asByteBuffer());
+                        DataBuffer previous = held.getAndSet(buffer);
+                        if (previous != null) {
+                            sink.next(previous);
+                        }
+                    })
+                    .doFinally(signal -> DataBufferUtils.release(held.getAndSet(null)));
+        });
+    }
+}
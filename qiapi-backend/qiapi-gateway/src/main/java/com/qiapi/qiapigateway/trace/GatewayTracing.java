@@ -0,0 +1,108 @@
+package com.qiapi.qiapigateway.trace;
+
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import com.qiapi.trace.LoggingSpanExporter;
+import com.qiapi.trace.Span;
+import com.qiapi.trace.TraceContext;
+import com.qiapi.trace.Tracer;
+import org.apache.dubbo.rpc.RpcContext;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * 网关链路追踪：请求的本地根 span 放在 exchange 属性中（事件循环上不能依赖线程绑定），
+ * 保留的链路以 JSON 行写入 TRACE_SPANS 日志器
+ *
+ * @author zhexueqi
+ */
+@Component
+public class GatewayTracing {
+
+    /**
+     * exchange 属性：请求的本地根 span
+     */
+    public static final String SPAN_ATTR = GatewayTracing.class.getName() + ".span";
+
+    @Resource
+    private QiapiGatewayProperties qiapiGatewayProperties;
+
+    private LoggingSpanExporter exporter;
+
+    private Tracer tracer;
+
+    @PostConstruct
+    public void init() {
+        QiapiGatewayProperties.Trace config = qiapiGatewayProperties.getTrace();
+        exporter = new LoggingSpanExporter(config.getQueueCapacity());
+        tracer = new Tracer("qiapi-gateway", config.getSlowThresholdMillis(), config.getSampleRate(),
+                config.getMaxSpansPerTrace(), exporter);
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        exporter.close();
+    }
+
+    public Tracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * 请求的本地根 span，未开启链路追踪时为 {@link Span#NOOP}
+     */
+    public static Span span(ServerWebExchange exchange) {
+        Span span = exchange.getAttribute(SPAN_ATTR);
+        return span == null ? Span.NOOP : span;
+    }
+
+    /**
+     * 在请求的链路下记录一次异步 Dubbo 调用，并通过 attachment 把链路传给提供者
+     *
+     * @param exchange exchange
+     * @param name     调用名称
+     * @param call     发起调用（在订阅线程中执行）
+     */
+    public static <T> Mono<T> rpc(ServerWebExchange exchange, String name, Supplier<CompletableFuture<T>> call) {
+        Span parent = span(exchange);
+        if (parent.isNoop()) {
+            return Mono.fromFuture(call);
+        }
+        return Mono.defer(() -> {
+            Span span = parent.startChild("dubbo-client " + name);
+            if (!span.isNoop()) {
+                // 客户端 attachment 只作用于当前线程发起的下一次调用
+                RpcContext.getClientAttachment().setAttachment(TraceContext.HEADER, span.getContext().toTraceparent());
+            }
+            return Mono.fromFuture(call.get())
+                    .doOnError(span::error)
+                    .doFinally(signalType -> span.end());
+        });
+    }
+
+    /**
+     * 在请求的链路下记录一段异步操作
+     *
+     * @param exchange  exchange
+     * @param name      操作名称
+     * @param operation 操作
+     */
+    public static <T> Mono<T> trace(ServerWebExchange exchange, String name, Mono<T> operation) {
+        Span parent = span(exchange);
+        if (parent.isNoop()) {
+            return operation;
+        }
+        return Mono.defer(() -> {
+            Span span = parent.startChild(name);
+            return operation
+                    .doOnError(span::error)
+                    .doFinally(signalType -> span.end());
+        });
+    }
+}
@@ -0,0 +1,64 @@
+package com.qiapi.qiapigateway.trace;
+
+import com.qiapi.qiapigateway.loadbalance.InstanceLoadBalancerFilter;
+import com.qiapi.trace.Span;
+import com.qiapi.trace.TraceContext;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+
+/**
+ * 转发链路：紧挨着实际转发记录上游调用 span（到收到上游响应头为止），
+ * 并以该 span 覆盖转发请求的 traceparent 请求头，上游服务据此延续链路
+ *
+ * @author zhexueqi
+ */
+@Component
+public class TraceForwardFilter implements GlobalFilter, Ordered {
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Span parent = GatewayTracing.span(exchange);
+        if (parent.isNoop()) {
+            return chain.filter(exchange);
+        }
+        Span span = parent.startChild("upstream");
+        if (span.isNoop()) {
+            return chain.filter(exchange);
+        }
+        URI url = exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR);
+        if (url != null) {
+            span.tag("upstream", url.getScheme() + "://" + url.getRawAuthority());
+        }
+        ServerWebExchange tracedExchange = exchange.mutate()
+                .request(request -> request.headers(headers ->
+                        headers.set(TraceContext.HEADER, span.getContext().toTraceparent())))
+                .build();
+        return chain.filter(tracedExchange)
+                .doOnError(span::error)
+                .doFinally(signalType -> {
+                    HttpStatus status = exchange.getResponse().getStatusCode();
+                    if (status != null) {
+                        span.tag("status", status.value());
+                        if (status.is5xxServerError()) {
+                            span.error("HTTP " + status.value());
+                        }
+                    }
+                    span.end();
+                });
+    }
+
+    @Override
+    public int getOrder() {
+        // 在选择上游实例与记录上游耗时之后
+        return InstanceLoadBalancerFilter.ORDER + 2;
+    }
+}
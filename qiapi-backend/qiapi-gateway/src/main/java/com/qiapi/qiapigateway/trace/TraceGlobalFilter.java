@@ -0,0 +1,70 @@
+package com.qiapi.qiapigateway.trace;
+
+import com.qiapi.qiapigateway.accesslog.AccessLogFilter;
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import com.qiapi.trace.Span;
+import com.qiapi.trace.TraceContext;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import javax.annotation.Resource;
+
+/**
+ * 链路入口过滤器：按 traceparent 请求头延续 SDK 或调用方的链路（没有时开始新链路），
+ * 在所有过滤器之前创建请求的本地根 span，响应头 {@value #TRACE_ID_HEADER} 返回链路ID
+ * <p>
+ * 请求结束时标记路由分类、接口与状态码后结束根 span，由尾部采样决定是否保留
+ *
+ * @author zhexueqi
+ */
+@Component
+public class TraceGlobalFilter implements GlobalFilter, Ordered {
+
+    public static final String TRACE_ID_HEADER = "X-Trace-Id";
+
+    @Resource
+    private QiapiGatewayProperties qiapiGatewayProperties;
+
+    @Resource
+    private GatewayTracing gatewayTracing;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        if (!qiapiGatewayProperties.getTrace().isEnabled()) {
+            return chain.filter(exchange);
+        }
+        ServerHttpRequest request = exchange.getRequest();
+        TraceContext parent = TraceContext.parse(request.getHeaders().getFirst(TraceContext.HEADER));
+        Span span = gatewayTracing.getTracer()
+                .startRoot("gateway " + request.getMethodValue() + " " + request.getPath().value(), parent);
+        exchange.getAttributes().put(GatewayTracing.SPAN_ATTR, span);
+        exchange.getResponse().getHeaders().set(TRACE_ID_HEADER, span.getTraceId());
+        return chain.filter(exchange)
+                .doOnError(span::error)
+                .doFinally(signalType -> {
+                    HttpStatus status = exchange.getResponse().getStatusCode();
+                    span.tag("route", exchange.getAttribute(AccessLogFilter.ROUTE_ATTR))
+                            .tag("interfaceId", exchange.getAttribute(AccessLogFilter.INTERFACE_ID_ATTR))
+                            .tag("status", status == null ? null : status.value());
+                    if (signalType == SignalType.CANCEL) {
+                        span.tag("cancelled", true);
+                    } else if (status != null && status.is5xxServerError()) {
+                        span.error("HTTP " + status.value());
+                    }
+                    span.end();
+                });
+    }
+
+    @Override
+    public int getOrder() {
+        // 在请求指标与访问日志之前
+        return -4;
+    }
+}
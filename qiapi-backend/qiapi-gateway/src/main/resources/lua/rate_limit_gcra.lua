@@ -0,0 +1,35 @@
+-- 网关限流：GCRA 令牌桶，与本地 TokenBucket 语义一致（速率 rate、容量 burst），多个维度全部通过才取用，任一维度超限则都不取用
+-- KEYS[i] 第 i 个维度的理论到达时间（微秒）
+-- ARGV[2i-1] 第 i 个维度发放一个令牌的间隔（微秒）  ARGV[2i] 允许超前的时长（微秒，即 (burst - 1) * 间隔）
+-- 返回：建议等待的毫秒数 * 4 + 超限的维度序号，0 表示通过
+-- 使用 Redis 服务器时间，各网关节点的时钟偏差不影响限流
+if redis.replicate_commands then
+    redis.replicate_commands()
+end
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000000 + tonumber(time[2])
+local wait = 0
+local rejected = 0
+local arrivals = {}
+for i = 1, #KEYS do
+    local interval = tonumber(ARGV[2 * i - 1])
+    local tolerance = tonumber(ARGV[2 * i])
+    local arrival = tonumber(redis.call('GET', KEYS[i]) or '0')
+    if arrival < now then
+        arrival = now
+    end
+    local retry = arrival - tolerance - now
+    if retry > wait then
+        wait = retry
+        rejected = i
+    end
+    arrivals[i] = arrival + interval
+end
+if wait > 0 then
+    return math.ceil(wait / 1000) * 4 + rejected
+end
+for i = 1, #KEYS do
+    -- 理论到达时间早于当前时间后状态等价于满桶，可以过期删除
+    redis.call('SET', KEYS[i], string.format('%.0f', arrivals[i]), 'PX', math.ceil((arrivals[i] - now) / 1000) + 1)
+end
+return 0
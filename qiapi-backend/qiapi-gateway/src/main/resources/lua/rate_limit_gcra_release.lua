@@ -0,0 +1,11 @@
+-- 网关限流：归还一个已取用的令牌（理论到达时间回退一个发放间隔），与本地 TokenBucket.release 一致
+-- KEYS[1] 理论到达时间（微秒）
+-- ARGV[1] 发放一个令牌的间隔（微秒）
+-- 返回：1 表示已归还，0 表示 key 已过期（等价于满桶，无需归还）
+local arrival = tonumber(redis.call('GET', KEYS[1]))
+local ttl = redis.call('PTTL', KEYS[1])
+if not arrival or ttl <= 0 then
+    return 0
+end
+redis.call('SET', KEYS[1], string.format('%.0f', arrival - tonumber(ARGV[1])), 'PX', ttl)
+return 1
@@ -0,0 +1,120 @@
+package com.qiapi.qiapigateway.accesslog;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 访问日志环形缓冲区测试
+ *
+ * @author zhexueqi
+ */
+class AccessLogRingBufferTest {
+
+    @Test
+    void capacityRoundsUpToPowerOfTwo() {
+        Assertions.assertEquals(2, new AccessLogRingBuffer(0).capacity());
+        Assertions.assertEquals(2, new AccessLogRingBuffer(1).capacity());
+        Assertions.assertEquals(4, new AccessLogRingBuffer(3).capacity());
+        Assertions.assertEquals(4, new AccessLogRingBuffer(4).capacity());
+        Assertions.assertEquals(8, new AccessLogRingBuffer(5).capacity());
+        Assertions.assertEquals(1024, new AccessLogRingBuffer(1000).capacity());
+    }
+
+    @Test
+    void rejectsWhenFullAndAcceptsAfterPoll() {
+        AccessLogRingBuffer buffer = new AccessLogRingBuffer(4);
+        Assertions.assertNull(buffer.poll());
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertTrue(buffer.offer(record(i)));
+        }
+        Assertions.assertFalse(buffer.offer(record(4)), "缓冲区满时直接丢弃");
+        Assertions.assertEquals("0", buffer.poll().getRequestId());
+        Assertions.assertTrue(buffer.offer(record(5)));
+        Assertions.assertFalse(buffer.offer(record(6)));
+        for (String expected : new String[]{"1", "2", "3", "5"}) {
+            Assertions.assertEquals(expected, buffer.poll().getRequestId());
+        }
+        Assertions.assertNull(buffer.poll());
+    }
+
+    @Test
+    void keepsOrderAcrossManyWraparounds() {
+        AccessLogRingBuffer buffer = new AccessLogRingBuffer(8);
+        int next = 0;
+        int expected = 0;
+        // 每轮写入数与容量互质，槽位下标在各个位置上回绕
+        for (int round = 0; round < 1000; round++) {
+            for (int i = 0; i < 5; i++) {
+                Assertions.assertTrue(buffer.offer(record(next++)));
+            }
+            for (int i = 0; i < 5; i++) {
+                Assertions.assertEquals(String.valueOf(expected++), buffer.poll().getRequestId());
+            }
+            Assertions.assertNull(buffer.poll());
+        }
+    }
+
+    @Test
+    void multipleProducersSingleConsumer() throws InterruptedException {
+        AccessLogRingBuffer buffer = new AccessLogRingBuffer(64);
+        int producers = 4;
+        int perProducer = 50_000;
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < perProducer; i++) {
+                        AccessLogRecord record = record(i);
+                        record.setRoute(String.valueOf(producer));
+                        if (buffer.offer(record)) {
+                            accepted.incrementAndGet();
+                        } else {
+                            rejected.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        int[] lastSeen = new int[producers];
+        Arrays.fill(lastSeen, -1);
+        int polled = 0;
+        start.countDown();
+        while (done.getCount() > 0 || polled < accepted.get()) {
+            AccessLogRecord record = buffer.poll();
+            if (record == null) {
+                Thread.yield();
+                continue;
+            }
+            int producer = Integer.parseInt(record.getRoute());
+            int sequence = Integer.parseInt(record.getRequestId());
+            // 同一生产者的记录按写入顺序读出，且不重复
+            Assertions.assertTrue(sequence > lastSeen[producer], "生产者 " + producer + " 的记录乱序或重复");
+            lastSeen[producer] = sequence;
+            polled++;
+        }
+        Assertions.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assertions.assertNull(buffer.poll());
+        Assertions.assertEquals(accepted.get(), polled);
+        Assertions.assertEquals(producers * perProducer, accepted.get() + rejected.get());
+    }
+
+    private static AccessLogRecord record(int sequence) {
+        AccessLogRecord record = new AccessLogRecord();
+        record.setRequestId(String.valueOf(sequence));
+        return record;
+    }
+}
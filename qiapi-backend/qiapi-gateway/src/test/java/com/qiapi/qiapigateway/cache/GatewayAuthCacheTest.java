@@ -0,0 +1,89 @@
+package com.qiapi.qiapigateway.cache;
+
+import com.qiapi.qiapicommon.model.dto.InvocationAuthorization;
+import com.qiapi.qiapicommon.model.enums.InvocationQuotaEnum;
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 网关调用鉴权信息缓存测试
+ *
+ * @author zhexueqi
+ */
+class GatewayAuthCacheTest {
+
+    private static final String URL = "http://localhost:8123/api/name";
+
+    private QiapiGatewayProperties properties;
+
+    private GatewayAuthCache cache;
+
+    @BeforeEach
+    void setUp() {
+        properties = new QiapiGatewayProperties();
+        cache = new GatewayAuthCache();
+        ReflectionTestUtils.setField(cache, "qiapiGatewayProperties", properties);
+        ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+        cache.init();
+    }
+
+    @Test
+    void cachesIdentityWithoutQuota() {
+        cache.put("ak-1", URL, "GET", authorization(1L, 10L));
+        InvocationAuthorization cached = cache.get("ak-1", URL, "GET");
+        Assertions.assertNotNull(cached);
+        Assertions.assertEquals(1L, cached.getUserId());
+        Assertions.assertEquals(10L, cached.getInterfaceId());
+        Assertions.assertEquals("signing-key", cached.getSigningKey());
+        Assertions.assertNull(cached.getQuota(), "配额不缓存");
+        Assertions.assertNull(cached.getRemaining(), "剩余量不缓存");
+        // 返回副本，调用方修改不影响缓存
+        cached.setQuota(InvocationQuotaEnum.CREDIT);
+        Assertions.assertNull(cache.get("ak-1", URL, "GET").getQuota());
+        Assertions.assertNull(cache.get("ak-1", URL, "POST"));
+    }
+
+    @Test
+    void skipsMissingUserOrInterface() {
+        cache.put("ak-1", URL, "GET", authorization(null, 10L));
+        cache.put("ak-2", URL, "GET", authorization(2L, null));
+        Assertions.assertNull(cache.get("ak-1", URL, "GET"));
+        Assertions.assertNull(cache.get("ak-2", URL, "GET"));
+    }
+
+    @Test
+    void invalidatesByAccessKeyAndInterface() {
+        cache.put("ak-1", URL, "GET", authorization(1L, 10L));
+        cache.put("ak-1", URL + "2", "GET", authorization(1L, 11L));
+        cache.put("ak-2", URL, "GET", authorization(2L, 10L));
+        cache.invalidateAccessKey("ak-1");
+        Assertions.assertNull(cache.get("ak-1", URL, "GET"));
+        Assertions.assertNull(cache.get("ak-1", URL + "2", "GET"));
+        Assertions.assertNotNull(cache.get("ak-2", URL, "GET"));
+        cache.put("ak-1", URL + "2", "GET", authorization(1L, 11L));
+        cache.invalidateInterfaceInfo(10L);
+        Assertions.assertNull(cache.get("ak-2", URL, "GET"));
+        Assertions.assertNotNull(cache.get("ak-1", URL + "2", "GET"));
+    }
+
+    @Test
+    void disabledCachesNothing() {
+        properties.getAuthCache().setEnabled(false);
+        cache.put("ak-1", URL, "GET", authorization(1L, 10L));
+        Assertions.assertNull(cache.get("ak-1", URL, "GET"));
+    }
+
+    private static InvocationAuthorization authorization(Long userId, Long interfaceId) {
+        InvocationAuthorization authorization = new InvocationAuthorization();
+        authorization.setUserId(userId);
+        authorization.setInterfaceId(interfaceId);
+        authorization.setSigningKey("signing-key");
+        authorization.setQuota(InvocationQuotaEnum.CREDIT);
+        authorization.setRemaining(100L);
+        return authorization;
+    }
+}
@@ -0,0 +1,180 @@
+package com.qiapi.qiapigateway.credit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 额度租用测试
+ *
+ * @author zhexueqi
+ */
+class CreditLeaseTest {
+
+    private static final long TTL = TimeUnit.MINUTES.toMillis(1);
+
+    private static final long GRACE = TimeUnit.SECONDS.toMillis(10);
+
+    @Test
+    void issuesUpToSize() {
+        CreditLease lease = new CreditLease("t", 3, TTL, GRACE, l -> {
+        });
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertTrue(lease.tryAcquire());
+        }
+        Assertions.assertFalse(lease.tryAcquire());
+        Assertions.assertFalse(lease.isUsable(System.currentTimeMillis()));
+        // 失败的调用归还次数
+        lease.complete(false);
+        Assertions.assertTrue(lease.isUsable(System.currentTimeMillis()));
+        Assertions.assertTrue(lease.tryAcquire());
+        Assertions.assertEquals(3, lease.getIssued());
+    }
+
+    @Test
+    void settlesOnceAfterInFlightCallsComplete() {
+        List<Integer> settled = new CopyOnWriteArrayList<>();
+        CreditLease lease = new CreditLease("t", 5, TTL, GRACE, l -> settled.add(l.getUsed()));
+        Assertions.assertTrue(lease.tryAcquire());
+        Assertions.assertTrue(lease.tryAcquire());
+        Assertions.assertTrue(lease.tryAcquire());
+        lease.complete(true);
+        lease.close();
+        Assertions.assertTrue(settled.isEmpty(), "仍有进行中的请求时不结算");
+        Assertions.assertFalse(lease.tryAcquire(), "关闭后不再发放");
+        Assertions.assertTrue(settled.isEmpty());
+        lease.complete(false);
+        Assertions.assertTrue(settled.isEmpty());
+        lease.complete(true);
+        // 只扣减成功的调用
+        Assertions.assertEquals(1, settled.size());
+        Assertions.assertEquals(2, settled.get(0));
+        lease.close();
+        Assertions.assertFalse(lease.tryAcquire());
+        Assertions.assertEquals(1, settled.size(), "只结算一次");
+    }
+
+    @Test
+    void closeWithoutCallsSettlesImmediately() {
+        List<Integer> settled = new CopyOnWriteArrayList<>();
+        CreditLease lease = new CreditLease("t", 5, TTL, GRACE, l -> settled.add(l.getUsed()));
+        lease.close();
+        Assertions.assertEquals(1, settled.size());
+        Assertions.assertEquals(0, settled.get(0));
+        Assertions.assertTrue(lease.isClosed());
+        Assertions.assertFalse(lease.isUsable(System.currentTimeMillis()));
+    }
+
+    @Test
+    void expiresAfterTtl() {
+        CreditLease lease = new CreditLease("t", 5, 1000, GRACE, l -> {
+        });
+        long created = lease.getCreateTime();
+        Assertions.assertTrue(lease.isUsable(created + 999));
+        Assertions.assertFalse(lease.isExpired(created + 999));
+        Assertions.assertFalse(lease.isUsable(created + 1000));
+        Assertions.assertTrue(lease.isExpired(created + 1000));
+    }
+
+    @Test
+    void refusesToIssueAfterExpiry() {
+        List<Integer> settled = new CopyOnWriteArrayList<>();
+        CreditLease lease = new CreditLease("t", 5, 0, GRACE, l -> settled.add(l.getUsed()));
+        // 未被清理任务关闭的过期租用也不再发放，取用不能晚于后端冻结
+        Assertions.assertFalse(lease.tryAcquire());
+        Assertions.assertEquals(0, lease.getIssued());
+        Assertions.assertEquals(0, lease.getInFlight());
+        Assertions.assertTrue(settled.isEmpty());
+    }
+
+    @Test
+    void forceSettlesBeforeBackendHoldExpires() {
+        List<Integer> settled = new CopyOnWriteArrayList<>();
+        CreditLease lease = new CreditLease("t", 5, 1000, 500, l -> settled.add(l.getUsed()));
+        long created = lease.getCreateTime();
+        Assertions.assertTrue(lease.tryAcquire());
+        Assertions.assertTrue(lease.tryAcquire());
+        lease.complete(true);
+        // 一个请求一直未完成，到期关闭后不会正常结算
+        lease.close();
+        Assertions.assertTrue(settled.isEmpty());
+        Assertions.assertFalse(lease.forceSettle(created + 1499));
+        Assertions.assertTrue(settled.isEmpty());
+
+        // 到达截止时间（早于后端冻结过期）按已成功的调用结算，而不是等后端整笔释放
+        Assertions.assertTrue(lease.forceSettle(created + 1500));
+        Assertions.assertEquals(1, settled.size());
+        Assertions.assertEquals(1, settled.get(0));
+        Assertions.assertTrue(lease.isSettled());
+
+        // 之后完成的请求不会再次结算
+        lease.complete(true);
+        Assertions.assertFalse(lease.forceSettle(created + 2000));
+        Assertions.assertEquals(1, settled.size());
+        Assertions.assertFalse(lease.tryAcquire());
+    }
+
+    @Test
+    void forceSettleClosesOpenLease() {
+        List<Integer> settled = new CopyOnWriteArrayList<>();
+        CreditLease lease = new CreditLease("t", 5, 1000, 0, l -> settled.add(l.getUsed()));
+        Assertions.assertTrue(lease.forceSettle(lease.getCreateTime() + 1000));
+        Assertions.assertTrue(lease.isClosed());
+        Assertions.assertEquals(1, settled.size());
+        Assertions.assertEquals(0, settled.get(0));
+    }
+
+    @Test
+    void concurrentAcquireCompleteAndCloseSettleExactUsage() throws InterruptedException {
+        for (int round = 0; round < 50; round++) {
+            AtomicInteger settleCount = new AtomicInteger();
+            AtomicInteger settledUsed = new AtomicInteger(-1);
+            AtomicInteger succeeded = new AtomicInteger();
+            AtomicInteger completedAfterSettle = new AtomicInteger();
+            CreditLease lease = new CreditLease("t", 200, TTL, GRACE, l -> {
+                settleCount.incrementAndGet();
+                settledUsed.set(l.getUsed());
+            });
+            int threads = 4;
+            CountDownLatch start = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(threads);
+            for (int t = 0; t < threads; t++) {
+                new Thread(() -> {
+                    try {
+                        start.await();
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        while (lease.tryAcquire()) {
+                            boolean success = random.nextInt(4) != 0;
+                            if (success) {
+                                succeeded.incrementAndGet();
+                            }
+                            if (settleCount.get() > 0) {
+                                completedAfterSettle.incrementAndGet();
+                            }
+                            lease.complete(success);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }).start();
+            }
+            start.countDown();
+            // 在取用过程中关闭
+            Thread.sleep(ThreadLocalRandom.current().nextInt(2));
+            lease.close();
+            Assertions.assertTrue(done.await(10, TimeUnit.SECONDS));
+            Assertions.assertEquals(1, settleCount.get(), "第 " + round + " 轮结算次数");
+            Assertions.assertEquals(0, completedAfterSettle.get(), "结算时仍有进行中的请求");
+            Assertions.assertEquals(succeeded.get(), settledUsed.get(), "结算次数与成功调用不一致");
+            Assertions.assertTrue(lease.getIssued() <= lease.getSize());
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.qiapi.qiapigateway.loadbalance;
+
+import com.qiapi.qiapigateway.route.InterfaceRouteLocator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上游实例负载均衡测试：P2C + Peak EWMA 选择与连续失败剔除
+ *
+ * @author zhexueqi
+ */
+class InstanceLoadBalancerTest {
+
+    private static final long DECAY = TimeUnit.SECONDS.toNanos(10);
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private InterfaceRouteLocator interfaceRouteLocator;
+
+    private InstanceLoadBalancer loadBalancer;
+
+    @BeforeEach
+    void setUp() {
+        interfaceRouteLocator = Mockito.mock(InterfaceRouteLocator.class);
+        loadBalancer = new InstanceLoadBalancer();
+        ReflectionTestUtils.setField(loadBalancer, "interfaceRouteLocator", interfaceRouteLocator);
+        ReflectionTestUtils.setField(loadBalancer, "meterRegistry", new SimpleMeterRegistry());
+        loadBalancer.init();
+    }
+
+    @Test
+    void choosesLowerLatencyInstance() {
+        UpstreamInstance fast = instance("http://fast");
+        UpstreamInstance slow = instance("http://slow");
+        complete(fast, MS);
+        complete(slow, 100 * MS);
+        InstanceGroup group = group(fast, slow);
+        // 只有两个实例时 P2C 每次比较的都是这两个
+        for (int i = 0; i < 200; i++) {
+            Assertions.assertSame(fast, group.choose(DECAY));
+        }
+    }
+
+    @Test
+    void prefersInstanceWithFewerInFlightRequests() {
+        UpstreamInstance busy = instance("http://busy");
+        UpstreamInstance idle = instance("http://idle");
+        complete(busy, 10 * MS);
+        complete(idle, 10 * MS);
+        busy.start();
+        busy.start();
+        InstanceGroup group = group(busy, idle);
+        Assertions.assertSame(idle, group.choose(DECAY));
+        busy.cancel();
+        busy.cancel();
+        Assertions.assertEquals(0, busy.getInFlight());
+    }
+
+    @Test
+    void coldInstanceIsPenalizedOnlyWhileItHasPendingRequests() {
+        UpstreamInstance cold = instance("http://cold");
+        UpstreamInstance warm = instance("http://warm");
+        complete(warm, 50 * MS);
+        InstanceGroup group = group(cold, warm);
+        // 没有样本的实例先得到一次机会
+        Assertions.assertSame(cold, group.choose(DECAY));
+        // 第一个请求未返回前不再继续涌入
+        cold.start();
+        Assertions.assertSame(warm, group.choose(DECAY));
+    }
+
+    @Test
+    void peakEwmaRisesImmediatelyAndDecaysOverTime() {
+        UpstreamInstance instance = instance("http://a");
+        long now = System.nanoTime();
+        complete(instance, MS, now);
+        complete(instance, 100 * MS, now);
+        Assertions.assertEquals(100 * MS, instance.cost(now, DECAY), 1);
+        // 紧接着的快速响应几乎不拉低均值
+        complete(instance, MS, now);
+        Assertions.assertEquals(100 * MS, instance.cost(now, DECAY), 1);
+        // 一段时间没有流量后按时间衰减
+        Assertions.assertTrue(instance.cost(now + 5 * DECAY, DECAY) < MS);
+        // 长时间后的快速响应按衰减后的权重并入
+        complete(instance, MS, now + 5 * DECAY);
+        Assertions.assertTrue(instance.cost(now + 5 * DECAY, DECAY) < 2 * MS);
+    }
+
+    @Test
+    void failuresCountAtLeastCurrentLatency() {
+        UpstreamInstance instance = instance("http://a");
+        long now = System.nanoTime();
+        complete(instance, 50 * MS, now);
+        instance.start();
+        instance.failure(MS, now, DECAY, 5, 30000);
+        // 快速失败不会让实例看起来更快
+        Assertions.assertEquals(50 * MS, instance.cost(now, DECAY), 1);
+        Assertions.assertEquals(1, instance.getFailures());
+    }
+
+    @Test
+    void ejectsAfterConsecutiveFailures() {
+        UpstreamInstance bad = instance("http://bad");
+        UpstreamInstance a = instance("http://a");
+        UpstreamInstance b = instance("http://b");
+        complete(a, 10 * MS);
+        complete(b, 10 * MS);
+        // 成功的请求清零连续失败次数
+        Assertions.assertFalse(fail(bad));
+        Assertions.assertFalse(fail(bad));
+        complete(bad, MS);
+        Assertions.assertEquals(0, bad.getConsecutiveFailures());
+        Assertions.assertFalse(fail(bad));
+        Assertions.assertFalse(fail(bad));
+        Assertions.assertTrue(fail(bad));
+
+        long now = System.currentTimeMillis();
+        Assertions.assertTrue(bad.isEjected(now));
+        InstanceGroup group = group(bad, a, b);
+        for (int i = 0; i < 300; i++) {
+            Assertions.assertNotSame(bad, group.choose(DECAY));
+        }
+        // 剔除到期后重新参与选择
+        Assertions.assertFalse(bad.isEjected(bad.getEjectedUntilMillis()));
+    }
+
+    @Test
+    void allEjectedFailsOpen() {
+        UpstreamInstance a = instance("http://a");
+        UpstreamInstance b = instance("http://b");
+        for (int i = 0; i < 3; i++) {
+            fail(a);
+            fail(b);
+        }
+        Assertions.assertTrue(a.isEjected(System.currentTimeMillis()));
+        Assertions.assertTrue(b.isEjected(System.currentTimeMillis()));
+        Assertions.assertNotNull(group(a, b).choose(DECAY));
+    }
+
+    @Test
+    void rebuildsGroupAndKeepsStatsOfRemainingInstances() {
+        InstanceGroup group = loadBalancer.getGroup(route(1L, "http://a:8080/path", "ftp://ignored", "http://b:8081"));
+        Assertions.assertNotNull(group);
+        Assertions.assertEquals(2, group.getInstances().size());
+        UpstreamInstance a = group.getInstances().get(0);
+        Assertions.assertEquals(URI.create("http://a:8080"), a.getUri());
+        Assertions.assertSame(group,
+                loadBalancer.getGroup(route(1L, "http://a:8080/path", "ftp://ignored", "http://b:8081")));
+
+        // 实例列表变化时保留仍存在的实例
+        InstanceGroup rebuilt = loadBalancer.getGroup(route(1L, "http://a:8080/path", "http://c:8082"));
+        Assertions.assertNotSame(group, rebuilt);
+        Assertions.assertSame(a, rebuilt.getInstances().get(0));
+        Assertions.assertEquals("http://c:8082", rebuilt.getInstances().get(1).getUrl());
+
+        Assertions.assertNull(loadBalancer.getGroup(route(2L)));
+        Assertions.assertNull(loadBalancer.getGroup(route(3L, "not a url")));
+
+        // 路由刷新后清理已没有路由的接口
+        Mockito.when(interfaceRouteLocator.getInterfaceIds()).thenReturn(Collections.emptySet());
+        loadBalancer.onApplicationEvent(new RefreshRoutesEvent(this));
+        Assertions.assertFalse(loadBalancer.getGroups().containsKey(1L));
+    }
+
+    private static UpstreamInstance instance(String url) {
+        return new UpstreamInstance(url, URI.create(url));
+    }
+
+    private static InstanceGroup group(UpstreamInstance... instances) {
+        String[] urls = Arrays.stream(instances).map(UpstreamInstance::getUrl).toArray(String[]::new);
+        return new InstanceGroup(Arrays.asList(urls), instances);
+    }
+
+    private static void complete(UpstreamInstance instance, long rttNanos) {
+        complete(instance, rttNanos, System.nanoTime());
+    }
+
+    private static void complete(UpstreamInstance instance, long rttNanos, long nowNanos) {
+        instance.start();
+        instance.success(rttNanos, nowNanos, DECAY);
+    }
+
+    private static boolean fail(UpstreamInstance instance) {
+        instance.start();
+        return instance.failure(MS, System.nanoTime(), DECAY, 3, 30000);
+    }
+
+    private static Route route(long interfaceId, String... instanceUrls) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put(InterfaceRouteLocator.INTERFACE_ID_METADATA, interfaceId);
+        List<String> urls = Arrays.asList(instanceUrls);
+        metadata.put(InterfaceRouteLocator.INSTANCES_METADATA, urls);
+        return Route.async()
+                .id("interface-" + interfaceId)
+                .uri("http://localhost:8123")
+                .predicate(exchange -> true)
+                .metadata(metadata)
+                .build();
+    }
+}
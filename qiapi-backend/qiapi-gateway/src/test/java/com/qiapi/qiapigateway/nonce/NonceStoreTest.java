@@ -0,0 +1,94 @@
+package com.qiapi.qiapigateway.nonce;
+
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * nonce 防重放测试（仅本地存储）
+ *
+ * @author zhexueqi
+ */
+class NonceStoreTest {
+
+    private NonceStore nonceStore;
+
+    @BeforeEach
+    void setUp() {
+        QiapiGatewayProperties properties = new QiapiGatewayProperties();
+        properties.getNonce().setExpectedRps(100);
+        nonceStore = new NonceStore();
+        ReflectionTestUtils.setField(nonceStore, "qiapiGatewayProperties", properties);
+        ReflectionTestUtils.setField(nonceStore, "meterRegistry", new SimpleMeterRegistry());
+        nonceStore.init();
+    }
+
+    @Test
+    void rejectsRepeatedNonce() {
+        Assertions.assertTrue(nonceStore.tryRecord("ak-1", "n-1").block());
+        Assertions.assertFalse(nonceStore.tryRecord("ak-1", "n-1").block());
+        // 不同 accessKey 的 nonce 互不影响
+        Assertions.assertTrue(nonceStore.tryRecord("ak-2", "n-1").block());
+        Assertions.assertTrue(nonceStore.tryRecord("ak-1", "n-2").block());
+    }
+
+    @Test
+    void seenIsReadOnly() {
+        // 只读检查不登记，伪造的请求不能占用 nonce
+        Assertions.assertFalse(nonceStore.seen("ak-1", "n-1").block());
+        Assertions.assertFalse(nonceStore.seen("ak-1", "n-1").block());
+        Assertions.assertTrue(nonceStore.tryRecord("ak-1", "n-1").block());
+        Assertions.assertTrue(nonceStore.seen("ak-1", "n-1").block());
+        Assertions.assertFalse(nonceStore.seen("ak-2", "n-1").block());
+    }
+
+    @Test
+    void exactEvictionDoesNotRejectNewNonces() {
+        QiapiGatewayProperties properties = new QiapiGatewayProperties();
+        properties.getNonce().setExpectedRps(100);
+        properties.getNonce().setExactMaxEntries(10);
+        NonceStore small = new NonceStore();
+        ReflectionTestUtils.setField(small, "qiapiGatewayProperties", properties);
+        ReflectionTestUtils.setField(small, "meterRegistry", new SimpleMeterRegistry());
+        small.init();
+        // 精确记录远小于请求量，发生淘汰后首次出现的 nonce 仍然放行
+        for (int i = 0; i < 1000; i++) {
+            Assertions.assertTrue(small.tryRecord("ak-1", "n-" + i).block(), "第 " + i + " 个 nonce");
+        }
+    }
+
+    @Test
+    void concurrentSameNonceAcceptedOnce() throws InterruptedException {
+        int threads = 8;
+        for (int round = 0; round < 200; round++) {
+            String nonce = "race-" + round;
+            AtomicInteger accepted = new AtomicInteger();
+            CountDownLatch start = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(threads);
+            for (int t = 0; t < threads; t++) {
+                new Thread(() -> {
+                    try {
+                        start.await();
+                        if (nonceStore.tryRecord("ak-1", nonce).block()) {
+                            accepted.incrementAndGet();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }).start();
+            }
+            start.countDown();
+            Assertions.assertTrue(done.await(10, TimeUnit.SECONDS));
+            Assertions.assertEquals(1, accepted.get(), "第 " + round + " 轮放行次数");
+        }
+    }
+}
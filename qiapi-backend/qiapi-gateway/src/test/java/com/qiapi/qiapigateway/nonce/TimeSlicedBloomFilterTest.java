@@ -0,0 +1,101 @@
+package com.qiapi.qiapigateway.nonce;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 时间分片布隆过滤器测试
+ *
+ * @author zhexueqi
+ */
+class TimeSlicedBloomFilterTest {
+
+    private static final long WINDOW = 1000L;
+
+    private static final int SLICES = 10;
+
+    private static final long SLICE = WINDOW / SLICES;
+
+    @Test
+    void detectsDuplicateWithinWindow() {
+        TimeSlicedBloomFilter filter = newFilter();
+        long start = 5_000_000L;
+        Assertions.assertFalse(filter.putIfAbsent("nonce-1", start));
+        Assertions.assertTrue(filter.putIfAbsent("nonce-1", start));
+        // 跨片仍能查到
+        Assertions.assertTrue(filter.putIfAbsent("nonce-1", start + SLICE * 3));
+        Assertions.assertFalse(filter.putIfAbsent("nonce-2", start + SLICE * 3));
+    }
+
+    @Test
+    void remembersAtLeastWindowAndAtMostWindowPlusSlice() {
+        TimeSlicedBloomFilter filter = newFilter();
+        // 写在时间片起点；命中时不写入，未命中才写入当前片
+        long start = 7_000_000L;
+        Assertions.assertEquals(0L, start % SLICE);
+        Assertions.assertFalse(filter.putIfAbsent("a", start));
+        Assertions.assertTrue(filter.putIfAbsent("a", start + WINDOW - 1));
+        Assertions.assertTrue(filter.putIfAbsent("a", start + WINDOW + SLICE - 1));
+        Assertions.assertFalse(filter.putIfAbsent("a", start + WINDOW + SLICE));
+        // 写在时间片末尾，过期时刻按所在片计算
+        TimeSlicedBloomFilter other = newFilter();
+        long end = start + SLICE - 1;
+        Assertions.assertFalse(other.putIfAbsent("b", end));
+        Assertions.assertTrue(other.putIfAbsent("b", end + WINDOW));
+        Assertions.assertFalse(other.putIfAbsent("b", end + WINDOW + 1));
+    }
+
+    @Test
+    void staleSliceFromPreviousLapIsNotReported() {
+        TimeSlicedBloomFilter filter = newFilter();
+        long start = 3_000_000L;
+        Assertions.assertFalse(filter.putIfAbsent("lap", start));
+        // 一整圈后落在同一个槽位，旧片的 epoch 不同，不应命中
+        long nextLap = start + SLICE * filter.getSliceCount();
+        Assertions.assertFalse(filter.putIfAbsent("lap", nextLap));
+        Assertions.assertTrue(filter.putIfAbsent("lap", nextLap));
+    }
+
+    @Test
+    void slotIndexWrapsAroundOverManyLaps() {
+        TimeSlicedBloomFilter filter = newFilter();
+        long now = 1_000_000L;
+        for (int step = 0; step < filter.getSliceCount() * 5; step++) {
+            String value = "v" + step;
+            Assertions.assertFalse(filter.putIfAbsent(value, now), "第 " + step + " 步首次写入");
+            Assertions.assertTrue(filter.putIfAbsent(value, now + WINDOW - 1), "第 " + step + " 步窗口内重放");
+            now += SLICE;
+        }
+    }
+
+    @Test
+    void negativeTimestampsUseFloorIndex() {
+        TimeSlicedBloomFilter filter = newFilter();
+        Assertions.assertFalse(filter.putIfAbsent("neg", -SLICE * 3 - 1));
+        Assertions.assertTrue(filter.putIfAbsent("neg", -1));
+        Assertions.assertTrue(filter.putIfAbsent("neg", SLICE * 5));
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTarget() {
+        TimeSlicedBloomFilter filter = new TimeSlicedBloomFilter(WINDOW, SLICES, 100_000, 0.01);
+        long now = 9_000_000L;
+        for (int i = 0; i < 100_000; i++) {
+            filter.putIfAbsent("in-" + i, now + (i % SLICES) * SLICE);
+        }
+        long queryAt = now + (SLICES - 1) * SLICE;
+        int falsePositives = 0;
+        // 未命中的查询会写入当前片，查询量远小于写入量以免抬高当前片的填充率
+        for (int i = 0; i < 1_000; i++) {
+            if (filter.putIfAbsent("out-" + i, queryAt)) {
+                falsePositives++;
+            }
+        }
+        // 查询覆盖全部时间片，整体误判率约为单片误判率乘以片数
+        Assertions.assertTrue(falsePositives < 1_000 * 0.01 * SLICES * 1.5, "误判数: " + falsePositives);
+    }
+
+    private static TimeSlicedBloomFilter newFilter() {
+        return new TimeSlicedBloomFilter(WINDOW, SLICES, 10_000, 0.001);
+    }
+}
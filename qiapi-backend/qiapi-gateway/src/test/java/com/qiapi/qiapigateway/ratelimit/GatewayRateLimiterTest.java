@@ -0,0 +1,87 @@
+package com.qiapi.qiapigateway.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 网关限流测试（local 模式）
+ *
+ * @author zhexueqi
+ */
+class GatewayRateLimiterTest {
+
+    private static final String PATH = "/third-party/api/name";
+
+    private QiapiGatewayProperties properties;
+
+    private GatewayRateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        properties = new QiapiGatewayProperties();
+        QiapiGatewayProperties.RateLimit config = properties.getRateLimit();
+        // 速率足够低，测试期间不会补充令牌
+        config.setAccessKey(new QiapiGatewayProperties.Limit(0.001, 2));
+        config.setInterfaceInfo(new QiapiGatewayProperties.Limit(0.001, 3));
+        config.setUserInterface(new QiapiGatewayProperties.Limit(0.001, 100));
+        rateLimiter = new GatewayRateLimiter();
+        ReflectionTestUtils.setField(rateLimiter, "qiapiGatewayProperties", properties);
+        ReflectionTestUtils.setField(rateLimiter, "meterRegistry", new SimpleMeterRegistry());
+        rateLimiter.init();
+    }
+
+    @Test
+    void interfaceCheckDoesNotCreateAccessKeyBuckets() {
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals(0L, rateLimiter.acquireInterface(PATH).block());
+        }
+        Assertions.assertTrue(rateLimiter.acquireInterface(PATH).block() > 0, "接口维度超限应拒绝");
+        // 签名校验前只有接口维度的令牌桶，请求头中的 accessKey 不产生令牌桶
+        Assertions.assertEquals(1L, buckets().estimatedSize());
+        Assertions.assertNotNull(buckets().getIfPresent("interface:" + PATH));
+    }
+
+    @Test
+    void callerRejectionReturnsInterfaceToken() {
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertEquals(0L, rateLimiter.acquireInterface(PATH).block());
+            Assertions.assertEquals(0L, rateLimiter.acquireAuthenticated("ak-1", PATH, true).block());
+        }
+        // accessKey 维度超限，之前取用的接口令牌归还
+        Assertions.assertEquals(0L, rateLimiter.acquireInterface(PATH).block());
+        Assertions.assertTrue(rateLimiter.acquireAuthenticated("ak-1", PATH, true).block() > 0);
+        // 接口容量为 3，已放行 2 次，另一个用户仍可调用一次
+        Assertions.assertEquals(0L, rateLimiter.acquireInterface(PATH).block());
+        Assertions.assertEquals(0L, rateLimiter.acquireAuthenticated("ak-2", PATH, true).block());
+        Assertions.assertTrue(rateLimiter.acquireInterface(PATH).block() > 0);
+    }
+
+    @Test
+    void authenticatedCheckCoversInterfaceWhenNotCheckedBefore() {
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertEquals(0L, rateLimiter.acquireAuthenticated("ak-" + i, PATH, false).block());
+        }
+        Assertions.assertEquals(0L, rateLimiter.acquireInterface(PATH).block());
+        Assertions.assertTrue(rateLimiter.acquireAuthenticated("ak-3", PATH, false).block() > 0,
+                "没有预先检查接口维度时应一起检查");
+    }
+
+    @Test
+    void disabledAlwaysPasses() {
+        properties.getRateLimit().setEnabled(false);
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertEquals(0L, rateLimiter.acquireInterface(PATH).block());
+            Assertions.assertEquals(0L, rateLimiter.acquireAuthenticated("ak-1", PATH, true).block());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Cache<String, TokenBucket> buckets() {
+        return (Cache<String, TokenBucket>) ReflectionTestUtils.getField(rateLimiter, "buckets");
+    }
+}
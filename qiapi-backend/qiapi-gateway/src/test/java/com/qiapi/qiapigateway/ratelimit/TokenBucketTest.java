@@ -0,0 +1,99 @@
+package com.qiapi.qiapigateway.ratelimit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 令牌桶测试
+ *
+ * @author zhexueqi
+ */
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void allowsBurstThenRejects() {
+        TokenBucket bucket = new TokenBucket(10, 5);
+        long now = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertEquals(0L, bucket.tryAcquire(now), "第 " + (i + 1) + " 个突发请求应通过");
+        }
+        long wait = bucket.tryAcquire(now);
+        Assertions.assertTrue(wait > 0 && wait <= SECOND / 10, "超出容量后应等待一个发放间隔以内: " + wait);
+    }
+
+    @Test
+    void refillsAtRate() {
+        TokenBucket bucket = new TokenBucket(10, 1);
+        long now = System.nanoTime();
+        Assertions.assertEquals(0L, bucket.tryAcquire(now));
+        Assertions.assertTrue(bucket.tryAcquire(now) > 0);
+        // 一个发放间隔后恰好补充一个令牌
+        Assertions.assertEquals(0L, bucket.tryAcquire(now + SECOND / 10));
+        Assertions.assertTrue(bucket.tryAcquire(now + SECOND / 10) > 0);
+    }
+
+    @Test
+    void idleTimeDoesNotExceedCapacity() {
+        TokenBucket bucket = new TokenBucket(100, 3);
+        long later = System.nanoTime() + 60 * SECOND;
+        int passed = 0;
+        while (bucket.tryAcquire(later) == 0L) {
+            passed++;
+        }
+        Assertions.assertEquals(3, passed);
+    }
+
+    @Test
+    void releaseReturnsToken() {
+        TokenBucket bucket = new TokenBucket(1, 1);
+        long now = System.nanoTime();
+        Assertions.assertEquals(0L, bucket.tryAcquire(now));
+        Assertions.assertTrue(bucket.tryAcquire(now) > 0);
+        bucket.release();
+        Assertions.assertEquals(0L, bucket.tryAcquire(now));
+    }
+
+    @Test
+    void matchesNormalizesBurst() {
+        TokenBucket bucket = new TokenBucket(5, 0);
+        Assertions.assertTrue(bucket.matches(5, 1));
+        Assertions.assertTrue(bucket.matches(5, -3));
+        Assertions.assertFalse(bucket.matches(5, 2));
+        Assertions.assertFalse(bucket.matches(6, 1));
+    }
+
+    @Test
+    void concurrentAcquireNeverExceedsBurst() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(0.001, 50);
+        long now = System.nanoTime();
+        AtomicInteger passed = new AtomicInteger();
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < 100; i++) {
+                        if (bucket.tryAcquire(now) == 0L) {
+                            passed.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        start.countDown();
+        Assertions.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(50, passed.get());
+    }
+}
@@ -0,0 +1,100 @@
+package com.qiapi.qiapigateway.resilience;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自适应并发上限测试：采样窗口时长为 0，每个样本（或每满最少样本数）结束一个窗口
+ *
+ * @author zhexueqi
+ */
+class AdaptiveConcurrencyLimitTest {
+
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    void growsWhileLatencyIsStable() {
+        AdaptiveConcurrencyLimit limit = newLimit(10, 4, 1000, 1);
+        int previous = limit.getLimit();
+        for (int i = 0; i < 50; i++) {
+            limit.onSample(RTT, limit.getLimit(), false);
+            Assertions.assertTrue(limit.getLimit() >= previous, "耗时平稳时上限不应下降");
+            previous = limit.getLimit();
+        }
+        Assertions.assertTrue(limit.getLimit() > 20, "上限应明显增长: " + limit.getLimit());
+        Assertions.assertEquals(10.0, limit.getLongRttMillis(), 0.001);
+    }
+
+    @Test
+    void clampsToMaxLimit() {
+        AdaptiveConcurrencyLimit limit = newLimit(10, 4, 16, 1);
+        for (int i = 0; i < 200; i++) {
+            limit.onSample(RTT, limit.getLimit(), false);
+        }
+        Assertions.assertEquals(16, limit.getLimit());
+    }
+
+    @Test
+    void shrinksWhenLatencyRises() {
+        AdaptiveConcurrencyLimit limit = newLimit(50, 4, 1000, 1);
+        for (int i = 0; i < 10; i++) {
+            limit.onSample(RTT, limit.getLimit(), false);
+        }
+        int beforeQueueing = limit.getLimit();
+        // 上游开始排队，耗时变为原来的 10 倍
+        for (int i = 0; i < 10; i++) {
+            limit.onSample(RTT * 10, limit.getLimit(), false);
+        }
+        Assertions.assertTrue(limit.getLimit() < beforeQueueing,
+                "上限应收缩: " + beforeQueueing + " -> " + limit.getLimit());
+    }
+
+    @Test
+    void backsOffOnDropsDownToMinLimit() {
+        AdaptiveConcurrencyLimit limit = newLimit(100, 4, 1000, 1);
+        limit.onSample(RTT, 100, true);
+        Assertions.assertEquals(90, limit.getLimit());
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(RTT, 100, true);
+        }
+        Assertions.assertEquals(4, limit.getLimit());
+        // 失败的窗口不计入长期 RTT
+        Assertions.assertEquals(0.0, limit.getLongRttMillis());
+    }
+
+    @Test
+    void idleTrafficDoesNotInflateLimit() {
+        AdaptiveConcurrencyLimit limit = newLimit(40, 4, 1000, 1);
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(RTT, 3, false);
+        }
+        Assertions.assertEquals(40, limit.getLimit());
+    }
+
+    @Test
+    void waitsForMinimumSamplesPerWindow() {
+        AdaptiveConcurrencyLimit limit = newLimit(100, 4, 1000, 5);
+        for (int i = 0; i < 4; i++) {
+            limit.onSample(RTT, 100, i == 0);
+            Assertions.assertEquals(100, limit.getLimit(), "样本不足时不结束窗口");
+        }
+        // 第 5 个样本结束窗口，窗口内的失败仍然生效
+        limit.onSample(RTT, 100, false);
+        Assertions.assertEquals(90, limit.getLimit());
+    }
+
+    @Test
+    void constructorClampsBounds() {
+        Assertions.assertEquals(16, newLimit(100, 4, 16, 1).getLimit());
+        Assertions.assertEquals(4, newLimit(1, 4, 16, 1).getLimit());
+        // 最小值大于最大值时以最大值为准
+        Assertions.assertEquals(8, newLimit(20, 32, 8, 1).getLimit());
+        Assertions.assertEquals(1, newLimit(0, 0, 0, 1).getLimit());
+    }
+
+    private static AdaptiveConcurrencyLimit newLimit(int initialLimit, int minLimit, int maxLimit, int minSamples) {
+        return new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, 1.5, 0.2, 0, minSamples);
+    }
+}
@@ -0,0 +1,183 @@
+package com.qiapi.qiapigateway.resilience;
+
+import com.qiapi.qiapicommon.model.enums.InvocationTierEnum;
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 接口并发隔离排队测试
+ *
+ * @author zhexueqi
+ */
+class InterfaceGuardTest {
+
+    private static final long LONG_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+
+    @Test
+    void acquiresUpToLimit() {
+        InterfaceGuard.Guard guard = newGuard(2);
+        Assertions.assertTrue(guard.tryAcquireSlot());
+        Assertions.assertTrue(guard.tryAcquireSlot());
+        Assertions.assertFalse(guard.tryAcquireSlot());
+        Assertions.assertEquals(2, guard.getInFlight());
+        guard.release(-1, false);
+        Assertions.assertTrue(guard.tryAcquireSlot());
+    }
+
+    @Test
+    void releaseHandsSlotToWaiter() throws InterruptedException {
+        InterfaceGuard.Guard guard = newGuard(1);
+        Assertions.assertTrue(guard.tryAcquireSlot());
+        CountDownLatch granted = new CountDownLatch(1);
+        guard.awaitSlot(InvocationTierEnum.FREE, LONG_TIMEOUT, 10).subscribe(ok -> {
+            if (ok) {
+                granted.countDown();
+            }
+        });
+        Assertions.assertEquals(1, guard.getQueued());
+        guard.release(-1, false);
+        Assertions.assertTrue(granted.await(5, TimeUnit.SECONDS));
+        // 名额直接转交给排队的请求，并发数不变
+        Assertions.assertEquals(1, guard.getInFlight());
+        Assertions.assertEquals(0, guard.getQueued());
+    }
+
+    @Test
+    void grantsImmediatelyWhenSlotFree() {
+        InterfaceGuard.Guard guard = newGuard(1);
+        Assertions.assertEquals(Boolean.TRUE, guard.awaitSlot(InvocationTierEnum.FREE, LONG_TIMEOUT, 10).block());
+        Assertions.assertEquals(1, guard.getInFlight());
+        Assertions.assertEquals(0, guard.getQueued());
+    }
+
+    @Test
+    void timesOutWithoutLeakingSlot() {
+        InterfaceGuard.Guard guard = newGuard(1);
+        Assertions.assertTrue(guard.tryAcquireSlot());
+        Assertions.assertEquals(Boolean.FALSE, guard.awaitSlot(InvocationTierEnum.FREE, 20, 10).block());
+        Assertions.assertEquals(0, guard.getQueued());
+        Assertions.assertEquals(0, guard.getQueued(InvocationTierEnum.FREE));
+        // 超时的请求不再拿到名额
+        guard.release(-1, false);
+        Assertions.assertEquals(0, guard.getInFlight());
+    }
+
+    @Test
+    void rejectsWhenQueueFull() {
+        InterfaceGuard.Guard guard = newGuard(1);
+        Assertions.assertTrue(guard.tryAcquireSlot());
+        Disposable first = guard.awaitSlot(InvocationTierEnum.FREE, LONG_TIMEOUT, 1).subscribe();
+        Assertions.assertEquals(Boolean.FALSE, guard.awaitSlot(InvocationTierEnum.FREE, LONG_TIMEOUT, 1).block());
+        Assertions.assertEquals(1, guard.getQueued());
+        first.dispose();
+        Assertions.assertEquals(0, guard.getQueued());
+    }
+
+    @Test
+    void cancelledWaiterDoesNotTakeSlot() {
+        InterfaceGuard.Guard guard = newGuard(1);
+        Assertions.assertTrue(guard.tryAcquireSlot());
+        List<Boolean> results = new CopyOnWriteArrayList<>();
+        Disposable waiting = guard.awaitSlot(InvocationTierEnum.PAID, LONG_TIMEOUT, 10).subscribe(results::add);
+        waiting.dispose();
+        Assertions.assertEquals(0, guard.getQueued());
+        Assertions.assertEquals(0, guard.getQueued(InvocationTierEnum.PAID));
+        guard.release(-1, false);
+        Assertions.assertEquals(0, guard.getInFlight());
+        Assertions.assertTrue(results.isEmpty());
+    }
+
+    @Test
+    void paidWaitersServedFirst() {
+        InterfaceGuard.Guard guard = newGuard(1);
+        Assertions.assertTrue(guard.tryAcquireSlot());
+        List<InvocationTierEnum> order = new CopyOnWriteArrayList<>();
+        List<Disposable> subscriptions = new ArrayList<>();
+        InvocationTierEnum[] arrivals = {InvocationTierEnum.FREE, InvocationTierEnum.FREE,
+                InvocationTierEnum.PAID, InvocationTierEnum.PAID};
+        for (InvocationTierEnum tier : arrivals) {
+            subscriptions.add(guard.awaitSlot(tier, LONG_TIMEOUT, 10).subscribe(ok -> order.add(tier)));
+        }
+        Assertions.assertEquals(2, guard.getQueued(InvocationTierEnum.PAID));
+        Assertions.assertEquals(2, guard.getQueued(InvocationTierEnum.FREE));
+        for (int i = 0; i < arrivals.length; i++) {
+            guard.release(-1, false);
+        }
+        // 权重 4:1，两个通道都有请求时付费通道先出队
+        Assertions.assertEquals(InvocationTierEnum.PAID, order.get(0));
+        Assertions.assertEquals(arrivals.length, order.size());
+        Assertions.assertEquals(1, guard.getInFlight());
+        guard.release(-1, false);
+        Assertions.assertEquals(0, guard.getInFlight());
+        subscriptions.forEach(Disposable::dispose);
+    }
+
+    @Test
+    void timeoutCancelAndReleaseRacesKeepCountsConsistent() throws InterruptedException {
+        InterfaceGuard.Guard guard = newGuard(2);
+        int threads = 8;
+        int rounds = 500;
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                try {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < rounds; i++) {
+                        InvocationTierEnum tier = random.nextBoolean() ? InvocationTierEnum.PAID : InvocationTierEnum.FREE;
+                        if (random.nextInt(3) == 0) {
+                            // 订阅后立即取消，与名额分配、超时竞争；名额在 doOnNext 中处理，
+                            // 取消后才到达的值会被 subscribe 的 lambda 丢弃
+                            Disposable waiting = guard.awaitSlot(tier, 1, 16).doOnNext(ok -> {
+                                if (ok) {
+                                    granted.incrementAndGet();
+                                    guard.release(-1, false);
+                                }
+                            }).subscribe();
+                            waiting.dispose();
+                        } else if (Boolean.TRUE.equals(guard.awaitSlot(tier, 1, 16).block())) {
+                            granted.incrementAndGet();
+                            guard.release(-1, false);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        start.countDown();
+        Assertions.assertTrue(done.await(60, TimeUnit.SECONDS));
+        // 等待已调度的超时任务执行完
+        Thread.sleep(50);
+        Assertions.assertTrue(granted.get() > 0);
+        Assertions.assertEquals(0, guard.getInFlight(), "名额泄漏或重复归还");
+        Assertions.assertEquals(0, guard.getQueued());
+        Assertions.assertEquals(0, guard.getQueued(InvocationTierEnum.PAID));
+        Assertions.assertEquals(0, guard.getQueued(InvocationTierEnum.FREE));
+        Assertions.assertTrue(guard.tryAcquireSlot());
+        Assertions.assertTrue(guard.tryAcquireSlot());
+        Assertions.assertFalse(guard.tryAcquireSlot());
+    }
+
+    private static InterfaceGuard.Guard newGuard(int maxConcurrentCalls) {
+        QiapiGatewayProperties.Resilience resilience = new QiapiGatewayProperties.Resilience();
+        resilience.setAdaptiveLimitEnabled(false);
+        return new InterfaceGuard.Guard(CircuitBreaker.ofDefaults("test"), null, resilience.getFailureRateThreshold(),
+                resilience.getSlowCallRateThreshold(), resilience.getSlowCallMillis(), maxConcurrentCalls, resilience);
+    }
+}
@@ -0,0 +1,164 @@
+package com.qiapi.qiapigateway.resilience;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 加权公平队列测试
+ *
+ * @author zhexueqi
+ */
+class WeightedFairQueueTest {
+
+    private static final int PAID = 0;
+
+    private static final int FREE = 1;
+
+    @Test
+    void interleavesByWeight() {
+        WeightedFairQueue<String> queue = new WeightedFairQueue<>(2);
+        queue.setWeights(4, 1);
+        for (int i = 0; i < 20; i++) {
+            queue.offer(PAID, "P");
+            queue.offer(FREE, "F");
+        }
+        StringBuilder order = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            order.append(queue.poll());
+        }
+        // 平滑加权轮询：每 5 次中 4 次来自权重 4 的通道，且不连续集中
+        Assertions.assertEquals("PPFPPPPFPP", order.toString());
+    }
+
+    @Test
+    void singleNonEmptyLaneDoesNotWasteTurns() {
+        WeightedFairQueue<Integer> queue = new WeightedFairQueue<>(2);
+        queue.setWeights(4, 1);
+        for (int i = 0; i < 5; i++) {
+            queue.offer(FREE, i);
+        }
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertEquals(i, queue.poll(), "通道内先进先出");
+        }
+        Assertions.assertNull(queue.poll());
+        Assertions.assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void idleLaneDoesNotAccumulateCredit() {
+        WeightedFairQueue<String> queue = new WeightedFairQueue<>(2);
+        for (int i = 0; i < 10; i++) {
+            queue.offer(PAID, "P");
+        }
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertEquals("P", queue.poll());
+        }
+        for (int i = 0; i < 5; i++) {
+            queue.offer(FREE, "F");
+        }
+        StringBuilder order = new StringBuilder();
+        for (int i = 0; i < 6; i++) {
+            order.append(queue.poll());
+        }
+        // 等权时交替出队，空闲期间不攒下连续出队的名额
+        Assertions.assertEquals("PFPFPF", order.toString());
+    }
+
+    @Test
+    void weightsBelowOneAreClamped() {
+        WeightedFairQueue<String> queue = new WeightedFairQueue<>(2);
+        queue.setWeights(0, -5);
+        for (int i = 0; i < 2; i++) {
+            queue.offer(PAID, "P");
+            queue.offer(FREE, "F");
+        }
+        StringBuilder order = new StringBuilder();
+        for (int i = 0; i < 4; i++) {
+            order.append(queue.poll());
+        }
+        Assertions.assertEquals("PFPF", order.toString());
+    }
+
+    @Test
+    void removeKeepsSizeConsistent() {
+        WeightedFairQueue<String> queue = new WeightedFairQueue<>(2);
+        queue.offer(PAID, "a");
+        queue.offer(PAID, "b");
+        queue.offer(FREE, "c");
+        Assertions.assertEquals(3, queue.size());
+        Assertions.assertTrue(queue.remove(PAID, "a"));
+        Assertions.assertFalse(queue.remove(PAID, "a"), "重复移除应失败");
+        Assertions.assertFalse(queue.remove(FREE, "b"), "其他通道的元素不能移除");
+        Assertions.assertEquals(2, queue.size());
+        Assertions.assertEquals(1, queue.size(PAID));
+        Assertions.assertEquals("b", queue.poll());
+        Assertions.assertEquals("c", queue.poll());
+        Assertions.assertEquals(0, queue.size());
+    }
+
+    @Test
+    void concurrentRemoveAndPollHandOutEachItemOnce() throws InterruptedException {
+        WeightedFairQueue<Integer> queue = new WeightedFairQueue<>(2);
+        queue.setWeights(4, 1);
+        int items = 20_000;
+        List<Integer> offered = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            queue.offer(i % 2, i);
+            offered.add(i);
+        }
+        Set<Integer> handled = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        int threads = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads * 2);
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            // 模拟超时或取消：从队列中移除自己的元素
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = offset; i < items; i += threads) {
+                        if (queue.remove(i % 2, offered.get(i)) && !handled.add(offered.get(i))) {
+                            duplicates.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+            // 模拟放行：出队
+            new Thread(() -> {
+                try {
+                    start.await();
+                    Integer item;
+                    while ((item = queue.poll()) != null) {
+                        if (!handled.add(item)) {
+                            duplicates.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        start.countDown();
+        Assertions.assertTrue(done.await(30, TimeUnit.SECONDS));
+        Assertions.assertEquals(0, duplicates.get(), "同一元素既被移除又被出队");
+        Assertions.assertEquals(items, handled.size());
+        Assertions.assertEquals(0, queue.size());
+        Assertions.assertTrue(queue.isEmpty());
+        Assertions.assertNull(queue.poll());
+    }
+}
@@ -0,0 +1,128 @@
+package com.qiapi.qiapigateway.responsecache;
+
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 请求合并测试：领头请求的结果分发给等待的请求，领头请求没有可共享的响应时等待的请求各自调用上游
+ *
+ * @author zhexueqi
+ */
+class RequestCoalescerTest {
+
+    private static final String KEY = "/api/name?a=1";
+
+    private QiapiGatewayProperties properties;
+
+    private RequestCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        properties = new QiapiGatewayProperties();
+        coalescer = new RequestCoalescer();
+        ReflectionTestUtils.setField(coalescer, "qiapiGatewayProperties", properties);
+        ReflectionTestUtils.setField(coalescer, "meterRegistry", new SimpleMeterRegistry());
+        coalescer.init();
+    }
+
+    @Test
+    void followersReceiveLeaderResponse() {
+        RequestCoalescer.Flight leader = coalescer.join(KEY);
+        RequestCoalescer.Flight follower = coalescer.join(KEY);
+        Assertions.assertTrue(leader.isLeader());
+        Assertions.assertFalse(follower.isLeader());
+        // 不同 key 互不影响
+        Assertions.assertTrue(coalescer.join("/api/other").isLeader());
+
+        CachedResponse response = response("shared");
+        leader.complete(response);
+        Assertions.assertSame(response, follower.response().block());
+        // 结束后到达的请求成为新的领头请求
+        Assertions.assertTrue(coalescer.join(KEY).isLeader());
+    }
+
+    @Test
+    void rejectedOrFailedLeaderLetsFollowersFallBack() {
+        RequestCoalescer.Flight leader = coalescer.join(KEY);
+        RequestCoalescer.Flight follower = coalescer.join(KEY);
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        Mono<String> result = follower.response()
+                .map(cached -> new String(cached.getBody(), StandardCharsets.UTF_8))
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    upstreamCalls.incrementAndGet();
+                    return "upstream";
+                }));
+
+        // 领头请求被限流拒绝、上游失败或响应不可缓存时以 null 结束
+        leader.complete(null);
+        Assertions.assertEquals("upstream", result.block());
+        Assertions.assertEquals(1, upstreamCalls.get());
+        // 之后的结果不会再分发
+        leader.complete(response("late"));
+        Assertions.assertNull(follower.response().block());
+        Assertions.assertTrue(coalescer.join(KEY).isLeader());
+    }
+
+    @Test
+    void followerCannotCompleteFlight() {
+        RequestCoalescer.Flight leader = coalescer.join(KEY);
+        RequestCoalescer.Flight follower = coalescer.join(KEY);
+        follower.complete(null);
+        Assertions.assertFalse(coalescer.join(KEY).isLeader(), "等待的请求不能结束领头请求的调用");
+
+        CachedResponse response = response("shared");
+        leader.complete(response);
+        Assertions.assertSame(response, follower.response().block());
+    }
+
+    @Test
+    void disabledReturnsNull() {
+        properties.getResponseCache().setCoalesceRequests(false);
+        Assertions.assertNull(coalescer.join(KEY));
+    }
+
+    @Test
+    void concurrentJoinElectsOneLeader() throws InterruptedException {
+        int threads = 8;
+        for (int round = 0; round < 100; round++) {
+            String key = KEY + "&round=" + round;
+            AtomicInteger leaders = new AtomicInteger();
+            CountDownLatch start = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(threads);
+            for (int t = 0; t < threads; t++) {
+                new Thread(() -> {
+                    try {
+                        start.await();
+                        if (coalescer.join(key).isLeader()) {
+                            leaders.incrementAndGet();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }).start();
+            }
+            start.countDown();
+            Assertions.assertTrue(done.await(10, TimeUnit.SECONDS));
+            Assertions.assertEquals(1, leaders.get(), "第 " + round + " 轮领头请求数");
+        }
+    }
+
+    private static CachedResponse response(String body) {
+        CachedResponse response = new CachedResponse();
+        response.setBody(body.getBytes(StandardCharsets.UTF_8));
+        response.setExpiresAtMillis(System.currentTimeMillis() + 60_000);
+        return response;
+    }
+}
@@ -0,0 +1,131 @@
+package com.qiapi.qiapigateway.responsecache;
+
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * 接口响应缓存测试：缓存时间、缓存 key 与 ETag 协商
+ *
+ * @author zhexueqi
+ */
+class ResponseCacheTest {
+
+    private QiapiGatewayProperties properties;
+
+    private ResponseCache responseCache;
+
+    @BeforeEach
+    void setUp() {
+        properties = new QiapiGatewayProperties();
+        responseCache = new ResponseCache();
+        ReflectionTestUtils.setField(responseCache, "qiapiGatewayProperties", properties);
+        ReflectionTestUtils.setField(responseCache, "meterRegistry", new SimpleMeterRegistry());
+        responseCache.init();
+    }
+
+    @Test
+    void effectiveTtlFollowsResponseCacheControl() {
+        Assertions.assertEquals(60, ResponseCache.effectiveTtlSeconds(null, 60));
+        Assertions.assertEquals(60, ResponseCache.effectiveTtlSeconds("", 60));
+        Assertions.assertEquals(60, ResponseCache.effectiveTtlSeconds("public", 60));
+        // 不允许共享缓存
+        Assertions.assertEquals(0, ResponseCache.effectiveTtlSeconds("no-store", 60));
+        Assertions.assertEquals(0, ResponseCache.effectiveTtlSeconds("No-Cache", 60));
+        Assertions.assertEquals(0, ResponseCache.effectiveTtlSeconds("private, max-age=100", 60));
+        // max-age 只能缩短接口配置的缓存时间
+        Assertions.assertEquals(10, ResponseCache.effectiveTtlSeconds("max-age=10", 60));
+        Assertions.assertEquals(60, ResponseCache.effectiveTtlSeconds("max-age=100", 60));
+        Assertions.assertEquals(20, ResponseCache.effectiveTtlSeconds("public, max-age=\"20\"", 60));
+        // s-maxage 优先于 max-age
+        Assertions.assertEquals(5, ResponseCache.effectiveTtlSeconds("max-age=30, s-maxage=5", 60));
+        Assertions.assertEquals(0, ResponseCache.effectiveTtlSeconds("s-maxage=0, max-age=30", 60));
+        // 格式错误时按接口配置
+        Assertions.assertEquals(60, ResponseCache.effectiveTtlSeconds("max-age=abc", 60));
+    }
+
+    @Test
+    void cacheKeySortsParametersByName() {
+        MockServerHttpRequest request = MockServerHttpRequest.get("/api/name?b=2&a=1&b=1&&c").build();
+        // 只按参数名排序，同名参数保持原有顺序，空参数忽略
+        Assertions.assertEquals("/api/name?a=1&b=2&b=1&c", responseCache.cacheKey(request, 60));
+        MockServerHttpRequest reordered = MockServerHttpRequest.get("/api/name?c&b=2&b=1&a=1").build();
+        Assertions.assertEquals(responseCache.cacheKey(request, 60), responseCache.cacheKey(reordered, 60));
+        // 同名参数顺序不同视为不同请求
+        MockServerHttpRequest swapped = MockServerHttpRequest.get("/api/name?b=1&b=2&a=1&c").build();
+        Assertions.assertNotEquals(responseCache.cacheKey(request, 60), responseCache.cacheKey(swapped, 60));
+        MockServerHttpRequest noQuery = MockServerHttpRequest.get("/api/name").build();
+        Assertions.assertEquals("/api/name", responseCache.cacheKey(noQuery, 60));
+    }
+
+    @Test
+    void cacheKeyIsNullWhenNotCacheable() {
+        MockServerHttpRequest get = MockServerHttpRequest.get("/api/name?a=1").build();
+        Assertions.assertNull(responseCache.cacheKey(get, null));
+        Assertions.assertNull(responseCache.cacheKey(get, 0));
+        Assertions.assertNull(responseCache.cacheKey(MockServerHttpRequest.post("/api/name?a=1").build(), 60));
+        Assertions.assertNull(responseCache.cacheKey(MockServerHttpRequest.get("/api/name?a=1")
+                .header(HttpHeaders.CACHE_CONTROL, "no-store").build(), 60));
+        properties.getResponseCache().setEnabled(false);
+        Assertions.assertNull(responseCache.cacheKey(get, 60));
+    }
+
+    @Test
+    void etagMatchesUsesWeakComparison() {
+        Assertions.assertTrue(ResponseCache.etagMatches(Collections.singletonList("\"v1\""), "\"v1\""));
+        Assertions.assertTrue(ResponseCache.etagMatches(Collections.singletonList("W/\"v1\""), "\"v1\""));
+        Assertions.assertTrue(ResponseCache.etagMatches(Collections.singletonList("\"v1\""), "W/\"v1\""));
+        Assertions.assertTrue(ResponseCache.etagMatches(Arrays.asList("\"v0\"", "\"v1\""), "\"v1\""));
+        Assertions.assertTrue(ResponseCache.etagMatches(Collections.singletonList("*"), "\"v1\""));
+        Assertions.assertFalse(ResponseCache.etagMatches(Collections.singletonList("\"v2\""), "\"v1\""));
+        Assertions.assertFalse(ResponseCache.etagMatches(Collections.emptyList(), "\"v1\""));
+    }
+
+    @Test
+    void writesNotModifiedWhenEtagMatches() {
+        CachedResponse cached = cached("\"v1\"");
+        MockServerWebExchange matched = MockServerWebExchange.from(MockServerHttpRequest.get("/api/name")
+                .ifNoneMatch("W/\"v1\"").build());
+        responseCache.write(matched, cached, "HIT").block();
+        Assertions.assertEquals(HttpStatus.NOT_MODIFIED, matched.getResponse().getStatusCode());
+        Assertions.assertEquals("\"v1\"", matched.getResponse().getHeaders().getETag());
+
+        MockServerWebExchange stale = MockServerWebExchange.from(MockServerHttpRequest.get("/api/name")
+                .ifNoneMatch("\"v0\"").build());
+        responseCache.write(stale, cached, "HIT").block();
+        Assertions.assertEquals(HttpStatus.OK, stale.getResponse().getStatusCode());
+        Assertions.assertEquals("HIT", stale.getResponse().getHeaders().getFirst(ResponseCache.CACHE_STATUS_HEADER));
+        Assertions.assertEquals("hello", stale.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void noCacheRequestSkipsLookup() {
+        responseCache.put("/api/name", cached(null));
+        MockServerHttpRequest request = MockServerHttpRequest.get("/api/name").build();
+        Assertions.assertNotNull(responseCache.get("/api/name", request).block());
+        Assertions.assertNull(responseCache.get("/api/name", MockServerHttpRequest.get("/api/name")
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache").build()).block());
+        Assertions.assertNull(responseCache.get("/api/other", MockServerHttpRequest.get("/api/other").build()).block());
+    }
+
+    private static CachedResponse cached(String etag) {
+        CachedResponse cached = new CachedResponse();
+        cached.setContentType("text/plain");
+        cached.setEtag(etag);
+        cached.setBody("hello".getBytes(StandardCharsets.UTF_8));
+        cached.setCreatedAtMillis(System.currentTimeMillis());
+        cached.setExpiresAtMillis(System.currentTimeMillis() + 60_000);
+        return cached;
+    }
+}
@@ -0,0 +1,169 @@
+package com.qiapi.qiapigateway.route;
+
+import com.qiapi.qiapicommon.model.dto.GatewayRoute;
+import com.qiapi.qiapicommon.service.InnerInterfaceInfoService;
+import com.qiapi.qiapigateway.config.QiapiGatewayProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.cloud.gateway.config.GatewayProperties;
+import org.springframework.cloud.gateway.filter.factory.SetPathGatewayFilterFactory;
+import org.springframework.cloud.gateway.handler.predicate.MethodRoutePredicateFactory;
+import org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.format.support.DefaultFormattingConversionService;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 接口动态路由测试
+ *
+ * @author zhexueqi
+ */
+class InterfaceRouteLocatorTest {
+
+    private AnnotationConfigApplicationContext context;
+
+    private InnerInterfaceInfoService innerInterfaceInfoService;
+
+    private InterfaceRouteLocator locator;
+
+    @BeforeEach
+    void setUp() {
+        QiapiGatewayProperties properties = new QiapiGatewayProperties();
+        // 只由测试主动触发刷新
+        properties.getInterfaceRoutes().setPollIntervalSeconds(3600);
+        RouteClassifier routeClassifier = Mockito.mock(RouteClassifier.class);
+        Mockito.when(routeClassifier.classify(ArgumentMatchers.anyString())).thenReturn(RoutePolicy.INTERFACE);
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean("qiapiGatewayProperties", QiapiGatewayProperties.class, () -> properties);
+        context.registerBean(RouteClassifier.class, () -> routeClassifier);
+        context.registerBean("gatewayProperties", GatewayProperties.class, GatewayProperties::new);
+        context.registerBean(ConfigurationService.class, () -> new ConfigurationService(context.getBeanFactory(),
+                DefaultFormattingConversionService::new, () -> null));
+        context.registerBean(PathRoutePredicateFactory.class);
+        context.registerBean(MethodRoutePredicateFactory.class);
+        context.registerBean(SetPathGatewayFilterFactory.class);
+        context.registerBean(InterfaceRouteLocator.class);
+        context.refresh();
+        innerInterfaceInfoService = Mockito.mock(InnerInterfaceInfoService.class);
+        locator = context.getBean(InterfaceRouteLocator.class);
+        ReflectionTestUtils.setField(locator, "innerInterfaceInfoService", innerInterfaceInfoService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void convertsOnlyChangedInterfaces() {
+        stubRoutes(Arrays.asList(route(1L, "http://api-a.example.com/api/name", "GET", 1000L),
+                        route(2L, "http://api-b.example.com/api/weather", "POST", 1000L)),
+                Collections.singletonList(route(1L, "http://api-a.example.com/api/name/v2", "GET", 2000L)),
+                Collections.singletonList(deleted(2L, 3000L)));
+        locator.onApplicationEvent(null);
+        awaitTrue(() -> routes().size() == 2);
+        Route first = routes().get(1L);
+        Route second = routes().get(2L);
+        Assertions.assertTrue(matches(first, "GET", "/third-party/api/name"));
+        Assertions.assertFalse(matches(first, "POST", "/third-party/api/name"));
+        Assertions.assertTrue(matches(second, "POST", "/third-party/api/weather"));
+        Assertions.assertEquals(1L, InterfaceRouteLocator.interfaceId(first));
+        Assertions.assertEquals("http://api-a.example.com/api/name", InterfaceRouteLocator.interfaceUrl(first));
+
+        locator.requestRefresh();
+        awaitTrue(() -> routes().get(1L) != first);
+        Route updated = routes().get(1L);
+        Assertions.assertTrue(matches(updated, "GET", "/third-party/api/name/v2"));
+        // 没有变化的接口沿用已转换的路由
+        Assertions.assertSame(second, routes().get(2L), "未变化的接口路由不应重新转换");
+
+        locator.requestRefresh();
+        awaitTrue(() -> !routes().containsKey(2L));
+        Assertions.assertSame(updated, routes().get(1L));
+        Assertions.assertEquals(Collections.singleton(1L), locator.getInterfaceIds());
+    }
+
+    @Test
+    void skipsInterfaceOutsideSignedRoutes() {
+        RouteClassifier routeClassifier = context.getBean(RouteClassifier.class);
+        Mockito.when(routeClassifier.classify("/third-party/user/login")).thenReturn(RoutePolicy.UNMATCHED);
+        stubRoutes(Arrays.asList(route(1L, "http://api-a.example.com/api/name", "GET", 1000L),
+                route(2L, "http://api-b.example.com/user/login", "POST", 1000L),
+                route(3L, "ftp://api-c.example.com/file", "GET", 1000L)));
+        locator.onApplicationEvent(null);
+        awaitTrue(() -> !routes().isEmpty());
+        Assertions.assertEquals(Collections.singleton(1L), routes().keySet());
+    }
+
+    @SafeVarargs
+    private final void stubRoutes(List<GatewayRoute> first, List<GatewayRoute>... rest) {
+        CompletableFuture<List<GatewayRoute>>[] next = new CompletableFuture[rest.length];
+        for (int i = 0; i < rest.length; i++) {
+            next[i] = CompletableFuture.completedFuture(rest[i]);
+        }
+        Mockito.when(innerInterfaceInfoService.listGatewayRoutesAsync(ArgumentMatchers.anyLong()))
+                .thenReturn(CompletableFuture.completedFuture(first), next);
+    }
+
+    private Map<Long, Route> routes() {
+        Map<Long, Route> routes = new HashMap<>();
+        for (Route route : locator.getRoutes().toIterable()) {
+            routes.put(InterfaceRouteLocator.interfaceId(route), route);
+        }
+        return routes;
+    }
+
+    private static boolean matches(Route route, String method, String path) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(
+                MockServerHttpRequest.method(HttpMethod.resolve(method), path));
+        return Boolean.TRUE.equals(Mono.from(route.getPredicate().apply(exchange)).block());
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "等待路由刷新超时");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                Assertions.fail(e);
+            }
+        }
+    }
+
+    private static GatewayRoute route(Long interfaceId, String url, String method, Long updateTime) {
+        GatewayRoute route = new GatewayRoute();
+        route.setInterfaceId(interfaceId);
+        route.setUrl(url);
+        route.setMethod(method);
+        route.setUpdateTime(updateTime);
+        return route;
+    }
+
+    private static GatewayRoute deleted(Long interfaceId, Long updateTime) {
+        GatewayRoute route = new GatewayRoute();
+        route.setInterfaceId(interfaceId);
+        route.setDeleted(true);
+        route.setUpdateTime(updateTime);
+        return route;
+    }
+}
@@ -0,0 +1,100 @@
+package com.qiapi.qiapigateway.route;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 路由前缀树测试
+ *
+ * @author zhexueqi
+ */
+class RouteTrieTest {
+
+    private static final RoutePolicy LOGIN = policy("login");
+
+    private static final RoutePolicy API = policy("api");
+
+    private static final RoutePolicy INVOKE = policy("invoke");
+
+    private static final RoutePolicy THIRD_PARTY = policy("third-party");
+
+    private RouteTrie trie;
+
+    @BeforeEach
+    void setUp() {
+        trie = new RouteTrie(RoutePolicy.UNMATCHED);
+        trie.add("/user/login", MatchMode.SEGMENT, LOGIN);
+        trie.add("/api/interfaceInfo", MatchMode.PREFIX, API);
+        trie.add("/api/interfaceInfo/invoke", MatchMode.SEGMENT, INVOKE);
+        trie.add("/third-party", MatchMode.PREFIX, THIRD_PARTY);
+    }
+
+    @Test
+    void segmentMatchesWholeSegmentsOnly() {
+        Assertions.assertSame(LOGIN, trie.match("/user/login"));
+        Assertions.assertSame(LOGIN, trie.match("/user/login/"));
+        Assertions.assertSame(LOGIN, trie.match("/user/login/wx"));
+        Assertions.assertSame(RoutePolicy.UNMATCHED, trie.match("/user/loginx"));
+        Assertions.assertSame(RoutePolicy.UNMATCHED, trie.match("/user/logi"));
+        Assertions.assertSame(RoutePolicy.UNMATCHED, trie.match("/user"));
+    }
+
+    @Test
+    void prefixMatchesAnyContinuation() {
+        Assertions.assertSame(API, trie.match("/api/interfaceInfo"));
+        Assertions.assertSame(API, trie.match("/api/interfaceInfo/list"));
+        Assertions.assertSame(API, trie.match("/api/interfaceInfoX"));
+        Assertions.assertSame(THIRD_PARTY, trie.match("/third-party/api/name"));
+    }
+
+    @Test
+    void longestMatchWins() {
+        Assertions.assertSame(INVOKE, trie.match("/api/interfaceInfo/invoke"));
+        Assertions.assertSame(INVOKE, trie.match("/api/interfaceInfo/invoke/1"));
+        // 更长的路径段不完整时退回较短的前缀匹配
+        Assertions.assertSame(API, trie.match("/api/interfaceInfo/invoker"));
+        Assertions.assertSame(API, trie.match("/api/interfaceInfo/inv"));
+    }
+
+    @Test
+    void segmentAndPrefixOnSameNode() {
+        RoutePolicy segment = policy("segment");
+        RoutePolicy prefix = policy("prefix");
+        trie.add("/shared", MatchMode.PREFIX, prefix);
+        trie.add("/shared", MatchMode.SEGMENT, segment);
+        Assertions.assertSame(segment, trie.match("/shared"));
+        Assertions.assertSame(segment, trie.match("/shared/a"));
+        Assertions.assertSame(prefix, trie.match("/sharedx"));
+    }
+
+    @Test
+    void addReturnsPreviousPolicyOfSameMode() {
+        RoutePolicy replacement = policy("replacement");
+        Assertions.assertSame(LOGIN, trie.add("/user/login", MatchMode.SEGMENT, replacement));
+        Assertions.assertNull(trie.add("/user/login", MatchMode.PREFIX, replacement));
+        Assertions.assertSame(replacement, trie.match("/user/login"));
+    }
+
+    @Test
+    void unmatchedPaths() {
+        Assertions.assertSame(RoutePolicy.UNMATCHED, trie.match(""));
+        Assertions.assertSame(RoutePolicy.UNMATCHED, trie.match("/"));
+        Assertions.assertSame(RoutePolicy.UNMATCHED, trie.match("/unknown/path"));
+    }
+
+    @Test
+    void rootPrefixCatchesEverything() {
+        RouteTrie catchAll = new RouteTrie(RoutePolicy.UNMATCHED);
+        RoutePolicy root = policy("root");
+        catchAll.add("/", MatchMode.PREFIX, root);
+        catchAll.add("/user/login", MatchMode.SEGMENT, LOGIN);
+        Assertions.assertSame(root, catchAll.match("/anything"));
+        Assertions.assertSame(LOGIN, catchAll.match("/user/login"));
+        Assertions.assertSame(RoutePolicy.UNMATCHED, catchAll.match(""));
+    }
+
+    private static RoutePolicy policy(String name) {
+        return new RoutePolicy(name, AuthMode.NONE, false, false, RoutePriority.NORMAL);
+    }
+}
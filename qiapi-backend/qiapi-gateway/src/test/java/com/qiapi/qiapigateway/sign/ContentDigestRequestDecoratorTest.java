@@ -0,0 +1,115 @@
+package com.qiapi.qiapigateway.sign;
+
+import com.qiapi.project.utils.SignUtils;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 请求体摘要增量校验测试
+ *
+ * @author zhexueqi
+ */
+class ContentDigestRequestDecoratorTest {
+
+    private final NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(new UnpooledByteBufAllocator(false));
+
+    @Test
+    void forwardsAllChunksWhenDigestMatches() {
+        List<String> chunks = Arrays.asList("{\"name\":", "\"中文\",", "\"id\":1}");
+        ContentDigestRequestDecorator request = decorate(chunks, digestOf(String.join("", chunks)));
+        List<String> forwarded = new ArrayList<>();
+        request.getBody().doOnNext(buffer -> forwarded.add(readAndRelease(buffer))).blockLast();
+        Assertions.assertEquals(chunks, forwarded);
+    }
+
+    @Test
+    void holdsBackLastChunkWhenDigestMismatches() {
+        List<String> chunks = Arrays.asList("first,", "second,", "third");
+        // 只有最后一块与签名不一致
+        byte[] expected = digestOf("first,second,THIRD");
+        List<DataBuffer> sent = toBuffers(chunks);
+        ContentDigestRequestDecorator request = new ContentDigestRequestDecorator(
+                MockServerHttpRequest.post("/third-party/api").body(Flux.fromIterable(sent)), expected);
+        List<String> forwarded = new ArrayList<>();
+        Throwable error = null;
+        try {
+            request.getBody().doOnNext(buffer -> forwarded.add(readAndRelease(buffer))).blockLast();
+        } catch (ContentDigestMismatchException e) {
+            error = e;
+        }
+        Assertions.assertNotNull(error, "摘要不一致时应以异常中断");
+        // 上游收不到最后一块，请求体不完整
+        Assertions.assertEquals(Arrays.asList("first,", "second,"), forwarded);
+        // 扣住的最后一块已释放
+        for (DataBuffer buffer : sent) {
+            Assertions.assertEquals(0, ((NettyDataBuffer) buffer).getNativeBuffer().refCnt());
+        }
+    }
+
+    @Test
+    void singleChunkMismatchForwardsNothing() {
+        ContentDigestRequestDecorator request = decorate(Arrays.asList("tampered"), digestOf("original"));
+        List<String> forwarded = new ArrayList<>();
+        Assertions.assertThrows(ContentDigestMismatchException.class,
+                () -> request.getBody().doOnNext(buffer -> forwarded.add(readAndRelease(buffer))).blockLast());
+        Assertions.assertTrue(forwarded.isEmpty());
+    }
+
+    @Test
+    void emptyBody() {
+        ContentDigestRequestDecorator matching = decorate(new ArrayList<>(), digestOf(""));
+        Assertions.assertEquals(0L, matching.getBody().count().block());
+        ContentDigestRequestDecorator mismatching = decorate(new ArrayList<>(), digestOf("body"));
+        Assertions.assertThrows(ContentDigestMismatchException.class, () -> mismatching.getBody().blockLast());
+    }
+
+    @Test
+    void resubscribeStartsNewDigest() {
+        List<String> chunks = Arrays.asList("a", "b");
+        byte[] expected = digestOf("ab");
+        MockServerHttpRequest delegate = MockServerHttpRequest.post("/third-party/api")
+                .body(Flux.defer(() -> Flux.fromIterable(toBuffers(chunks))));
+        ContentDigestRequestDecorator request = new ContentDigestRequestDecorator(delegate, expected);
+        for (int i = 0; i < 2; i++) {
+            List<String> forwarded = new ArrayList<>();
+            request.getBody().doOnNext(buffer -> forwarded.add(readAndRelease(buffer))).blockLast();
+            Assertions.assertEquals(chunks, forwarded);
+        }
+    }
+
+    private ContentDigestRequestDecorator decorate(List<String> chunks, byte[] expectedDigest) {
+        return new ContentDigestRequestDecorator(
+                MockServerHttpRequest.post("/third-party/api").body(Flux.fromIterable(toBuffers(chunks))),
+                expectedDigest);
+    }
+
+    private List<DataBuffer> toBuffers(List<String> chunks) {
+        List<DataBuffer> buffers = new ArrayList<>(chunks.size());
+        for (String chunk : chunks) {
+            buffers.add(bufferFactory.wrap(chunk.getBytes(StandardCharsets.UTF_8)));
+        }
+        return buffers;
+    }
+
+    private static byte[] digestOf(String body) {
+        return SignUtils.decodeHex(SignUtils.getContentSha256(body), 32);
+    }
+
+    private static String readAndRelease(DataBuffer buffer) {
+        String value = buffer.toString(StandardCharsets.UTF_8);
+        DataBufferUtils.release(buffer);
+        return value;
+    }
+}
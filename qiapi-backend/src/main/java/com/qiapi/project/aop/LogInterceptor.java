@@ -1,5 +1,6 @@
 package com.qiapi.project.aop;
 
+import com.qiapi.trace.Tracer;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.aspectj.lang.ProceedingJoinPoint;
@@ -36,8 +37,11 @@ public class LogInterceptor {
         // 获取请求路径
         RequestAttributes requestAttributes = RequestContextHolder.currentRequestAttributes();
         HttpServletRequest httpServletRequest = ((ServletRequestAttributes) requestAttributes).getRequest();
-        // 生成请求唯一 id
-        String requestId = UUID.randomUUID().toString();
+        // 请求 id 使用链路ID，与网关、Dubbo 调用的日志关联；没有链路时生成
+        String requestId = Tracer.currentSpan().getTraceId();
+        if (requestId == null) {
+            requestId = UUID.randomUUID().toString();
+        }
         String url = httpServletRequest.getRequestURI();
         // 获取请求参数
         Object[] args = point.getArgs();
@@ -0,0 +1,28 @@
+package com.qiapi.project.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 额度预授权配置
+ * <p>
+ * 冻结记录保存在 Redis 中，未开启额度账本时也需要配置 Redis
+ *
+ * @author zhexueqi
+ */
+@Configuration
+@ConfigurationProperties(prefix = "credit.hold")
+@Data
+public class CreditHoldConfig {
+
+    /**
+     * 冻结额度的有效期（秒），超时未确认自动释放
+     */
+    private long ttlSeconds = 60;
+
+    /**
+     * 每次扫描释放的最大过期冻结数
+     */
+    private int expireBatchSize = 200;
+}
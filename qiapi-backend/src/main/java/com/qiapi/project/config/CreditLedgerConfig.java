@@ -0,0 +1,33 @@
+package com.qiapi.project.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 额度账本配置
+ * <p>
+ * 开启后接口调用的额度扣减在 Redis 中原子完成，扣减流水异步批量回写到 user_credit 与 credit_records
+ *
+ * @author zhexueqi
+ */
+@Configuration
+@ConfigurationProperties(prefix = "credit.ledger")
+@Data
+public class CreditLedgerConfig {
+
+    /**
+     * 是否开启 Redis 额度账本
+     */
+    private boolean enabled = false;
+
+    /**
+     * 每批回写的最大流水条数（不超过 5000）
+     */
+    private int flushBatchSize = 500;
+
+    /**
+     * 回写 / 对账任务锁的过期时间（秒）
+     */
+    private long lockSeconds = 60;
+}
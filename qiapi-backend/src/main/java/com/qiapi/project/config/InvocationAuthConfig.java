@@ -0,0 +1,26 @@
+package com.qiapi.project.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 网关调用鉴权缓存配置
+ *
+ * @author zhexueqi
+ */
+@Configuration
+@ConfigurationProperties(prefix = "invocation.auth")
+@Data
+public class InvocationAuthConfig {
+
+    /**
+     * 每个缓存的最大条目数
+     */
+    private long maximumSize = 10000;
+
+    /**
+     * 写入后过期时间（秒），作为失效通知丢失时的兜底
+     */
+    private long expireSeconds = 60;
+}
@@ -0,0 +1,80 @@
+package com.qiapi.project.config;
+
+import com.qiapi.project.manager.BatchRecordWriter;
+import com.qiapi.project.mapper.CreditRecordMapper;
+import com.qiapi.project.mapper.PointRecordMapper;
+import com.qiapi.qiapicommon.model.entity.CreditRecord;
+import com.qiapi.qiapicommon.model.entity.PointRecord;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 记录表批量写入配置
+ *
+ * @author zhexueqi
+ */
+@Configuration
+@ConfigurationProperties(prefix = "record.writer")
+@Data
+public class RecordWriterConfig {
+
+    /**
+     * 是否开启批量异步写入（关闭时在调用方事务内同步插入）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 每批最大条数
+     */
+    private int batchSize = 200;
+
+    /**
+     * 攒批的最长等待时间（毫秒）
+     */
+    private long flushIntervalMs = 200;
+
+    /**
+     * 队列容量
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * 队列满时的最长等待时间（毫秒），超时后由调用线程同步写入
+     */
+    private long offerTimeoutMs = 50;
+
+    /**
+     * 预写日志目录，相对路径按用户主目录解析（不随启动目录变化）
+     * <p>
+     * 每个实例必须使用自己的目录（默认配置按服务端口区分），目录已被其他实例使用时启动失败
+     */
+    private String walDir = "qiapi/record-wal";
+
+    @Bean(destroyMethod = "close")
+    public BatchRecordWriter<CreditRecord> creditRecordWriter(CreditRecordMapper creditRecordMapper) {
+        return new BatchRecordWriter<>("credit_records", CreditRecord.class, creditRecordMapper::insertBatch,
+                batchSize, flushIntervalMs, queueCapacity, offerTimeoutMs, resolveWalDir());
+    }
+
+    @Bean(destroyMethod = "close")
+    public BatchRecordWriter<PointRecord> pointRecordWriter(PointRecordMapper pointRecordMapper) {
+        return new BatchRecordWriter<>("point_records", PointRecord.class, pointRecordMapper::insertBatch,
+                batchSize, flushIntervalMs, queueCapacity, offerTimeoutMs, resolveWalDir());
+    }
+
+    /**
+     * 预写日志目录的绝对路径
+     */
+    public Path resolveWalDir() {
+        Path path = Paths.get(walDir);
+        if (!path.isAbsolute()) {
+            path = Paths.get(System.getProperty("user.home")).resolve(path);
+        }
+        return path.normalize();
+    }
+}
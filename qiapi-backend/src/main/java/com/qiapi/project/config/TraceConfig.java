@@ -0,0 +1,54 @@
+package com.qiapi.project.config;
+
+import com.qiapi.trace.LoggingSpanExporter;
+import com.qiapi.trace.Tracer;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 链路追踪配置：保留的链路以 JSON 行写入 TRACE_SPANS 日志器
+ *
+ * @author zhexueqi
+ */
+@Configuration
+@ConfigurationProperties(prefix = "trace")
+@Data
+public class TraceConfig {
+
+    /**
+     * 是否记录链路（关闭时仍透传上游的 traceparent 与 traceId）
+     */
+    private boolean enabled = true;
+
+    /**
+     * 慢请求阈值（毫秒），达到该耗时的请求保留完整链路
+     */
+    private long slowThresholdMillis = 500;
+
+    /**
+     * 本服务作为链路起点时的随机采样率（0-1）
+     */
+    private double sampleRate = 0.01;
+
+    /**
+     * 每段链路最多记录的 span 数
+     */
+    private int maxSpansPerTrace = 256;
+
+    /**
+     * 待写入链路的队列容量，满时丢弃
+     */
+    private int queueCapacity = 1024;
+
+    @Bean(destroyMethod = "close")
+    public LoggingSpanExporter spanExporter() {
+        return new LoggingSpanExporter(queueCapacity);
+    }
+
+    @Bean
+    public Tracer tracer(LoggingSpanExporter spanExporter) {
+        return new Tracer("qiapi-backend", slowThresholdMillis, sampleRate, maxSpansPerTrace, spanExporter);
+    }
+}
@@ -6,12 +6,15 @@ import com.qiapi.project.common.BaseResponse;
 import com.qiapi.project.common.ErrorCode;
 import com.qiapi.project.common.ResultUtils;
 import com.qiapi.project.exception.BusinessException;
+import com.qiapi.project.manager.BatchRecordWriter;
 import com.qiapi.project.mapper.CreditRecordMapper;
 import com.qiapi.project.mapper.UserCreditMapper;
 import com.qiapi.project.mapper.UserInterfaceInfoMapper;
 import com.qiapi.project.model.vo.*;
 import com.qiapi.project.service.InterfaceInfoService;
+import com.qiapi.qiapicommon.model.entity.CreditRecord;
 import com.qiapi.qiapicommon.model.entity.InterfaceInfo;
+import com.qiapi.qiapicommon.model.entity.PointRecord;
 import com.qiapi.qiapicommon.model.entity.UserInterfaceInfo;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -22,6 +25,7 @@ import org.springframework.util.CollectionUtils;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -49,6 +53,12 @@ public class AnalysisController {
     @Resource
     private InterfaceInfoService interfaceInfoService;
 
+    @Resource
+    private BatchRecordWriter<CreditRecord> creditRecordWriter;
+
+    @Resource
+    private BatchRecordWriter<PointRecord> pointRecordWriter;
+
     // ==================== 传统调用次数统计 ====================
 
     @GetMapping("/top/interface/invoke")
@@ -177,4 +187,13 @@ public class AnalysisController {
             throw new BusinessException(ErrorCode.SYSTEM_ERROR, "获取统计数据失败");
         }
     }
+
+    // ==================== 记录写入统计 ====================
+
+    @GetMapping("/record/writer")
+    @AuthCheck(mustRole = "admin")
+    @ApiOperation("获取额度与积分记录的批量写入统计")
+    public BaseResponse<List<RecordWriterStatsVO>> getRecordWriterStats() {
+        return ResultUtils.success(Arrays.asList(creditRecordWriter.stats(), pointRecordWriter.stats()));
+    }
 }
@@ -1,5 +1,6 @@
 package com.qiapi.project.controller;
 
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.google.gson.Gson;
 import com.qiapi.client.QiApiClient;
@@ -8,23 +9,30 @@ import com.qiapi.project.common.*;
 import com.qiapi.project.constant.UserConstant;
 import com.qiapi.project.exception.BusinessException;
 import com.qiapi.project.exception.ThrowUtils;
+import com.qiapi.project.manager.AuthCacheManager;
+import com.qiapi.project.manager.GatewayRouteNotifier;
 import com.qiapi.project.model.dto.interfaceinfo.InterfaceInfoAddRequest;
 import com.qiapi.project.model.dto.interfaceinfo.InterfaceInfoInvokeRequest;
 import com.qiapi.project.model.dto.interfaceinfo.InterfaceInfoQueryRequest;
 import com.qiapi.project.model.dto.interfaceinfo.InterfaceInfoUpdateRequest;
+import com.qiapi.project.model.dto.interfaceinstance.InterfaceInstanceAddRequest;
 import com.qiapi.project.model.vo.InterfaceConfigVO;
 import com.qiapi.project.model.vo.InterfaceInfoVO;
 import com.qiapi.project.service.CreditService;
 import com.qiapi.project.service.InterfaceInfoService;
+import com.qiapi.project.service.InterfaceInstanceService;
 import com.qiapi.project.service.UserService;
 import com.qiapi.qiapicommon.model.entity.InterfaceInfo;
+import com.qiapi.qiapicommon.model.entity.InterfaceInstance;
 import com.qiapi.qiapicommon.model.entity.User;
+import com.qiapi.qiapicommon.model.enums.InterfaceInfoStatusEnum;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -38,6 +46,11 @@ import java.util.Map;
 @Slf4j
 public class InterfaceInfoController {
 
+    /**
+     * 网关与后端传递接口ID的请求头 / 响应头
+     */
+    private static final String INTERFACE_ID_HEADER = "interfaceId";
+
     @Resource
     private InterfaceInfoService interfaceInfoService;
 
@@ -49,6 +62,15 @@ public class InterfaceInfoController {
     @Resource
     private CreditService creditService;
 
+    @Resource
+    private AuthCacheManager authCacheManager;
+
+    @Resource
+    private GatewayRouteNotifier gatewayRouteNotifier;
+
+    @Resource
+    private InterfaceInstanceService interfaceInstanceService;
+
     /**
      * 创建
      *
@@ -67,9 +89,14 @@ public class InterfaceInfoController {
         interfaceInfoService.validInterfaceInfo(interfaceInfo, true);
         User loginUser = userService.getLoginUser(request);
         interfaceInfo.setUserId(loginUser.getId());
+        // 新增的接口需管理员发布后才上线（才生成网关路由）
+        interfaceInfo.setStatus(InterfaceInfoStatusEnum.OFFLINE.getValue());
         boolean result = interfaceInfoService.save(interfaceInfo);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
         long newInterfaceInfoId = interfaceInfo.getId();
+        // 清除此前缓存为不存在的 url + method
+        authCacheManager.evictInterfaceInfo(newInterfaceInfoId);
+        gatewayRouteNotifier.interfaceChanged(newInterfaceInfoId);
         return ResultUtils.success(newInterfaceInfoId);
     }
 
@@ -95,6 +122,8 @@ public class InterfaceInfoController {
             throw new BusinessException(ErrorCode.NO_AUTH_ERROR);
         }
         boolean b = interfaceInfoService.removeById(id);
+        authCacheManager.evictInterfaceInfo(id);
+        gatewayRouteNotifier.interfaceChanged(id);
         return ResultUtils.success(b);
     }
 
@@ -119,6 +148,8 @@ public class InterfaceInfoController {
         InterfaceInfo oldInterfaceInfo = interfaceInfoService.getById(id);
         ThrowUtils.throwIf(oldInterfaceInfo == null, ErrorCode.NOT_FOUND_ERROR);
         boolean result = interfaceInfoService.updateById(interfaceInfo);
+        authCacheManager.evictInterfaceInfo(id);
+        gatewayRouteNotifier.interfaceChanged(id);
         return ResultUtils.success(result);
     }
 
@@ -235,6 +266,8 @@ public class InterfaceInfoController {
         }
         long id = idRequest.getId();
         boolean result = interfaceInfoService.onlineInterfaceInfo(id, request);
+        authCacheManager.evictInterfaceInfo(id);
+        gatewayRouteNotifier.interfaceChanged(id);
         return ResultUtils.success(result);
     }
 
@@ -249,19 +282,101 @@ public class InterfaceInfoController {
         }
         long id = idRequest.getId();
         boolean res = interfaceInfoService.offOnline(id, request);
+        authCacheManager.evictInterfaceInfo(id);
+        gatewayRouteNotifier.interfaceChanged(id);
         return ResultUtils.success(res);
     }
 
+    /**
+     * 注册接口上游实例(管理员操作)
+     */
+    @PostMapping("/instance/add")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<Long> addInterfaceInstance(@RequestBody InterfaceInstanceAddRequest instanceAddRequest) {
+        if (instanceAddRequest == null) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR);
+        }
+        InterfaceInstance interfaceInstance = new InterfaceInstance();
+        BeanUtils.copyProperties(instanceAddRequest, interfaceInstance);
+        long id = interfaceInstanceService.addInstance(interfaceInstance);
+        gatewayRouteNotifier.interfaceChanged(interfaceInstance.getInterfaceInfoId());
+        return ResultUtils.success(id);
+    }
+
+    /**
+     * 删除接口上游实例(管理员操作)
+     */
+    @PostMapping("/instance/delete")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<Boolean> deleteInterfaceInstance(@RequestBody DeleteRequest deleteRequest) {
+        InterfaceInstance interfaceInstance = getInterfaceInstance(deleteRequest == null ? null : deleteRequest.getId());
+        boolean result = interfaceInstanceService.removeInstance(interfaceInstance);
+        gatewayRouteNotifier.interfaceChanged(interfaceInstance.getInterfaceInfoId());
+        return ResultUtils.success(result);
+    }
+
+    /**
+     * 上线接口上游实例(管理员操作)
+     */
+    @PostMapping("/instance/online")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<Boolean> onlineInterfaceInstance(@RequestBody IdRequest idRequest) {
+        InterfaceInstance interfaceInstance = getInterfaceInstance(idRequest == null ? null : idRequest.getId());
+        boolean result = interfaceInstanceService.updateInstanceStatus(interfaceInstance, 1);
+        gatewayRouteNotifier.interfaceChanged(interfaceInstance.getInterfaceInfoId());
+        return ResultUtils.success(result);
+    }
+
+    /**
+     * 下线接口上游实例(管理员操作)，网关不再向其转发
+     */
+    @PostMapping("/instance/offline")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<Boolean> offlineInterfaceInstance(@RequestBody IdRequest idRequest) {
+        InterfaceInstance interfaceInstance = getInterfaceInstance(idRequest == null ? null : idRequest.getId());
+        boolean result = interfaceInstanceService.updateInstanceStatus(interfaceInstance, 0);
+        gatewayRouteNotifier.interfaceChanged(interfaceInstance.getInterfaceInfoId());
+        return ResultUtils.success(result);
+    }
+
+    /**
+     * 查询接口的上游实例(管理员操作)
+     *
+     * @param interfaceInfoId 接口id
+     */
+    @GetMapping("/instance/list")
+    @AuthCheck(mustRole = UserConstant.ADMIN_ROLE)
+    public BaseResponse<java.util.List<InterfaceInstance>> listInterfaceInstance(long interfaceInfoId) {
+        ThrowUtils.throwIf(interfaceInfoId <= 0, ErrorCode.PARAMS_ERROR);
+        QueryWrapper<InterfaceInstance> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("interfaceInfoId", interfaceInfoId);
+        queryWrapper.orderByAsc("id");
+        return ResultUtils.success(interfaceInstanceService.list(queryWrapper));
+    }
+
+    private InterfaceInstance getInterfaceInstance(Long id) {
+        ThrowUtils.throwIf(id == null || id <= 0, ErrorCode.PARAMS_ERROR);
+        InterfaceInstance interfaceInstance = interfaceInstanceService.getById(id);
+        ThrowUtils.throwIf(interfaceInstance == null, ErrorCode.NOT_FOUND_ERROR);
+        return interfaceInstance;
+    }
+
     /**
      * 调用接口
      */
     @PostMapping("/invoke")
-    public BaseResponse<Object> invokeInterfaceInfo(@RequestBody InterfaceInfoInvokeRequest interfaceInfoInvokeRequest, HttpServletRequest request) {
+    public BaseResponse<Object> invokeInterfaceInfo(@RequestBody InterfaceInfoInvokeRequest interfaceInfoInvokeRequest,
+                                                    HttpServletRequest request, HttpServletResponse response) {
         if (interfaceInfoInvokeRequest == null || interfaceInfoInvokeRequest.getId() <= 0) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
 
         long id = interfaceInfoInvokeRequest.getId();
+        // 网关按请求头中的接口ID记录日志，请求头与请求体不一致时拒绝，避免按其他接口计费
+        String interfaceIdHeader = request.getHeader(INTERFACE_ID_HEADER);
+        if (interfaceIdHeader != null && !interfaceIdHeader.equals(String.valueOf(id))) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "请求头与请求体中的接口ID不一致");
+        }
 
         // 根据接口ID获取接口信息
         InterfaceInfo interfaceInfo = interfaceInfoService.getById(id);
@@ -286,6 +401,8 @@ public class InterfaceInfoController {
         try {
             // 根据接口信息动态调用对应的API
             Object result = invokeApiByInterfaceInfo(interfaceInfo, interfaceInfoInvokeRequest.getUserRequestParams(), accessKey, secretKey);
+            // 调用成功时返回实际调用的接口ID，网关据此扣减额度
+            response.setHeader(INTERFACE_ID_HEADER, String.valueOf(interfaceInfo.getId()));
             return ResultUtils.success(result);
         } catch (Exception e) {
             log.error("接口调用失败", e);
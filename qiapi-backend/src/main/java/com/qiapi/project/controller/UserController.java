@@ -10,6 +10,7 @@ import com.qiapi.project.config.WxOpenConfig;
 import com.qiapi.project.constant.UserConstant;
 import com.qiapi.project.exception.BusinessException;
 import com.qiapi.project.exception.ThrowUtils;
+import com.qiapi.project.manager.AuthCacheManager;
 import com.qiapi.project.model.dto.user.EmailLoginRequest;
 import com.qiapi.project.model.dto.user.EmailRegisterRequest;
 import com.qiapi.project.model.dto.user.UserLoginRequest;
@@ -59,6 +60,9 @@ public class UserController {
     @Resource
     private WxOpenConfig wxOpenConfig;
 
+    @Resource
+    private AuthCacheManager authCacheManager;
+
     // region 登录相关
 
     /**
@@ -230,7 +234,11 @@ public class UserController {
         if (deleteRequest == null || deleteRequest.getId() <= 0) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
+        User oldUser = userService.getById(deleteRequest.getId());
         boolean b = userService.removeById(deleteRequest.getId());
+        if (b && oldUser != null) {
+            authCacheManager.evictAccessKey(oldUser.getAccessKey());
+        }
         return ResultUtils.success(b);
     }
 
@@ -248,10 +256,14 @@ public class UserController {
         if (userUpdateRequest == null || userUpdateRequest.getId() == null) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
+        User oldUser = userService.getById(userUpdateRequest.getId());
+        ThrowUtils.throwIf(oldUser == null, ErrorCode.NOT_FOUND_ERROR);
         User user = new User();
         BeanUtils.copyProperties(userUpdateRequest, user);
         boolean result = userService.updateById(user);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 角色变更（如封禁）需要立即对网关调用生效
+        authCacheManager.evictAccessKey(oldUser.getAccessKey());
         return ResultUtils.success(true);
     }
 
@@ -397,6 +409,8 @@ public class UserController {
 
         boolean result = userService.updateById(updateUser);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 旧密钥失效，清除鉴权缓存
+        authCacheManager.evictAccessKey(loginUser.getAccessKey());
 
         // 返回新生成的密钥
         UserKeyVO userKeyVO = new UserKeyVO();
@@ -430,6 +444,8 @@ public class UserController {
 
         boolean result = userService.updateById(updateUser);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 旧密钥失效，清除鉴权缓存
+        authCacheManager.evictAccessKey(loginUser.getAccessKey());
 
         // 返回新生成的密钥
         UserKeyVO userKeyVO = new UserKeyVO();
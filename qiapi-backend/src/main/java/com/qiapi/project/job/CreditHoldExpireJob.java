@@ -0,0 +1,33 @@
+package com.qiapi.project.job;
+
+import com.qiapi.project.service.CreditService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * 释放超时未确认的预授权冻结额度
+ *
+ * @author zhexueqi
+ */
+@Component
+@Slf4j
+public class CreditHoldExpireJob {
+
+    @Resource
+    private CreditService creditService;
+
+    @Scheduled(fixedDelayString = "${credit.hold.expire-scan-interval-ms:5000}")
+    public void releaseExpired() {
+        try {
+            int released = creditService.releaseExpiredCredit();
+            if (released > 0) {
+                log.info("释放过期冻结额度 - 数量: {}", released);
+            }
+        } catch (Exception e) {
+            log.error("释放过期冻结额度失败", e);
+        }
+    }
+}
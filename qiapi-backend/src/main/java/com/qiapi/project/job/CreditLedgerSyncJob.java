@@ -0,0 +1,202 @@
+package com.qiapi.project.job;
+
+import com.qiapi.project.config.CreditLedgerConfig;
+import com.qiapi.project.manager.CreditLedgerManager;
+import com.qiapi.project.mapper.CreditLedgerMapper;
+import com.qiapi.project.mapper.CreditRecordMapper;
+import com.qiapi.project.model.dto.credit.CreditLedgerEntry;
+import com.qiapi.qiapicommon.model.entity.CreditRecord;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 额度账本回写与对账任务
+ * <p>
+ * 回写：按流水序号批量写入 credit_records，并按用户与接口汇总更新 user_credit，
+ * 检查点与数据写入同一事务，重复执行同一批流水不会重复扣减；单次回写不超过任务锁有效期的一半，
+ * 剩余流水留给下次任务，避免锁过期后多个实例同时回写。
+ * 对账：定期校验 缓存余额 + 待回写数量 = 数据库剩余额度，不一致时以数据库为准修正缓存；
+ * 单次对账同样不超过任务锁有效期的一半，未遍历完的余额由下次任务从保存的游标处继续。
+ *
+ * @author zhexueqi
+ */
+@Component
+@Slf4j
+public class CreditLedgerSyncJob {
+
+    @Resource
+    private CreditLedgerManager creditLedgerManager;
+
+    @Resource
+    private CreditLedgerMapper creditLedgerMapper;
+
+    @Resource
+    private CreditRecordMapper creditRecordMapper;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private CreditLedgerConfig creditLedgerConfig;
+
+    /**
+     * 回写扣减流水
+     */
+    @Scheduled(fixedDelayString = "${credit.ledger.flush-interval-ms:1000}")
+    public void flush() {
+        if (!creditLedgerManager.isEnabled()) {
+            return;
+        }
+        String lock = creditLedgerManager.tryLock();
+        if (lock == null) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + creditLedgerConfig.getLockSeconds() * 1000 / 2;
+        try {
+            List<CreditLedgerEntry> entries;
+            while (System.currentTimeMillis() < deadline
+                    && !(entries = creditLedgerManager.takeBatch()).isEmpty()) {
+                flushBatch(entries);
+                creditLedgerManager.ackBatch(entries);
+            }
+        } catch (Exception e) {
+            log.error("额度账本回写失败，将在下次任务重试", e);
+        } finally {
+            creditLedgerManager.unlock(lock);
+        }
+    }
+
+    /**
+     * 对账缓存余额与数据库
+     */
+    @Scheduled(fixedDelayString = "${credit.ledger.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        if (!creditLedgerManager.isEnabled()) {
+            return;
+        }
+        String lock = creditLedgerManager.tryLock();
+        if (lock == null) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + creditLedgerConfig.getLockSeconds() * 1000 / 2;
+        AtomicInteger checked = new AtomicInteger();
+        AtomicInteger repaired = new AtomicInteger();
+        // 到达截止时间或锁已失效时停止，当前这批余额下次重新检查
+        AtomicBoolean stopped = new AtomicBoolean();
+        try {
+            String cursor = creditLedgerManager.getReconcileCursor();
+            do {
+                String batchCursor = cursor;
+                cursor = creditLedgerManager.scanBalances(cursor, key -> {
+                    if (stopped.get()) {
+                        return;
+                    }
+                    if (System.currentTimeMillis() >= deadline) {
+                        stopped.set(true);
+                        return;
+                    }
+                    checked.incrementAndGet();
+                    if (isConsistent(key[0], key[1])) {
+                        return;
+                    }
+                    // 充值在数据库提交后才同步缓存，存在短暂的窗口，复查一次再修正
+                    if (isConsistent(key[0], key[1])) {
+                        return;
+                    }
+                    // 修正前重新读取数据库，脚本确认锁仍由本任务持有，期间没有其他实例回写
+                    long dbRemaining = creditLedgerManager.loadRemaining(key[0], key[1]);
+                    if (creditLedgerManager.repair(key[0], key[1], dbRemaining, lock)) {
+                        log.warn("额度账本对账不一致，已按数据库修正 - 用户ID: {}, 接口ID: {}, 数据库剩余: {}",
+                                key[0], key[1], dbRemaining);
+                        repaired.incrementAndGet();
+                    } else {
+                        log.warn("额度账本对账锁已失效或有回写中的流水，停止本次修正 - 用户ID: {}, 接口ID: {}",
+                                key[0], key[1]);
+                        stopped.set(true);
+                    }
+                });
+                if (stopped.get()) {
+                    cursor = batchCursor;
+                    break;
+                }
+            } while (!CreditLedgerManager.SCAN_START.equals(cursor));
+            creditLedgerManager.saveReconcileCursor(cursor);
+            if (stopped.get()) {
+                log.info("额度账本对账未完成，下次从断点继续 - 检查: {}, 修正: {}", checked.get(), repaired.get());
+            } else {
+                log.info("额度账本对账完成 - 检查: {}, 修正: {}", checked.get(), repaired.get());
+            }
+        } catch (Exception e) {
+            log.error("额度账本对账失败", e);
+        } finally {
+            creditLedgerManager.unlock(lock);
+        }
+    }
+
+    private void flushBatch(List<CreditLedgerEntry> entries) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Long checkpoint = creditLedgerMapper.selectCheckpoint();
+            long lastSeq = checkpoint == null ? 0L : checkpoint;
+            // 序号不大于检查点的流水已回写过（上次回写后确认前失败），跳过
+            List<CreditLedgerEntry> fresh = entries.stream()
+                    .filter(entry -> entry.getSeq() > lastSeq)
+                    .collect(Collectors.toList());
+            if (fresh.isEmpty()) {
+                return;
+            }
+            Map<String, CreditLedgerEntry> deductions = new LinkedHashMap<>();
+            List<CreditRecord> records = new ArrayList<>(fresh.size());
+            for (CreditLedgerEntry entry : fresh) {
+                deductions.merge(entry.getUserId() + ":" + entry.getInterfaceId(), copy(entry), (a, b) -> {
+                    a.setAmount(a.getAmount() + b.getAmount());
+                    return a;
+                });
+                records.add(toRecord(entry));
+            }
+            creditLedgerMapper.applyDeductions(new ArrayList<>(deductions.values()));
+            creditRecordMapper.insertBatch(records);
+            creditLedgerMapper.updateCheckpoint(fresh.get(fresh.size() - 1).getSeq());
+        });
+    }
+
+    private boolean isConsistent(long userId, long interfaceId) {
+        long[] cached = creditLedgerManager.readBalance(userId, interfaceId);
+        if (cached == null) {
+            return true;
+        }
+        long dbRemaining = creditLedgerManager.loadRemaining(userId, interfaceId);
+        if (dbRemaining < 0) {
+            return cached[0] < 0;
+        }
+        return cached[0] == dbRemaining - cached[1];
+    }
+
+    private static CreditLedgerEntry copy(CreditLedgerEntry entry) {
+        CreditLedgerEntry copy = new CreditLedgerEntry();
+        copy.setUserId(entry.getUserId());
+        copy.setInterfaceId(entry.getInterfaceId());
+        copy.setAmount(entry.getAmount());
+        return copy;
+    }
+
+    private static CreditRecord toRecord(CreditLedgerEntry entry) {
+        CreditRecord record = new CreditRecord();
+        record.setUserId(entry.getUserId());
+        record.setInterfaceId(entry.getInterfaceId());
+        record.setOperationType("CONSUME");
+        record.setCreditChange(-entry.getAmount());
+        record.setBalanceBefore(entry.getBalanceBefore());
+        record.setBalanceAfter(entry.getBalanceBefore() - entry.getAmount());
+        record.setDescription("消费额度");
+        record.setCreateTime(new Date(entry.getTimestamp()));
+        return record;
+    }
+}
@@ -0,0 +1,60 @@
+package com.qiapi.project.manager;
+
+import com.qiapi.qiapicommon.service.InnerAuthCacheService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.dubbo.config.annotation.DubboReference;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * 调用鉴权缓存失效通知
+ * <p>
+ * 先清除本节点缓存，再以广播方式通知所有后端节点和网关节点；通知失败时只记录日志，其他节点的缓存会在过期后自动回源
+ *
+ * @author zhexueqi
+ */
+@Component
+@Slf4j
+public class AuthCacheManager {
+
+    /**
+     * scope = remote：不走本地调用，保证广播到包括本节点在内的所有提供者
+     */
+    @DubboReference(check = false, cluster = "broadcast", scope = "remote", timeout = 3000, retries = 0)
+    private InnerAuthCacheService innerAuthCacheService;
+
+    @Resource
+    private InvocationAuthCache invocationAuthCache;
+
+    /**
+     * 使 accessKey 对应的用户缓存失效
+     *
+     * @param accessKey
+     */
+    public void evictAccessKey(String accessKey) {
+        if (accessKey == null) {
+            return;
+        }
+        invocationAuthCache.invalidateAccessKey(accessKey);
+        try {
+            innerAuthCacheService.invalidateAccessKey(accessKey);
+        } catch (Exception e) {
+            log.warn("通知其他节点失效 accessKey 缓存失败", e);
+        }
+    }
+
+    /**
+     * 使接口信息缓存失效
+     *
+     * @param interfaceInfoId 接口ID
+     */
+    public void evictInterfaceInfo(long interfaceInfoId) {
+        invocationAuthCache.invalidateInterfaceInfo(interfaceInfoId);
+        try {
+            innerAuthCacheService.invalidateInterfaceInfo(interfaceInfoId);
+        } catch (Exception e) {
+            log.warn("通知其他节点失效接口信息缓存失败 - 接口ID: {}", interfaceInfoId, e);
+        }
+    }
+}
@@ -0,0 +1,481 @@
+package com.qiapi.project.manager;
+
+import cn.hutool.json.JSONUtil;
+import com.qiapi.project.model.vo.RecordWriterStatsVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 记录表批量异步写入器
+ * <p>
+ * 记录在调用方事务提交后先追加到本地预写日志（WAL），再进入有界队列，由后台线程每 N 毫秒或攒满 M 条后批量插入。
+ * 记录表是流水明细，不参与余额计算，以下保证按"尽量不丢、允许少量重复"设计：
+ * <ul>
+ *     <li>背压：队列满且等待超时后由调用线程同步写入，不丢记录</li>
+ *     <li>停机：关闭时写完队列中剩余的记录</li>
+ *     <li>提交与追加之间的窗口：WAL 在事务提交之后才追加（提交前无法知道事务是否会回滚，提前追加会在重放时写入已回滚的记录），
+ *     事务提交后、追加完成前进程崩溃时该记录丢失，业务数据已提交而记录表缺少对应明细</li>
+ *     <li>崩溃恢复：启动时重放 WAL 中序号大于检查点的记录，至少一次。批量插入成功后、检查点更新前崩溃时，
+ *     这一批会在下次启动时再次插入，记录表中出现重复行（记录没有唯一标识，插入不是幂等的），最多重复崩溃前的最后一批</li>
+ *     <li>独占：启动时锁定 WAL 目录下的锁文件，WAL 已被其他进程使用时启动失败，避免多个实例交替追加、重放同一份 WAL</li>
+ *     <li>持久性：已追加的记录立即写入操作系统，进程崩溃不丢；后台线程每批写库前把 WAL 刷到磁盘（fsync），
+ *     机器断电或系统崩溃时最多丢失上一批之后追加的记录（不超过一个刷新间隔）</li>
+ * </ul>
+ * 需要与业务数据严格一致的记录不应使用本写入器，而应在业务事务中同步插入
+ *
+ * @param <T> 记录类型
+ * @author zhexueqi
+ */
+@Slf4j
+public class BatchRecordWriter<T> implements Closeable {
+
+    private static final long RETRY_INTERVAL_MS = 1000L;
+
+    private final String name;
+
+    private final Class<T> type;
+
+    private final Consumer<List<T>> batchInserter;
+
+    private final int batchSize;
+
+    private final long flushIntervalMs;
+
+    private final long offerTimeoutMs;
+
+    private final Path walPath;
+
+    private final Path checkpointPath;
+
+    /**
+     * 持有 WAL 锁文件的通道，进程退出（包括崩溃）时锁由操作系统释放
+     */
+    private final FileChannel lockChannel;
+
+    private final LinkedBlockingQueue<Entry<T>> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * 队列容量许可，记录写入数据库后归还
+     */
+    private final Semaphore capacity;
+
+    private final Object walLock = new Object();
+
+    private FileChannel walChannel;
+
+    private BufferedWriter walWriter;
+
+    /**
+     * 最后追加到 WAL 的序号（受 walLock 保护）
+     */
+    private long seq;
+
+    /**
+     * 已写入数据库的最大序号
+     */
+    private volatile long committedSeq;
+
+    private volatile boolean running = true;
+
+    private final Thread flusher;
+
+    private final long startTime = System.currentTimeMillis();
+
+    private final AtomicLong enqueued = new AtomicLong();
+
+    private final AtomicLong written = new AtomicLong();
+
+    private final AtomicLong batches = new AtomicLong();
+
+    private final AtomicLong syncWrites = new AtomicLong();
+
+    private final AtomicLong failedFlushes = new AtomicLong();
+
+    private final AtomicLong replayed = new AtomicLong();
+
+    private volatile long lastFlushTime;
+
+    private volatile long lastFlushCostMs;
+
+    public BatchRecordWriter(String name, Class<T> type, Consumer<List<T>> batchInserter, int batchSize,
+                             long flushIntervalMs, int queueCapacity, long offerTimeoutMs, Path walDir) {
+        this.name = name;
+        this.type = type;
+        this.batchInserter = batchInserter;
+        this.batchSize = Math.max(batchSize, 1);
+        this.flushIntervalMs = Math.max(flushIntervalMs, 1L);
+        this.offerTimeoutMs = Math.max(offerTimeoutMs, 0L);
+        this.walPath = walDir.resolve(name + ".wal");
+        this.checkpointPath = walDir.resolve(name + ".ckpt");
+        FileChannel lock = null;
+        try {
+            Files.createDirectories(walDir);
+            lock = lockWal(walDir.resolve(name + ".lock"));
+            int recovered = recover();
+            this.capacity = new Semaphore(Math.max(queueCapacity, 1) - recovered);
+            openWal(StandardOpenOption.APPEND);
+            log.info("记录写入器已启动 - {}, WAL: {}", name, walPath.toAbsolutePath());
+        } catch (IOException e) {
+            closeQuietly(lock);
+            throw new IllegalStateException("初始化记录写入器失败: " + name, e);
+        }
+        this.lockChannel = lock;
+        this.flusher = new Thread(this::runFlusher, "record-writer-" + name);
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * 写入一条记录（在当前事务提交后追加 WAL 并入队，事务回滚则丢弃）
+     * <p>
+     * 提交后、追加完成前进程崩溃时记录丢失，见类说明
+     *
+     * @param record 记录
+     */
+    public void write(T record) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(record);
+                }
+            });
+        } else {
+            enqueue(record);
+        }
+    }
+
+    /**
+     * 写入器运行状态
+     */
+    public RecordWriterStatsVO stats() {
+        RecordWriterStatsVO stats = new RecordWriterStatsVO();
+        stats.setName(name);
+        stats.setQueueSize(queue.size());
+        stats.setEnqueued(enqueued.get());
+        stats.setWritten(written.get());
+        stats.setBatches(batches.get());
+        stats.setSyncWrites(syncWrites.get());
+        stats.setFailedFlushes(failedFlushes.get());
+        stats.setReplayed(replayed.get());
+        long batchCount = batches.get();
+        stats.setAvgBatchSize(batchCount == 0 ? 0D : (double) (written.get() - syncWrites.get()) / batchCount);
+        long uptimeMs = Math.max(System.currentTimeMillis() - startTime, 1L);
+        stats.setWrittenPerSecond(written.get() * 1000D / uptimeMs);
+        stats.setLastFlushCostMs(lastFlushCostMs);
+        stats.setLastFlushTime(lastFlushTime == 0 ? null : new Date(lastFlushTime));
+        return stats;
+    }
+
+    /**
+     * 停止接收新记录，写完队列中剩余记录后关闭
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (walLock) {
+            try {
+                walWriter.flush();
+                walChannel.force(false);
+                walWriter.close();
+                if (committedSeq == seq) {
+                    Files.write(walPath, new byte[0]);
+                }
+            } catch (IOException e) {
+                log.error("关闭记录 WAL 失败 - {}", name, e);
+            }
+        }
+        if (!queue.isEmpty()) {
+            log.warn("记录写入器关闭时仍有 {} 条未写入，将在下次启动时从 WAL 恢复 - {}", queue.size(), name);
+        }
+        closeQuietly(lockChannel);
+    }
+
+    /**
+     * 锁定 WAL 锁文件，已被其他进程（或本进程的其他写入器）锁定时失败
+     *
+     * @return 持有锁的通道
+     */
+    private FileChannel lockWal(Path lockPath) throws IOException {
+        FileChannel channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+        if (lock == null) {
+            closeQuietly(channel);
+            throw new IllegalStateException("记录 WAL 已被其他实例使用，同一台机器上的多个实例需配置不同的 WAL 目录: "
+                    + lockPath.toAbsolutePath());
+        }
+        return channel;
+    }
+
+    private void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("关闭记录 WAL 锁文件失败 - {}", name, e);
+        }
+    }
+
+    private void enqueue(T record) {
+        boolean acquired = false;
+        if (running) {
+            try {
+                acquired = capacity.tryAcquire(offerTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (acquired) {
+            try {
+                synchronized (walLock) {
+                    long next = seq + 1;
+                    walWriter.write(next + "\t" + JSONUtil.toJsonStr(record));
+                    walWriter.newLine();
+                    walWriter.flush();
+                    seq = next;
+                    queue.add(new Entry<>(next, record));
+                }
+                enqueued.incrementAndGet();
+                return;
+            } catch (IOException e) {
+                capacity.release();
+                log.error("追加记录 WAL 失败，改为同步写入 - {}", name, e);
+            }
+        }
+        // 队列已满或已停止：由调用线程同步写入
+        syncWrites.incrementAndGet();
+        batchInserter.accept(Collections.singletonList(record));
+        written.incrementAndGet();
+    }
+
+    private void runFlusher() {
+        List<Entry<T>> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry<T> first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // 攒批：等到攒满一批或距第一条记录超过刷新间隔
+                long deadline = System.currentTimeMillis() + flushIntervalMs;
+                while (batch.size() < batchSize && running) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    Entry<T> next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                queue.drainTo(batch, batchSize - batch.size());
+                syncWal();
+                if (!flushBatch(batch)) {
+                    return;
+                }
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 写入一批记录，失败时重试直到成功或写入器关闭
+     *
+     * @return 是否写入成功
+     */
+    private boolean flushBatch(List<Entry<T>> batch) throws InterruptedException {
+        List<T> records = new ArrayList<>(batch.size());
+        for (Entry<T> entry : batch) {
+            records.add(entry.record);
+        }
+        while (true) {
+            long start = System.currentTimeMillis();
+            try {
+                batchInserter.accept(records);
+                lastFlushCostMs = System.currentTimeMillis() - start;
+                lastFlushTime = System.currentTimeMillis();
+                break;
+            } catch (Exception e) {
+                failedFlushes.incrementAndGet();
+                log.error("批量写入记录失败 - {}, 条数: {}", name, records.size(), e);
+                if (!running) {
+                    // 未写入的记录保留在 WAL 中，下次启动时恢复
+                    queue.addAll(batch);
+                    return false;
+                }
+                Thread.sleep(RETRY_INTERVAL_MS);
+            }
+        }
+        written.addAndGet(records.size());
+        batches.incrementAndGet();
+        committedSeq = batch.get(batch.size() - 1).seq;
+        capacity.release(batch.size());
+        writeCheckpoint();
+        return true;
+    }
+
+    private void writeCheckpoint() {
+        try {
+            Path tmp = checkpointPath.resolveSibling(checkpointPath.getFileName() + ".tmp");
+            Files.write(tmp, String.valueOf(committedSeq).getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            synchronized (walLock) {
+                // 全部记录都已写入数据库时截断 WAL
+                if (committedSeq == seq && running) {
+                    walWriter.close();
+                    openWal(StandardOpenOption.TRUNCATE_EXISTING);
+                }
+            }
+        } catch (IOException e) {
+            log.error("更新记录检查点失败 - {}", name, e);
+        }
+    }
+
+    /**
+     * 打开 WAL，追加的内容经缓冲写入文件通道
+     */
+    private void openWal(StandardOpenOption mode) throws IOException {
+        walChannel = FileChannel.open(walPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode);
+        walWriter = new BufferedWriter(Channels.newWriter(walChannel, StandardCharsets.UTF_8.newEncoder(), -1));
+    }
+
+    /**
+     * 把已追加的 WAL 刷到磁盘（批次边界的组提交）
+     * <p>
+     * 只在后台线程调用，通道只会被后台线程自己重建，无需持有 walLock，不阻塞追加
+     */
+    private void syncWal() {
+        try {
+            walChannel.force(false);
+        } catch (IOException e) {
+            log.error("WAL 刷盘失败 - {}", name, e);
+        }
+    }
+
+    /**
+     * 从 WAL 恢复未写入数据库的记录
+     *
+     * @return 恢复的记录数
+     */
+    private int recover() throws IOException {
+        long checkpoint = 0L;
+        if (Files.exists(checkpointPath)) {
+            String value = new String(Files.readAllBytes(checkpointPath), StandardCharsets.UTF_8).trim();
+            if (!value.isEmpty()) {
+                checkpoint = Long.parseLong(value);
+            }
+        }
+        seq = checkpoint;
+        committedSeq = checkpoint;
+        if (!Files.exists(walPath)) {
+            return 0;
+        }
+        int recovered = 0;
+        try (BufferedReader reader = Files.newBufferedReader(walPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab <= 0) {
+                    continue;
+                }
+                long lineSeq;
+                T record;
+                try {
+                    lineSeq = Long.parseLong(line.substring(0, tab));
+                    record = JSONUtil.toBean(line.substring(tab + 1), type);
+                } catch (Exception e) {
+                    // 崩溃时可能留下写了一半的最后一行
+                    log.warn("跳过无法解析的 WAL 记录 - {}: {}", name, line);
+                    continue;
+                }
+                seq = Math.max(seq, lineSeq);
+                if (lineSeq > checkpoint) {
+                    queue.add(new Entry<>(lineSeq, record));
+                    recovered++;
+                }
+            }
+        }
+        terminateLastLine();
+        if (recovered > 0) {
+            replayed.addAndGet(recovered);
+            log.info("从 WAL 恢复未写入的记录 - {}, 条数: {}", name, recovered);
+        }
+        return recovered;
+    }
+
+    /**
+     * 崩溃时写了一半的最后一行补上换行，之后追加的记录另起一行，不会与残行拼在一起导致下次恢复时丢失
+     */
+    private void terminateLastLine() throws IOException {
+        try (FileChannel channel = FileChannel.open(walPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            if (size == 0) {
+                return;
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, size - 1);
+            if (last.get(0) != '\n') {
+                channel.write(ByteBuffer.wrap(System.lineSeparator().getBytes(StandardCharsets.UTF_8)), size);
+                channel.force(false);
+            }
+        }
+    }
+
+    private static class Entry<T> {
+
+        private final long seq;
+
+        private final T record;
+
+        private Entry(long seq, T record) {
+            this.seq = seq;
+            this.record = record;
+        }
+    }
+}
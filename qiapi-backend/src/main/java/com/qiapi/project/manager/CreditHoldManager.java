@@ -0,0 +1,110 @@
+package com.qiapi.project.manager;
+
+import cn.hutool.json.JSONUtil;
+import com.qiapi.project.config.CreditHoldConfig;
+import com.qiapi.project.model.dto.credit.CreditHold;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 额度预授权冻结记录存储
+ * <p>
+ * 冻结记录以凭证为键存入 Redis，过期时间记录在有序集合中；确认与释放都先原子取出冻结记录，保证只生效一次
+ * <p>
+ * 无论是否开启额度账本（credit.ledger.enabled）都依赖 Redis：未开启时冻结额度从数据库预扣，但冻结记录仍只保存在 Redis，
+ * Redis 不可用时预授权失败（已预扣的额度当场退回），Redis 数据丢失时其中未确认的冻结额度不会自动退回，需按 credit_records 人工核对
+ *
+ * @author zhexueqi
+ */
+@Component
+public class CreditHoldManager {
+
+    private static final String HOLD_KEY_PREFIX = "credit:hold:";
+
+    private static final String EXPIRY_KEY = "credit:hold:expiry";
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private CreditHoldConfig creditHoldConfig;
+
+    private final DefaultRedisScript<Long> saveScript;
+
+    private final DefaultRedisScript<String> claimScript;
+
+    public CreditHoldManager() {
+        saveScript = new DefaultRedisScript<>();
+        saveScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/credit_hold_save.lua")));
+        saveScript.setResultType(Long.class);
+        claimScript = new DefaultRedisScript<>();
+        claimScript.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/credit_hold_claim.lua")));
+        claimScript.setResultType(String.class);
+    }
+
+    /**
+     * 保存冻结记录
+     *
+     * @param hold 冻结记录（凭证由此方法生成）
+     * @return 冻结凭证
+     */
+    public String save(CreditHold hold) {
+        hold.setToken(UUID.randomUUID().toString().replace("-", ""));
+        write(hold);
+        return hold.getToken();
+    }
+
+    /**
+     * 放回已取出的冻结记录（确认或释放失败时），凭证不变并重新计算过期时间：调用方可以重试，否则过期后由过期扫描释放
+     *
+     * @param hold 取出的冻结记录
+     */
+    public void restore(CreditHold hold) {
+        write(hold);
+    }
+
+    private void write(CreditHold hold) {
+        String token = hold.getToken();
+        long ttlMillis = TimeUnit.SECONDS.toMillis(creditHoldConfig.getTtlSeconds());
+        // 冻结记录不设过期时间，由过期扫描取出释放，避免冻结额度无人归还；记录与过期时间在一个脚本中写入
+        stringRedisTemplate.execute(saveScript, Arrays.asList(EXPIRY_KEY, HOLD_KEY_PREFIX + token), token,
+                JSONUtil.toJsonStr(hold), String.valueOf(System.currentTimeMillis() + ttlMillis));
+    }
+
+    /**
+     * 取出并删除冻结记录
+     *
+     * @param token 冻结凭证
+     * @return 冻结记录，已确认、已释放或不存在时返回 null
+     */
+    public CreditHold claim(String token) {
+        String value = stringRedisTemplate.execute(claimScript,
+                Arrays.asList(EXPIRY_KEY, HOLD_KEY_PREFIX + token), token);
+        if (value == null) {
+            return null;
+        }
+        return JSONUtil.toBean(value, CreditHold.class);
+    }
+
+    /**
+     * 查询已过期的冻结凭证
+     *
+     * @return 冻结凭证列表
+     */
+    public List<String> listExpired() {
+        Set<String> tokens = stringRedisTemplate.opsForZSet().rangeByScore(EXPIRY_KEY, 0,
+                System.currentTimeMillis(), 0, creditHoldConfig.getExpireBatchSize());
+        return tokens == null ? new ArrayList<>() : new ArrayList<>(tokens);
+    }
+}
@@ -0,0 +1,501 @@
+package com.qiapi.project.manager;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.qiapi.project.common.ErrorCode;
+import com.qiapi.project.config.CreditLedgerConfig;
+import com.qiapi.project.exception.BusinessException;
+import com.qiapi.project.mapper.CreditLedgerMapper;
+import com.qiapi.project.mapper.UserCreditMapper;
+import com.qiapi.project.model.dto.credit.CreditLedgerEntry;
+import com.qiapi.qiapicommon.model.entity.UserCredit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static com.qiapi.project.constant.CreditConstant.COMMON_CREDIT_ID;
+
+/**
+ * Redis 额度账本
+ * <p>
+ * 余额缓存在 Redis 中，由 Lua 脚本在一次往返内完成"专用额度 -> 通用额度"的检查与扣减，
+ * 同时记录扣减流水与待回写数量；流水由 {@link com.qiapi.project.job.CreditLedgerSyncJob} 批量回写数据库。
+ * <p>
+ * 不变式：缓存余额 + 待回写数量 + 预授权冻结数量 = 数据库剩余额度
+ * <p>
+ * 流水序号保存在 Redis、回写检查点保存在数据库，序号丢失（Redis 重置）后从检查点继续计数，
+ * 脚本发现序号不存在时不写流水，由调用方初始化后重试
+ *
+ * @author zhexueqi
+ */
+@Component
+@Slf4j
+public class CreditLedgerManager {
+
+    private static final String BALANCE_KEY_PREFIX = "credit:ledger:balance:";
+
+    private static final String JOURNAL_KEY = "credit:ledger:journal";
+
+    private static final String PROCESSING_KEY = "credit:ledger:journal:processing";
+
+    private static final String PENDING_KEY = "credit:ledger:pending";
+
+    /**
+     * 数据库额度版本：流水回写确认或增加额度时递增，加载余额时据此判断读取数据库之后额度是否变化
+     */
+    private static final String VERSION_KEY = "credit:ledger:version";
+
+    private static final String SEQ_KEY = "credit:ledger:seq";
+
+    private static final String HELD_KEY = "credit:ledger:held";
+
+    private static final String LOCK_KEY = "credit:ledger:lock";
+
+    private static final String RECONCILE_CURSOR_KEY = "credit:ledger:reconcile:cursor";
+
+    /**
+     * 对账遍历游标的起点与终点
+     */
+    public static final String SCAN_START = "0";
+
+    /**
+     * 数据库中没有可用额度记录时缓存的余额
+     */
+    private static final long NO_CREDIT = -1L;
+
+    private static final long NOT_LOADED_DEDICATED = -2L;
+
+    private static final long NOT_LOADED_COMMON = -3L;
+
+    private static final long SEQ_NOT_SEEDED = -4L;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private UserCreditMapper userCreditMapper;
+
+    @Resource
+    private CreditLedgerMapper creditLedgerMapper;
+
+    @Resource
+    private CreditLedgerConfig creditLedgerConfig;
+
+    private final DefaultRedisScript<Long> consumeScript = script("lua/credit_ledger_consume.lua", Long.class);
+
+    private final DefaultRedisScript<Long> addScript = script("lua/credit_ledger_add.lua", Long.class);
+
+    @SuppressWarnings("rawtypes")
+    private final DefaultRedisScript<List> takeScript = script("lua/credit_ledger_take.lua", List.class);
+
+    private final DefaultRedisScript<Long> ackScript = script("lua/credit_ledger_ack.lua", Long.class);
+
+    @SuppressWarnings("rawtypes")
+    private final DefaultRedisScript<List> readScript = script("lua/credit_ledger_read.lua", List.class);
+
+    private final DefaultRedisScript<Long> repairScript = script("lua/credit_ledger_repair.lua", Long.class);
+
+    @SuppressWarnings("rawtypes")
+    private final DefaultRedisScript<List> scanScript = script("lua/credit_ledger_scan.lua", List.class);
+
+    private final DefaultRedisScript<Long> unlockScript = script("lua/credit_ledger_unlock.lua", Long.class);
+
+    @SuppressWarnings("rawtypes")
+    private final DefaultRedisScript<List> holdScript = script("lua/credit_ledger_hold.lua", List.class);
+
+    private final DefaultRedisScript<Long> settleScript = script("lua/credit_ledger_settle.lua", Long.class);
+
+    private final DefaultRedisScript<Long> unholdScript = script("lua/credit_ledger_unhold.lua", Long.class);
+
+    private final DefaultRedisScript<Long> loadScript = script("lua/credit_ledger_load.lua", Long.class);
+
+    @PostConstruct
+    public void init() {
+        if (isEnabled()) {
+            seedSeq();
+        }
+    }
+
+    /**
+     * 是否开启 Redis 额度账本
+     */
+    public boolean isEnabled() {
+        return creditLedgerConfig.isEnabled();
+    }
+
+    /**
+     * 扣减额度
+     *
+     * @param userId      用户ID
+     * @param interfaceId 接口ID
+     * @param amount      扣减数量
+     * @return 是否扣减成功（false 表示额度不足）
+     */
+    public boolean consume(Long userId, Long interfaceId, Long amount) {
+        return execute(userId, interfaceId, amount, false) > 0;
+    }
+
+    /**
+     * 检查额度是否充足（不扣减）
+     *
+     * @param userId      用户ID
+     * @param interfaceId 接口ID
+     * @param amount      需要的额度
+     * @return 是否充足
+     */
+    public boolean check(Long userId, Long interfaceId, Long amount) {
+        return execute(userId, interfaceId, amount, true) > 0;
+    }
+
+    /**
+     * 读取专用额度与通用额度的缓存余额（未加载时先从数据库加载）
+     *
+     * @param userId      用户ID
+     * @param interfaceId 接口ID
+     * @return [专用额度余额, 通用额度余额]，没有可用记录的一项为 -1
+     */
+    public long[] balances(Long userId, Long interfaceId) {
+        List<String> keys = Arrays.asList(balanceKey(userId, interfaceId), balanceKey(userId, COMMON_CREDIT_ID));
+        List<String> values = stringRedisTemplate.opsForValue().multiGet(keys);
+        long[] balances = new long[2];
+        Long[] interfaceIds = {interfaceId, COMMON_CREDIT_ID};
+        for (int i = 0; i < 2; i++) {
+            String value = values == null ? null : values.get(i);
+            if (value == null) {
+                load(userId, interfaceIds[i]);
+                value = stringRedisTemplate.opsForValue().get(keys.get(i));
+            }
+            balances[i] = value == null ? NO_CREDIT : Long.parseLong(value);
+        }
+        return balances;
+    }
+
+    /**
+     * 预授权冻结额度（专用额度不足时回退到通用额度）
+     *
+     * @param userId      用户ID
+     * @param interfaceId 接口ID
+     * @param amount      冻结数量
+     * @return [实际冻结的接口ID, 冻结前余额]，额度不足时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public long[] hold(Long userId, Long interfaceId, Long amount) {
+        List<String> keys = Arrays.asList(balanceKey(userId, interfaceId), balanceKey(userId, COMMON_CREDIT_ID),
+                HELD_KEY);
+        for (int i = 0; i < 3; i++) {
+            List<Long> result = stringRedisTemplate.execute(holdScript, keys, String.valueOf(amount),
+                    String.valueOf(userId), String.valueOf(interfaceId), String.valueOf(COMMON_CREDIT_ID));
+            if (result == null || result.size() < 2) {
+                return null;
+            }
+            long code = result.get(0);
+            if (code == NOT_LOADED_DEDICATED) {
+                load(userId, interfaceId);
+            } else if (code == NOT_LOADED_COMMON) {
+                load(userId, COMMON_CREDIT_ID);
+            } else if (code > 0) {
+                return new long[]{code == 1 ? interfaceId : COMMON_CREDIT_ID, result.get(1)};
+            } else {
+                return null;
+            }
+        }
+        log.error("额度账本加载余额失败 - 用户ID: {}, 接口ID: {}", userId, interfaceId);
+        return null;
+    }
+
+    /**
+     * 确认预授权，冻结额度转为扣减流水
+     *
+     * @param userId        用户ID
+     * @param interfaceId   实际冻结的接口ID
+     * @param amount        数量
+     * @param balanceBefore 冻结前余额
+     * @throws BusinessException 流水序号无法初始化，冻结额度未结算
+     */
+    public void settle(Long userId, Long interfaceId, Long amount, Long balanceBefore) {
+        for (int i = 0; i < 2; i++) {
+            Long result = stringRedisTemplate.execute(settleScript,
+                    Arrays.asList(HELD_KEY, JOURNAL_KEY, PENDING_KEY, SEQ_KEY),
+                    String.valueOf(amount), String.valueOf(userId), String.valueOf(interfaceId),
+                    String.valueOf(balanceBefore), String.valueOf(System.currentTimeMillis()));
+            if (result == null || result != SEQ_NOT_SEEDED) {
+                return;
+            }
+            seedSeq();
+        }
+        log.error("额度账本初始化流水序号失败 - 用户ID: {}, 接口ID: {}", userId, interfaceId);
+        throw new BusinessException(ErrorCode.SYSTEM_ERROR, "额度结算失败");
+    }
+
+    /**
+     * 释放预授权冻结的额度
+     *
+     * @param userId      用户ID
+     * @param interfaceId 实际冻结的接口ID
+     * @param amount      数量
+     */
+    public void unhold(Long userId, Long interfaceId, Long amount) {
+        stringRedisTemplate.execute(unholdScript, Arrays.asList(balanceKey(userId, interfaceId), HELD_KEY),
+                String.valueOf(amount), field(userId, interfaceId));
+    }
+
+    /**
+     * 数据库额度增加后使缓存余额失效（在事务提交后执行），下次使用时按数据库重新加载
+     * <p>
+     * 失效失败时缓存余额少于应有值（不会多扣），由对账任务修正
+     *
+     * @param userId      用户ID
+     * @param interfaceId 接口ID
+     */
+    public void onCreditAdded(Long userId, Long interfaceId) {
+        if (!isEnabled()) {
+            return;
+        }
+        Runnable sync = () -> {
+            try {
+                stringRedisTemplate.execute(addScript, Arrays.asList(balanceKey(userId, interfaceId), VERSION_KEY));
+            } catch (Exception e) {
+                log.error("额度账本缓存余额失效失败，等待对账修正 - 用户ID: {}, 接口ID: {}", userId, interfaceId, e);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    sync.run();
+                }
+            });
+        } else {
+            sync.run();
+        }
+    }
+
+    /**
+     * 取出一批待回写流水（上一批未确认时返回上一批）
+     *
+     * @return 流水列表，按序号递增
+     */
+    @SuppressWarnings("unchecked")
+    public List<CreditLedgerEntry> takeBatch() {
+        int batchSize = Math.min(Math.max(creditLedgerConfig.getFlushBatchSize(), 1), 5000);
+        List<String> values = stringRedisTemplate.execute(takeScript, Arrays.asList(JOURNAL_KEY, PROCESSING_KEY),
+                String.valueOf(batchSize));
+        if (values == null) {
+            return Collections.emptyList();
+        }
+        return values.stream().map(CreditLedgerEntry::parse).collect(Collectors.toList());
+    }
+
+    /**
+     * 确认一批流水已写入数据库
+     *
+     * @param entries 流水列表
+     */
+    public void ackBatch(List<CreditLedgerEntry> entries) {
+        Map<String, Long> pending = new LinkedHashMap<>();
+        for (CreditLedgerEntry entry : entries) {
+            pending.merge(field(entry.getUserId(), entry.getInterfaceId()), entry.getAmount(), Long::sum);
+        }
+        List<String> args = new ArrayList<>(pending.size() * 2);
+        pending.forEach((field, amount) -> {
+            args.add(field);
+            args.add(String.valueOf(amount));
+        });
+        stringRedisTemplate.execute(ackScript, Arrays.asList(PROCESSING_KEY, PENDING_KEY, VERSION_KEY),
+                args.toArray());
+    }
+
+    /**
+     * 原子读取缓存余额与未落库数量（待回写 + 预授权冻结）
+     *
+     * @param userId      用户ID
+     * @param interfaceId 接口ID
+     * @return [缓存余额, 未落库数量]，未加载时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public long[] readBalance(Long userId, Long interfaceId) {
+        List<Object> values = stringRedisTemplate.execute(readScript,
+                Arrays.asList(balanceKey(userId, interfaceId), PENDING_KEY, HELD_KEY), field(userId, interfaceId));
+        if (values == null || values.size() < 2) {
+            return null;
+        }
+        return new long[]{Long.parseLong(values.get(0).toString()), Long.parseLong(values.get(1).toString())};
+    }
+
+    /**
+     * 按数据库剩余额度修正缓存余额
+     * <p>
+     * 只在锁仍由对账任务持有且没有回写中的流水时修正：锁过期后其他实例可能已回写并确认流水，
+     * 此前读取的数据库剩余额度偏大，按它修正会抬高缓存余额导致超额扣减
+     *
+     * @param userId      用户ID
+     * @param interfaceId 接口ID
+     * @param dbRemaining 持有锁期间读取的数据库剩余额度，-1 表示没有可用记录
+     * @param lockToken   对账任务持有的锁标识
+     * @return 是否已修正，锁已失效或有回写中的流水时返回 false
+     */
+    public boolean repair(Long userId, Long interfaceId, long dbRemaining, String lockToken) {
+        Long result = stringRedisTemplate.execute(repairScript,
+                Arrays.asList(balanceKey(userId, interfaceId), PENDING_KEY, HELD_KEY, LOCK_KEY, PROCESSING_KEY),
+                field(userId, interfaceId), String.valueOf(dbRemaining), lockToken);
+        return result != null;
+    }
+
+    /**
+     * 从游标处继续遍历一批已加载的缓存余额
+     *
+     * @param cursor   游标，{@link #SCAN_START} 表示从头开始
+     * @param consumer 接收 [用户ID, 接口ID]
+     * @return 下一批的游标，{@link #SCAN_START} 表示已遍历完
+     */
+    @SuppressWarnings("unchecked")
+    public String scanBalances(String cursor, Consumer<long[]> consumer) {
+        List<String> result = stringRedisTemplate.execute(scanScript, Collections.emptyList(), cursor,
+                BALANCE_KEY_PREFIX + "*", "500");
+        if (result == null || result.isEmpty()) {
+            return SCAN_START;
+        }
+        for (String key : result.subList(1, result.size())) {
+            String[] parts = key.substring(BALANCE_KEY_PREFIX.length()).split(":");
+            consumer.accept(new long[]{Long.parseLong(parts[0]), Long.parseLong(parts[1])});
+        }
+        return result.get(0);
+    }
+
+    /**
+     * 上次对账未完成时保存的游标，各实例共用
+     */
+    public String getReconcileCursor() {
+        String cursor = stringRedisTemplate.opsForValue().get(RECONCILE_CURSOR_KEY);
+        return cursor == null ? SCAN_START : cursor;
+    }
+
+    public void saveReconcileCursor(String cursor) {
+        stringRedisTemplate.opsForValue().set(RECONCILE_CURSOR_KEY, cursor);
+    }
+
+    /**
+     * 查询数据库中可用的剩余额度
+     *
+     * @param userId      用户ID
+     * @param interfaceId 接口ID
+     * @return 剩余额度，没有可用记录时返回 -1
+     */
+    public long loadRemaining(Long userId, Long interfaceId) {
+        QueryWrapper<UserCredit> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("userId", userId)
+                .eq("interfaceId", interfaceId)
+                .eq("isDelete", 0)
+                .eq("status", 1);
+        UserCredit userCredit = userCreditMapper.selectOne(queryWrapper);
+        if (userCredit == null || userCredit.getRemainingCredit() == null) {
+            return NO_CREDIT;
+        }
+        return userCredit.getRemainingCredit();
+    }
+
+    /**
+     * 流水序号不存在时从数据库回写检查点开始计数，保证新流水的序号大于已回写的序号
+     */
+    public void seedSeq() {
+        Long checkpoint = creditLedgerMapper.selectCheckpoint();
+        Boolean seeded = stringRedisTemplate.opsForValue().setIfAbsent(SEQ_KEY,
+                String.valueOf(checkpoint == null ? 0L : checkpoint));
+        if (Boolean.TRUE.equals(seeded)) {
+            log.info("额度账本流水序号已按检查点初始化 - 检查点: {}", checkpoint);
+        }
+    }
+
+    /**
+     * 获取回写 / 对账任务锁
+     *
+     * @return 锁标识，获取失败返回 null
+     */
+    public String tryLock() {
+        String token = UUID.randomUUID().toString();
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(LOCK_KEY, token,
+                creditLedgerConfig.getLockSeconds(), TimeUnit.SECONDS);
+        return Boolean.TRUE.equals(locked) ? token : null;
+    }
+
+    /**
+     * 释放回写 / 对账任务锁
+     *
+     * @param token 锁标识
+     */
+    public void unlock(String token) {
+        stringRedisTemplate.execute(unlockScript, Collections.singletonList(LOCK_KEY), token);
+    }
+
+    private long execute(Long userId, Long interfaceId, Long amount, boolean dryRun) {
+        List<String> keys = Arrays.asList(balanceKey(userId, interfaceId), balanceKey(userId, COMMON_CREDIT_ID),
+                JOURNAL_KEY, PENDING_KEY, SEQ_KEY);
+        // 余额未加载时从数据库加载后重试，专用额度、通用额度与流水序号各最多初始化一次
+        for (int i = 0; i < 4; i++) {
+            Long result = stringRedisTemplate.execute(consumeScript, keys, String.valueOf(amount),
+                    String.valueOf(userId), String.valueOf(interfaceId), String.valueOf(COMMON_CREDIT_ID),
+                    String.valueOf(System.currentTimeMillis()), dryRun ? "1" : "0");
+            if (result == null) {
+                return 0;
+            }
+            if (result == NOT_LOADED_DEDICATED) {
+                load(userId, interfaceId);
+            } else if (result == NOT_LOADED_COMMON) {
+                load(userId, COMMON_CREDIT_ID);
+            } else if (result == SEQ_NOT_SEEDED) {
+                seedSeq();
+            } else {
+                return result;
+            }
+        }
+        log.error("额度账本加载余额失败 - 用户ID: {}, 接口ID: {}", userId, interfaceId);
+        return 0;
+    }
+
+    /**
+     * 从数据库加载缓存余额：数据库剩余额度减去待回写与预授权冻结数量，只在未加载时写入
+     * <p>
+     * 读取数据库期间有流水落库时不加载，重新读取；仍不成功时保持未加载，调用方按加载失败处理
+     */
+    private void load(Long userId, Long interfaceId) {
+        List<String> keys = Arrays.asList(balanceKey(userId, interfaceId), PENDING_KEY, HELD_KEY, PROCESSING_KEY,
+                VERSION_KEY);
+        for (int i = 0; i < 3; i++) {
+            // 先读版本再读数据库，脚本中版本未变说明两次读取之间数据库额度没有变化
+            String version = stringRedisTemplate.opsForValue().get(VERSION_KEY);
+            long remaining = loadRemaining(userId, interfaceId);
+            Long result = stringRedisTemplate.execute(loadScript, keys, field(userId, interfaceId),
+                    String.valueOf(remaining), version == null ? "0" : version);
+            if (result != null) {
+                return;
+            }
+        }
+        log.warn("额度账本数据库额度正在变化，暂不加载余额 - 用户ID: {}, 接口ID: {}", userId, interfaceId);
+    }
+
+    private static String balanceKey(Long userId, Long interfaceId) {
+        return BALANCE_KEY_PREFIX + field(userId, interfaceId);
+    }
+
+    private static String field(Long userId, Long interfaceId) {
+        return userId + ":" + interfaceId;
+    }
+
+    private static <T> DefaultRedisScript<T> script(String path, Class<T> resultType) {
+        DefaultRedisScript<T> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource(path)));
+        script.setResultType(resultType);
+        return script;
+    }
+}
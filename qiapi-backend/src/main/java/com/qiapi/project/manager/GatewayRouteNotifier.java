@@ -0,0 +1,34 @@
+package com.qiapi.project.manager;
+
+import com.qiapi.qiapicommon.service.InnerGatewayRouteService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.dubbo.config.annotation.DubboReference;
+import org.springframework.stereotype.Component;
+
+/**
+ * 网关路由变化通知
+ * <p>
+ * 新增、修改或删除接口后以广播方式通知所有网关节点刷新该接口的路由；通知失败时只记录日志，网关会在下次定时增量刷新时同步
+ *
+ * @author zhexueqi
+ */
+@Component
+@Slf4j
+public class GatewayRouteNotifier {
+
+    @DubboReference(check = false, cluster = "broadcast", scope = "remote", timeout = 3000, retries = 0)
+    private InnerGatewayRouteService innerGatewayRouteService;
+
+    /**
+     * 通知网关刷新接口路由
+     *
+     * @param interfaceInfoId 接口ID
+     */
+    public void interfaceChanged(long interfaceInfoId) {
+        try {
+            innerGatewayRouteService.refreshInterfaceRoute(interfaceInfoId);
+        } catch (Exception e) {
+            log.warn("通知网关刷新接口路由失败 - 接口ID: {}", interfaceInfoId, e);
+        }
+    }
+}
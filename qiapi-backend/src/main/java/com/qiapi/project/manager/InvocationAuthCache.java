@@ -0,0 +1,191 @@
+package com.qiapi.project.manager;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.qiapi.project.config.InvocationAuthConfig;
+import com.qiapi.project.mapper.InterfaceInfoMapper;
+import com.qiapi.project.mapper.OrderMapper;
+import com.qiapi.project.mapper.UserMapper;
+import com.qiapi.project.utils.SignUtils;
+import com.qiapi.qiapicommon.model.entity.InterfaceInfo;
+import com.qiapi.qiapicommon.model.entity.Order;
+import com.qiapi.qiapicommon.model.entity.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static com.qiapi.project.constant.UserConstant.BAN_ROLE;
+
+/**
+ * 网关调用鉴权的本地缓存（accessKey -> 用户ID + 签名密钥 + 是否付费用户，url + method -> 接口ID + 熔断、并发隔离与响应缓存配置）
+ * <p>
+ * 只缓存鉴权需要的字段；不存在的 accessKey / 接口同样缓存，避免无效请求反复查库。
+ * 修改密钥或接口时由 {@link AuthCacheManager} 广播失效；命中率等指标以 invocation.invokeUser、invocation.invokeInterface 暴露
+ *
+ * @author zhexueqi
+ */
+@Slf4j
+@Component
+public class InvocationAuthCache {
+
+    @Resource
+    private UserMapper userMapper;
+
+    @Resource
+    private InterfaceInfoMapper interfaceInfoMapper;
+
+    @Resource
+    private OrderMapper orderMapper;
+
+    @Resource
+    private InvocationAuthConfig invocationAuthConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * accessKey -> 调用用户，不存在或已封禁时为空
+     */
+    private LoadingCache<String, Optional<InvokeUser>> invokeUserCache;
+
+    /**
+     * method + url -> 调用的接口，不存在时为空
+     */
+    private LoadingCache<String, Optional<InterfaceInfo>> invokeInterfaceCache;
+
+    @PostConstruct
+    public void init() {
+        invokeUserCache = Caffeine.newBuilder()
+                .maximumSize(invocationAuthConfig.getMaximumSize())
+                .expireAfterWrite(invocationAuthConfig.getExpireSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build(this::loadInvokeUser);
+        invokeInterfaceCache = Caffeine.newBuilder()
+                .maximumSize(invocationAuthConfig.getMaximumSize())
+                .expireAfterWrite(invocationAuthConfig.getExpireSeconds(), TimeUnit.SECONDS)
+                .recordStats()
+                .build(key -> {
+                    int separator = key.indexOf(' ');
+                    return loadInvokeInterface(key.substring(separator + 1), key.substring(0, separator));
+                });
+        CaffeineCacheMetrics.monitor(meterRegistry, invokeUserCache, "invocation.invokeUser");
+        CaffeineCacheMetrics.monitor(meterRegistry, invokeInterfaceCache, "invocation.invokeInterface");
+    }
+
+    /**
+     * 获取 accessKey 对应的调用用户
+     *
+     * @param accessKey accessKey
+     * @return 调用用户，不存在或已封禁时为 null
+     */
+    public InvokeUser getInvokeUser(String accessKey) {
+        return invokeUserCache.get(accessKey).orElse(null);
+    }
+
+    /**
+     * 获取调用的接口（只包含接口ID与熔断、并发隔离、响应缓存配置）
+     *
+     * @param url    接口地址
+     * @param method 请求方法
+     * @return 接口，不存在时为 null
+     */
+    public InterfaceInfo getInvokeInterface(String url, String method) {
+        return invokeInterfaceCache.get(method + " " + url).orElse(null);
+    }
+
+    /**
+     * 使 accessKey 对应的用户缓存失效
+     *
+     * @param accessKey
+     */
+    public void invalidateAccessKey(String accessKey) {
+        invokeUserCache.invalidate(accessKey);
+    }
+
+    /**
+     * 使接口缓存失效（同一接口可能以不同 url + method 被缓存，按ID全部清除）
+     * <p>
+     * 不存在的 url + method 同样清除：新增、上线或修改地址后，接口可能正好对应此前缓存为不存在的 key
+     *
+     * @param interfaceInfoId 接口ID
+     */
+    public void invalidateInterfaceInfo(long interfaceInfoId) {
+        invokeInterfaceCache.asMap().values()
+                .removeIf(invokeInterface -> !invokeInterface.isPresent()
+                        || invokeInterface.get().getId() == interfaceInfoId);
+    }
+
+    private Optional<InvokeUser> loadInvokeUser(String accessKey) {
+        QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("id", "secretKey", "userRole");
+        queryWrapper.eq("accessKey", accessKey);
+        User user = userMapper.selectOne(queryWrapper);
+        if (user == null || user.getSecretKey() == null || user.getSecretKey().isEmpty()
+                || BAN_ROLE.equals(user.getUserRole())) {
+            return Optional.empty();
+        }
+        return Optional.of(new InvokeUser(user.getId(), SignUtils.deriveSigningKey(user.getSecretKey()),
+                hasPaidOrder(user.getId())));
+    }
+
+    /**
+     * 是否购买过额度套餐（存在已支付或已完成的订单），购买后最多在缓存过期后生效
+     */
+    private boolean hasPaidOrder(long userId) {
+        QueryWrapper<Order> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("userId", userId);
+        queryWrapper.in("orderStatus", "PAID", "COMPLETED");
+        queryWrapper.last("limit 1");
+        return orderMapper.selectCount(queryWrapper) > 0;
+    }
+
+    private Optional<InterfaceInfo> loadInvokeInterface(String url, String method) {
+        QueryWrapper<InterfaceInfo> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("id", "breakerFailureRate", "breakerSlowCallRate", "breakerSlowCallMillis",
+                "maxConcurrentCalls", "cacheTtlSeconds");
+        queryWrapper.eq("url", url);
+        queryWrapper.eq("method", method);
+        InterfaceInfo interfaceInfo = interfaceInfoMapper.selectOne(queryWrapper);
+        return Optional.ofNullable(interfaceInfo);
+    }
+
+    /**
+     * 鉴权用的用户信息
+     */
+    public static class InvokeUser {
+
+        private final long userId;
+
+        private final String signingKey;
+
+        /**
+         * 是否付费用户，网关按此区分排队的优先级
+         */
+        private final boolean paid;
+
+        public InvokeUser(long userId, String signingKey, boolean paid) {
+            this.userId = userId;
+            this.signingKey = signingKey;
+            this.paid = paid;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public String getSigningKey() {
+            return signingKey;
+        }
+
+        public boolean isPaid() {
+            return paid;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.qiapi.project.mapper;
+
+import com.qiapi.project.model.dto.credit.CreditLedgerEntry;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 额度账本回写数据库操作
+ *
+ * @author zhexueqi
+ */
+@Mapper
+public interface CreditLedgerMapper {
+
+    /**
+     * 按用户与接口汇总回写扣减数量（一次执行多条 UPDATE）
+     *
+     * @param deductions 汇总后的扣减，amount 为该用户该接口的扣减总量
+     * @return 影响行数
+     */
+    int applyDeductions(@Param("deductions") List<CreditLedgerEntry> deductions);
+
+    /**
+     * 查询已回写的最大流水序号
+     *
+     * @return 流水序号，没有检查点时返回 null
+     */
+    Long selectCheckpoint();
+
+    /**
+     * 更新已回写的最大流水序号（只增不减）
+     *
+     * @param lastSeq 流水序号
+     * @return 影响行数
+     */
+    int updateCheckpoint(@Param("lastSeq") Long lastSeq);
+}
@@ -32,4 +32,12 @@ public interface CreditRecordMapper extends BaseMapper<CreditRecord> {
    */
   List<CreditTrendVO> getRecentCreditTrend(@Param("days") int days);
 
+  /**
+   * 批量插入额度记录
+   *
+   * @param records 额度记录列表
+   * @return 影响行数
+   */
+  int insertBatch(@Param("records") List<CreditRecord> records);
+
 }
\ No newline at end of file
@@ -2,6 +2,10 @@ package com.qiapi.project.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.qiapi.qiapicommon.model.entity.InterfaceInfo;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Date;
+import java.util.List;
 
 /**
 * @author zhexueqi
@@ -11,6 +15,13 @@ import com.qiapi.qiapicommon.model.entity.InterfaceInfo;
 */
 public interface InterfaceInfoMapper extends BaseMapper<InterfaceInfo> {
 
+    /**
+     * 查询更新时间不早于指定时间的接口路由字段（包括已逻辑删除的接口）
+     *
+     * @param updatedAfter 更新时间下限，为 null 时查询全部未删除的接口
+     * @return 接口信息（只包含路由字段、更新时间与删除标记）
+     */
+    List<InterfaceInfo> listRouteChanges(@Param("updatedAfter") Date updatedAfter);
 }
 
 
@@ -0,0 +1,14 @@
+package com.qiapi.project.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.qiapi.qiapicommon.model.entity.InterfaceInstance;
+import org.apache.ibatis.annotations.Mapper;
+
+/**
+ * 接口上游实例数据库操作
+ * @author zhexueqi
+ */
+@Mapper
+public interface InterfaceInstanceMapper extends BaseMapper<InterfaceInstance> {
+
+}
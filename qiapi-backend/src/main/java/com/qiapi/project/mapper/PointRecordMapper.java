@@ -3,6 +3,9 @@ package com.qiapi.project.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.qiapi.qiapicommon.model.entity.PointRecord;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * 积分记录数据库操作
@@ -10,4 +13,12 @@ import org.apache.ibatis.annotations.Mapper;
 @Mapper
 public interface PointRecordMapper extends BaseMapper<PointRecord> {
 
-}
\ No newline at end of file
+    /**
+     * 批量插入积分记录
+     *
+     * @param records 积分记录列表
+     * @return 影响行数
+     */
+    int insertBatch(@Param("records") List<PointRecord> records);
+
+}
@@ -38,6 +38,17 @@ public interface UserCreditMapper extends BaseMapper<UserCredit> {
      */
     int addCredit(@Param("userId") Long userId, @Param("interfaceId") Long interfaceId, @Param("amount") Long amount);
 
+    /**
+     * 退回已扣减的额度（撤销 deductCredit）
+     * 
+     * @param userId      用户ID
+     * @param interfaceId 接口ID
+     * @param amount      退回数量
+     * @return 影响行数
+     */
+    int refundCredit(@Param("userId") Long userId, @Param("interfaceId") Long interfaceId,
+            @Param("amount") Long amount);
+
     /**
      * 获取接口额度使用排行榜
      * 
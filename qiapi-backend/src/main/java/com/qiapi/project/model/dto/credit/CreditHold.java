@@ -0,0 +1,49 @@
+package com.qiapi.project.model.dto.credit;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 额度预授权冻结记录
+ */
+@Data
+public class CreditHold implements Serializable {
+
+    /**
+     * 冻结凭证
+     */
+    private String token;
+
+    /**
+     * 用户ID
+     */
+    private Long userId;
+
+    /**
+     * 实际冻结的额度所属接口ID（可能是通用额度）
+     */
+    private Long interfaceId;
+
+    /**
+     * 冻结数量
+     */
+    private Long amount;
+
+    /**
+     * 冻结前余额
+     */
+    private Long balanceBefore;
+
+    /**
+     * 是否冻结在 Redis 额度账本中（否则已在数据库中预扣）
+     */
+    private Boolean ledger;
+
+    /**
+     * 消费部分是否已结算（确认时退回余量失败而放回的记录），再次确认时只退回余量
+     */
+    private Boolean settled;
+
+    private static final long serialVersionUID = 1L;
+}
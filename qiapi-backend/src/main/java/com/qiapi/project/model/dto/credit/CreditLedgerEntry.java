@@ -0,0 +1,62 @@
+package com.qiapi.project.model.dto.credit;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 额度账本扣减流水
+ */
+@Data
+public class CreditLedgerEntry implements Serializable {
+
+    /**
+     * 流水序号（单调递增，用于回写幂等）
+     */
+    private Long seq;
+
+    /**
+     * 用户ID
+     */
+    private Long userId;
+
+    /**
+     * 实际扣减的额度所属接口ID（可能是通用额度）
+     */
+    private Long interfaceId;
+
+    /**
+     * 扣减数量
+     */
+    private Long amount;
+
+    /**
+     * 扣减前余额
+     */
+    private Long balanceBefore;
+
+    /**
+     * 扣减时间（毫秒）
+     */
+    private Long timestamp;
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 解析 Redis 中的流水：seq:userId:interfaceId:amount:balanceBefore:timestamp
+     *
+     * @param value 流水字符串
+     * @return 流水
+     */
+    public static CreditLedgerEntry parse(String value) {
+        String[] parts = value.split(":");
+        CreditLedgerEntry entry = new CreditLedgerEntry();
+        entry.setSeq(Long.parseLong(parts[0]));
+        entry.setUserId(Long.parseLong(parts[1]));
+        entry.setInterfaceId(Long.parseLong(parts[2]));
+        entry.setAmount(Long.parseLong(parts[3]));
+        entry.setBalanceBefore(Long.parseLong(parts[4]));
+        entry.setTimestamp(Long.parseLong(parts[5]));
+        return entry;
+    }
+}
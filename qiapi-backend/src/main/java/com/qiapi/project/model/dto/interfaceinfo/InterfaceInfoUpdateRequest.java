@@ -62,5 +62,40 @@ public class InterfaceInfoUpdateRequest implements Serializable {
      */
     private String method;
 
+    /**
+     * 熔断失败率阈值（%），为空时使用网关默认值
+     */
+    private Integer breakerFailureRate;
+
+    /**
+     * 熔断慢调用比例阈值（%），为空时使用网关默认值
+     */
+    private Integer breakerSlowCallRate;
+
+    /**
+     * 慢调用耗时阈值（毫秒），为空时使用网关默认值
+     */
+    private Integer breakerSlowCallMillis;
+
+    /**
+     * 网关最大并发调用数，为空时使用网关默认值
+     */
+    private Integer maxConcurrentCalls;
+
+    /**
+     * 网关缓存 GET 响应的秒数，为空或 0 时不缓存
+     */
+    private Integer cacheTtlSeconds;
+
+    /**
+     * 网关连接上游的超时时间（毫秒），为空时使用网关默认值
+     */
+    private Integer upstreamConnectTimeoutMillis;
+
+    /**
+     * 网关等待上游响应的超时时间（毫秒），为空时使用网关默认值
+     */
+    private Integer upstreamResponseTimeoutMillis;
+
     private static final long serialVersionUID = 1L;
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.qiapi.project.model.dto.interfaceinstance;
+
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * 注册接口实例请求
+ *
+ * @author zhexueqi
+ */
+@Data
+public class InterfaceInstanceAddRequest implements Serializable {
+
+    /**
+     * 接口id
+     */
+    private Long interfaceInfoId;
+
+    /**
+     * 实例地址（http(s)://主机[:端口]）
+     */
+    private String url;
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+}
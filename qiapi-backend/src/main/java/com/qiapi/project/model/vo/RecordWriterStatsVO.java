@@ -0,0 +1,74 @@
+package com.qiapi.project.model.vo;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 记录批量写入器运行状态VO
+ *
+ * @author zhexueqi
+ */
+@Data
+public class RecordWriterStatsVO {
+
+    /**
+     * 写入器名称
+     */
+    private String name;
+
+    /**
+     * 当前排队条数
+     */
+    private Integer queueSize;
+
+    /**
+     * 累计入队条数
+     */
+    private Long enqueued;
+
+    /**
+     * 累计写入数据库条数
+     */
+    private Long written;
+
+    /**
+     * 累计批次数
+     */
+    private Long batches;
+
+    /**
+     * 平均每批条数
+     */
+    private Double avgBatchSize;
+
+    /**
+     * 队列满时由调用线程同步写入的条数
+     */
+    private Long syncWrites;
+
+    /**
+     * 批量写入失败次数
+     */
+    private Long failedFlushes;
+
+    /**
+     * 启动时从 WAL 恢复的条数
+     */
+    private Long replayed;
+
+    /**
+     * 启动以来平均每秒写入条数
+     */
+    private Double writtenPerSecond;
+
+    /**
+     * 最近一批写入耗时（毫秒）
+     */
+    private Long lastFlushCostMs;
+
+    /**
+     * 最近一批写入时间
+     */
+    private Date lastFlushTime;
+}
@@ -60,4 +60,49 @@ public interface CreditService {
      * @return 是否有足够额度
      */
     boolean checkCreditSufficient(Long userId, Long interfaceId, Long amount);
+
+    /**
+     * 查询接口可用的专用额度与通用额度
+     * @param userId 用户ID
+     * @param interfaceId 接口ID
+     * @return [专用额度余额, 通用额度余额]，没有可用记录的一项为 -1
+     */
+    long[] getAvailableCredit(Long userId, Long interfaceId);
+
+    /**
+     * 预授权冻结额度（专用额度不足时使用通用额度）
+     * @param userId 用户ID
+     * @param interfaceId 接口ID
+     * @param amount 冻结数量
+     * @return 冻结凭证，额度不足时返回 null
+     */
+    String reserveCredit(Long userId, Long interfaceId, Long amount);
+
+    /**
+     * 确认扣减冻结的额度
+     * @param token 冻结凭证
+     * @return 是否成功（已确认、已释放或已过期时返回 false）
+     */
+    boolean commitCredit(String token);
+
+    /**
+     * 确认扣减实际使用的额度，其余冻结额度释放
+     * @param token 冻结凭证
+     * @param used 实际使用数量，为 0 时全部释放
+     * @return 是否成功（已确认、已释放或已过期时返回 false）
+     */
+    boolean commitCredit(String token, Long used);
+
+    /**
+     * 释放冻结的额度
+     * @param token 冻结凭证
+     * @return 是否成功（已确认、已释放或已过期时返回 false）
+     */
+    boolean releaseCredit(String token);
+
+    /**
+     * 释放已过期的冻结额度
+     * @return 释放的数量
+     */
+    int releaseExpiredCredit();
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.qiapi.project.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.qiapi.qiapicommon.model.entity.InterfaceInstance;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 接口上游实例服务
+ */
+public interface InterfaceInstanceService extends IService<InterfaceInstance> {
+
+    /**
+     * 注册接口实例（同时刷新接口的更新时间，使网关增量刷新路由）
+     *
+     * @param interfaceInstance 实例
+     * @return 实例ID
+     */
+    long addInstance(InterfaceInstance interfaceInstance);
+
+    /**
+     * 删除接口实例（同时刷新接口的更新时间）
+     *
+     * @param interfaceInstance 实例
+     * @return 是否删除成功
+     */
+    boolean removeInstance(InterfaceInstance interfaceInstance);
+
+    /**
+     * 修改实例状态（同时刷新接口的更新时间）
+     *
+     * @param interfaceInstance 实例
+     * @param status            状态 0-下线 1-上线
+     * @return 是否修改成功
+     */
+    boolean updateInstanceStatus(InterfaceInstance interfaceInstance, int status);
+
+    /**
+     * 查询接口的上线实例地址
+     *
+     * @param interfaceInfoIds 接口ID
+     * @return 接口ID -> 实例地址
+     */
+    Map<Long, List<String>> listOnlineInstanceUrls(Collection<Long> interfaceInfoIds);
+}
@@ -3,10 +3,15 @@ package com.qiapi.project.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.qiapi.project.common.ErrorCode;
+import com.qiapi.project.config.RecordWriterConfig;
 import com.qiapi.project.exception.BusinessException;
+import com.qiapi.project.manager.BatchRecordWriter;
+import com.qiapi.project.manager.CreditHoldManager;
+import com.qiapi.project.manager.CreditLedgerManager;
 import com.qiapi.project.mapper.InterfaceInfoMapper;
 import com.qiapi.project.mapper.UserCreditMapper;
 import com.qiapi.project.mapper.CreditRecordMapper;
+import com.qiapi.project.model.dto.credit.CreditHold;
 import com.qiapi.project.model.vo.CreditBalanceVO;
 import com.qiapi.project.service.CreditService;
 import com.qiapi.project.service.PointService;
@@ -18,6 +23,7 @@ import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.Resource;
 import java.util.ArrayList;
@@ -43,6 +49,21 @@ public class CreditServiceImpl extends ServiceImpl<UserCreditMapper, UserCredit>
     @Resource
     private PointService pointService;
 
+    @Resource
+    private CreditLedgerManager creditLedgerManager;
+
+    @Resource
+    private CreditHoldManager creditHoldManager;
+
+    @Resource
+    private BatchRecordWriter<CreditRecord> creditRecordWriter;
+
+    @Resource
+    private RecordWriterConfig recordWriterConfig;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
     private static final Long FREE_CREDIT_AMOUNT = 100L;
     private static final Long POINT_TO_CREDIT_RATIO = 10L; // 10积分 = 1次额度
     @Autowired
@@ -80,6 +101,7 @@ public class CreditServiceImpl extends ServiceImpl<UserCreditMapper, UserCredit>
                 saveCreditRecord(userId, interfaceId, "RECHARGE", FREE_CREDIT_AMOUNT, 
                                existingCredit.getRemainingCredit() - FREE_CREDIT_AMOUNT, 
                                existingCredit.getRemainingCredit(), null, null, "申请免费额度");
+                creditLedgerManager.onCreditAdded(userId, interfaceId);
             }
             
             return updateResult;
@@ -105,6 +127,7 @@ public class CreditServiceImpl extends ServiceImpl<UserCreditMapper, UserCredit>
                 // 记录额度变动
                 saveCreditRecord(userId, interfaceId, "RECHARGE", FREE_CREDIT_AMOUNT, 
                                0L, FREE_CREDIT_AMOUNT, null, null, "申请免费额度");
+                creditLedgerManager.onCreditAdded(userId, interfaceId);
             }
             
             return saveResult;
@@ -119,6 +142,14 @@ public class CreditServiceImpl extends ServiceImpl<UserCreditMapper, UserCredit>
             throw new BusinessException(ErrorCode.PARAMS_ERROR);
         }
 
+        // 开启额度账本时在 Redis 中原子扣减，流水由回写任务批量落库
+        if (creditLedgerManager.isEnabled()) {
+            if (!creditLedgerManager.consume(userId, interfaceId, amount)) {
+                throw new BusinessException(ErrorCode.OPERATION_ERROR, "额度不足");
+            }
+            return true;
+        }
+
         // 检查额度是否充足
         if (!checkCreditSufficient(userId, interfaceId, amount)) {
             throw new BusinessException(ErrorCode.OPERATION_ERROR, "额度不足");
@@ -184,6 +215,7 @@ public class CreditServiceImpl extends ServiceImpl<UserCreditMapper, UserCredit>
                 // 记录额度变动
                 saveCreditRecord(userId, interfaceId, "RECHARGE", amount, 
                                balanceBefore, balanceBefore + amount, null, null, description);
+                creditLedgerManager.onCreditAdded(userId, interfaceId);
                 return true;
             }
         } else {
@@ -208,6 +240,7 @@ public class CreditServiceImpl extends ServiceImpl<UserCreditMapper, UserCredit>
                 // 记录额度变动
                 saveCreditRecord(userId, interfaceId, "RECHARGE", amount, 
                                0L, amount, null, null, description);
+                creditLedgerManager.onCreditAdded(userId, interfaceId);
             }
             
             return saveResult;
@@ -277,6 +310,10 @@ public class CreditServiceImpl extends ServiceImpl<UserCreditMapper, UserCredit>
             return false;
         }
 
+        if (creditLedgerManager.isEnabled()) {
+            return creditLedgerManager.check(userId, interfaceId, amount);
+        }
+
         QueryWrapper<UserCredit> queryWrapper = new QueryWrapper<>();
         queryWrapper.eq("userId", userId)
                    .eq("interfaceId", interfaceId)
@@ -313,6 +350,195 @@ public class CreditServiceImpl extends ServiceImpl<UserCreditMapper, UserCredit>
 
     }
 
+    @Override
+    public long[] getAvailableCredit(Long userId, Long interfaceId) {
+        if (userId == null || interfaceId == null || userId <= 0 || interfaceId <= 0) {
+            return new long[]{-1L, -1L};
+        }
+        if (creditLedgerManager.isEnabled()) {
+            return creditLedgerManager.balances(userId, interfaceId);
+        }
+        return new long[]{creditLedgerManager.loadRemaining(userId, interfaceId),
+                creditLedgerManager.loadRemaining(userId, COMMON_CREDIT_ID)};
+    }
+
+    @Override
+    public String reserveCredit(Long userId, Long interfaceId, Long amount) {
+        if (userId == null || interfaceId == null || amount == null ||
+            userId <= 0 || interfaceId <= 0 || amount <= 0) {
+            return null;
+        }
+
+        CreditHold hold = new CreditHold();
+        hold.setUserId(userId);
+        hold.setAmount(amount);
+        if (creditLedgerManager.isEnabled()) {
+            long[] held = creditLedgerManager.hold(userId, interfaceId, amount);
+            if (held == null) {
+                return null;
+            }
+            hold.setInterfaceId(held[0]);
+            hold.setBalanceBefore(held[1]);
+            hold.setLedger(true);
+        } else {
+            // 直接在数据库中预扣，释放时退回；在事务中锁定额度行，记录的预扣前余额不会被并发扣减改变。
+            // 冻结记录仍保存在 Redis（见 CreditHoldManager）
+            Boolean deducted = transactionTemplate.execute(status -> {
+                Long balanceBefore = deductForHold(userId, interfaceId, amount);
+                if (balanceBefore != null) {
+                    hold.setInterfaceId(interfaceId);
+                } else {
+                    balanceBefore = deductForHold(userId, COMMON_CREDIT_ID, amount);
+                    if (balanceBefore == null) {
+                        return false;
+                    }
+                    hold.setInterfaceId(COMMON_CREDIT_ID);
+                }
+                hold.setBalanceBefore(balanceBefore);
+                return true;
+            });
+            if (!Boolean.TRUE.equals(deducted)) {
+                return null;
+            }
+            hold.setLedger(false);
+        }
+
+        try {
+            return creditHoldManager.save(hold);
+        } catch (Exception e) {
+            log.error("保存额度冻结记录失败，退回冻结额度 - 用户ID: {}, 接口ID: {}", userId, interfaceId, e);
+            undoHold(hold);
+            return null;
+        }
+    }
+
+    @Override
+    public boolean commitCredit(String token) {
+        return commitCredit(token, null);
+    }
+
+    @Override
+    public boolean commitCredit(String token, Long used) {
+        if (token == null || (used != null && used < 0)) {
+            return false;
+        }
+        CreditHold hold = creditHoldManager.claim(token);
+        if (hold == null) {
+            return false;
+        }
+        long amount = hold.getAmount();
+        // 已结算过消费的记录只退回余量
+        long consumed = Boolean.TRUE.equals(hold.getSettled()) ? 0 : used == null ? amount : Math.min(used, amount);
+        if (consumed > 0) {
+            try {
+                if (Boolean.TRUE.equals(hold.getLedger())) {
+                    creditLedgerManager.settle(hold.getUserId(), hold.getInterfaceId(), consumed,
+                            hold.getBalanceBefore());
+                } else {
+                    saveCreditRecord(hold.getUserId(), hold.getInterfaceId(), "CONSUME", -consumed,
+                            hold.getBalanceBefore(), hold.getBalanceBefore() - consumed, null, null, "消费额度");
+                }
+            } catch (RuntimeException e) {
+                // 冻结记录已取出，结算失败时放回，否则冻结的额度无人归还
+                restoreHold(hold, e);
+                throw e;
+            }
+        }
+        if (consumed < amount) {
+            hold.setAmount(amount - consumed);
+            hold.setSettled(true);
+            try {
+                undoHold(hold);
+            } catch (RuntimeException e) {
+                // 放回的记录只剩余量，再次确认或过期释放时不会重复结算
+                restoreHold(hold, e);
+                throw e;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean releaseCredit(String token) {
+        if (token == null) {
+            return false;
+        }
+        CreditHold hold = creditHoldManager.claim(token);
+        if (hold == null) {
+            return false;
+        }
+        try {
+            undoHold(hold);
+        } catch (RuntimeException e) {
+            restoreHold(hold, e);
+            throw e;
+        }
+        return true;
+    }
+
+    @Override
+    public int releaseExpiredCredit() {
+        int released = 0;
+        for (String token : creditHoldManager.listExpired()) {
+            try {
+                if (releaseCredit(token)) {
+                    released++;
+                }
+            } catch (Exception e) {
+                log.error("释放过期冻结额度失败 - 凭证: {}", token, e);
+            }
+        }
+        return released;
+    }
+
+    /**
+     * 在数据库中预扣额度，需在事务中调用：额度行加锁读取，提交前其他扣减无法修改余额
+     *
+     * @return 预扣前余额，额度不足或没有可用记录时返回 null
+     */
+    private Long deductForHold(Long userId, Long interfaceId, Long amount) {
+        QueryWrapper<UserCredit> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("userId", userId)
+                   .eq("interfaceId", interfaceId)
+                   .eq("isDelete", 0)
+                   .eq("status", 1)
+                   .last("FOR UPDATE");
+        UserCredit userCredit = this.getOne(queryWrapper);
+        if (userCredit == null || userCredit.getRemainingCredit() < amount) {
+            return null;
+        }
+        if (userCreditMapper.deductCredit(userId, interfaceId, amount) <= 0) {
+            return null;
+        }
+        return userCredit.getRemainingCredit();
+    }
+
+    /**
+     * 退回冻结的额度
+     */
+    private void undoHold(CreditHold hold) {
+        if (Boolean.TRUE.equals(hold.getLedger())) {
+            creditLedgerManager.unhold(hold.getUserId(), hold.getInterfaceId(), hold.getAmount());
+        } else {
+            userCreditMapper.refundCredit(hold.getUserId(), hold.getInterfaceId(), hold.getAmount());
+        }
+    }
+
+    /**
+     * 确认或释放失败时放回已取出的冻结记录，调用方可以重试，否则过期后由过期扫描释放
+     *
+     * @param cause 确认或释放失败的原因，放回也失败时附加到其上
+     */
+    private void restoreHold(CreditHold hold, RuntimeException cause) {
+        try {
+            creditHoldManager.restore(hold);
+        } catch (RuntimeException e) {
+            log.error("放回额度冻结记录失败，冻结额度需人工处理 - 凭证: {}, 用户ID: {}, 接口ID: {}, 数量: {}",
+                    hold.getToken(), hold.getUserId(), hold.getInterfaceId(), hold.getAmount(), e);
+            cause.addSuppressed(e);
+        }
+    }
+
     /**
      * 保存额度变动记录
      */
@@ -330,7 +556,11 @@ public class CreditServiceImpl extends ServiceImpl<UserCreditMapper, UserCredit>
         record.setRelatedUserId(relatedUserId);
         record.setDescription(description);
         record.setCreateTime(new Date());
-        
-        creditRecordMapper.insert(record);
+
+        if (recordWriterConfig.isEnabled()) {
+            creditRecordWriter.write(record);
+        } else {
+            creditRecordMapper.insert(record);
+        }
     }
 }
\ No newline at end of file
@@ -4,6 +4,8 @@ import com.qiapi.project.service.CreditService;
 import com.qiapi.qiapicommon.model.entity.User;
 import com.qiapi.qiapicommon.service.InnerCreditService;
 import com.qiapi.qiapicommon.service.InnerUserService;
+import com.qiapi.trace.Span;
+import com.qiapi.trace.Tracer;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.dubbo.config.annotation.DubboService;
 
@@ -11,6 +13,8 @@ import javax.annotation.Resource;
 
 /**
  * 内部额度服务实现（供Dubbo调用）
+ * <p>
+ * 冻结、结算与释放各记录一个 span（包含事务提交），挂在 Dubbo 调用的链路下
  */
 @Slf4j
 @DubboService
@@ -32,5 +36,52 @@ public class InnerCreditServiceImpl implements InnerCreditService {
         return creditService.consumeCredit(userId, interfaceId, amount);
     }
 
+    @Override
+    public String reserve(Long userId, Long interfaceId, Long amount) {
+        Span span = Tracer.span("credit.reserve").tag("userId", userId).tag("interfaceId", interfaceId)
+                .tag("amount", amount);
+        try {
+            String token = creditService.reserveCredit(userId, interfaceId, amount);
+            span.tag("reserved", token != null);
+            return token;
+        } catch (RuntimeException e) {
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    @Override
+    public boolean commit(String token) {
+        return creditService.commitCredit(token);
+    }
+
+    @Override
+    public boolean commit(String token, Long used) {
+        Span span = Tracer.span("credit.commit").tag("used", used);
+        try {
+            return creditService.commitCredit(token, used);
+        } catch (RuntimeException e) {
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    @Override
+    public boolean release(String token) {
+        Span span = Tracer.span("credit.release");
+        try {
+            return creditService.releaseCredit(token);
+        } catch (RuntimeException e) {
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
 
 }
\ No newline at end of file
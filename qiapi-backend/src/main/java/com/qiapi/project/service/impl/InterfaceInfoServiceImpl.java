@@ -62,6 +62,29 @@ public class InterfaceInfoServiceImpl extends ServiceImpl<InterfaceInfoMapper, I
         if (StringUtils.isNotBlank(description) && description.length() > 128) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "描述过长");
         }
+        // 熔断与并发隔离配置，为空时使用网关默认值
+        ThrowUtils.throwIf(!isPercent(interfaceinfo.getBreakerFailureRate()), ErrorCode.PARAMS_ERROR,
+                "熔断失败率阈值需在 1-100 之间");
+        ThrowUtils.throwIf(!isPercent(interfaceinfo.getBreakerSlowCallRate()), ErrorCode.PARAMS_ERROR,
+                "熔断慢调用比例阈值需在 1-100 之间");
+        Integer slowCallMillis = interfaceinfo.getBreakerSlowCallMillis();
+        ThrowUtils.throwIf(slowCallMillis != null && slowCallMillis <= 0, ErrorCode.PARAMS_ERROR, "慢调用耗时阈值需大于 0");
+        Integer maxConcurrentCalls = interfaceinfo.getMaxConcurrentCalls();
+        ThrowUtils.throwIf(maxConcurrentCalls != null && maxConcurrentCalls <= 0, ErrorCode.PARAMS_ERROR,
+                "最大并发调用数需大于 0");
+        Integer cacheTtlSeconds = interfaceinfo.getCacheTtlSeconds();
+        ThrowUtils.throwIf(cacheTtlSeconds != null && cacheTtlSeconds < 0, ErrorCode.PARAMS_ERROR,
+                "响应缓存时间不能小于 0");
+        Integer connectTimeoutMillis = interfaceinfo.getUpstreamConnectTimeoutMillis();
+        ThrowUtils.throwIf(connectTimeoutMillis != null && connectTimeoutMillis <= 0, ErrorCode.PARAMS_ERROR,
+                "上游连接超时时间需大于 0");
+        Integer responseTimeoutMillis = interfaceinfo.getUpstreamResponseTimeoutMillis();
+        ThrowUtils.throwIf(responseTimeoutMillis != null && responseTimeoutMillis <= 0, ErrorCode.PARAMS_ERROR,
+                "上游响应超时时间需大于 0");
+    }
+
+    private static boolean isPercent(Integer value) {
+        return value == null || (value >= 1 && value <= 100);
     }
 
     /**
@@ -0,0 +1,121 @@
+package com.qiapi.project.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.qiapi.project.common.ErrorCode;
+import com.qiapi.project.exception.ThrowUtils;
+import com.qiapi.project.mapper.InterfaceInfoMapper;
+import com.qiapi.project.mapper.InterfaceInstanceMapper;
+import com.qiapi.project.service.InterfaceInstanceService;
+import com.qiapi.qiapicommon.model.entity.InterfaceInfo;
+import com.qiapi.qiapicommon.model.entity.InterfaceInstance;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Resource;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 接口上游实例服务实现
+ * @author zhexueqi
+ */
+@Service
+public class InterfaceInstanceServiceImpl extends ServiceImpl<InterfaceInstanceMapper, InterfaceInstance>
+        implements InterfaceInstanceService {
+
+    @Resource
+    private InterfaceInfoMapper interfaceInfoMapper;
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public long addInstance(InterfaceInstance interfaceInstance) {
+        Long interfaceInfoId = interfaceInstance.getInterfaceInfoId();
+        ThrowUtils.throwIf(interfaceInfoId == null || interfaceInfoId <= 0, ErrorCode.PARAMS_ERROR);
+        ThrowUtils.throwIf(!isInstanceUrl(interfaceInstance.getUrl()), ErrorCode.PARAMS_ERROR,
+                "实例地址需为 http(s)://主机[:端口]");
+        ThrowUtils.throwIf(interfaceInfoMapper.selectById(interfaceInfoId) == null, ErrorCode.NOT_FOUND_ERROR);
+        QueryWrapper<InterfaceInstance> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("interfaceInfoId", interfaceInfoId);
+        queryWrapper.eq("url", interfaceInstance.getUrl());
+        ThrowUtils.throwIf(this.count(queryWrapper) > 0, ErrorCode.PARAMS_ERROR, "实例已存在");
+        if (interfaceInstance.getStatus() == null) {
+            interfaceInstance.setStatus(1);
+        }
+        ThrowUtils.throwIf(!this.save(interfaceInstance), ErrorCode.OPERATION_ERROR);
+        touchInterface(interfaceInfoId);
+        return interfaceInstance.getId();
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public boolean removeInstance(InterfaceInstance interfaceInstance) {
+        boolean result = this.removeById(interfaceInstance.getId());
+        touchInterface(interfaceInstance.getInterfaceInfoId());
+        return result;
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public boolean updateInstanceStatus(InterfaceInstance interfaceInstance, int status) {
+        InterfaceInstance update = new InterfaceInstance();
+        update.setId(interfaceInstance.getId());
+        update.setStatus(status);
+        boolean result = this.updateById(update);
+        touchInterface(interfaceInstance.getInterfaceInfoId());
+        return result;
+    }
+
+    @Override
+    public Map<Long, List<String>> listOnlineInstanceUrls(Collection<Long> interfaceInfoIds) {
+        if (interfaceInfoIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        QueryWrapper<InterfaceInstance> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("interfaceInfoId", "url");
+        queryWrapper.in("interfaceInfoId", interfaceInfoIds);
+        queryWrapper.eq("status", 1);
+        queryWrapper.orderByAsc("id");
+        Map<Long, List<String>> instanceUrls = new HashMap<>();
+        for (InterfaceInstance instance : this.list(queryWrapper)) {
+            instanceUrls.computeIfAbsent(instance.getInterfaceInfoId(), id -> new ArrayList<>())
+                    .add(instance.getUrl());
+        }
+        return instanceUrls;
+    }
+
+    /**
+     * 刷新接口的更新时间，网关按更新时间增量刷新路由时会重新读取实例列表
+     */
+    private void touchInterface(long interfaceInfoId) {
+        UpdateWrapper<InterfaceInfo> updateWrapper = new UpdateWrapper<>();
+        updateWrapper.set("updateTime", new Date());
+        updateWrapper.eq("id", interfaceInfoId);
+        interfaceInfoMapper.update(null, updateWrapper);
+    }
+
+    /**
+     * 实例地址只包含协议、主机和端口
+     */
+    private static boolean isInstanceUrl(String url) {
+        if (url == null || url.length() > 512) {
+            return false;
+        }
+        try {
+            URI uri = URI.create(url);
+            String scheme = uri.getScheme();
+            String path = uri.getRawPath();
+            return ("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme)) && uri.getHost() != null
+                    && (path == null || path.isEmpty() || "/".equals(path)) && uri.getRawQuery() == null;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
@@ -3,7 +3,9 @@ package com.qiapi.project.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.qiapi.project.common.ErrorCode;
+import com.qiapi.project.config.RecordWriterConfig;
 import com.qiapi.project.exception.BusinessException;
+import com.qiapi.project.manager.BatchRecordWriter;
 import com.qiapi.project.mapper.UserPointsMapper;
 import com.qiapi.project.mapper.PointRecordMapper;
 import com.qiapi.project.model.vo.PointBalanceVO;
@@ -31,6 +33,12 @@ public class PointServiceImpl extends ServiceImpl<UserPointsMapper, UserPoints>
     @Resource
     private PointRecordMapper pointRecordMapper;
 
+    @Resource
+    private BatchRecordWriter<PointRecord> pointRecordWriter;
+
+    @Resource
+    private RecordWriterConfig recordWriterConfig;
+
     private static final Long INITIAL_POINTS = 100L; // 初始积分
 
     @Override
@@ -189,6 +197,10 @@ public class PointServiceImpl extends ServiceImpl<UserPointsMapper, UserPoints>
         record.setRelatedOrderId(relatedOrderId);
         record.setCreateTime(new Date());
 
-        pointRecordMapper.insert(record);
+        if (recordWriterConfig.isEnabled()) {
+            pointRecordWriter.write(record);
+        } else {
+            pointRecordMapper.insert(record);
+        }
     }
 }
\ No newline at end of file
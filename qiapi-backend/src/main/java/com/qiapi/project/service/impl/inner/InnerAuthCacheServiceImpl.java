@@ -0,0 +1,29 @@
+package com.qiapi.project.service.impl.inner;
+
+import com.qiapi.project.manager.InvocationAuthCache;
+import com.qiapi.qiapicommon.service.InnerAuthCacheService;
+import org.apache.dubbo.config.annotation.DubboService;
+
+import javax.annotation.Resource;
+
+/**
+ * 内部鉴权缓存失效服务实现类（接收其他节点的广播）
+ *
+ * @author zhexueqi
+ */
+@DubboService
+public class InnerAuthCacheServiceImpl implements InnerAuthCacheService {
+
+    @Resource
+    private InvocationAuthCache invocationAuthCache;
+
+    @Override
+    public void invalidateAccessKey(String accessKey) {
+        invocationAuthCache.invalidateAccessKey(accessKey);
+    }
+
+    @Override
+    public void invalidateInterfaceInfo(long interfaceInfoId) {
+        invocationAuthCache.invalidateInterfaceInfo(interfaceInfoId);
+    }
+}
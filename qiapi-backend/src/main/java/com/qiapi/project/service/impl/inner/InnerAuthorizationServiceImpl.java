@@ -0,0 +1,82 @@
+package com.qiapi.project.service.impl.inner;
+
+import com.qiapi.project.manager.InvocationAuthCache;
+import com.qiapi.project.service.CreditService;
+import com.qiapi.qiapicommon.model.dto.InvocationAuthorization;
+import com.qiapi.qiapicommon.model.entity.InterfaceInfo;
+import com.qiapi.qiapicommon.model.entity.UserInterfaceInfo;
+import com.qiapi.qiapicommon.model.enums.InvocationQuotaEnum;
+import com.qiapi.qiapicommon.model.enums.InvocationTierEnum;
+import com.qiapi.qiapicommon.service.InnerAuthorizationService;
+import com.qiapi.service.UserInterfaceInfoService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.dubbo.config.annotation.DubboService;
+
+import javax.annotation.Resource;
+
+/**
+ * 内部调用鉴权服务实现类
+ * <p>
+ * 用户与接口从本地缓存读取，额度优先（与扣费顺序一致：专用额度 -> 通用额度），额度不足时再检查剩余调用次数
+ *
+ * @author zhexueqi
+ */
+@Slf4j
+@DubboService
+public class InnerAuthorizationServiceImpl implements InnerAuthorizationService {
+
+    @Resource
+    private InvocationAuthCache invocationAuthCache;
+
+    @Resource
+    private CreditService creditService;
+
+    @Resource
+    private UserInterfaceInfoService userInterfaceInfoService;
+
+    @Override
+    public InvocationAuthorization authorizeInvocation(String accessKey, String path, String method, Long amount) {
+        InvocationAuthorization authorization = new InvocationAuthorization();
+        if (StringUtils.isAnyBlank(accessKey, path, method)) {
+            return authorization;
+        }
+        InvocationAuthCache.InvokeUser invokeUser = invocationAuthCache.getInvokeUser(accessKey);
+        if (invokeUser == null) {
+            return authorization;
+        }
+        authorization.setUserId(invokeUser.getUserId());
+        authorization.setSigningKey(invokeUser.getSigningKey());
+        authorization.setTier(invokeUser.isPaid() ? InvocationTierEnum.PAID : InvocationTierEnum.FREE);
+        InterfaceInfo interfaceInfo = invocationAuthCache.getInvokeInterface(path, method);
+        if (interfaceInfo == null) {
+            return authorization;
+        }
+        Long interfaceId = interfaceInfo.getId();
+        authorization.setInterfaceId(interfaceId);
+        authorization.setBreakerFailureRate(interfaceInfo.getBreakerFailureRate());
+        authorization.setBreakerSlowCallRate(interfaceInfo.getBreakerSlowCallRate());
+        authorization.setBreakerSlowCallMillis(interfaceInfo.getBreakerSlowCallMillis());
+        authorization.setMaxConcurrentCalls(interfaceInfo.getMaxConcurrentCalls());
+        authorization.setCacheTtlSeconds(interfaceInfo.getCacheTtlSeconds());
+
+        long need = amount == null || amount <= 0 ? 1L : amount;
+        long[] credit = creditService.getAvailableCredit(invokeUser.getUserId(), interfaceId);
+        if (credit[0] >= need || credit[1] >= need) {
+            authorization.setQuota(InvocationQuotaEnum.CREDIT);
+            authorization.setRemaining(Math.max(credit[0], 0L) + Math.max(credit[1], 0L));
+            return authorization;
+        }
+        UserInterfaceInfo userInterfaceInfo = userInterfaceInfoService.getUserInterfaceInfo(interfaceId,
+                invokeUser.getUserId());
+        if (userInterfaceInfo != null && userInterfaceInfo.getLeftNum() != null
+                && userInterfaceInfo.getLeftNum() > 0) {
+            authorization.setQuota(InvocationQuotaEnum.INVOKE_COUNT);
+            authorization.setRemaining(userInterfaceInfo.getLeftNum().longValue());
+        } else {
+            authorization.setQuota(InvocationQuotaEnum.INSUFFICIENT);
+            authorization.setRemaining(0L);
+        }
+        return authorization;
+    }
+}
@@ -5,12 +5,21 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.qiapi.project.common.ErrorCode;
 import com.qiapi.project.exception.BusinessException;
 import com.qiapi.project.mapper.InterfaceInfoMapper;
+import com.qiapi.project.service.InterfaceInstanceService;
+import com.qiapi.qiapicommon.model.dto.GatewayRoute;
 import com.qiapi.qiapicommon.model.entity.InterfaceInfo;
+import com.qiapi.qiapicommon.model.enums.InterfaceInfoStatusEnum;
 import com.qiapi.qiapicommon.service.InnerInterfaceInfoService;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.dubbo.config.annotation.DubboService;
 
 import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * 内部接口服务实现类
@@ -21,6 +30,9 @@ public class InnerInterfaceInfoServiceImpl implements InnerInterfaceInfoService
     @Resource
     private InterfaceInfoMapper interfaceInfoMapper;
 
+    @Resource
+    private InterfaceInstanceService interfaceInstanceService;
+
     @Override
     public InterfaceInfo getInterfaceInfo(String url, String method) {
         if (StringUtils.isAnyBlank(url, method)) {
@@ -32,5 +44,38 @@ public class InnerInterfaceInfoServiceImpl implements InnerInterfaceInfoService
         return interfaceInfoMapper.selectOne(queryWrapper);
     }
 
+    @Override
+    public List<GatewayRoute> listGatewayRoutes(long updatedAfterMillis) {
+        Date updatedAfter = updatedAfterMillis > 0 ? new Date(updatedAfterMillis) : null;
+        List<InterfaceInfo> interfaceInfoList = interfaceInfoMapper.listRouteChanges(updatedAfter);
+        Map<Long, List<String>> instanceUrls = interfaceInstanceService.listOnlineInstanceUrls(interfaceInfoList.stream()
+                .filter(interfaceInfo -> !isRouteRemoved(interfaceInfo))
+                .map(InterfaceInfo::getId)
+                .collect(Collectors.toList()));
+        List<GatewayRoute> routes = new ArrayList<>(interfaceInfoList.size());
+        for (InterfaceInfo interfaceInfo : interfaceInfoList) {
+            GatewayRoute route = new GatewayRoute();
+            route.setInterfaceId(interfaceInfo.getId());
+            route.setUrl(interfaceInfo.getUrl());
+            route.setMethod(interfaceInfo.getMethod());
+            route.setConnectTimeoutMillis(interfaceInfo.getUpstreamConnectTimeoutMillis());
+            route.setResponseTimeoutMillis(interfaceInfo.getUpstreamResponseTimeoutMillis());
+            route.setUpdateTime(interfaceInfo.getUpdateTime() == null ? 0L : interfaceInfo.getUpdateTime().getTime());
+            route.setDeleted(isRouteRemoved(interfaceInfo));
+            route.setInstanceUrls(instanceUrls.getOrDefault(interfaceInfo.getId(), Collections.emptyList()));
+            routes.add(route);
+        }
+        return routes;
+    }
+
+    /**
+     * 已删除或未上线（包括未审核）的接口没有网关路由
+     */
+    private static boolean isRouteRemoved(InterfaceInfo interfaceInfo) {
+        return (interfaceInfo.getIsDelete() != null && interfaceInfo.getIsDelete() != 0)
+                || interfaceInfo.getStatus() == null
+                || interfaceInfo.getStatus() != InterfaceInfoStatusEnum.ONLINE.getValue();
+    }
+
     // [编程知识星球](https://yupi.icu) 连接万名编程爱好者，一起优秀！20000+ 小伙伴交流分享、100+ 各方向编程交流群、40+ 大厂嘉宾一对一答疑、4000+ 编程问答参考
 }
@@ -0,0 +1,93 @@
+package com.qiapi.project.trace;
+
+import com.qiapi.project.config.TraceConfig;
+import com.qiapi.trace.Span;
+import com.qiapi.trace.TraceContext;
+import com.qiapi.trace.Tracer;
+import org.apache.dubbo.common.constants.CommonConstants;
+import org.apache.dubbo.common.extension.Activate;
+import org.apache.dubbo.rpc.Filter;
+import org.apache.dubbo.rpc.Invocation;
+import org.apache.dubbo.rpc.Invoker;
+import org.apache.dubbo.rpc.Result;
+import org.apache.dubbo.rpc.RpcException;
+import org.slf4j.MDC;
+
+/**
+ * Dubbo 调用链路：提供者按 traceparent attachment 延续网关的链路并把 span 绑定到处理线程，
+ * 消费者在当前线程的 span 下记录调用 span 并通过 attachment 传给提供者
+ * <p>
+ * {@link Tracer} 与配置由 Dubbo 按 setter 从 Spring 容器注入，未注入或关闭链路追踪时不记录；
+ * 异步调用在结果完成时结束 span
+ *
+ * @author zhexueqi
+ */
+@Activate(group = {CommonConstants.PROVIDER, CommonConstants.CONSUMER}, order = -10000)
+public class TraceDubboFilter implements Filter {
+
+    private Tracer tracer;
+
+    private TraceConfig traceConfig;
+
+    public void setTracer(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    public void setTraceConfig(TraceConfig traceConfig) {
+        this.traceConfig = traceConfig;
+    }
+
+    @Override
+    public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
+        String name = invoker.getInterface().getSimpleName() + "." + invocation.getMethodName();
+        boolean provider = CommonConstants.PROVIDER_SIDE.equals(
+                invoker.getUrl().getParameter(CommonConstants.SIDE_KEY));
+        return provider ? invokeProvider(invoker, invocation, name) : invokeConsumer(invoker, invocation, name);
+    }
+
+    private Result invokeProvider(Invoker<?> invoker, Invocation invocation, String name) {
+        if (tracer == null || traceConfig == null || !traceConfig.isEnabled()) {
+            return invoker.invoke(invocation);
+        }
+        TraceContext parent = TraceContext.parse(invocation.getAttachment(TraceContext.HEADER));
+        Span span = tracer.startRoot("dubbo " + name, parent);
+        MDC.put(TraceServletFilter.TRACE_ID_MDC, span.getTraceId());
+        try (Tracer.Scope ignored = Tracer.activate(span)) {
+            Result result = invoker.invoke(invocation);
+            if (result.hasException()) {
+                span.error(result.getException());
+            }
+            return result;
+        } catch (RuntimeException e) {
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
+            MDC.remove(TraceServletFilter.TRACE_ID_MDC);
+        }
+    }
+
+    private Result invokeConsumer(Invoker<?> invoker, Invocation invocation, String name) {
+        Span span = Tracer.span("dubbo-client " + name);
+        if (span.isNoop()) {
+            return invoker.invoke(invocation);
+        }
+        invocation.setAttachment(TraceContext.HEADER, span.getContext().toTraceparent());
+        Result result;
+        try {
+            result = invoker.invoke(invocation);
+        } catch (RuntimeException e) {
+            span.error(e).end();
+            throw e;
+        }
+        result.whenCompleteWithContext((completed, e) -> {
+            if (e != null) {
+                span.error(e);
+            } else if (completed.hasException()) {
+                span.error(completed.getException());
+            }
+            span.end();
+        });
+        return result;
+    }
+}
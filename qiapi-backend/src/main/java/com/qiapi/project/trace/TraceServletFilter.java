@@ -0,0 +1,68 @@
+package com.qiapi.project.trace;
+
+import com.qiapi.project.config.TraceConfig;
+import com.qiapi.trace.Span;
+import com.qiapi.trace.TraceContext;
+import com.qiapi.trace.Tracer;
+import org.slf4j.MDC;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.annotation.Resource;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * HTTP 请求链路：按 traceparent 请求头延续网关或调用方的链路（没有时开始新链路），
+ * 请求处理期间 span 绑定到当前线程，traceId 写入 MDC 与响应头 {@value #TRACE_ID_HEADER}
+ *
+ * @author zhexueqi
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class TraceServletFilter extends OncePerRequestFilter {
+
+    public static final String TRACE_ID_HEADER = "X-Trace-Id";
+
+    /**
+     * MDC 中的链路ID
+     */
+    public static final String TRACE_ID_MDC = "traceId";
+
+    @Resource
+    private Tracer tracer;
+
+    @Resource
+    private TraceConfig traceConfig;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!traceConfig.isEnabled()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        TraceContext parent = TraceContext.parse(request.getHeader(TraceContext.HEADER));
+        Span span = tracer.startRoot("HTTP " + request.getMethod() + " " + request.getRequestURI(), parent);
+        response.setHeader(TRACE_ID_HEADER, span.getTraceId());
+        MDC.put(TRACE_ID_MDC, span.getTraceId());
+        try (Tracer.Scope ignored = Tracer.activate(span)) {
+            filterChain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            span.error(e);
+            throw e;
+        } finally {
+            span.tag("status", response.getStatus());
+            if (response.getStatus() >= 500) {
+                span.error("HTTP " + response.getStatus());
+            }
+            span.end();
+            MDC.remove(TRACE_ID_MDC);
+        }
+    }
+}
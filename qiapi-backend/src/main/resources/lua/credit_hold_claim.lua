@@ -0,0 +1,8 @@
+-- 预授权：取出并删除冻结记录，确认与释放只有一方能成功
+-- KEYS[1] 过期时间有序集合  KEYS[2] 冻结记录  ARGV[1] 冻结凭证
+if redis.call('ZREM', KEYS[1], ARGV[1]) == 0 then
+    return nil
+end
+local hold = redis.call('GET', KEYS[2])
+redis.call('DEL', KEYS[2])
+return hold
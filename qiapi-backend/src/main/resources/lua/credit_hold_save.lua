@@ -0,0 +1,5 @@
+-- 预授权：保存冻结记录并登记过期时间，两者同时写入，过期扫描一定能找到每条冻结记录
+-- KEYS[1] 过期时间有序集合  KEYS[2] 冻结记录  ARGV[1] 冻结凭证  ARGV[2] 冻结记录内容  ARGV[3] 过期时间戳(毫秒)
+redis.call('SET', KEYS[2], ARGV[2])
+redis.call('ZADD', KEYS[1], ARGV[3], ARGV[1])
+return 1
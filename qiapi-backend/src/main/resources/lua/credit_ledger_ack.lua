@@ -0,0 +1,12 @@
+-- 额度账本：确认一批流水已写入数据库
+-- KEYS[1] 处理中队列  KEYS[2] 待回写汇总  KEYS[3] 数据库额度版本  ARGV 依次为 字段、数量 成对出现
+-- 版本供加载余额时判断读取数据库之后数据库额度是否变化
+redis.call('DEL', KEYS[1])
+for i = 1, #ARGV, 2 do
+    local left = redis.call('HINCRBY', KEYS[2], ARGV[i], -tonumber(ARGV[i + 1]))
+    if left <= 0 then
+        redis.call('HDEL', KEYS[2], ARGV[i])
+    end
+end
+redis.call('INCR', KEYS[3])
+return 1
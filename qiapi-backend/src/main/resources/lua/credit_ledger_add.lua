@@ -0,0 +1,7 @@
+-- 额度账本：数据库增加额度后使缓存余额失效
+-- KEYS[1] 额度余额  KEYS[2] 数据库额度版本
+-- 不直接加到缓存余额上：提交与本脚本之间加载的余额已包含新增额度，再加会重复；
+-- 删除后下次使用时按数据库重新加载，版本变化使读取数据库早于提交的加载放弃写入
+redis.call('DEL', KEYS[1])
+redis.call('INCR', KEYS[2])
+return 1
@@ -0,0 +1,37 @@
+-- 额度账本：原子扣减（专用额度不足时回退到通用额度）
+-- KEYS[1] 专用额度余额  KEYS[2] 通用额度余额  KEYS[3] 流水队列  KEYS[4] 待回写汇总  KEYS[5] 流水序号
+-- ARGV[1] 数量  ARGV[2] 用户ID  ARGV[3] 接口ID  ARGV[4] 通用额度ID  ARGV[5] 当前时间戳(毫秒)  ARGV[6] 1-仅检查不扣减
+-- 返回：1 扣减专用额度  2 扣减通用额度  0 额度不足  -2 专用额度未加载  -3 通用额度未加载  -4 流水序号未初始化
+-- 余额为 -1 表示数据库中没有可用的额度记录
+local amount = tonumber(ARGV[1])
+local dedicated = redis.call('GET', KEYS[1])
+if not dedicated then
+    return -2
+end
+local key = KEYS[1]
+local interfaceId = ARGV[3]
+local result = 1
+if tonumber(dedicated) < amount then
+    local common = redis.call('GET', KEYS[2])
+    if not common then
+        return -3
+    end
+    if tonumber(common) < amount then
+        return 0
+    end
+    key = KEYS[2]
+    interfaceId = ARGV[4]
+    result = 2
+end
+if ARGV[6] == '1' then
+    return result
+end
+-- 序号丢失（Redis 重置）时不能从 1 重新计数，否则新流水的序号不大于回写检查点而被跳过
+if redis.call('EXISTS', KEYS[5]) == 0 then
+    return -4
+end
+local after = redis.call('DECRBY', key, amount)
+local seq = redis.call('INCR', KEYS[5])
+redis.call('RPUSH', KEYS[3], seq .. ':' .. ARGV[2] .. ':' .. interfaceId .. ':' .. amount .. ':' .. (after + amount) .. ':' .. ARGV[5])
+redis.call('HINCRBY', KEYS[4], ARGV[2] .. ':' .. interfaceId, amount)
+return result
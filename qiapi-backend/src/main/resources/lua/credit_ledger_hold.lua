@@ -0,0 +1,27 @@
+-- 额度账本：预授权冻结额度（专用额度不足时回退到通用额度），冻结部分计入冻结汇总，不写流水
+-- KEYS[1] 专用额度余额  KEYS[2] 通用额度余额  KEYS[3] 冻结汇总
+-- ARGV[1] 数量  ARGV[2] 用户ID  ARGV[3] 接口ID  ARGV[4] 通用额度ID
+-- 返回：{ 结果, 冻结前余额 }，结果含义同 credit_ledger_consume.lua
+local amount = tonumber(ARGV[1])
+local dedicated = redis.call('GET', KEYS[1])
+if not dedicated then
+    return { -2, 0 }
+end
+local key = KEYS[1]
+local interfaceId = ARGV[3]
+local result = 1
+if tonumber(dedicated) < amount then
+    local common = redis.call('GET', KEYS[2])
+    if not common then
+        return { -3, 0 }
+    end
+    if tonumber(common) < amount then
+        return { 0, 0 }
+    end
+    key = KEYS[2]
+    interfaceId = ARGV[4]
+    result = 2
+end
+local after = redis.call('DECRBY', key, amount)
+redis.call('HINCRBY', KEYS[3], ARGV[2] .. ':' .. interfaceId, amount)
+return { result, after + amount }
@@ -0,0 +1,21 @@
+-- 额度账本：按数据库剩余额度加载缓存余额
+-- KEYS[1] 额度余额  KEYS[2] 待回写汇总  KEYS[3] 冻结汇总  KEYS[4] 处理中队列  KEYS[5] 数据库额度版本
+-- ARGV[1] 字段  ARGV[2] 数据库剩余额度（-1 表示没有可用记录）  ARGV[3] 读取数据库前的版本
+-- 已加载时不覆盖。版本未变且处理中队列为空说明读取数据库之后没有流水落库、没有增加额度，数据库剩余额度与待回写数量对应同一时刻；
+-- 否则不加载，返回 false。缓存余额 = 数据库剩余额度 - 待回写 - 预授权冻结，保持账本不变式
+if redis.call('EXISTS', KEYS[1]) == 1 then
+    return 1
+end
+if (redis.call('GET', KEYS[5]) or '0') ~= ARGV[3] or redis.call('EXISTS', KEYS[4]) == 1 then
+    return false
+end
+local db = tonumber(ARGV[2])
+if db < 0 then
+    redis.call('SET', KEYS[1], -1)
+    return 1
+end
+local pending = tonumber(redis.call('HGET', KEYS[2], ARGV[1]) or '0')
+local held = tonumber(redis.call('HGET', KEYS[3], ARGV[1]) or '0')
+-- 负数表示没有可用记录，不一致时按 0 加载，由对账修正
+redis.call('SET', KEYS[1], math.max(db - pending - held, 0))
+return 1
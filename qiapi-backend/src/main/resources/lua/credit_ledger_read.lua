@@ -0,0 +1,10 @@
+-- 额度账本：原子读取缓存余额与未落库数量（对账用）
+-- KEYS[1] 额度余额  KEYS[2] 待回写汇总  KEYS[3] 冻结汇总  ARGV[1] 字段
+-- 未落库数量 = 待回写 + 预授权冻结
+local balance = redis.call('GET', KEYS[1])
+if not balance then
+    return nil
+end
+local pending = tonumber(redis.call('HGET', KEYS[2], ARGV[1]) or '0')
+local held = tonumber(redis.call('HGET', KEYS[3], ARGV[1]) or '0')
+return { balance, tostring(pending + held) }
@@ -0,0 +1,17 @@
+-- 额度账本：按数据库余额修正缓存余额
+-- KEYS[1] 额度余额  KEYS[2] 待回写汇总  KEYS[3] 冻结汇总  KEYS[4] 任务锁  KEYS[5] 处理中队列
+-- ARGV[1] 字段  ARGV[2] 数据库剩余额度（-1 表示没有可用记录）  ARGV[3] 对账任务持有的锁标识
+-- 锁仍由对账任务持有说明读取数据库之后没有其他实例回写，处理中队列为空说明没有已落库未确认的流水，
+-- 此时数据库剩余额度与待回写数量对应同一时刻；否则不修正，返回 false
+if redis.call('GET', KEYS[4]) ~= ARGV[3] or redis.call('EXISTS', KEYS[5]) == 1 then
+    return false
+end
+local db = tonumber(ARGV[2])
+if db < 0 then
+    redis.call('SET', KEYS[1], -1)
+    return -1
+end
+local pending = tonumber(redis.call('HGET', KEYS[2], ARGV[1]) or '0')
+local held = tonumber(redis.call('HGET', KEYS[3], ARGV[1]) or '0')
+redis.call('SET', KEYS[1], db - pending - held)
+return db - pending - held
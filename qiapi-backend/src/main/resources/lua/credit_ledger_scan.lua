@@ -0,0 +1,7 @@
+-- 额度账本：从游标处继续遍历缓存余额（对账用）
+-- ARGV[1] 游标  ARGV[2] 匹配模式  ARGV[3] 每批数量
+-- 返回：{ 下一次的游标, 余额键... }，游标为 0 表示已遍历完
+local result = redis.call('SCAN', ARGV[1], 'MATCH', ARGV[2], 'COUNT', ARGV[3])
+local keys = result[2]
+table.insert(keys, 1, result[1])
+return keys
@@ -0,0 +1,15 @@
+-- 额度账本：预授权确认扣减，冻结额度转为待回写流水
+-- KEYS[1] 冻结汇总  KEYS[2] 流水队列  KEYS[3] 待回写汇总  KEYS[4] 流水序号
+-- ARGV[1] 数量  ARGV[2] 用户ID  ARGV[3] 实际扣减的接口ID  ARGV[4] 冻结前余额  ARGV[5] 当前时间戳(毫秒)
+-- 返回：流水序号  -4 流水序号未初始化（未做任何修改）
+if redis.call('EXISTS', KEYS[4]) == 0 then
+    return -4
+end
+local field = ARGV[2] .. ':' .. ARGV[3]
+if redis.call('HINCRBY', KEYS[1], field, -tonumber(ARGV[1])) <= 0 then
+    redis.call('HDEL', KEYS[1], field)
+end
+local seq = redis.call('INCR', KEYS[4])
+redis.call('RPUSH', KEYS[2], seq .. ':' .. field .. ':' .. ARGV[1] .. ':' .. ARGV[4] .. ':' .. ARGV[5])
+redis.call('HINCRBY', KEYS[3], field, ARGV[1])
+return seq
@@ -0,0 +1,14 @@
+-- 额度账本：取出一批待回写流水，移入处理中队列
+-- KEYS[1] 流水队列  KEYS[2] 处理中队列  ARGV[1] 批大小
+-- 上一批尚未确认（回写中途失败或进程退出）时原样返回上一批，保证至少回写一次
+if redis.call('EXISTS', KEYS[2]) == 1 then
+    return redis.call('LRANGE', KEYS[2], 0, -1)
+end
+local size = tonumber(ARGV[1])
+local batch = redis.call('LRANGE', KEYS[1], 0, size - 1)
+if #batch == 0 then
+    return batch
+end
+redis.call('LTRIM', KEYS[1], #batch, -1)
+redis.call('RPUSH', KEYS[2], unpack(batch))
+return batch
@@ -0,0 +1,10 @@
+-- 额度账本：释放预授权冻结的额度
+-- KEYS[1] 额度余额  KEYS[2] 冻结汇总  ARGV[1] 数量  ARGV[2] 字段
+if redis.call('HINCRBY', KEYS[2], ARGV[2], -tonumber(ARGV[1])) <= 0 then
+    redis.call('HDEL', KEYS[2], ARGV[2])
+end
+local balance = redis.call('GET', KEYS[1])
+if balance and tonumber(balance) >= 0 then
+    redis.call('INCRBY', KEYS[1], ARGV[1])
+end
+return 1
@@ -0,0 +1,5 @@
+-- 释放额度账本分布式锁（仅持有者可释放）
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
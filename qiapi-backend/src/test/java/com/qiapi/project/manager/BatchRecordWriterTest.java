@@ -0,0 +1,180 @@
+package com.qiapi.project.manager;
+
+import lombok.Data;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 记录批量写入器测试：崩溃后从 WAL 重放
+ *
+ * @author zhexueqi
+ */
+class BatchRecordWriterTest {
+
+    private static final String NAME = "test_records";
+
+    private volatile String lastNote;
+
+    @TempDir
+    Path walDir;
+
+    @Test
+    void replaysRecordsBeyondCheckpointAfterCrash() throws Exception {
+        // 第一批正常写入，之后写库一直卡住，模拟进程在写库途中崩溃
+        List<Long> firstRun = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch crashed = new CountDownLatch(1);
+        Consumer<List<TestRecord>> stuckAfterFirstBatch = records -> {
+            if (firstRun.isEmpty()) {
+                records.forEach(record -> firstRun.add(record.getId()));
+                return;
+            }
+            try {
+                crashed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("进程已崩溃");
+        };
+        BatchRecordWriter<TestRecord> crashing = newWriter(stuckAfterFirstBatch, 2);
+        crashing.write(record(1));
+        crashing.write(record(2));
+        waitUntil(() -> firstRun.size() == 2 && checkpoint() == 2L);
+        crashing.write(record(3));
+        crashing.write(record(4));
+        // 追加 WAL 是同步的，write 返回后记录已写入文件
+        crashing.write(record(5));
+
+        // 不关闭旧写入器，直接在同一目录上启动新的写入器；进程崩溃时操作系统释放 WAL 锁
+        ((FileChannel) ReflectionTestUtils.getField(crashing, "lockChannel")).close();
+        List<Long> replayed = Collections.synchronizedList(new ArrayList<>());
+        BatchRecordWriter<TestRecord> restarted = newWriter(recorder(replayed), 10);
+        try {
+            waitUntil(() -> replayed.size() == 3);
+            Assertions.assertEquals(Arrays.asList(3L, 4L, 5L), replayed);
+            Assertions.assertEquals(3L, restarted.stats().getReplayed());
+            Assertions.assertEquals("记录5", lastNote);
+            // 新记录的序号接在 WAL 之后
+            restarted.write(record(6));
+            waitUntil(() -> replayed.size() == 4 && checkpoint() == 6L);
+        } finally {
+            restarted.close();
+            crashed.countDown();
+            crashing.close();
+        }
+    }
+
+    @Test
+    void skipsTornLastLineWithoutLosingLaterRecords() throws Exception {
+        Files.write(walDir.resolve(NAME + ".ckpt"), "1".getBytes(StandardCharsets.UTF_8));
+        String wal = "1\t{\"id\":1}\n2\t{\"id\":2}\n3\t{\"id\":3}\n4\t{\"id\":";
+        Files.write(walDir.resolve(NAME + ".wal"), wal.getBytes(StandardCharsets.UTF_8));
+        // 写库失败，记录只留在 WAL 中
+        BatchRecordWriter<TestRecord> failing = newWriter(records -> {
+            throw new IllegalStateException("数据库不可用");
+        }, 10);
+        Assertions.assertEquals(2L, failing.stats().getReplayed());
+        failing.write(record(7));
+        failing.close();
+
+        // 再次崩溃恢复：残行之后追加的记录不能与残行拼在一起而丢失
+        List<Long> replayed = Collections.synchronizedList(new ArrayList<>());
+        BatchRecordWriter<TestRecord> restarted = newWriter(recorder(replayed), 10);
+        try {
+            waitUntil(() -> replayed.size() == 3);
+            Assertions.assertEquals(Arrays.asList(2L, 3L, 7L), replayed);
+        } finally {
+            restarted.close();
+        }
+    }
+
+    @Test
+    void cleanShutdownLeavesNothingToReplay() throws Exception {
+        List<Long> written = Collections.synchronizedList(new ArrayList<>());
+        BatchRecordWriter<TestRecord> writer = newWriter(recorder(written), 2);
+        for (long id = 1; id <= 5; id++) {
+            writer.write(record(id));
+        }
+        writer.close();
+        Assertions.assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), written);
+        Assertions.assertEquals(5L, checkpoint());
+        Assertions.assertEquals(0L, Files.size(walDir.resolve(NAME + ".wal")));
+
+        List<Long> replayed = Collections.synchronizedList(new ArrayList<>());
+        BatchRecordWriter<TestRecord> restarted = newWriter(recorder(replayed), 2);
+        restarted.close();
+        Assertions.assertTrue(replayed.isEmpty());
+        Assertions.assertEquals(0L, restarted.stats().getReplayed());
+    }
+
+    @Test
+    void refusesWalDirLockedByAnotherWriter() {
+        BatchRecordWriter<TestRecord> running = newWriter(recorder(new ArrayList<>()), 10);
+        try {
+            IllegalStateException error = Assertions.assertThrows(IllegalStateException.class,
+                    () -> newWriter(recorder(new ArrayList<>()), 10));
+            Assertions.assertTrue(error.getMessage().contains("已被其他实例使用"), error.getMessage());
+        } finally {
+            running.close();
+        }
+        // 关闭后锁释放，可以重新启动
+        newWriter(recorder(new ArrayList<>()), 10).close();
+    }
+
+    private Consumer<List<TestRecord>> recorder(List<Long> ids) {
+        return records -> records.forEach(record -> {
+            lastNote = record.getNote();
+            ids.add(record.getId());
+        });
+    }
+
+    private BatchRecordWriter<TestRecord> newWriter(Consumer<List<TestRecord>> inserter, int batchSize) {
+        return new BatchRecordWriter<>(NAME, TestRecord.class, inserter, batchSize, 10, 100, 50, walDir);
+    }
+
+    private long checkpoint() {
+        try {
+            Path path = walDir.resolve(NAME + ".ckpt");
+            return Files.exists(path) ? Long.parseLong(new String(Files.readAllBytes(path), StandardCharsets.UTF_8).trim()) : 0L;
+        } catch (Exception e) {
+            return -1L;
+        }
+    }
+
+    private static void waitUntil(Supplier<Boolean> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (!condition.get()) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            Thread.sleep(10);
+        }
+    }
+
+    private static TestRecord record(long id) {
+        TestRecord record = new TestRecord();
+        record.setId(id);
+        record.setNote("记录" + id);
+        return record;
+    }
+
+    @Data
+    public static class TestRecord {
+
+        private Long id;
+
+        private String note;
+    }
+}
@@ -0,0 +1,346 @@
+package com.qiapi.project.manager;
+
+import com.qiapi.project.config.CreditLedgerConfig;
+import com.qiapi.project.job.CreditLedgerSyncJob;
+import com.qiapi.project.mapper.CreditLedgerMapper;
+import com.qiapi.project.mapper.CreditRecordMapper;
+import com.qiapi.project.model.dto.credit.CreditLedgerEntry;
+import com.qiapi.qiapicommon.model.entity.CreditRecord;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static com.qiapi.project.constant.CreditConstant.COMMON_CREDIT_ID;
+
+/**
+ * 额度账本测试：在嵌入式 Redis 上执行 Lua 脚本，数据库用内存中的剩余额度与检查点代替
+ * <p>
+ * 每次回写确认后校验不变式：缓存余额 + 待回写数量 + 预授权冻结数量 = 数据库剩余额度
+ *
+ * @author zhexueqi
+ */
+class CreditLedgerTest {
+
+    private static final long USER_ID = 1L;
+
+    private static final long INTERFACE_ID = 10L;
+
+    private static RedisServer redisServer;
+
+    private static LettuceConnectionFactory connectionFactory;
+
+    private static StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 数据库剩余额度，key 为 用户ID:接口ID
+     */
+    private Map<String, Long> db;
+
+    private Long checkpoint;
+
+    private List<CreditRecord> records;
+
+    private CreditLedgerManager ledger;
+
+    private CreditLedgerMapper creditLedgerMapper;
+
+    private CreditRecordMapper creditRecordMapper;
+
+    private CreditLedgerSyncJob syncJob;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        stringRedisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.serverCommands().flushDb();
+            return null;
+        });
+        db = new HashMap<>();
+        checkpoint = null;
+        records = new ArrayList<>();
+
+        CreditLedgerConfig config = new CreditLedgerConfig();
+        config.setEnabled(true);
+        config.setFlushBatchSize(2);
+
+        creditLedgerMapper = Mockito.mock(CreditLedgerMapper.class);
+        Mockito.when(creditLedgerMapper.selectCheckpoint()).thenAnswer(invocation -> checkpoint);
+        Mockito.when(creditLedgerMapper.updateCheckpoint(Mockito.anyLong())).thenAnswer(invocation -> {
+            checkpoint = invocation.getArgument(0);
+            return 1;
+        });
+        Mockito.when(creditLedgerMapper.applyDeductions(Mockito.anyList())).thenAnswer(invocation -> {
+            List<CreditLedgerEntry> deductions = invocation.getArgument(0);
+            deductions.forEach(entry -> db.merge(field(entry.getUserId(), entry.getInterfaceId()),
+                    -entry.getAmount(), Long::sum));
+            return deductions.size();
+        });
+        creditRecordMapper = Mockito.mock(CreditRecordMapper.class);
+        Mockito.when(creditRecordMapper.insertBatch(Mockito.anyList())).thenAnswer(invocation -> {
+            List<CreditRecord> batch = invocation.getArgument(0);
+            records.addAll(batch);
+            return batch.size();
+        });
+
+        ledger = Mockito.spy(new CreditLedgerManager());
+        ReflectionTestUtils.setField(ledger, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(ledger, "creditLedgerMapper", creditLedgerMapper);
+        ReflectionTestUtils.setField(ledger, "creditLedgerConfig", config);
+        Mockito.doAnswer(invocation -> db.getOrDefault(
+                        field(invocation.getArgument(0), invocation.getArgument(1)), -1L))
+                .when(ledger).loadRemaining(Mockito.anyLong(), Mockito.anyLong());
+        ledger.init();
+
+        syncJob = new CreditLedgerSyncJob();
+        ReflectionTestUtils.setField(syncJob, "creditLedgerManager", ledger);
+        ReflectionTestUtils.setField(syncJob, "creditLedgerMapper", creditLedgerMapper);
+        ReflectionTestUtils.setField(syncJob, "creditRecordMapper", creditRecordMapper);
+        ReflectionTestUtils.setField(syncJob, "transactionTemplate", transactionTemplate());
+        ReflectionTestUtils.setField(syncJob, "creditLedgerConfig", config);
+    }
+
+    @Test
+    void consumeFallsBackToCommonCredit() {
+        db.put(field(USER_ID, INTERFACE_ID), 3L);
+        db.put(field(USER_ID, COMMON_CREDIT_ID), 10L);
+
+        Assertions.assertTrue(ledger.consume(USER_ID, INTERFACE_ID, 2L));
+        // 专用额度只剩 1，回退到通用额度
+        Assertions.assertTrue(ledger.consume(USER_ID, INTERFACE_ID, 2L));
+        Assertions.assertFalse(ledger.consume(USER_ID, INTERFACE_ID, 100L));
+        Assertions.assertArrayEquals(new long[]{1L, 8L}, ledger.balances(USER_ID, INTERFACE_ID));
+
+        syncJob.flush();
+        Assertions.assertEquals(1L, db.get(field(USER_ID, INTERFACE_ID)));
+        Assertions.assertEquals(8L, db.get(field(USER_ID, COMMON_CREDIT_ID)));
+        assertInvariant(USER_ID, INTERFACE_ID);
+        assertInvariant(USER_ID, COMMON_CREDIT_ID);
+    }
+
+    @Test
+    void flushWritesEveryEntryOnceAndAcks() {
+        db.put(field(USER_ID, INTERFACE_ID), 10L);
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertTrue(ledger.consume(USER_ID, INTERFACE_ID, 1L));
+        }
+        // 回写前数据库未变，差额全部在待回写数量中
+        Assertions.assertEquals(10L, db.get(field(USER_ID, INTERFACE_ID)));
+        assertInvariant(USER_ID, INTERFACE_ID);
+
+        // 批大小为 2，一次任务分三批回写
+        syncJob.flush();
+        Assertions.assertEquals(5L, db.get(field(USER_ID, INTERFACE_ID)));
+        Assertions.assertEquals(5, records.size());
+        Assertions.assertEquals(5L, checkpoint);
+        Assertions.assertArrayEquals(new long[]{5L, 0L}, ledger.readBalance(USER_ID, INTERFACE_ID));
+        Assertions.assertTrue(ledger.takeBatch().isEmpty());
+        assertInvariant(USER_ID, INTERFACE_ID);
+    }
+
+    @Test
+    void replaysUnackedBatchWithoutDeductingTwice() {
+        db.put(field(USER_ID, INTERFACE_ID), 10L);
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertTrue(ledger.consume(USER_ID, INTERFACE_ID, 1L));
+        }
+        // 第一批落库后、确认前进程退出
+        Mockito.doThrow(new IllegalStateException("进程已崩溃")).doCallRealMethod()
+                .when(ledger).ackBatch(Mockito.anyList());
+        syncJob.flush();
+        Assertions.assertEquals(8L, db.get(field(USER_ID, INTERFACE_ID)));
+        Assertions.assertEquals(2L, checkpoint);
+        Assertions.assertEquals(2, records.size());
+
+        Assertions.assertTrue(ledger.consume(USER_ID, INTERFACE_ID, 1L));
+        // 重新取出未确认的一批，序号不大于检查点的流水跳过，只确认
+        syncJob.flush();
+        Assertions.assertEquals(6L, db.get(field(USER_ID, INTERFACE_ID)));
+        Assertions.assertEquals(4L, checkpoint);
+        Assertions.assertEquals(4, records.size());
+        assertInvariant(USER_ID, INTERFACE_ID);
+    }
+
+    @Test
+    void rollsBackAndRetriesWhenDatabaseWriteFails() {
+        db.put(field(USER_ID, INTERFACE_ID), 10L);
+        Assertions.assertTrue(ledger.consume(USER_ID, INTERFACE_ID, 3L));
+        Mockito.doThrow(new IllegalStateException("写入流水失败")).doAnswer(invocation -> {
+            List<CreditRecord> batch = invocation.getArgument(0);
+            records.addAll(batch);
+            return batch.size();
+        }).when(creditRecordMapper).insertBatch(Mockito.anyList());
+
+        syncJob.flush();
+        // 事务回滚，扣减与检查点都未写入，流水仍在处理中
+        Assertions.assertEquals(10L, db.get(field(USER_ID, INTERFACE_ID)));
+        Assertions.assertNull(checkpoint);
+
+        syncJob.flush();
+        Assertions.assertEquals(7L, db.get(field(USER_ID, INTERFACE_ID)));
+        Assertions.assertEquals(1, records.size());
+        assertInvariant(USER_ID, INTERFACE_ID);
+    }
+
+    @Test
+    void reloadSubtractsPendingAndHeld() {
+        db.put(field(USER_ID, INTERFACE_ID), 100L);
+        db.put(field(USER_ID, COMMON_CREDIT_ID), 0L);
+        Assertions.assertTrue(ledger.consume(USER_ID, INTERFACE_ID, 2L));
+        long[] hold = ledger.hold(USER_ID, INTERFACE_ID, 3L);
+        Assertions.assertNotNull(hold);
+        Assertions.assertEquals(INTERFACE_ID, hold[0]);
+        Assertions.assertArrayEquals(new long[]{95L, 5L}, ledger.readBalance(USER_ID, INTERFACE_ID));
+
+        // 缓存余额丢失（过期或被淘汰）后重新加载
+        stringRedisTemplate.delete("credit:ledger:balance:" + field(USER_ID, INTERFACE_ID));
+        Assertions.assertEquals(95L, ledger.balances(USER_ID, INTERFACE_ID)[0]);
+        assertInvariant(USER_ID, INTERFACE_ID);
+
+        ledger.settle(USER_ID, INTERFACE_ID, 3L, hold[1]);
+        syncJob.flush();
+        Assertions.assertEquals(95L, db.get(field(USER_ID, INTERFACE_ID)));
+        Assertions.assertArrayEquals(new long[]{95L, 0L}, ledger.readBalance(USER_ID, INTERFACE_ID));
+        assertInvariant(USER_ID, INTERFACE_ID);
+    }
+
+    @Test
+    void doesNotLoadWhileBatchIsUnacked() {
+        db.put(field(USER_ID, INTERFACE_ID), 10L);
+        db.put(field(USER_ID, COMMON_CREDIT_ID), 0L);
+        Assertions.assertTrue(ledger.consume(USER_ID, INTERFACE_ID, 1L));
+        Mockito.doThrow(new IllegalStateException("进程已崩溃")).doCallRealMethod()
+                .when(ledger).ackBatch(Mockito.anyList());
+        syncJob.flush();
+        stringRedisTemplate.delete("credit:ledger:balance:" + field(USER_ID, INTERFACE_ID));
+
+        // 数据库已扣减而待回写数量未确认，此时加载会少算一次
+        Assertions.assertEquals(-1L, ledger.balances(USER_ID, INTERFACE_ID)[0]);
+        Assertions.assertNull(ledger.readBalance(USER_ID, INTERFACE_ID));
+
+        syncJob.flush();
+        Assertions.assertEquals(9L, ledger.balances(USER_ID, INTERFACE_ID)[0]);
+        assertInvariant(USER_ID, INTERFACE_ID);
+    }
+
+    @Test
+    void creditAddedReloadsFromDatabase() {
+        db.put(field(USER_ID, INTERFACE_ID), 10L);
+        db.put(field(USER_ID, COMMON_CREDIT_ID), 0L);
+        Assertions.assertTrue(ledger.consume(USER_ID, INTERFACE_ID, 4L));
+
+        db.merge(field(USER_ID, INTERFACE_ID), 50L, Long::sum);
+        ledger.onCreditAdded(USER_ID, INTERFACE_ID);
+        Assertions.assertEquals(56L, ledger.balances(USER_ID, INTERFACE_ID)[0]);
+        assertInvariant(USER_ID, INTERFACE_ID);
+
+        syncJob.flush();
+        Assertions.assertEquals(56L, db.get(field(USER_ID, INTERFACE_ID)));
+        assertInvariant(USER_ID, INTERFACE_ID);
+    }
+
+    @Test
+    void creditAddedDuringLoadIsNotLost() {
+        db.put(field(USER_ID, INTERFACE_ID), 10L);
+        db.put(field(USER_ID, COMMON_CREDIT_ID), 0L);
+        // 读取数据库之后、写入缓存之前充值提交
+        AtomicBoolean raced = new AtomicBoolean();
+        Mockito.doAnswer(invocation -> {
+            String key = field(invocation.getArgument(0), invocation.getArgument(1));
+            long remaining = db.getOrDefault(key, -1L);
+            if (key.equals(field(USER_ID, INTERFACE_ID)) && raced.compareAndSet(false, true)) {
+                db.merge(key, 50L, Long::sum);
+                ledger.onCreditAdded(USER_ID, INTERFACE_ID);
+            }
+            return remaining;
+        }).when(ledger).loadRemaining(Mockito.anyLong(), Mockito.anyLong());
+
+        Assertions.assertEquals(60L, ledger.balances(USER_ID, INTERFACE_ID)[0]);
+        assertInvariant(USER_ID, INTERFACE_ID);
+    }
+
+    @Test
+    void reconcileRepairsDriftedBalance() {
+        db.put(field(USER_ID, INTERFACE_ID), 10L);
+        db.put(field(USER_ID, COMMON_CREDIT_ID), 0L);
+        Assertions.assertTrue(ledger.consume(USER_ID, INTERFACE_ID, 2L));
+        syncJob.flush();
+        Assertions.assertTrue(ledger.consume(USER_ID, INTERFACE_ID, 1L));
+        stringRedisTemplate.opsForValue().set("credit:ledger:balance:" + field(USER_ID, INTERFACE_ID), "999");
+
+        syncJob.reconcile();
+        Assertions.assertArrayEquals(new long[]{7L, 1L}, ledger.readBalance(USER_ID, INTERFACE_ID));
+        assertInvariant(USER_ID, INTERFACE_ID);
+    }
+
+    /**
+     * 事务模板：回调抛出异常时恢复内存数据库，模拟回滚
+     */
+    @SuppressWarnings("unchecked")
+    private TransactionTemplate transactionTemplate() {
+        TransactionTemplate transactionTemplate = Mockito.mock(TransactionTemplate.class);
+        Mockito.doAnswer(invocation -> {
+            Map<String, Long> dbSnapshot = new HashMap<>(db);
+            Long checkpointSnapshot = checkpoint;
+            int recordCount = records.size();
+            try {
+                ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(Mockito.mock(TransactionStatus.class));
+            } catch (RuntimeException e) {
+                db = dbSnapshot;
+                checkpoint = checkpointSnapshot;
+                records.subList(recordCount, records.size()).clear();
+                throw e;
+            }
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(Mockito.any());
+        return transactionTemplate;
+    }
+
+    private void assertInvariant(long userId, long interfaceId) {
+        long[] cached = ledger.readBalance(userId, interfaceId);
+        Assertions.assertNotNull(cached, "缓存余额未加载");
+        Assertions.assertEquals(db.get(field(userId, interfaceId)), cached[0] + cached[1],
+                "缓存余额 + 待回写 + 冻结 应等于数据库剩余额度");
+    }
+
+    private static String field(long userId, long interfaceId) {
+        return userId + ":" + interfaceId;
+    }
+}
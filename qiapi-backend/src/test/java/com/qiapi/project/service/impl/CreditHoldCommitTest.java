@@ -0,0 +1,119 @@
+package com.qiapi.project.service.impl;
+
+import com.qiapi.project.common.ErrorCode;
+import com.qiapi.project.exception.BusinessException;
+import com.qiapi.project.manager.CreditHoldManager;
+import com.qiapi.project.manager.CreditLedgerManager;
+import com.qiapi.project.model.dto.credit.CreditHold;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * 额度预授权确认与释放测试：结算或退回失败时冻结记录放回，不会永久冻结
+ *
+ * @author zhexueqi
+ */
+class CreditHoldCommitTest {
+
+    private static final String TOKEN = "token-1";
+
+    private CreditHoldManager creditHoldManager;
+
+    private CreditLedgerManager creditLedgerManager;
+
+    private CreditServiceImpl creditService;
+
+    @BeforeEach
+    void setUp() {
+        creditHoldManager = Mockito.mock(CreditHoldManager.class);
+        creditLedgerManager = Mockito.mock(CreditLedgerManager.class);
+        creditService = new CreditServiceImpl();
+        ReflectionTestUtils.setField(creditService, "creditHoldManager", creditHoldManager);
+        ReflectionTestUtils.setField(creditService, "creditLedgerManager", creditLedgerManager);
+    }
+
+    @Test
+    void commitSettlesAndReturnsRemainder() {
+        Mockito.when(creditHoldManager.claim(TOKEN)).thenReturn(hold(10L));
+        Assertions.assertTrue(creditService.commitCredit(TOKEN, 3L));
+        Mockito.verify(creditLedgerManager).settle(1L, 2L, 3L, 100L);
+        Mockito.verify(creditLedgerManager).unhold(1L, 2L, 7L);
+        Mockito.verify(creditHoldManager, Mockito.never()).restore(Mockito.any());
+    }
+
+    @Test
+    void restoresWholeHoldWhenSettleFails() {
+        Mockito.when(creditHoldManager.claim(TOKEN)).thenReturn(hold(10L));
+        Mockito.doThrow(new BusinessException(ErrorCode.SYSTEM_ERROR, "额度结算失败"))
+                .when(creditLedgerManager).settle(1L, 2L, 3L, 100L);
+        Assertions.assertThrows(BusinessException.class, () -> creditService.commitCredit(TOKEN, 3L));
+        CreditHold restored = restored();
+        Assertions.assertEquals(TOKEN, restored.getToken());
+        Assertions.assertEquals(10L, restored.getAmount(), "结算失败时放回全部冻结额度");
+        Assertions.assertNotEquals(Boolean.TRUE, restored.getSettled());
+        Mockito.verify(creditLedgerManager, Mockito.never()).unhold(Mockito.anyLong(), Mockito.anyLong(),
+                Mockito.anyLong());
+    }
+
+    @Test
+    void restoresOnlyRemainderWhenUnholdFailsAfterSettle() {
+        Mockito.when(creditHoldManager.claim(TOKEN)).thenReturn(hold(10L));
+        Mockito.doThrow(new IllegalStateException("redis down"))
+                .when(creditLedgerManager).unhold(1L, 2L, 7L);
+        Assertions.assertThrows(IllegalStateException.class, () -> creditService.commitCredit(TOKEN, 3L));
+        CreditHold restored = restored();
+        Assertions.assertEquals(7L, restored.getAmount());
+        Assertions.assertEquals(Boolean.TRUE, restored.getSettled());
+
+        // 再次确认只退回余量，不重复结算
+        Mockito.reset(creditLedgerManager);
+        Mockito.when(creditHoldManager.claim(TOKEN)).thenReturn(restored);
+        Assertions.assertTrue(creditService.commitCredit(TOKEN, 3L));
+        Mockito.verify(creditLedgerManager, Mockito.never()).settle(Mockito.anyLong(), Mockito.anyLong(),
+                Mockito.anyLong(), Mockito.anyLong());
+        Mockito.verify(creditLedgerManager).unhold(1L, 2L, 7L);
+    }
+
+    @Test
+    void restoresHoldWhenReleaseFails() {
+        Mockito.when(creditHoldManager.claim(TOKEN)).thenReturn(hold(10L));
+        Mockito.doThrow(new IllegalStateException("redis down"))
+                .when(creditLedgerManager).unhold(1L, 2L, 10L);
+        IllegalStateException restoreError = new IllegalStateException("restore failed");
+        Mockito.doThrow(restoreError).when(creditHoldManager).restore(Mockito.any());
+        IllegalStateException error = Assertions.assertThrows(IllegalStateException.class,
+                () -> creditService.releaseCredit(TOKEN));
+        Assertions.assertEquals("redis down", error.getMessage(), "应抛出释放失败的原因");
+        Assertions.assertSame(restoreError, error.getSuppressed()[0]);
+        Assertions.assertEquals(10L, restored().getAmount());
+    }
+
+    @Test
+    void claimedTwiceCommitsOnce() {
+        Mockito.when(creditHoldManager.claim(TOKEN)).thenReturn(hold(10L), (CreditHold) null);
+        Assertions.assertTrue(creditService.commitCredit(TOKEN));
+        Assertions.assertFalse(creditService.commitCredit(TOKEN));
+        Mockito.verify(creditLedgerManager).settle(1L, 2L, 10L, 100L);
+    }
+
+    private CreditHold restored() {
+        ArgumentCaptor<CreditHold> captor = ArgumentCaptor.forClass(CreditHold.class);
+        Mockito.verify(creditHoldManager).restore(captor.capture());
+        return captor.getValue();
+    }
+
+    private static CreditHold hold(long amount) {
+        CreditHold hold = new CreditHold();
+        hold.setToken(TOKEN);
+        hold.setUserId(1L);
+        hold.setInterfaceId(2L);
+        hold.setAmount(amount);
+        hold.setBalanceBefore(100L);
+        hold.setLedger(true);
+        return hold;
+    }
+}
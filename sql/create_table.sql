@@ -28,6 +28,9 @@ create table user
 )
     comment '用户' collate = utf8mb4_unicode_ci;
 
+-- 网关按 accessKey 查询调用用户
+create index idx_accessKey on user (accessKey);
+
 
 
 -- 接口信息表
@@ -42,12 +45,54 @@ create table if not exists qiapi.`interface_info`
     `responseHeader` text null comment '响应头',
     `status` tinyint default 0 not null comment '接口状态 0-关闭 1-开启',
     `method` varchar(256) not null comment '请求类型',
+    `breakerFailureRate` int null comment '熔断失败率阈值（%），为空时使用网关默认值',
+    `breakerSlowCallRate` int null comment '熔断慢调用比例阈值（%），为空时使用网关默认值',
+    `breakerSlowCallMillis` int null comment '慢调用耗时阈值（毫秒），为空时使用网关默认值',
+    `maxConcurrentCalls` int null comment '网关最大并发调用数，为空时使用网关默认值',
+    `cacheTtlSeconds` int null comment '网关缓存 GET 响应的秒数，为空或 0 时不缓存',
+    `upstreamConnectTimeoutMillis` int null comment '网关连接上游的超时时间（毫秒），为空时使用网关默认值',
+    `upstreamResponseTimeoutMillis` int null comment '网关等待上游响应的超时时间（毫秒），为空时使用网关默认值',
     `userId` bigint not null comment '创建人ID',
     `createTime` datetime default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP comment '创建时间',
     `updateTime` datetime default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP comment '更新时间',
     `isDelete` tinyint default 0 not null comment '用户名'
 ) comment '接口信息表';
 
+-- 网关按 url + method 查询接口
+create index idx_url_method on qiapi.`interface_info` (`url`(255), `method`(16));
+-- 网关按更新时间增量刷新动态路由
+create index idx_updateTime on qiapi.`interface_info` (`updateTime`);
+
+-- 已有数据库升级：接口熔断与并发隔离配置
+-- alter table qiapi.`interface_info`
+--     add column `breakerFailureRate` int null comment '熔断失败率阈值（%），为空时使用网关默认值' after `method`,
+--     add column `breakerSlowCallRate` int null comment '熔断慢调用比例阈值（%），为空时使用网关默认值' after `breakerFailureRate`,
+--     add column `breakerSlowCallMillis` int null comment '慢调用耗时阈值（毫秒），为空时使用网关默认值' after `breakerSlowCallRate`,
+--     add column `maxConcurrentCalls` int null comment '网关最大并发调用数，为空时使用网关默认值' after `breakerSlowCallMillis`;
+
+-- 已有数据库升级：网关响应缓存
+-- alter table qiapi.`interface_info`
+--     add column `cacheTtlSeconds` int null comment '网关缓存 GET 响应的秒数，为空或 0 时不缓存' after `maxConcurrentCalls`;
+
+-- 已有数据库升级：网关动态路由（按更新时间增量查询，包括已删除的接口）
+-- alter table qiapi.`interface_info`
+--     add column `upstreamConnectTimeoutMillis` int null comment '网关连接上游的超时时间（毫秒），为空时使用网关默认值' after `cacheTtlSeconds`,
+--     add column `upstreamResponseTimeoutMillis` int null comment '网关等待上游响应的超时时间（毫秒），为空时使用网关默认值' after `upstreamConnectTimeoutMillis`;
+-- create index idx_updateTime on qiapi.`interface_info` (`updateTime`);
+
+-- 接口上游实例表（同一接口可注册多个实例，由网关负载均衡）
+create table if not exists qiapi.`interface_instance`
+(
+    `id` bigint not null auto_increment comment '主键' primary key,
+    `interfaceInfoId` bigint not null comment '接口 id',
+    `url` varchar(512) not null comment '实例地址（协议 + 主机 + 端口），请求路径取自接口地址',
+    `status` tinyint default 1 not null comment '实例状态 0-下线 1-上线',
+    `createTime` datetime default CURRENT_TIMESTAMP not null comment '创建时间',
+    `updateTime` datetime default CURRENT_TIMESTAMP not null on update CURRENT_TIMESTAMP comment '更新时间',
+    `isDelete` tinyint default 0 not null comment '是否删除(0-未删, 1-已删)',
+    index idx_interfaceInfoId (`interfaceInfoId`)
+) comment '接口上游实例';
+
 -- 用户调用接口关系表
 create table if not exists qiapi.`user_interface_info`
 (
@@ -87,6 +87,13 @@ CREATE TABLE credit_records (
     INDEX idx_create_time (createTime)
 ) COMMENT '额度操作记录表';
 
+-- 额度账本回写检查点表
+CREATE TABLE credit_ledger_checkpoint (
+    id INT PRIMARY KEY COMMENT '主键ID（固定为 1）',
+    lastSeq BIGINT NOT NULL DEFAULT 0 COMMENT '已回写的最大流水序号',
+    updateTime DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间'
+) COMMENT '额度账本回写检查点表';
+
 -- 订单表
 CREATE TABLE orders (
     id BIGINT PRIMARY KEY AUTO_INCREMENT COMMENT '主键ID',